@@ -0,0 +1,332 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collectors;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.Destination;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.component.DumpableCollection;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.Sweeper;
+
+/**
+ * <p>A lock-free {@link ConnectionPool} for duplex connections, that
+ * is for connections that can be used by one request at a time.</p>
+ * <p>This pool has the same semantics as {@link DuplexConnectionPool},
+ * but it does not serialize acquirers and releasers on a lock, which
+ * makes it more suitable for destinations with a high request rate.</p>
+ * <p>Connections are stored in a fixed array of slots, each with an
+ * atomic state that is compared and set to acquire and release the
+ * connection, so that acquiring and releasing do not allocate.
+ * Each thread starts looking for an idle connection at a different
+ * slot, so that concurrent threads do not compete for the same
+ * connections and each thread tends to reuse the same connections.</p>
+ * <p>Connections may be closed after they have been used
+ * {@link #setMaxUsageCount(int) a maximum number of times}.</p>
+ */
+@ManagedObject
+public class ConcurrentConnectionPool extends AbstractConnectionPool implements Sweeper.Sweepable
+{
+    private static final Logger LOG = Log.getLogger(ConcurrentConnectionPool.class);
+
+    private final ConcurrentMap<Connection, Entry> entries;
+    private final AtomicReferenceArray<Entry> slots;
+    private volatile int maxUsageCount;
+
+    public ConcurrentConnectionPool(Destination destination, int maxConnections, Callback requester)
+    {
+        super(destination, maxConnections, requester);
+        this.entries = new ConcurrentHashMap<>(maxConnections);
+        this.slots = new AtomicReferenceArray<>(maxConnections);
+    }
+
+    @ManagedAttribute(value = "The number of idle connections", readonly = true)
+    public int getIdleConnectionCount()
+    {
+        return count(Entry.IDLE);
+    }
+
+    @ManagedAttribute(value = "The number of active connections", readonly = true)
+    public int getActiveConnectionCount()
+    {
+        return count(Entry.ACTIVE);
+    }
+
+    private int count(int state)
+    {
+        int count = 0;
+        for (Entry entry : entries.values())
+        {
+            if (entry.state.get() == state)
+                ++count;
+        }
+        return count;
+    }
+
+    /**
+     * @return the max number of times a connection is used before it is closed, or 0 for no limit
+     */
+    @ManagedAttribute(value = "The max number of times a connection is used")
+    public int getMaxUsageCount()
+    {
+        return maxUsageCount;
+    }
+
+    /**
+     * @param maxUsageCount the max number of times a connection is used before it is closed, or 0 for no limit
+     */
+    public void setMaxUsageCount(int maxUsageCount)
+    {
+        this.maxUsageCount = maxUsageCount;
+    }
+
+    private int startSlot()
+    {
+        return (int)(Thread.currentThread().getId() % slots.length());
+    }
+
+    @Override
+    public boolean isActive(Connection connection)
+    {
+        Entry entry = entries.get(connection);
+        return entry != null && entry.state.get() == Entry.ACTIVE;
+    }
+
+    @Override
+    protected void onCreated(Connection connection)
+    {
+        Entry entry = new Entry(connection);
+        entries.put(connection, entry);
+        // The number of connections is bounded by the
+        // number of slots, so there is always a free slot.
+        int length = slots.length();
+        int start = startSlot();
+        for (int i = 0; i < length; ++i)
+        {
+            int slot = (start + i) % length;
+            if (slots.compareAndSet(slot, null, entry))
+            {
+                entry.slot = slot;
+                // The connection may have been removed concurrently.
+                if (entry.state.get() == Entry.REMOVED)
+                    slots.compareAndSet(slot, entry, null);
+                break;
+            }
+        }
+        idle(connection, false);
+    }
+
+    @Override
+    protected Connection activate()
+    {
+        int length = slots.length();
+        int start = startSlot();
+        for (int i = 0; i < length; ++i)
+        {
+            Entry entry = slots.get((start + i) % length);
+            if (entry != null && entry.activate())
+                return active(entry.connection);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean release(Connection connection)
+    {
+        Entry entry = entries.get(connection);
+        if (entry == null)
+            return false;
+
+        boolean closed = isClosed();
+        int maxUsageCount = getMaxUsageCount();
+        boolean retire = closed || (maxUsageCount > 0 && entry.usage >= maxUsageCount);
+        if (!entry.deactivate(retire))
+            return false;
+
+        released(connection);
+
+        if (retire && !closed)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Connection max usage {} reached {}", maxUsageCount, connection);
+            // The caller will close the connection, which removes it.
+            return false;
+        }
+        return idle(connection, closed);
+    }
+
+    @Override
+    public boolean remove(Connection connection)
+    {
+        return remove(connection, false);
+    }
+
+    protected boolean remove(Connection connection, boolean force)
+    {
+        boolean activeRemoved = false;
+        boolean idleRemoved = false;
+        Entry entry = entries.remove(connection);
+        if (entry != null)
+        {
+            int state = entry.remove();
+            activeRemoved = state == Entry.ACTIVE;
+            idleRemoved = state == Entry.IDLE || state == Entry.RETIRED;
+            if (entry.slot >= 0)
+                slots.compareAndSet(entry.slot, entry, null);
+        }
+
+        if (activeRemoved || force)
+            released(connection);
+        boolean removed = activeRemoved || idleRemoved || force;
+        if (removed)
+            removed(connection);
+        return removed;
+    }
+
+    @Override
+    public void close()
+    {
+        super.close();
+
+        List<Connection> connections = new ArrayList<>();
+        for (Entry entry : entries.values())
+        {
+            if (entry.remove() != Entry.REMOVED)
+                connections.add(entry.connection);
+        }
+        entries.clear();
+        for (int i = 0; i < slots.length(); ++i)
+        {
+            slots.set(i, null);
+        }
+
+        close(connections);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        DumpableCollection active = new DumpableCollection("active", connections(Entry.ACTIVE));
+        DumpableCollection idle = new DumpableCollection("idle", connections(Entry.IDLE));
+        Dumpable.dumpObjects(out, indent, this, active, idle);
+    }
+
+    private List<Connection> connections(int state)
+    {
+        return entries.values().stream()
+            .filter(entry -> entry.state.get() == state)
+            .map(entry -> entry.connection)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean sweep()
+    {
+        List<Connection> toSweep = connections(Entry.ACTIVE).stream()
+            .filter(connection -> connection instanceof Sweeper.Sweepable)
+            .collect(Collectors.toList());
+
+        for (Connection connection : toSweep)
+        {
+            if (((Sweeper.Sweepable)connection).sweep())
+            {
+                boolean removed = remove(connection, true);
+                LOG.warn("Connection swept: {}{}{} from active connections{}{}",
+                    connection,
+                    System.lineSeparator(),
+                    removed ? "Removed" : "Not removed",
+                    System.lineSeparator(),
+                    dump());
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[c=%d/%d,a=%d,i=%d]",
+            getClass().getSimpleName(),
+            hashCode(),
+            getConnectionCount(),
+            getMaxConnectionCount(),
+            getActiveConnectionCount(),
+            getIdleConnectionCount());
+    }
+
+    private static class Entry
+    {
+        private static final int IDLE = 0;
+        private static final int ACTIVE = 1;
+        private static final int RETIRED = 2;
+        private static final int REMOVED = -1;
+
+        private final AtomicInteger state = new AtomicInteger(IDLE);
+        private final Connection connection;
+        private volatile int slot = -1;
+        // Only modified by the thread that activated the entry.
+        private int usage;
+
+        private Entry(Connection connection)
+        {
+            this.connection = connection;
+        }
+
+        private boolean activate()
+        {
+            if (state.compareAndSet(IDLE, ACTIVE))
+            {
+                ++usage;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean deactivate(boolean retire)
+        {
+            // A retired connection is not acquired anymore, and it is eventually removed.
+            return state.compareAndSet(ACTIVE, retire ? RETIRED : IDLE);
+        }
+
+        private int remove()
+        {
+            return state.getAndSet(REMOVED);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("{s=%d,u=%d,i=%d,c=%s}", state.get(), usage, slot, connection);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.Destination;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Promise;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrentConnectionPoolTest
+{
+    private final AtomicInteger created = new AtomicInteger();
+    private final Destination destination = new Destination()
+    {
+        @Override
+        public String getScheme()
+        {
+            return "http";
+        }
+
+        @Override
+        public String getHost()
+        {
+            return "localhost";
+        }
+
+        @Override
+        public int getPort()
+        {
+            return 8080;
+        }
+
+        @Override
+        public void newConnection(Promise<Connection> promise)
+        {
+            created.incrementAndGet();
+            promise.succeeded(new TestConnection());
+        }
+    };
+
+    @Test
+    public void testAcquireReleaseRemove()
+    {
+        ConcurrentConnectionPool pool = new ConcurrentConnectionPool(destination, 2, Callback.NOOP);
+
+        Connection connection1 = pool.acquire();
+        assertNotNull(connection1);
+        assertTrue(pool.isActive(connection1));
+        Connection connection2 = pool.acquire();
+        assertNotNull(connection2);
+        // Max connections reached.
+        assertNull(pool.acquire());
+        assertEquals(2, created.get());
+        assertEquals(2, pool.getActiveConnectionCount());
+
+        assertTrue(pool.release(connection1));
+        assertFalse(pool.isActive(connection1));
+        assertFalse(pool.release(connection1));
+        assertEquals(1, pool.getIdleConnectionCount());
+        assertSame(connection1, pool.acquire());
+
+        assertTrue(pool.remove(connection2));
+        assertFalse(pool.remove(connection2));
+        assertEquals(1, pool.getConnectionCount());
+
+        pool.close();
+        assertTrue(pool.isClosed());
+        assertTrue(connection1.isClosed());
+        assertFalse(pool.release(connection1));
+    }
+
+    @Test
+    public void testMaxUsageCount()
+    {
+        ConcurrentConnectionPool pool = new ConcurrentConnectionPool(destination, 1, Callback.NOOP);
+        pool.setMaxUsageCount(2);
+
+        Connection connection = pool.acquire();
+        assertTrue(pool.release(connection));
+        assertSame(connection, pool.acquire());
+        // The connection must be closed by the caller, that then removes it.
+        assertFalse(pool.release(connection));
+        assertNull(pool.acquire());
+        assertTrue(pool.remove(connection));
+        assertEquals(0, pool.getConnectionCount());
+
+        Connection newConnection = pool.acquire();
+        assertNotNull(newConnection);
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    public void testConcurrentAcquireRelease() throws Exception
+    {
+        int maxConnections = 4;
+        ConcurrentConnectionPool pool = new ConcurrentConnectionPool(destination, maxConnections, Callback.NOOP);
+        Set<Connection> inUse = ConcurrentHashMap.newKeySet();
+        AtomicInteger failures = new AtomicInteger();
+        int threads = 8;
+        int iterations = 10_000;
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; ++t)
+        {
+            Thread thread = new Thread(() ->
+            {
+                for (int i = 0; i < iterations; ++i)
+                {
+                    Connection connection = pool.acquire();
+                    if (connection == null)
+                        continue;
+                    // A connection must never be given to two users.
+                    if (!inUse.add(connection))
+                        failures.incrementAndGet();
+                    inUse.remove(connection);
+                    if (!pool.release(connection))
+                        failures.incrementAndGet();
+                }
+                latch.countDown();
+            });
+            thread.start();
+        }
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertEquals(0, failures.get());
+        assertThat(created.get(), lessThanOrEqualTo(maxConnections));
+        assertEquals(created.get(), pool.getIdleConnectionCount());
+        assertEquals(0, pool.getActiveConnectionCount());
+    }
+
+    private static class TestConnection implements Connection
+    {
+        private volatile boolean closed;
+
+        @Override
+        public void send(Request request, Response.CompleteListener listener)
+        {
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+
+        @Override
+        public boolean isClosed()
+        {
+            return closed;
+        }
+    }
+}
@@ -67,6 +67,11 @@ public class ConnectionPoolTest
             (ConnectionPool.Factory)
                 destination -> new DuplexConnectionPool(destination, 8, destination)
         });
+        pools.add(new Object[]{
+            ConcurrentConnectionPool.class,
+            (ConnectionPool.Factory)
+                destination -> new ConcurrentConnectionPool(destination, 8, destination)
+        });
         pools.add(new Object[]{
             RoundRobinConnectionPool.class,
             (ConnectionPool.Factory)
@@ -82,7 +82,7 @@ public class HazelcastSessionDataStoreFactory
                     {
                         ClientConfig config = new ClientConfig();
                         SerializerConfig sc = new SerializerConfig()
-                            .setImplementation(new SessionDataSerializer())
+                            .setImplementation(new SessionDataSerializer(getSessionDataCodec()))
                             .setTypeClass(SessionData.class);
                         config.getSerializationConfig().addSerializerConfig(sc);
                         hazelcastInstance = HazelcastClient.newHazelcastClient(config);
@@ -100,7 +100,7 @@ public class HazelcastSessionDataStoreFactory
                     {
 
                         SerializerConfig sc = new SerializerConfig()
-                            .setImplementation(new SessionDataSerializer())
+                            .setImplementation(new SessionDataSerializer(getSessionDataCodec()))
                             .setTypeClass(SessionData.class);
                         config = new Config();
                         config.getSerializationConfig().addSerializerConfig(sc);
@@ -18,16 +18,14 @@
 
 package org.eclipse.jetty.hazelcast.session;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 
 import com.hazelcast.nio.ObjectDataInput;
 import com.hazelcast.nio.ObjectDataOutput;
 import com.hazelcast.nio.serialization.StreamSerializer;
+import org.eclipse.jetty.server.session.JavaSerializationSessionDataCodec;
 import org.eclipse.jetty.server.session.SessionData;
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+import org.eclipse.jetty.server.session.SessionDataCodec;
 
 /**
  * SessionDataSerializer
@@ -39,6 +37,21 @@ public class SessionDataSerializer implements StreamSerializer<SessionData>
 {
     public static final int __TYPEID = 99;
 
+    private final SessionDataCodec _codec;
+
+    public SessionDataSerializer()
+    {
+        this(null);
+    }
+
+    /**
+     * @param codec the codec for the session attributes, or null for Java serialization
+     */
+    public SessionDataSerializer(SessionDataCodec codec)
+    {
+        _codec = codec == null ? new JavaSerializationSessionDataCodec() : codec;
+    }
+
     @Override
     public int getTypeId()
     {
@@ -66,12 +79,7 @@ public class SessionDataSerializer implements StreamSerializer<SessionData>
         out.writeLong(data.getExpiry());
         out.writeLong(data.getMaxInactiveMs());
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ObjectOutputStream oos = new ObjectOutputStream(baos))
-        {
-            SessionData.serializeAttributes(data, oos);
-            out.writeByteArray(baos.toByteArray());
-        }
+        out.writeByteArray(_codec.encodeAttributes(data));
     }
 
     @Override
@@ -91,10 +99,9 @@ public class SessionDataSerializer implements StreamSerializer<SessionData>
 
         SessionData sd = new SessionData(id, contextPath, vhost, created, accessed, lastAccessed, maxInactiveMs);
 
-        ByteArrayInputStream bais = new ByteArrayInputStream(in.readByteArray());
-        try (ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(bais))
+        try
         {
-            SessionData.deserializeAttributes(sd, ois);
+            _codec.decodeAttributes(sd, in.readByteArray());
         }
         catch (ClassNotFoundException e)
         {
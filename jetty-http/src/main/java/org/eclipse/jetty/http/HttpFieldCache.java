@@ -0,0 +1,481 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.ArrayTernaryTrie;
+import org.eclipse.jetty.util.Trie;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+
+/**
+ * <p>An adaptive, bounded cache of {@link HttpField}s used by {@link HttpParser}
+ * to look ahead for known header name and value pairs.</p>
+ * <p>The cache is first populated eagerly with the cacheable fields of the first
+ * requests of a connection, until its capacity is exhausted.
+ * From then on, fields that are not in the cache are counted and a field seen
+ * {@link #getPromotionThreshold()} times is promoted into the cache, evicting
+ * the least hit fields if necessary, so that values that change after the first
+ * request (cookies, authorization, etc.) are learned.</p>
+ * <p>Instances are not thread safe and are meant to be used by a single connection.
+ * A thread safe {@link Shared} cache may be configured to be looked up after the
+ * per-connection cache, so that fields repeating across connections of the
+ * same connector are also learned. Fields carrying credentials, such as cookies
+ * and authorizations, are never learned by the shared cache.</p>
+ * <p>The fields of the static {@link HttpParser#CACHE} are looked up last, and
+ * are counted neither as hits nor as misses, unless only the field name matched.</p>
+ */
+public class HttpFieldCache
+{
+    private final int _capacity;
+    private final Shared _shared;
+    private final Map<HttpField, AtomicInteger> _hitsPerField = new HashMap<>();
+    private final Map<HttpField, AtomicInteger> _candidates = new HashMap<>();
+    private int _promotionThreshold = 2;
+    private ArrayTernaryTrie<HttpField> _trie;
+    private boolean _full;
+    private long _hits;
+    private long _misses;
+
+    /**
+     * @param capacity the capacity, in characters, of the cache
+     */
+    public HttpFieldCache(int capacity)
+    {
+        this(capacity, null);
+    }
+
+    /**
+     * @param capacity the capacity, in characters, of the cache
+     * @param shared the shared cache to lookup and to populate, or null
+     */
+    public HttpFieldCache(int capacity, Shared shared)
+    {
+        _capacity = capacity;
+        _shared = shared;
+        _trie = new ArrayTernaryTrie<>(capacity);
+    }
+
+    /**
+     * @return the number of times a field must be seen before being promoted into a full cache
+     */
+    public int getPromotionThreshold()
+    {
+        return _promotionThreshold;
+    }
+
+    /**
+     * @param promotionThreshold the number of times a field must be seen before being promoted into a full cache
+     */
+    public void setPromotionThreshold(int promotionThreshold)
+    {
+        _promotionThreshold = Math.max(1, promotionThreshold);
+    }
+
+    /**
+     * @return the shared cache looked up after this cache, or null
+     */
+    public Shared getShared()
+    {
+        return _shared;
+    }
+
+    /**
+     * @return a view of the fields in this cache
+     */
+    public Trie<HttpField> asTrie()
+    {
+        return _trie;
+    }
+
+    /**
+     * @return the number of fields in this cache
+     */
+    public int size()
+    {
+        return _hitsPerField.size();
+    }
+
+    /**
+     * @return the number of lookups that found a field in this cache or in the shared cache
+     */
+    public long getHits()
+    {
+        return _hits;
+    }
+
+    /**
+     * @return the number of lookups that did not find a field in this cache nor in the shared cache
+     */
+    public long getMisses()
+    {
+        return _misses;
+    }
+
+    /**
+     * @return the ratio of hits over lookups, or 0 if there were no lookups
+     */
+    public double getHitRatio()
+    {
+        long lookups = _hits + _misses;
+        return lookups == 0 ? 0.0D : (double)_hits / lookups;
+    }
+
+    /**
+     * <p>Looks up the field that best matches the bytes in the given buffer,
+     * in this cache, then in the shared cache, then in {@link HttpParser#CACHE}.</p>
+     *
+     * @param buffer the buffer holding a header field line
+     * @param offset the offset from the buffer position
+     * @param length the maximum number of bytes to match
+     * @return the best matching field, possibly with only the name matching, or null if no field matches
+     */
+    public HttpField getBest(ByteBuffer buffer, int offset, int length)
+    {
+        HttpField field = _trie.getBest(buffer, offset, length);
+        if (field != null)
+        {
+            AtomicInteger hits = _hitsPerField.get(field);
+            if (hits != null)
+                hits.incrementAndGet();
+            ++_hits;
+            return field;
+        }
+
+        if (_shared != null)
+        {
+            field = _shared.lookup(buffer, offset, length);
+            if (field != null)
+            {
+                ++_hits;
+                return field;
+            }
+        }
+
+        // A field served by the static cache is not a miss, unless only its name matched.
+        field = HttpParser.CACHE.getBest(buffer, offset, length);
+        if (field == null || field.getValue() == null)
+        {
+            ++_misses;
+            if (_shared != null)
+                _shared._misses.increment();
+        }
+        return field;
+    }
+
+    /**
+     * <p>Offers a parsed field to this cache.</p>
+     * <p>While this cache is not full, the field is added immediately, otherwise
+     * the field is promoted into the cache once it is offered often enough.</p>
+     *
+     * @param field the cacheable field parsed from a request
+     */
+    public void learn(HttpField field)
+    {
+        if (_hitsPerField.containsKey(field))
+            return;
+
+        if (_shared != null)
+            _shared.learn(field);
+
+        if (!_full)
+        {
+            if (add(field))
+                return;
+            _full = true;
+        }
+
+        AtomicInteger count = _candidates.get(field);
+        if (count == null)
+        {
+            // Bound the candidates to the number of fields that could fit.
+            if (_candidates.size() >= Math.max(16, size()))
+                _candidates.values().removeIf(c -> c.decrementAndGet() <= 0);
+            count = new AtomicInteger(1);
+            _candidates.put(field, count);
+        }
+        else
+        {
+            count.incrementAndGet();
+        }
+
+        if (count.get() >= _promotionThreshold)
+        {
+            _candidates.remove(field);
+            promote(field);
+        }
+    }
+
+    private boolean add(HttpField field)
+    {
+        if (_trie.put(field))
+        {
+            _hitsPerField.put(field, new AtomicInteger());
+            return true;
+        }
+        return false;
+    }
+
+    private void promote(HttpField field)
+    {
+        // Rebuild the trie with the promoted field first, then
+        // the other fields by decreasing hits, until it is full.
+        ArrayTernaryTrie<HttpField> trie = new ArrayTernaryTrie<>(_capacity);
+        if (!trie.put(field))
+            return;
+        List<Map.Entry<HttpField, AtomicInteger>> entries = new ArrayList<>(_hitsPerField.entrySet());
+        entries.sort((a, b) -> Integer.compare(b.getValue().get(), a.getValue().get()));
+        _trie = trie;
+        _hitsPerField.clear();
+        _hitsPerField.put(field, new AtomicInteger());
+        for (Map.Entry<HttpField, AtomicInteger> entry : entries)
+        {
+            if (!trie.put(entry.getKey()))
+                continue;
+            // Age the hits so that fields that are no longer used are evicted.
+            _hitsPerField.put(entry.getKey(), new AtomicInteger(entry.getValue().get() / 2));
+        }
+    }
+
+    /**
+     * Removes all the fields from this cache, keeping the statistics.
+     */
+    public void clear()
+    {
+        _trie.clear();
+        _hitsPerField.clear();
+        _candidates.clear();
+        _full = false;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d,hits=%d,misses=%d,shared=%s}",
+            getClass().getSimpleName(),
+            hashCode(),
+            size(),
+            _hits,
+            _misses,
+            _shared);
+    }
+
+    /**
+     * <p>A thread safe {@link HttpFieldCache} that can be shared by the connections of a connector.</p>
+     * <p>Lookups are performed on an immutable trie without locking; fields offered by
+     * connections are counted and promoted by replacing the trie with a new one.</p>
+     */
+    @ManagedObject("Shared HTTP field cache")
+    public static class Shared
+    {
+        // Credentials must not be visible across connections.
+        private static final EnumSet<HttpHeader> NOT_SHARED = EnumSet.of(
+            HttpHeader.AUTHORIZATION,
+            HttpHeader.PROXY_AUTHORIZATION,
+            HttpHeader.COOKIE,
+            HttpHeader.SET_COOKIE,
+            HttpHeader.SET_COOKIE2);
+
+        private final Map<HttpField, AtomicInteger> _candidates = new ConcurrentHashMap<>();
+        private final LongAdder _hits = new LongAdder();
+        private final LongAdder _misses = new LongAdder();
+        private final int _capacity;
+        private final int _promotionThreshold;
+        private volatile Map<HttpField, AtomicInteger> _hitsPerField = new HashMap<>();
+        private volatile ArrayTernaryTrie<HttpField> _trie;
+
+        /**
+         * @param capacity the capacity, in characters, of the cache
+         */
+        public Shared(int capacity)
+        {
+            this(capacity, 8);
+        }
+
+        /**
+         * @param capacity the capacity, in characters, of the cache
+         * @param promotionThreshold the number of times a field must be offered before being cached
+         */
+        public Shared(int capacity, int promotionThreshold)
+        {
+            _capacity = capacity;
+            _promotionThreshold = Math.max(1, promotionThreshold);
+            _trie = new ArrayTernaryTrie<>(capacity);
+        }
+
+        @ManagedAttribute("The capacity in characters of the cache")
+        public int getCapacity()
+        {
+            return _capacity;
+        }
+
+        @ManagedAttribute("The number of times a field must be seen before being cached")
+        public int getPromotionThreshold()
+        {
+            return _promotionThreshold;
+        }
+
+        @ManagedAttribute("The number of fields in the cache")
+        public int size()
+        {
+            return _hitsPerField.size();
+        }
+
+        /**
+         * @return a view of the fields in this cache
+         */
+        public Trie<HttpField> asTrie()
+        {
+            return _trie;
+        }
+
+        @ManagedAttribute("The number of lookups that found a field")
+        public long getHits()
+        {
+            return _hits.longValue();
+        }
+
+        @ManagedAttribute("The number of lookups that did not find a field")
+        public long getMisses()
+        {
+            return _misses.longValue();
+        }
+
+        @ManagedAttribute("The ratio of hits over lookups")
+        public double getHitRatio()
+        {
+            long hits = getHits();
+            long lookups = hits + getMisses();
+            return lookups == 0 ? 0.0D : (double)hits / lookups;
+        }
+
+        @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+        public void resetStatistics()
+        {
+            _hits.reset();
+            _misses.reset();
+        }
+
+        @ManagedOperation(value = "Removes all the fields from the cache", impact = "ACTION")
+        public void clear()
+        {
+            synchronized (this)
+            {
+                _trie = new ArrayTernaryTrie<>(_capacity);
+                _hitsPerField = new HashMap<>();
+                _candidates.clear();
+            }
+        }
+
+        /**
+         * @param buffer the buffer holding a header field line
+         * @param offset the offset from the buffer position
+         * @param length the maximum number of bytes to match
+         * @return the best matching field, or null if no field matches
+         * @see HttpFieldCache#getBest(ByteBuffer, int, int)
+         */
+        public HttpField getBest(ByteBuffer buffer, int offset, int length)
+        {
+            HttpField field = lookup(buffer, offset, length);
+            if (field == null)
+                _misses.increment();
+            return field;
+        }
+
+        private HttpField lookup(ByteBuffer buffer, int offset, int length)
+        {
+            HttpField field = _trie.getBest(buffer, offset, length);
+            if (field != null)
+            {
+                _hits.increment();
+                AtomicInteger hits = _hitsPerField.get(field);
+                if (hits != null)
+                    hits.incrementAndGet();
+            }
+            return field;
+        }
+
+        /**
+         * <p>Fields carrying credentials are ignored.</p>
+         *
+         * @param field the cacheable field parsed from a request
+         * @see HttpFieldCache#learn(HttpField)
+         */
+        public void learn(HttpField field)
+        {
+            if (NOT_SHARED.contains(field.getHeader()) || _hitsPerField.containsKey(field))
+                return;
+
+            AtomicInteger count = _candidates.computeIfAbsent(field, f -> new AtomicInteger());
+            if (count.incrementAndGet() < _promotionThreshold)
+            {
+                // Bound the candidates, decaying the counts of the rare fields.
+                if (_candidates.size() > Math.max(64, 4 * size()))
+                    _candidates.values().removeIf(c -> c.decrementAndGet() <= 0);
+                return;
+            }
+
+            synchronized (this)
+            {
+                if (_candidates.remove(field) == null)
+                    return;
+
+                // Copy on write, so that lookups never see a trie being modified.
+                Map<HttpField, AtomicInteger> hitsPerField = _hitsPerField;
+                ArrayTernaryTrie<HttpField> trie = new ArrayTernaryTrie<>(_capacity);
+                Map<HttpField, AtomicInteger> newHitsPerField = new HashMap<>();
+                if (!trie.put(field))
+                    return;
+                newHitsPerField.put(field, new AtomicInteger());
+
+                List<Map.Entry<HttpField, AtomicInteger>> entries = new ArrayList<>(hitsPerField.entrySet());
+                entries.sort((a, b) -> Integer.compare(b.getValue().get(), a.getValue().get()));
+                for (Map.Entry<HttpField, AtomicInteger> entry : entries)
+                {
+                    if (trie.put(entry.getKey()))
+                        newHitsPerField.put(entry.getKey(), new AtomicInteger(entry.getValue().get() / 2));
+                }
+
+                _hitsPerField = newHitsPerField;
+                _trie = trie;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{size=%d,hits=%d,misses=%d}",
+                getClass().getSimpleName(),
+                hashCode(),
+                size(),
+                getHits(),
+                getMisses());
+        }
+    }
+}
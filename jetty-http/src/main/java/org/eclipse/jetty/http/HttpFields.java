@@ -54,9 +54,20 @@ public class HttpFields implements Iterable<HttpField>
     public static final String __separators = ", \t";
 
     private static final Logger LOG = Log.getLogger(HttpFields.class);
+    private static final int HEADERS = HttpHeader.values().length;
+    /**
+     * Below this size, fields are looked up with a linear scan, which is cheaper than building the index.
+     */
+    private static final int INDEX_THRESHOLD = 8;
 
     private HttpField[] _fields;
     private int _size;
+    /**
+     * For each {@link HttpHeader#ordinal()}, the index plus one of the first field with that header, or 0 if none.
+     * The index is valid only if {@link #_indexed} is true, and is rebuilt lazily after removals and replacements.
+     */
+    private int[] _index;
+    private boolean _indexed;
 
     /**
      * Initialize an empty HttpFields.
@@ -152,13 +163,8 @@ public class HttpFields implements Iterable<HttpField>
 
     public HttpField getField(HttpHeader header)
     {
-        for (int i = 0; i < _size; i++)
-        {
-            HttpField f = _fields[i];
-            if (f.getHeader() == header)
-                return f;
-        }
-        return null;
+        int i = indexOf(header);
+        return i < 0 ? null : _fields[i];
     }
 
     public HttpField getField(String name)
@@ -175,7 +181,7 @@ public class HttpFields implements Iterable<HttpField>
     public List<HttpField> getFields(HttpHeader header)
     {
         List<HttpField> fields = null;
-        for (int i = 0; i < _size; i++)
+        for (int i = Math.max(0, indexOf(header)); i < _size; i++)
         {
             HttpField f = _fields[i];
             if (f.getHeader() == header)
@@ -201,7 +207,10 @@ public class HttpFields implements Iterable<HttpField>
 
     public boolean contains(HttpHeader header, String value)
     {
-        for (int i = _size; i-- > 0; )
+        int first = indexOf(header);
+        if (first < 0)
+            return false;
+        for (int i = _size; i-- > first; )
         {
             HttpField f = _fields[i];
             if (f.getHeader() == header && f.contains(value))
@@ -223,13 +232,7 @@ public class HttpFields implements Iterable<HttpField>
 
     public boolean contains(HttpHeader header)
     {
-        for (int i = _size; i-- > 0; )
-        {
-            HttpField f = _fields[i];
-            if (f.getHeader() == header)
-                return true;
-        }
-        return false;
+        return indexOf(header) >= 0;
     }
 
     public boolean containsKey(String name)
@@ -251,13 +254,8 @@ public class HttpFields implements Iterable<HttpField>
 
     public String get(HttpHeader header)
     {
-        for (int i = 0; i < _size; i++)
-        {
-            HttpField f = _fields[i];
-            if (f.getHeader() == header)
-                return f.getValue();
-        }
-        return null;
+        int i = indexOf(header);
+        return i < 0 ? null : _fields[i].getValue();
     }
 
     @Deprecated
@@ -286,7 +284,7 @@ public class HttpFields implements Iterable<HttpField>
     public List<String> getValuesList(HttpHeader header)
     {
         final List<String> list = new ArrayList<>();
-        for (int i = 0; i < _size; i++)
+        for (int i = Math.max(0, indexOf(header)); i < _size; i++)
         {
             HttpField f = _fields[i];
             if (f.getHeader() == header)
@@ -324,7 +322,7 @@ public class HttpFields implements Iterable<HttpField>
     public boolean addCSV(HttpHeader header, String... values)
     {
         QuotedCSV existing = null;
-        for (int i = 0; i < _size; i++)
+        for (int i = Math.max(0, indexOf(header)); i < _size; i++)
         {
             HttpField f = _fields[i];
             if (f.getHeader() == header)
@@ -421,8 +419,9 @@ public class HttpFields implements Iterable<HttpField>
     public List<String> getCSV(HttpHeader header, boolean keepQuotes)
     {
         QuotedCSV values = null;
-        for (HttpField f : this)
+        for (int i = Math.max(0, indexOf(header)); i < _size; i++)
         {
+            HttpField f = _fields[i];
             if (f.getHeader() == header)
             {
                 if (values == null)
@@ -479,8 +478,9 @@ public class HttpFields implements Iterable<HttpField>
     public List<String> getQualityCSV(HttpHeader header, ToIntFunction<String> secondaryOrdering)
     {
         QuotedQualityCSV values = null;
-        for (HttpField f : this)
+        for (int i = Math.max(0, indexOf(header)); i < _size; i++)
         {
+            HttpField f = _fields[i];
             if (f.getHeader() == header)
             {
                 if (values == null)
@@ -629,6 +629,7 @@ public class HttpFields implements Iterable<HttpField>
             HttpField f = _fields[i];
             if (f.isSameName(field))
             {
+                _indexed = false;
                 if (put)
                 {
                     System.arraycopy(_fields, i + 1, _fields, i, --_size - i);
@@ -738,8 +739,11 @@ public class HttpFields implements Iterable<HttpField>
      */
     public HttpField remove(HttpHeader name)
     {
+        int first = indexOf(name);
+        if (first < 0)
+            return null;
         HttpField removed = null;
-        for (int i = _size; i-- > 0; )
+        for (int i = _size; i-- > first; )
         {
             HttpField f = _fields[i];
             if (f.getHeader() == name)
@@ -748,6 +752,7 @@ public class HttpFields implements Iterable<HttpField>
                 System.arraycopy(_fields, i + 1, _fields, i, --_size - i);
             }
         }
+        _indexed = false;
         return removed;
     }
 
@@ -767,6 +772,7 @@ public class HttpFields implements Iterable<HttpField>
             {
                 removed = f;
                 System.arraycopy(_fields, i + 1, _fields, i, --_size - i);
+                _indexed = false;
             }
         }
         return removed;
@@ -940,6 +946,7 @@ public class HttpFields implements Iterable<HttpField>
     public void clear()
     {
         _size = 0;
+        _indexed = false;
     }
 
     public void add(HttpField field)
@@ -949,7 +956,48 @@ public class HttpFields implements Iterable<HttpField>
             if (_size == _fields.length)
                 _fields = Arrays.copyOf(_fields, _size * 2);
             _fields[_size++] = field;
+
+            // Appending does not move other fields, so the index can be updated.
+            HttpHeader header = field.getHeader();
+            if (_indexed && header != null && _index[header.ordinal()] == 0)
+                _index[header.ordinal()] = _size;
+        }
+    }
+
+    /**
+     * @param header the header to look up
+     * @return the index of the first field with the given header, or -1 if there is none
+     */
+    private int indexOf(HttpHeader header)
+    {
+        if (header != null && _size > INDEX_THRESHOLD)
+        {
+            if (!_indexed)
+                buildIndex();
+            return _index[header.ordinal()] - 1;
+        }
+
+        for (int i = 0; i < _size; i++)
+        {
+            if (_fields[i].getHeader() == header)
+                return i;
+        }
+        return -1;
+    }
+
+    private void buildIndex()
+    {
+        if (_index == null)
+            _index = new int[HEADERS];
+        else
+            Arrays.fill(_index, 0);
+        for (int i = 0; i < _size; i++)
+        {
+            HttpHeader header = _fields[i].getHeader();
+            if (header != null && _index[header.ordinal()] == 0)
+                _index[header.ordinal()] = i + 1;
         }
+        _indexed = true;
     }
 
     public void addAll(HttpFields fields)
@@ -1163,6 +1211,7 @@ public class HttpFields implements Iterable<HttpField>
             _size--;
             System.arraycopy(_fields, _current + 1, _fields, _current, _size - _current);
             _fields[_size] = null;
+            _indexed = false;
             _cursor = _current;
             _current = -1;
         }
@@ -1200,6 +1249,7 @@ public class HttpFields implements Iterable<HttpField>
             if (_current < 0)
                 throw new IllegalStateException();
             _fields[_current] = field;
+            _indexed = false;
         }
 
         @Override
@@ -1209,6 +1259,7 @@ public class HttpFields implements Iterable<HttpField>
             System.arraycopy(_fields, _cursor, _fields, _cursor + 1, _size++);
             _fields[_cursor++] = field;
             _current = -1;
+            _indexed = false;
         }
     }
 }
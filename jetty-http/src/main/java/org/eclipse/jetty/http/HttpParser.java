@@ -25,7 +25,6 @@ import java.util.List;
 import java.util.Locale;
 
 import org.eclipse.jetty.http.HttpTokens.EndOfContent;
-import org.eclipse.jetty.util.ArrayTernaryTrie;
 import org.eclipse.jetty.util.ArrayTrie;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.StringUtil;
@@ -176,7 +175,7 @@ public class HttpParser
     private boolean _headResponse;
     private boolean _cr;
     private ByteBuffer _contentChunk;
-    private Trie<HttpField> _fieldCache;
+    private HttpFieldCache _fieldCache;
 
     private int _length;
     private final StringBuilder _string = new StringBuilder();
@@ -876,7 +875,7 @@ public class HttpParser
                             if (_fieldCache == null && _version.getVersion() >= HttpVersion.HTTP_1_1.getVersion() && _handler.getHeaderCacheSize() > 0)
                             {
                                 int headerCache = _handler.getHeaderCacheSize();
-                                _fieldCache = new ArrayTernaryTrie<>(headerCache);
+                                _fieldCache = new HttpFieldCache(headerCache, _handler.getSharedHeaderCache());
                             }
 
                             setState(State.HEADER);
@@ -1032,11 +1031,11 @@ public class HttpParser
                         break;
                 }
 
-                if (addToConnectionTrie && !_fieldCache.isFull() && _header != null && _valueString != null)
+                if (addToConnectionTrie && _header != null && _valueString != null)
                 {
                     if (_field == null)
                         _field = new HttpField(_header, caseInsensitiveHeader(_headerString, _header.asString()), _valueString);
-                    _fieldCache.put(_field);
+                    _fieldCache.learn(_field);
                 }
             }
             _handler.parsedHeader(_field != null ? _field : new HttpField(_header, _headerString, _valueString));
@@ -1210,9 +1209,10 @@ public class HttpParser
                             if (buffer.hasRemaining())
                             {
                                 // Try a look ahead for the known header name and value.
-                                HttpField cachedField = _fieldCache == null ? null : _fieldCache.getBest(buffer, -1, buffer.remaining());
-                                if (cachedField == null)
-                                    cachedField = CACHE.getBest(buffer, -1, buffer.remaining());
+                                // The connection cache falls back to the static CACHE.
+                                HttpField cachedField = _fieldCache == null
+                                    ? CACHE.getBest(buffer, -1, buffer.remaining())
+                                    : _fieldCache.getBest(buffer, -1, buffer.remaining());
 
                                 if (cachedField != null)
                                 {
@@ -1841,6 +1841,14 @@ public class HttpParser
     }
 
     public Trie<HttpField> getFieldCache()
+    {
+        return _fieldCache == null ? null : _fieldCache.asTrie();
+    }
+
+    /**
+     * @return the adaptive per-connection field cache, or null if fields are not cached
+     */
+    public HttpFieldCache getHttpFieldCache()
     {
         return _fieldCache;
     }
@@ -1916,6 +1924,14 @@ public class HttpParser
          * @return the size in bytes of the per parser header cache
          */
         int getHeaderCacheSize();
+
+        /**
+         * @return the header cache shared with other parsers, looked up after the per parser header cache, or null
+         */
+        default HttpFieldCache.Shared getSharedHeaderCache()
+        {
+            return null;
+        }
     }
 
     public interface RequestHandler extends HttpHandler
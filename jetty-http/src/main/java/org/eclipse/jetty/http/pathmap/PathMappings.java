@@ -245,7 +245,7 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
                 String suffix = pathSpec.getSuffix();
                 while (suffix != null && !_suffixMap.put(suffix, entry))
                 {
-                    _suffixMap = new ArrayTernaryTrie<>((ArrayTernaryTrie<MappedResource<E>>)_prefixMap, 1.5);
+                    _suffixMap = new ArrayTernaryTrie<>((ArrayTernaryTrie<MappedResource<E>>)_suffixMap, 1.5);
                 }
                 break;
             default:
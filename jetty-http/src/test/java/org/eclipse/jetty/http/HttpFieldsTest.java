@@ -764,4 +764,63 @@ public class HttpFieldsTest
         assertThat(i.next().getName(), is("name4"));
         assertThat(i.hasNext(), is(false));
     }
+
+    @Test
+    public void testIndexedLookup()
+    {
+        HttpFields fields = new HttpFields();
+        fields.add("Name0", "value0");
+        fields.add(HttpHeader.HOST, "localhost");
+        fields.add(HttpHeader.ACCEPT, "text/html");
+        fields.add(HttpHeader.ACCEPT_ENCODING, "gzip");
+        fields.add(HttpHeader.USER_AGENT, "test");
+        fields.add(HttpHeader.COOKIE, "a=1");
+        fields.add(HttpHeader.CONNECTION, "keep-alive");
+        fields.add(HttpHeader.CACHE_CONTROL, "no-cache");
+        fields.add(HttpHeader.COOKIE, "b=2");
+        fields.add(HttpHeader.ACCEPT_LANGUAGE, "en");
+
+        // Large enough to be looked up via the index.
+        assertEquals("localhost", fields.get(HttpHeader.HOST));
+        assertEquals("a=1", fields.get(HttpHeader.COOKIE));
+        assertThat(fields.getValuesList(HttpHeader.COOKIE), Matchers.contains("a=1", "b=2"));
+        assertTrue(fields.contains(HttpHeader.ACCEPT_LANGUAGE, "en"));
+        assertFalse(fields.contains(HttpHeader.PRAGMA));
+
+        // Fields added after the index is built.
+        fields.add(HttpHeader.PRAGMA, "no-cache");
+        fields.add(HttpHeader.COOKIE, "c=3");
+        assertEquals("no-cache", fields.get(HttpHeader.PRAGMA));
+        assertThat(fields.getValuesList(HttpHeader.COOKIE), Matchers.contains("a=1", "b=2", "c=3"));
+
+        // Fields moved by removals and replacements.
+        fields.remove(HttpHeader.HOST);
+        assertNull(fields.get(HttpHeader.HOST));
+        assertEquals("text/html", fields.get(HttpHeader.ACCEPT));
+        fields.put(HttpHeader.COOKIE, "d=4");
+        assertThat(fields.getValuesList(HttpHeader.COOKIE), Matchers.contains("d=4"));
+        assertEquals("no-cache", fields.get(HttpHeader.PRAGMA));
+        fields.remove("Accept");
+        assertFalse(fields.contains(HttpHeader.ACCEPT));
+        assertEquals("gzip", fields.get(HttpHeader.ACCEPT_ENCODING));
+
+        // Fields changed via the iterator.
+        ListIterator<HttpField> iterator = fields.listIterator();
+        while (iterator.hasNext())
+        {
+            HttpField field = iterator.next();
+            if (field.getHeader() == HttpHeader.USER_AGENT)
+                iterator.remove();
+            else if (field.getHeader() == HttpHeader.CONNECTION)
+                iterator.set(new HttpField(HttpHeader.HOST, "example.com"));
+        }
+        iterator.add(new HttpField(HttpHeader.USER_AGENT, "other"));
+        assertEquals("example.com", fields.get(HttpHeader.HOST));
+        assertFalse(fields.contains(HttpHeader.CONNECTION));
+        assertEquals("other", fields.get(HttpHeader.USER_AGENT));
+
+        fields.clear();
+        assertNull(fields.get(HttpHeader.COOKIE));
+        assertEquals(0, fields.size());
+    }
 }
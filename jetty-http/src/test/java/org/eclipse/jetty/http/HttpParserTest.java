@@ -37,10 +37,12 @@ import static org.eclipse.jetty.http.HttpComplianceSection.NO_FIELD_FOLDING;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -2178,6 +2180,54 @@ public class HttpParserTest
         assertTrue(field == _fields.get(0));
     }
 
+    @Test
+    @SuppressWarnings("ReferenceEquality")
+    public void testCachedFieldLearnedAfterFirstRequest() throws Exception
+    {
+        HttpParser.RequestHandler handler = new Handler()
+        {
+            @Override
+            public int getHeaderCacheSize()
+            {
+                // Only room for the fields of the first request.
+                return 80;
+            }
+        };
+        HttpParser parser = new HttpParser(handler);
+
+        parseAll(parser, BufferUtil.toBuffer(
+            "GET / HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Cookie: a=1\r\n" +
+                "User-Agent: Mozilla/5.0 (X11; Linux x86_64)\r\n" +
+                "\r\n"));
+        parser.reset();
+        assertNotNull(parser.getFieldCache().get("Cookie: a=1"));
+
+        // The cookie changes, and is promoted once it repeats.
+        ByteBuffer buffer = BufferUtil.toBuffer(
+            "GET / HTTP/1.1\r\n" +
+                "Cookie: session=0123456789\r\n" +
+                "Host: localhost\r\n" +
+                "\r\n");
+        for (int i = 0; i < 2; ++i)
+        {
+            buffer.position(0);
+            parseAll(parser, buffer);
+            parser.reset();
+        }
+        assertNotNull(parser.getFieldCache().get("Cookie: session=0123456789"));
+
+        buffer.position(0);
+        parseAll(parser, buffer);
+        HttpField field = _fields.get(0);
+        buffer.position(0);
+        parser.reset();
+        parseAll(parser, buffer);
+        assertTrue(field == _fields.get(0));
+        assertThat(parser.getHttpFieldCache().getHits(), greaterThan(0L));
+    }
+
     @Test
     public void testParseRequest() throws Exception
     {
@@ -285,6 +285,24 @@ public class PathMappingsTest
         assertEquals("prefix", p.getMatch("/dump/gzip/something.txt").getResource());
     }
 
+    @Test
+    public void testManySuffixMappings()
+    {
+        // Enough suffixes to grow the suffix trie beyond its initial capacity.
+        PathMappings<String> p = new PathMappings<>();
+        p.put(new ServletPathSpec("/prefix/*"), "prefix");
+        for (int i = 0; i < 200; i++)
+        {
+            p.put(new ServletPathSpec("*.ext" + i), "suffix" + i);
+        }
+
+        assertEquals("prefix", p.getMatch("/prefix/info").getResource());
+        for (int i = 0; i < 200; i++)
+        {
+            assertEquals("suffix" + i, p.getMatch("/foo/bar.ext" + i).getResource());
+        }
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {
         "*",
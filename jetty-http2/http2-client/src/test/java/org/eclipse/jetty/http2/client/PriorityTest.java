@@ -18,15 +18,22 @@
 
 package org.eclipse.jetty.http2.client;
 
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.IStream;
 import org.eclipse.jetty.http2.api.Session;
 import org.eclipse.jetty.http2.api.Stream;
 import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
 import org.eclipse.jetty.http2.frames.HeadersFrame;
 import org.eclipse.jetty.http2.frames.PriorityFrame;
 import org.eclipse.jetty.util.Callback;
@@ -184,4 +191,237 @@ public class PriorityTest extends AbstractTest
 
         assertTrue(latch.await(5, TimeUnit.SECONDS));
     }
+
+    @Test
+    public void testPriorityUpdatesStreamDependencies() throws Exception
+    {
+        BlockingQueue<IStream> streams = new LinkedBlockingQueue<>();
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                streams.offer((IStream)stream);
+                return null;
+            }
+        });
+
+        Session session = newClient(new Session.Listener.Adapter());
+        FuturePromise<Stream> promise1 = new FuturePromise<>();
+        session.newStream(new HeadersFrame(newRequest("GET", "/one", new HttpFields()), null, false), promise1, new Stream.Listener.Adapter());
+        Stream stream1 = promise1.get(5, TimeUnit.SECONDS);
+        IStream serverStream1 = streams.poll(5, TimeUnit.SECONDS);
+        assertNotNull(serverStream1);
+        assertEquals(0, serverStream1.getParentStreamId());
+        assertEquals(PriorityFrame.DEFAULT_WEIGHT, serverStream1.getWeight());
+
+        PriorityFrame priorityFrame = new PriorityFrame(stream1.getId(), 32, false);
+        FuturePromise<Stream> promise2 = new FuturePromise<>();
+        session.newStream(new HeadersFrame(newRequest("GET", "/two", new HttpFields()), priorityFrame, false), promise2, new Stream.Listener.Adapter());
+        Stream stream2 = promise2.get(5, TimeUnit.SECONDS);
+        IStream serverStream2 = streams.poll(5, TimeUnit.SECONDS);
+        assertNotNull(serverStream2);
+        assertEquals(stream1.getId(), serverStream2.getParentStreamId());
+        assertEquals(32, serverStream2.getWeight());
+
+        // Making stream1 depend on its dependent stream2 moves stream2 to the former parent of stream1.
+        CountDownLatch latch = new CountDownLatch(1);
+        session.priority(new PriorityFrame(stream1.getId(), stream2.getId(), 64, false), Callback.from(latch::countDown));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (serverStream1.getParentStreamId() != stream2.getId() && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(stream2.getId(), serverStream1.getParentStreamId());
+        assertEquals(64, serverStream1.getWeight());
+        assertEquals(0, serverStream2.getParentStreamId());
+    }
+
+    @Test
+    public void testDependentStreamDataAfterParentData() throws Exception
+    {
+        int length = 20 * 1024;
+        CountDownLatch serverStreamsLatch = new CountDownLatch(2);
+        List<Stream> serverStreams = new CopyOnWriteArrayList<>();
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                serverStreams.add(stream);
+                serverStreamsLatch.countDown();
+                return null;
+            }
+        });
+
+        BlockingQueue<DataFrame> dataFrames = new LinkedBlockingQueue<>();
+        Stream.Listener listener = new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                dataFrames.offer(frame);
+                callback.succeeded();
+            }
+        };
+
+        Session session = newClient(new Session.Listener.Adapter());
+        FuturePromise<Stream> promise1 = new FuturePromise<>();
+        session.newStream(new HeadersFrame(newRequest("GET", "/one", new HttpFields()), null, true), promise1, listener);
+        Stream stream1 = promise1.get(5, TimeUnit.SECONDS);
+        PriorityFrame priorityFrame = new PriorityFrame(stream1.getId(), PriorityFrame.DEFAULT_WEIGHT, false);
+        FuturePromise<Stream> promise2 = new FuturePromise<>();
+        session.newStream(new HeadersFrame(newRequest("GET", "/two", new HttpFields()), priorityFrame, true), promise2, listener);
+        Stream stream2 = promise2.get(5, TimeUnit.SECONDS);
+        assertTrue(serverStreamsLatch.await(5, TimeUnit.SECONDS));
+
+        Stream serverStream1 = serverStreams.get(0);
+        Stream serverStream2 = serverStreams.get(1);
+        MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, 200, new HttpFields());
+        serverStream1.headers(new HeadersFrame(serverStream1.getId(), response, null, false), Callback.NOOP);
+        serverStream2.headers(new HeadersFrame(serverStream2.getId(), response, null, false), new Callback()
+        {
+            @Override
+            public void succeeded()
+            {
+                // Write the dependent stream data first, from within
+                // the callback so that the data frames are queued together.
+                serverStream2.data(new DataFrame(serverStream2.getId(), ByteBuffer.allocate(length), true), NOOP);
+                serverStream1.data(new DataFrame(serverStream1.getId(), ByteBuffer.allocate(length), true), NOOP);
+            }
+        });
+
+        // All the data of the parent stream must arrive before the data of the dependent stream.
+        int parentLength = 0;
+        while (parentLength < length)
+        {
+            DataFrame frame = dataFrames.poll(5, TimeUnit.SECONDS);
+            assertNotNull(frame);
+            assertEquals(stream1.getId(), frame.getStreamId());
+            parentLength += frame.remaining();
+        }
+        int dependentLength = 0;
+        while (dependentLength < length)
+        {
+            DataFrame frame = dataFrames.poll(5, TimeUnit.SECONDS);
+            assertNotNull(frame);
+            assertEquals(stream2.getId(), frame.getStreamId());
+            dependentLength += frame.remaining();
+        }
+    }
+
+    @Test
+    public void testLowWeightStreamWritesAllDataFrames() throws Exception
+    {
+        // Several DATA frames, each worth much more than the credit of a weight of 1.
+        int length = 3 * 16 * 1024;
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, 200, new HttpFields());
+                stream.headers(new HeadersFrame(stream.getId(), response, null, false), new Callback()
+                {
+                    @Override
+                    public void succeeded()
+                    {
+                        stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(length), true), NOOP);
+                    }
+                });
+                return null;
+            }
+        });
+
+        CountDownLatch latch = new CountDownLatch(1);
+        Session session = newClient(new Session.Listener.Adapter());
+        PriorityFrame priorityFrame = new PriorityFrame(0, 1, false);
+        session.newStream(new HeadersFrame(newRequest("GET", new HttpFields()), priorityFrame, true), new Promise.Adapter<>(), new Stream.Listener.Adapter()
+        {
+            private int received;
+
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                received += frame.remaining();
+                callback.succeeded();
+                if (frame.isEndStream() && received == length)
+                    latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testLowWeightParentAndDependentStreamWriteAllDataFrames() throws Exception
+    {
+        int length = 2 * 16 * 1024;
+        CountDownLatch serverStreamsLatch = new CountDownLatch(2);
+        List<Stream> serverStreams = new CopyOnWriteArrayList<>();
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                serverStreams.add(stream);
+                serverStreamsLatch.countDown();
+                return null;
+            }
+        });
+
+        BlockingQueue<DataFrame> dataFrames = new LinkedBlockingQueue<>();
+        Stream.Listener listener = new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                dataFrames.offer(frame);
+                callback.succeeded();
+            }
+        };
+
+        Session session = newClient(new Session.Listener.Adapter());
+        FuturePromise<Stream> promise1 = new FuturePromise<>();
+        session.newStream(new HeadersFrame(newRequest("GET", "/one", new HttpFields()), new PriorityFrame(0, 1, false), true), promise1, listener);
+        Stream stream1 = promise1.get(5, TimeUnit.SECONDS);
+        FuturePromise<Stream> promise2 = new FuturePromise<>();
+        session.newStream(new HeadersFrame(newRequest("GET", "/two", new HttpFields()), new PriorityFrame(stream1.getId(), 1, false), true), promise2, listener);
+        Stream stream2 = promise2.get(5, TimeUnit.SECONDS);
+        assertTrue(serverStreamsLatch.await(5, TimeUnit.SECONDS));
+
+        Stream serverStream1 = serverStreams.get(0);
+        Stream serverStream2 = serverStreams.get(1);
+        MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, 200, new HttpFields());
+        serverStream1.headers(new HeadersFrame(serverStream1.getId(), response, null, false), Callback.NOOP);
+        serverStream2.headers(new HeadersFrame(serverStream2.getId(), response, null, false), new Callback()
+        {
+            @Override
+            public void succeeded()
+            {
+                serverStream2.data(new DataFrame(serverStream2.getId(), ByteBuffer.allocate(length), true), NOOP);
+                serverStream1.data(new DataFrame(serverStream1.getId(), ByteBuffer.allocate(length), true), NOOP);
+            }
+        });
+
+        // The parent stream data arrives first, and then all the dependent stream data.
+        int parentLength = 0;
+        while (parentLength < length)
+        {
+            DataFrame frame = dataFrames.poll(5, TimeUnit.SECONDS);
+            assertNotNull(frame);
+            assertEquals(stream1.getId(), frame.getStreamId());
+            parentLength += frame.remaining();
+        }
+        int dependentLength = 0;
+        while (dependentLength < length)
+        {
+            DataFrame frame = dataFrames.poll(5, TimeUnit.SECONDS);
+            assertNotNull(frame);
+            assertEquals(stream2.getId(), frame.getStreamId());
+            dependentLength += frame.remaining();
+        }
+    }
 }
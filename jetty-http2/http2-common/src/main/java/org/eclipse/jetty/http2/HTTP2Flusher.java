@@ -22,13 +22,20 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.FrameType;
+import org.eclipse.jetty.http2.frames.PriorityFrame;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.EofException;
@@ -38,19 +45,43 @@ import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 
+/**
+ * <p>Generates and writes the frames of a {@link HTTP2Session}.</p>
+ * <p>Producers queue entries in lock-free queues, that are drained
+ * by the single thread that iterates this flusher.</p>
+ * <p>Connection frames and protocol frames are written first, in order.
+ * The frames of each stream are queued per stream and scheduled with
+ * a deficit round robin policy, where each stream may generate, per
+ * round, a number of bytes proportional to its weight, so that a
+ * stream with a large content does not starve the other streams.
+ * Streams that depend on streams that have frames that can be written
+ * are scheduled only after them, as specified by RFC 7540, section 5.3.</p>
+ * <p>The frames of a stream are written in the order they are queued;
+ * frames that are not flow controlled, such as RST_STREAM, are written
+ * as soon as the frames queued before them are written.</p>
+ */
 public class HTTP2Flusher extends IteratingCallback implements Dumpable
 {
     private static final Logger LOG = Log.getLogger(HTTP2Flusher.class);
     private static final ByteBuffer[] EMPTY_BYTE_BUFFERS = new ByteBuffer[0];
+    // The default weight is worth one DATA frame of the default max frame size per round.
+    private static final int QUANTUM_PER_WEIGHT = Frame.DEFAULT_MAX_LENGTH / PriorityFrame.DEFAULT_WEIGHT;
+    private static final int MAX_DEPENDENCY_DEPTH = 32;
 
-    private final Queue<WindowEntry> windows = new ArrayDeque<>();
-    private final Deque<Entry> entries = new ArrayDeque<>();
+    private final Queue<WindowEntry> windows = new ConcurrentLinkedQueue<>();
+    private final Deque<Entry> entries = new ConcurrentLinkedDeque<>();
+    private final AtomicReference<Throwable> terminated = new AtomicReference<>();
     private final Queue<Entry> pendingEntries = new ArrayDeque<>();
+    private final Map<Integer, StreamEntries> pendingStreams = new HashMap<>();
+    private final Deque<StreamEntries> activeStreams = new ArrayDeque<>();
     private final Set<Entry> processedEntries = new HashSet<>();
     private final HTTP2Session session;
     private final ByteBufferPool.Lease lease;
-    private Throwable terminated;
     private Entry stalledEntry;
+    private boolean progress;
+    private boolean stalled;
+    private boolean deferred;
+    private boolean starved;
 
     public HTTP2Flusher(HTTP2Session session)
     {
@@ -60,30 +91,22 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
 
     public void window(IStream stream, WindowUpdateFrame frame)
     {
-        Throwable closed;
-        synchronized (this)
-        {
-            closed = terminated;
-            if (closed == null)
-                windows.offer(new WindowEntry(stream, frame));
-        }
+        if (terminated.get() != null)
+            return;
+        windows.offer(new WindowEntry(stream, frame));
         // Flush stalled data.
-        if (closed == null)
-            iterate();
+        iterate();
     }
 
     public boolean prepend(Entry entry)
     {
-        Throwable closed;
-        synchronized (this)
+        Throwable closed = terminated.get();
+        if (closed == null)
         {
-            closed = terminated;
-            if (closed == null)
-            {
-                entries.offerFirst(entry);
-                if (LOG.isDebugEnabled())
-                    LOG.debug("Prepended {}, entries={}", entry, entries.size());
-            }
+            entries.offerFirst(entry);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Prepended {}, entries={}", entry, entries.size());
+            closed = checkTerminated(entry);
         }
         if (closed == null)
             return true;
@@ -93,16 +116,13 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
 
     public boolean append(Entry entry)
     {
-        Throwable closed;
-        synchronized (this)
+        Throwable closed = terminated.get();
+        if (closed == null)
         {
-            closed = terminated;
-            if (closed == null)
-            {
-                entries.offer(entry);
-                if (LOG.isDebugEnabled())
-                    LOG.debug("Appended {}, entries={}", entry, entries.size());
-            }
+            entries.offer(entry);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Appended {}, entries={}", entry, entries.size());
+            closed = checkTerminated(entry);
         }
         if (closed == null)
             return true;
@@ -110,20 +130,25 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
         return false;
     }
 
+    private Throwable checkTerminated(Entry entry)
+    {
+        // If this flusher has been terminated concurrently, the
+        // queued entry may have been missed when failing entries;
+        // if it can still be removed, then it must be failed here.
+        Throwable closed = terminated.get();
+        if (closed != null && entries.remove(entry))
+            return closed;
+        return null;
+    }
+
     private int getWindowQueueSize()
     {
-        synchronized (this)
-        {
-            return windows.size();
-        }
+        return windows.size();
     }
 
     public int getFrameQueueSize()
     {
-        synchronized (this)
-        {
-            return entries.size();
-        }
+        return entries.size();
     }
 
     @Override
@@ -132,92 +157,88 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
         if (LOG.isDebugEnabled())
             LOG.debug("Flushing {}", session);
 
-        synchronized (this)
-        {
-            if (terminated != null)
-                throw terminated;
+        Throwable closed = terminated.get();
+        if (closed != null)
+            throw closed;
 
-            WindowEntry windowEntry;
-            while ((windowEntry = windows.poll()) != null)
-            {
-                windowEntry.perform();
-            }
+        WindowEntry windowEntry;
+        while ((windowEntry = windows.poll()) != null)
+        {
+            windowEntry.perform();
+        }
 
-            Entry entry;
-            while ((entry = entries.poll()) != null)
-            {
-                pendingEntries.offer(entry);
-            }
+        Entry entry;
+        while ((entry = entries.poll()) != null)
+        {
+            schedule(entry);
         }
 
-        if (pendingEntries.isEmpty())
+        if (pendingEntries.isEmpty() && activeStreams.isEmpty())
         {
             if (LOG.isDebugEnabled())
                 LOG.debug("Flushed {}", session);
             return Action.IDLE;
         }
 
+        // Windows may have been updated, so stalled streams may progress.
+        for (StreamEntries streamEntries : activeStreams)
+        {
+            streamEntries.stalled = false;
+        }
+
         while (true)
         {
-            boolean progress = false;
+            progress = false;
+            stalled = false;
+            deferred = false;
+            starved = false;
 
-            if (pendingEntries.isEmpty())
+            if (pendingEntries.isEmpty() && activeStreams.isEmpty())
                 break;
 
-            Iterator<Entry> pending = pendingEntries.iterator();
-            while (pending.hasNext())
+            try
             {
-                Entry entry = pending.next();
-                if (LOG.isDebugEnabled())
-                    LOG.debug("Processing {}", entry);
-
-                // If the stream has been reset or removed,
-                // don't send the frame and fail it here.
-                if (entry.isStale())
-                {
-                    if (LOG.isDebugEnabled())
-                        LOG.debug("Stale {}", entry);
-                    entry.failed(new EofException("reset"));
-                    pending.remove();
-                    continue;
-                }
-
-                try
+                Iterator<Entry> pending = pendingEntries.iterator();
+                while (pending.hasNext())
                 {
-                    if (entry.generate(lease))
+                    entry = pending.next();
+                    if (generate(entry))
                     {
-                        if (LOG.isDebugEnabled())
-                            LOG.debug("Generated {} frame bytes for {}", entry.getFrameBytesGenerated(), entry);
-
-                        progress = true;
-
-                        processedEntries.add(entry);
-
                         if (entry.getDataBytesRemaining() == 0)
                             pending.remove();
                     }
                     else
                     {
-                        if (session.getSendWindow() <= 0 && stalledEntry == null)
-                        {
-                            stalledEntry = entry;
-                            if (LOG.isDebugEnabled())
-                                LOG.debug("Flow control stalled at {}", entry);
-                            // Continue to process control frames.
-                        }
+                        stalled(entry);
                     }
                 }
-                catch (Throwable failure)
+
+                for (int i = activeStreams.size(); i-- > 0; )
                 {
-                    // Failure to generate the entry is catastrophic.
-                    if (LOG.isDebugEnabled())
-                        LOG.debug("Failure generating " + entry, failure);
-                    failed(failure);
-                    return Action.SUCCEEDED;
+                    // Round robin, moving the stream to the tail.
+                    StreamEntries streamEntries = activeStreams.poll();
+                    activeStreams.offer(streamEntries);
+                    generate(streamEntries);
+                    if (streamEntries.entries.isEmpty())
+                    {
+                        activeStreams.pollLast();
+                        pendingStreams.remove(streamEntries.stream.getId());
+                    }
                 }
             }
+            catch (Throwable failure)
+            {
+                // Failure to generate the entry is catastrophic.
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Failure generating frames", failure);
+                failed(failure);
+                return Action.SUCCEEDED;
+            }
 
-            if (!progress)
+            // Streams that consumed all their credit, and streams
+            // deferred because of streams that just stalled,
+            // may progress in another pass.
+            if (!progress && !starved && !(deferred && stalled))
                 break;
 
             if (stalledEntry != null)
@@ -240,18 +261,170 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
         }
 
         if (LOG.isDebugEnabled())
-            LOG.debug("Writing {} buffers ({} bytes) - entries processed/pending {}/{}: {}/{}",
+            LOG.debug("Writing {} buffers ({} bytes) - entries processed/pending/streams {}/{}/{}: {}/{}/{}",
                 byteBuffers.size(),
                 lease.getTotalLength(),
                 processedEntries.size(),
                 pendingEntries.size(),
+                activeStreams.size(),
                 processedEntries,
-                pendingEntries);
+                pendingEntries,
+                activeStreams);
 
         session.getEndPoint().write(this, byteBuffers.toArray(EMPTY_BYTE_BUFFERS));
         return Action.SCHEDULED;
     }
 
+    private void schedule(Entry entry)
+    {
+        IStream stream = entry.stream;
+        if (stream != null && entry.isScheduled())
+        {
+            // DATA frames are queued per stream, and so are the other
+            // frames queued after them, to keep the stream frames in order.
+            // WINDOW_UPDATE frames are not queued after stalled DATA frames.
+            StreamEntries streamEntries = pendingStreams.get(stream.getId());
+            if (streamEntries == null && entry.frame.getType() == FrameType.DATA)
+            {
+                streamEntries = new StreamEntries(stream);
+                pendingStreams.put(stream.getId(), streamEntries);
+                activeStreams.offer(streamEntries);
+            }
+            if (streamEntries != null)
+            {
+                streamEntries.entries.offer(entry);
+                return;
+            }
+        }
+        // Other frames are written in order, before the stream frames;
+        // in particular, HEADERS frames keep the order of stream ids.
+        pendingEntries.offer(entry);
+    }
+
+    private boolean generate(Entry entry)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Processing {}", entry);
+
+        // If the stream has been reset or removed,
+        // don't send the frame and fail it here.
+        if (entry.isStale())
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Stale {}", entry);
+            entry.failed(new EofException("reset"));
+            return true;
+        }
+
+        if (entry.generate(lease))
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Generated {} frame bytes for {}", entry.getFrameBytesGenerated(), entry);
+            progress = true;
+            processedEntries.add(entry);
+            return true;
+        }
+
+        stalled = true;
+        return false;
+    }
+
+    private void stalled(Entry entry)
+    {
+        if (session.getSendWindow() <= 0 && stalledEntry == null)
+        {
+            stalledEntry = entry;
+            if (LOG.isDebugEnabled())
+                LOG.debug("Flow control stalled at {}", entry);
+            // Continue to process control frames.
+        }
+    }
+
+    private void generate(StreamEntries streamEntries)
+    {
+        if (!generateUnscheduled(streamEntries))
+            return;
+
+        if (streamEntries.stalled)
+            return;
+
+        if (isDeferred(streamEntries))
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Deferred {}", streamEntries);
+            deferred = true;
+            return;
+        }
+
+        // Unused credit is not accumulated across rounds.
+        int quantum = streamEntries.stream.getWeight() * QUANTUM_PER_WEIGHT;
+        streamEntries.deficit = Math.min(streamEntries.deficit + quantum, quantum);
+        if (streamEntries.deficit <= 0)
+        {
+            // Credit is added on every pass, until the stream may write.
+            starved = true;
+            return;
+        }
+        long start = lease.getTotalLength();
+        while (streamEntries.deficit > 0 && generateUnscheduled(streamEntries))
+        {
+            Entry entry = streamEntries.entries.peek();
+            long length = lease.getTotalLength();
+            if (!generate(entry))
+            {
+                streamEntries.stalled = true;
+                // A stream that generated frames in this round
+                // is not the first to be scheduled in the next.
+                if (length == start)
+                    stalled(entry);
+                break;
+            }
+            streamEntries.deficit -= lease.getTotalLength() - length;
+            if (entry.getDataBytesRemaining() == 0)
+                streamEntries.entries.poll();
+        }
+    }
+
+    /**
+     * <p>Fails the stale entries and generates the frames that are not
+     * flow controlled at the head of the given stream queue.</p>
+     *
+     * @param streamEntries the stream queue
+     * @return whether the stream queue has a flow controlled entry at its head
+     */
+    private boolean generateUnscheduled(StreamEntries streamEntries)
+    {
+        while (true)
+        {
+            Entry entry = streamEntries.entries.peek();
+            if (entry == null)
+                return false;
+            if (!entry.isStale() && !entry.isProtocol())
+                return true;
+            if (!generate(entry))
+                return false;
+            streamEntries.entries.poll();
+        }
+    }
+
+    private boolean isDeferred(StreamEntries streamEntries)
+    {
+        // A stream is deferred while any of the streams it
+        // depends on has frames to write and is not stalled.
+        int parentStreamId = streamEntries.stream.getParentStreamId();
+        for (int depth = 0; parentStreamId != 0 && depth < MAX_DEPENDENCY_DEPTH; ++depth)
+        {
+            StreamEntries parent = pendingStreams.get(parentStreamId);
+            if (parent != null && !parent.stalled && parent != streamEntries)
+                return true;
+            IStream stream = parent != null ? parent.stream : session.getStream(parentStreamId);
+            if (stream == null)
+                return false;
+            parentStreamId = stream.getParentStreamId();
+        }
+        return false;
+    }
+
     void onFlushed(long bytes) throws IOException
     {
         // A single EndPoint write may be flushed multiple times (for example with SSL).
@@ -265,12 +438,14 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     public void succeeded()
     {
         if (LOG.isDebugEnabled())
-            LOG.debug("Written {} buffers - entries processed/pending {}/{}: {}/{}",
+            LOG.debug("Written {} buffers - entries processed/pending/streams {}/{}/{}: {}/{}/{}",
                 lease.getByteBuffers().size(),
                 processedEntries.size(),
                 pendingEntries.size(),
+                activeStreams.size(),
                 processedEntries,
-                pendingEntries);
+                pendingEntries,
+                activeStreams);
         finish();
         super.succeeded();
     }
@@ -284,14 +459,16 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
 
         if (stalledEntry != null)
         {
-            int size = pendingEntries.size();
+            // The stream stalled by the session window will
+            // be the first to be scheduled when it is updated.
+            int size = activeStreams.size();
             for (int i = 0; i < size; ++i)
             {
-                Entry entry = pendingEntries.peek();
-                if (entry == stalledEntry)
+                StreamEntries streamEntries = activeStreams.peek();
+                if (streamEntries.entries.peek() == stalledEntry)
                     break;
-                pendingEntries.poll();
-                pendingEntries.offer(entry);
+                activeStreams.poll();
+                activeStreams.offer(streamEntries);
             }
             stalledEntry = null;
         }
@@ -308,27 +485,30 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     {
         lease.recycle();
 
-        Throwable closed;
-        Set<Entry> allEntries;
-        synchronized (this)
+        Throwable closed = terminated.getAndSet(x);
+        if (LOG.isDebugEnabled())
+            LOG.debug(String.format("%s, entries processed/pending/streams/queued=%d/%d/%d/%d",
+                closed != null ? "Closing" : "Failing",
+                processedEntries.size(),
+                pendingEntries.size(),
+                activeStreams.size(),
+                entries.size()), x);
+
+        Set<Entry> allEntries = new HashSet<>();
+        Entry entry;
+        while ((entry = entries.poll()) != null)
         {
-            closed = terminated;
-            terminated = x;
-            if (LOG.isDebugEnabled())
-                LOG.debug(String.format("%s, entries processed/pending/queued=%d/%d/%d",
-                    closed != null ? "Closing" : "Failing",
-                    processedEntries.size(),
-                    pendingEntries.size(),
-                    entries.size()), x);
-            allEntries = new HashSet<>(entries);
-            entries.clear();
+            allEntries.add(entry);
         }
-
         allEntries.addAll(processedEntries);
         processedEntries.clear();
         allEntries.addAll(pendingEntries);
         pendingEntries.clear();
-        allEntries.forEach(entry -> entry.failed(x));
+        activeStreams.forEach(streamEntries -> allEntries.addAll(streamEntries.entries));
+        activeStreams.clear();
+        pendingStreams.clear();
+        windows.clear();
+        allEntries.forEach(e -> e.failed(x));
 
         // If the failure came from within the
         // flusher, we need to close the connection.
@@ -338,14 +518,9 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
 
     void terminate(Throwable cause)
     {
-        Throwable closed;
-        synchronized (this)
-        {
-            closed = terminated;
-            terminated = cause;
-            if (LOG.isDebugEnabled())
-                LOG.debug("{}", closed != null ? "Terminated" : "Terminating");
-        }
+        Throwable closed = terminated.getAndSet(cause);
+        if (LOG.isDebugEnabled())
+            LOG.debug("{}", closed != null ? "Terminated" : "Terminating");
         if (closed == null)
             iterate();
     }
@@ -370,12 +545,13 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
     @Override
     public String toString()
     {
-        return String.format("%s[window_queue=%d,frame_queue=%d,processed/pending=%d/%d]",
+        return String.format("%s[window_queue=%d,frame_queue=%d,processed/pending/streams=%d/%d/%d]",
             super.toString(),
             getWindowQueueSize(),
             getFrameQueueSize(),
             processedEntries.size(),
-            pendingEntries.size());
+            pendingEntries.size(),
+            activeStreams.size());
     }
 
     public abstract static class Entry extends Callback.Nested
@@ -417,6 +593,21 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             return !isProtocol() && stream != null && stream.isReset();
         }
 
+        /**
+         * @return whether this entry may be queued with the other entries of its stream
+         */
+        private boolean isScheduled()
+        {
+            switch (frame.getType())
+            {
+                case PUSH_PROMISE:
+                case WINDOW_UPDATE:
+                    return false;
+                default:
+                    return true;
+            }
+        }
+
         private boolean isProtocol()
         {
             switch (frame.getType())
@@ -464,4 +655,29 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             flowControl.onWindowUpdate(session, stream, frame);
         }
     }
+
+    private static class StreamEntries
+    {
+        private final Queue<Entry> entries = new ArrayDeque<>();
+        private final IStream stream;
+        private int deficit;
+        private boolean stalled;
+
+        private StreamEntries(IStream stream)
+        {
+            this.stream = stream;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("#%d/#%d{weight=%d,deficit=%d,stalled=%b,entries=%s}",
+                stream.getId(),
+                stream.getParentStreamId(),
+                stream.getWeight(),
+                deficit,
+                stalled,
+                entries);
+        }
+    }
 }
@@ -280,6 +280,10 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
     {
         if (LOG.isDebugEnabled())
             LOG.debug("Received {}", frame);
+
+        IStream stream = getStream(frame.getStreamId());
+        if (stream != null)
+            updatePriority(stream, frame);
     }
 
     @Override
@@ -534,6 +538,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
                 }
                 IStream stream = createLocalStream(streamId);
                 stream.setListener(listener);
+                updatePriority(stream, frame.getPriority());
 
                 ControlEntry entry = new ControlEntry(frame, stream, new StreamPromiseCallback(promise, stream));
                 queued = flusher.append(entry);
@@ -559,10 +564,70 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
             frame = new PriorityFrame(streamId, frame.getParentStreamId(),
                 frame.getWeight(), frame.isExclusive());
         }
+        else
+        {
+            updatePriority(stream, frame);
+        }
         control(stream, callback, frame);
         return streamId;
     }
 
+    /**
+     * <p>Updates the priority of the given stream, used by {@link HTTP2Flusher}
+     * to schedule the frames of the stream, following the prioritization
+     * rules of RFC 7540, section 5.3.</p>
+     *
+     * @param stream the stream to update
+     * @param frame the priority information, possibly null
+     */
+    protected void updatePriority(IStream stream, PriorityFrame frame)
+    {
+        if (frame == null)
+            return;
+
+        int streamId = stream.getId();
+        int parentStreamId = frame.getParentStreamId();
+        // A stream cannot depend on itself.
+        if (parentStreamId == streamId)
+            parentStreamId = 0;
+
+        // If the new parent depends on the stream, it is
+        // moved to depend on the stream's former parent.
+        IStream parent = parentStreamId == 0 ? null : getStream(parentStreamId);
+        if (parent != null && dependsOn(parent, streamId))
+            parent.setPriority(stream.getParentStreamId(), parent.getWeight());
+
+        // An exclusive dependency makes the stream the sole child of
+        // its parent, and the parent's other children its children.
+        if (frame.isExclusive())
+        {
+            for (IStream child : streams.values())
+            {
+                if (child != stream && child.getParentStreamId() == parentStreamId)
+                    child.setPriority(streamId, child.getWeight());
+            }
+        }
+
+        stream.setPriority(parentStreamId, frame.getWeight());
+        if (LOG.isDebugEnabled())
+            LOG.debug("Updated priority {}", stream);
+    }
+
+    private boolean dependsOn(IStream stream, int streamId)
+    {
+        int depth = streams.size();
+        while (stream != null && depth-- > 0)
+        {
+            int parentStreamId = stream.getParentStreamId();
+            if (parentStreamId == 0)
+                return false;
+            if (parentStreamId == streamId)
+                return true;
+            stream = getStream(parentStreamId);
+        }
+        return false;
+    }
+
     @Override
     public void push(IStream stream, Promise<Stream> promise, PushPromiseFrame frame, Stream.Listener listener)
     {
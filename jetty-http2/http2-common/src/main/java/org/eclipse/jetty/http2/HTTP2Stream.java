@@ -36,6 +36,7 @@ import org.eclipse.jetty.http2.frames.DataFrame;
 import org.eclipse.jetty.http2.frames.FailureFrame;
 import org.eclipse.jetty.http2.frames.Frame;
 import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PriorityFrame;
 import org.eclipse.jetty.http2.frames.PushPromiseFrame;
 import org.eclipse.jetty.http2.frames.ResetFrame;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
@@ -65,6 +66,8 @@ public class HTTP2Stream extends IdleTimeout implements IStream, Callback, Dumpa
     private Listener listener;
     private boolean remoteReset;
     private long dataLength;
+    private volatile int parentStreamId;
+    private volatile int weight = PriorityFrame.DEFAULT_WEIGHT;
 
     public HTTP2Stream(Scheduler scheduler, ISession session, int streamId, boolean local)
     {
@@ -161,6 +164,25 @@ public class HTTP2Stream extends IdleTimeout implements IStream, Callback, Dumpa
         return attributes().remove(key);
     }
 
+    @Override
+    public int getParentStreamId()
+    {
+        return parentStreamId;
+    }
+
+    @Override
+    public int getWeight()
+    {
+        return weight;
+    }
+
+    @Override
+    public void setPriority(int parentStreamId, int weight)
+    {
+        this.parentStreamId = parentStreamId;
+        this.weight = weight;
+    }
+
     @Override
     public boolean isReset()
     {
@@ -652,12 +674,14 @@ public class HTTP2Stream extends IdleTimeout implements IStream, Callback, Dumpa
     @Override
     public String toString()
     {
-        return String.format("%s@%x#%d{sendWindow=%s,recvWindow=%s,reset=%b/%b,%s,age=%d,attachment=%s}",
+        return String.format("%s@%x#%d{sendWindow=%s,recvWindow=%s,priority=#%d/%d,reset=%b/%b,%s,age=%d,attachment=%s}",
             getClass().getSimpleName(),
             hashCode(),
             getId(),
             sendWindow,
             recvWindow,
+            parentStreamId,
+            weight,
             localReset,
             remoteReset,
             closeState,
@@ -114,4 +114,25 @@ public interface IStream extends Stream, Closeable
      * @see #isClosed()
      */
     boolean isRemotelyClosed();
+
+    /**
+     * @return the id of the stream this stream depends on, or 0 if it depends on no other stream
+     * @see #setPriority(int, int)
+     */
+    int getParentStreamId();
+
+    /**
+     * @return the weight of this stream, between 1 and 256
+     * @see #setPriority(int, int)
+     */
+    int getWeight();
+
+    /**
+     * <p>Updates the priority of this stream, as specified by
+     * HEADERS or PRIORITY frames sent or received for this stream.</p>
+     *
+     * @param parentStreamId the id of the stream this stream depends on, or 0
+     * @param weight the weight of this stream, between 1 and 256
+     */
+    void setPriority(int parentStreamId, int weight);
 }
@@ -192,6 +192,7 @@ public class HpackContext
     private final DynamicTable _dynamicTable;
     private final Map<HttpField, Entry> _fieldMap = new HashMap<>();
     private final Map<String, Entry> _nameMap = new HashMap<>();
+    private int _modifications;
 
     HpackContext(int maxDynamicTableSize)
     {
@@ -207,6 +208,7 @@ public class HpackContext
         if (LOG.isDebugEnabled())
             LOG.debug(String.format("HdrTbl[%x] resized max=%d->%d", hashCode(), _maxDynamicTableSizeInBytes, newMaxDynamicTableSize));
         _maxDynamicTableSizeInBytes = newMaxDynamicTableSize;
+        _modifications++;
         _dynamicTable.evict();
     }
 
@@ -251,6 +253,7 @@ public class HpackContext
     {
         Entry entry = new Entry(field);
         int size = entry.getSize();
+        _modifications++;
         if (size > _maxDynamicTableSizeInBytes)
         {
             if (LOG.isDebugEnabled())
@@ -269,6 +272,15 @@ public class HpackContext
         return entry;
     }
 
+    /**
+     * @return the number of times the dynamic table has been modified, so that
+     * encodings that depend on the dynamic table indexes can be checked for validity
+     */
+    int getModifications()
+    {
+        return _modifications;
+    }
+
     /**
      * @return Current dynamic table size in entries
      */
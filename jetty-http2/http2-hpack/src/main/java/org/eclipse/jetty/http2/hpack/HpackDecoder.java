@@ -39,8 +39,12 @@ public class HpackDecoder
     public static final HttpField.LongValueHttpField CONTENT_LENGTH_0 =
         new HttpField.LongValueHttpField(HttpHeader.CONTENT_LENGTH, 0L);
 
+    private static final int LITERAL_CACHE_SIZE = 64;
+    private static final int MAX_LITERAL_LENGTH = 256;
+
     private final HpackContext _context;
     private final MetaDataBuilder _builder;
+    private final Literal[] _literals = new Literal[LITERAL_CACHE_SIZE];
     private int _localMaxDynamicTableSize;
 
     /**
@@ -213,55 +217,51 @@ public class HpackDecoder
                 boolean huffmanValue = (buffer.get() & 0x80) == 0x80;
                 int length = NBitInteger.decode(buffer, 7);
                 _builder.checkSize(length, huffmanValue);
-                if (huffmanValue)
-                    value = Huffman.decode(buffer, length);
-                else
-                    value = toASCIIString(buffer, length);
 
-                // Make the new field
-                HttpField field;
-                if (header == null)
+                // Literals that are not indexed are typically repeated on every request,
+                // so reuse the field previously decoded from the same octets.
+                HttpField field = null;
+                int slot = -1;
+                if (!indexed && nameIndex > 0 && length <= MAX_LITERAL_LENGTH && length <= buffer.remaining())
                 {
-                    // just make a normal field and bypass header name lookup
-                    field = new HttpField(null, name, value);
+                    slot = literalSlot(name, huffmanValue, buffer, length);
+                    Literal literal = _literals[slot];
+                    if (literal != null && literal.matches(name, huffmanValue, buffer, length))
+                    {
+                        field = literal._field;
+                        buffer.position(buffer.position() + length);
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("decoded '{}' by cached literal", field);
+                    }
                 }
-                else
+
+                if (field == null)
                 {
-                    // might be worthwhile to create a value HttpField if it is indexed
-                    // and/or of a type that may be looked up multiple times.
-                    switch (header)
+                    byte[] octets = null;
+                    if (slot >= 0)
                     {
-                        case C_STATUS:
-                            if (indexed)
-                                field = new HttpField.IntValueHttpField(header, name, value);
-                            else
-                                field = new HttpField(header, name, value);
-                            break;
+                        octets = new byte[length];
+                        buffer.duplicate().get(octets);
+                    }
 
-                        case C_AUTHORITY:
-                            field = new AuthorityHttpField(value);
-                            break;
+                    if (huffmanValue)
+                        value = Huffman.decode(buffer, length);
+                    else
+                        value = toASCIIString(buffer, length);
 
-                        case CONTENT_LENGTH:
-                            if ("0".equals(value))
-                                field = CONTENT_LENGTH_0;
-                            else
-                                field = new HttpField.LongValueHttpField(header, name, value);
-                            break;
+                    field = newHttpField(header, name, value, indexed);
 
-                        default:
-                            field = new HttpField(header, name, value);
-                            break;
-                    }
-                }
+                    if (slot >= 0)
+                        _literals[slot] = new Literal(name, huffmanValue, octets, field);
 
-                if (LOG.isDebugEnabled())
-                {
-                    LOG.debug("decoded '{}' by {}/{}/{}",
-                        field,
-                        nameIndex > 0 ? "IdxName" : (huffmanName ? "HuffName" : "LitName"),
-                        huffmanValue ? "HuffVal" : "LitVal",
-                        indexed ? "Idx" : "");
+                    if (LOG.isDebugEnabled())
+                    {
+                        LOG.debug("decoded '{}' by {}/{}/{}",
+                            field,
+                            nameIndex > 0 ? "IdxName" : (huffmanName ? "HuffName" : "LitName"),
+                            huffmanValue ? "HuffVal" : "LitVal",
+                            indexed ? "Idx" : "");
+                    }
                 }
 
                 // emit the field
@@ -277,6 +277,47 @@ public class HpackDecoder
         return _builder.build();
     }
 
+    private static HttpField newHttpField(HttpHeader header, String name, String value, boolean indexed)
+    {
+        if (header == null)
+        {
+            // just make a normal field and bypass header name lookup
+            return new HttpField(null, name, value);
+        }
+
+        // might be worthwhile to create a value HttpField if it is indexed
+        // and/or of a type that may be looked up multiple times.
+        switch (header)
+        {
+            case C_STATUS:
+                if (indexed)
+                    return new HttpField.IntValueHttpField(header, name, value);
+                return new HttpField(header, name, value);
+
+            case C_AUTHORITY:
+                return new AuthorityHttpField(value);
+
+            case CONTENT_LENGTH:
+                if ("0".equals(value))
+                    return CONTENT_LENGTH_0;
+                return new HttpField.LongValueHttpField(header, name, value);
+
+            default:
+                return new HttpField(header, name, value);
+        }
+    }
+
+    private int literalSlot(String name, boolean huffman, ByteBuffer buffer, int length)
+    {
+        int hash = 31 * name.hashCode() + (huffman ? 1 : 0);
+        int position = buffer.position();
+        for (int i = position + length; i-- > position; )
+        {
+            hash = 31 * hash + buffer.get(i);
+        }
+        return (hash ^ (hash >>> 16)) & (_literals.length - 1);
+    }
+
     public static String toASCIIString(ByteBuffer buffer, int length)
     {
         StringBuilder builder = new StringBuilder(length);
@@ -297,4 +338,36 @@ public class HpackDecoder
     {
         return String.format("HpackDecoder@%x{%s}", hashCode(), _context);
     }
+
+    /**
+     * A field decoded from a literal representation, together with its encoded value octets.
+     */
+    private static class Literal
+    {
+        private final String _name;
+        private final boolean _huffman;
+        private final byte[] _octets;
+        private final HttpField _field;
+
+        private Literal(String name, boolean huffman, byte[] octets, HttpField field)
+        {
+            _name = name;
+            _huffman = huffman;
+            _octets = octets;
+            _field = field;
+        }
+
+        private boolean matches(String name, boolean huffman, ByteBuffer buffer, int length)
+        {
+            if (_huffman != huffman || _octets.length != length || !_name.equals(name))
+                return false;
+            int position = buffer.position();
+            for (int i = 0; i < length; i++)
+            {
+                if (_octets[i] != buffer.get(position + i))
+                    return false;
+            }
+            return true;
+        }
+    }
 }
@@ -20,8 +20,11 @@ package org.eclipse.jetty.http2.hpack;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.jetty.http.HttpField;
@@ -77,6 +80,8 @@ public class HpackEncoder
     private static final EnumSet<HttpHeader> IGNORED_HEADERS = EnumSet.of(HttpHeader.CONNECTION, HttpHeader.KEEP_ALIVE,
         HttpHeader.PROXY_CONNECTION, HttpHeader.TRANSFER_ENCODING, HttpHeader.UPGRADE);
     private static final PreEncodedHttpField TE_TRAILERS = new PreEncodedHttpField(HttpHeader.TE, "trailers");
+    private static final int DEFAULT_ENCODED_BLOCK_CACHE_SIZE = 4;
+    private static final int MAX_ENCODED_BLOCK_SIZE = 2048;
 
     static
     {
@@ -92,6 +97,11 @@ public class HpackEncoder
     private int _localMaxDynamicTableSize;
     private int _maxHeaderListSize;
     private int _headerListSize;
+    private final List<HttpField> _fields = new ArrayList<>();
+    private int[] _ends = new int[16];
+    private EncodedBlock[] _blocks = new EncodedBlock[DEFAULT_ENCODED_BLOCK_CACHE_SIZE];
+    private int _nextBlock;
+    private long _blockHits;
 
     public HpackEncoder()
     {
@@ -142,6 +152,39 @@ public class HpackEncoder
         _localMaxDynamicTableSize = localMaxDynamicTableSize;
     }
 
+    /**
+     * @return the max number of encoded header blocks cached for reuse
+     * @see #setEncodedBlockCacheSize(int)
+     */
+    public int getEncodedBlockCacheSize()
+    {
+        return _blocks.length;
+    }
+
+    /**
+     * <p>Sets the max number of encoded header blocks cached for reuse.</p>
+     * <p>When the fields of a {@link MetaData} start with the same fields
+     * of a previously encoded one, and the dynamic table has not been
+     * modified since, the encoded bytes of those fields are copied rather
+     * than encoded again. This is typically the case of responses that
+     * repeat the same headers on a connection.</p>
+     *
+     * @param size the max number of encoded header blocks, or 0 to disable the cache
+     */
+    public void setEncodedBlockCacheSize(int size)
+    {
+        _blocks = new EncodedBlock[size];
+        _nextBlock = 0;
+    }
+
+    /**
+     * @return the number of times the encoded bytes of a cached header block have been reused
+     */
+    public long getEncodedBlockHits()
+    {
+        return _blockHits;
+    }
+
     public void encode(ByteBuffer buffer, MetaData metadata)
     {
         if (LOG.isDebugEnabled())
@@ -155,55 +198,65 @@ public class HpackEncoder
         if (maxDynamicTableSize != _context.getMaxDynamicTableSize())
             encodeMaxDynamicTableSize(buffer, maxDynamicTableSize);
 
-        // Add Request/response meta fields
-        if (metadata.isRequest())
-        {
-            MetaData.Request request = (MetaData.Request)metadata;
-
-            // TODO optimise these to avoid HttpField creation
-            String scheme = request.getURI().getScheme();
-            encode(buffer, new HttpField(HttpHeader.C_SCHEME, scheme == null ? HttpScheme.HTTP.asString() : scheme));
-            encode(buffer, new HttpField(HttpHeader.C_METHOD, request.getMethod()));
-            encode(buffer, new HttpField(HttpHeader.C_AUTHORITY, request.getURI().getAuthority()));
-            encode(buffer, new HttpField(HttpHeader.C_PATH, request.getURI().getPathQuery()));
-        }
-        else if (metadata.isResponse())
-        {
-            MetaData.Response response = (MetaData.Response)metadata;
-            int code = response.getStatus();
-            HttpField status = code < STATUSES.length ? STATUSES[code] : null;
-            if (status == null)
-                status = new HttpField.IntValueHttpField(HttpHeader.C_STATUS, code);
-            encode(buffer, status);
-        }
-
-        // Remove fields as specified in RFC 7540, 8.1.2.2.
-        HttpFields fields = metadata.getFields();
-        if (fields != null)
+        List<HttpField> fields = _fields;
+        try
         {
-            // For example: Connection: Close, TE, Upgrade, Custom.
-            Set<String> hopHeaders = null;
-            for (String value : fields.getCSV(HttpHeader.CONNECTION, false))
+            // Add Request/response meta fields
+            if (metadata.isRequest())
             {
-                if (hopHeaders == null)
-                    hopHeaders = new HashSet<>();
-                hopHeaders.add(StringUtil.asciiToLowerCase(value));
+                MetaData.Request request = (MetaData.Request)metadata;
+
+                // TODO optimise these to avoid HttpField creation
+                String scheme = request.getURI().getScheme();
+                fields.add(new HttpField(HttpHeader.C_SCHEME, scheme == null ? HttpScheme.HTTP.asString() : scheme));
+                fields.add(new HttpField(HttpHeader.C_METHOD, request.getMethod()));
+                fields.add(new HttpField(HttpHeader.C_AUTHORITY, request.getURI().getAuthority()));
+                fields.add(new HttpField(HttpHeader.C_PATH, request.getURI().getPathQuery()));
             }
-            for (HttpField field : fields)
+            else if (metadata.isResponse())
             {
-                HttpHeader header = field.getHeader();
-                if (header != null && IGNORED_HEADERS.contains(header))
-                    continue;
-                if (header == HttpHeader.TE)
+                MetaData.Response response = (MetaData.Response)metadata;
+                int code = response.getStatus();
+                HttpField status = code < STATUSES.length ? STATUSES[code] : null;
+                if (status == null)
+                    status = new HttpField.IntValueHttpField(HttpHeader.C_STATUS, code);
+                fields.add(status);
+            }
+
+            // Remove fields as specified in RFC 7540, 8.1.2.2.
+            HttpFields httpFields = metadata.getFields();
+            if (httpFields != null)
+            {
+                // For example: Connection: Close, TE, Upgrade, Custom.
+                Set<String> hopHeaders = null;
+                for (String value : httpFields.getCSV(HttpHeader.CONNECTION, false))
+                {
+                    if (hopHeaders == null)
+                        hopHeaders = new HashSet<>();
+                    hopHeaders.add(StringUtil.asciiToLowerCase(value));
+                }
+                for (HttpField field : httpFields)
                 {
-                    if (field.contains("trailers"))
-                        encode(buffer, TE_TRAILERS);
-                    continue;
+                    HttpHeader header = field.getHeader();
+                    if (header != null && IGNORED_HEADERS.contains(header))
+                        continue;
+                    if (header == HttpHeader.TE)
+                    {
+                        if (field.contains("trailers"))
+                            fields.add(TE_TRAILERS);
+                        continue;
+                    }
+                    if (hopHeaders != null && hopHeaders.contains(StringUtil.asciiToLowerCase(field.getName())))
+                        continue;
+                    fields.add(field);
                 }
-                if (hopHeaders != null && hopHeaders.contains(StringUtil.asciiToLowerCase(field.getName())))
-                    continue;
-                encode(buffer, field);
             }
+
+            encode(buffer, fields);
+        }
+        finally
+        {
+            fields.clear();
         }
 
         // Check size
@@ -218,6 +271,83 @@ public class HpackEncoder
             LOG.debug(String.format("CtxTbl[%x] encoded %d octets", _context.hashCode(), buffer.position() - pos));
     }
 
+    private void encode(ByteBuffer buffer, List<HttpField> fields)
+    {
+        int size = fields.size();
+        int start = buffer.position();
+        int modifications = _context.getModifications();
+        if (_ends.length < size)
+            _ends = new int[Math.max(size, 2 * _ends.length)];
+        int[] ends = _ends;
+
+        // Find the encoded block that shares the longest prefix with the fields.
+        EncodedBlock block = null;
+        int prefix = 0;
+        for (EncodedBlock b : _blocks)
+        {
+            int matched = b == null ? 0 : b.matches(fields, modifications);
+            if (matched > prefix)
+            {
+                block = b;
+                prefix = matched;
+            }
+        }
+
+        if (prefix > 0)
+        {
+            // The dynamic table is unchanged, so the encoded bytes are still valid.
+            buffer.put(block._bytes, 0, block._ends[prefix - 1]);
+            System.arraycopy(block._ends, 0, ends, 0, prefix);
+            for (int i = 0; i < prefix; i++)
+            {
+                _headerListSize += fieldSize(fields.get(i)) + 32;
+            }
+            _blockHits++;
+            if (_debug)
+                LOG.debug("encode {}/{} fields from {}", prefix, size, block);
+            if (prefix == size)
+                return;
+        }
+
+        for (int i = prefix; i < size; i++)
+        {
+            encode(buffer, fields.get(i));
+            ends[i] = buffer.position() - start;
+        }
+
+        // Only encodings that did not modify the dynamic table can be replayed.
+        int length = buffer.position() - start;
+        if (_blocks.length > 0 && length <= MAX_ENCODED_BLOCK_SIZE && _context.getModifications() == modifications)
+        {
+            byte[] bytes = new byte[length];
+            ByteBuffer encoded = buffer.duplicate();
+            encoded.position(start);
+            encoded.get(bytes);
+            EncodedBlock newBlock = new EncodedBlock(fields.toArray(new HttpField[size]), Arrays.copyOf(ends, size), bytes, modifications);
+            _blocks[indexOfBlockToReplace(block, modifications)] = newBlock;
+        }
+    }
+
+    private int indexOfBlockToReplace(EncodedBlock matched, int modifications)
+    {
+        // Replace the block the fields were derived from, or a stale one.
+        for (int i = 0; i < _blocks.length; i++)
+        {
+            EncodedBlock block = _blocks[i];
+            if (block == null || block == matched || block._modifications != modifications)
+                return i;
+        }
+        int index = _nextBlock;
+        _nextBlock = (index + 1) % _blocks.length;
+        return index;
+    }
+
+    private static int fieldSize(HttpField field)
+    {
+        String value = field.getValue();
+        return field.getName().length() + (value == null ? 0 : value.length());
+    }
+
     public void encodeMaxDynamicTableSize(ByteBuffer buffer, int maxDynamicTableSize)
     {
         if (maxDynamicTableSize > _remoteMaxDynamicTableSize)
@@ -429,4 +559,40 @@ public class HpackEncoder
             }
         }
     }
+
+    private static class EncodedBlock
+    {
+        private final HttpField[] _fields;
+        private final int[] _ends;
+        private final byte[] _bytes;
+        private final int _modifications;
+
+        private EncodedBlock(HttpField[] fields, int[] ends, byte[] bytes, int modifications)
+        {
+            _fields = fields;
+            _ends = ends;
+            _bytes = bytes;
+            _modifications = modifications;
+        }
+
+        private int matches(List<HttpField> fields, int modifications)
+        {
+            if (_modifications != modifications)
+                return 0;
+            int length = Math.min(_fields.length, fields.size());
+            for (int i = 0; i < length; i++)
+            {
+                HttpField field = fields.get(i);
+                if (field != _fields[i] && !field.equals(_fields[i]))
+                    return i;
+            }
+            return length;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{fields=%d,octets=%d}", getClass().getSimpleName(), hashCode(), _fields.length, _bytes.length);
+        }
+    }
 }
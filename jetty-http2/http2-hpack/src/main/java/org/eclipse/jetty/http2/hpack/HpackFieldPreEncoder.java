@@ -19,17 +19,25 @@
 package org.eclipse.jetty.http2.hpack;
 
 import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFieldPreEncoder;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.util.BufferUtil;
 
 /**
- *
+ * <p>Pre-encodes fields for HTTP/2.</p>
+ * <p>The huffman encoded fields are cached process-wide, so that a
+ * {@link org.eclipse.jetty.http.PreEncodedHttpField} created more than
+ * once for the same name and value is encoded only once.</p>
  */
 public class HpackFieldPreEncoder implements HttpFieldPreEncoder
 {
+    private static final int MAX_CACHED_FIELDS = 1024;
+    private static final Map<HttpField, byte[]> __cache = new ConcurrentHashMap<>();
 
     /**
      * @see org.eclipse.jetty.http.HttpFieldPreEncoder#getHttpVersion()
@@ -45,6 +53,20 @@ public class HpackFieldPreEncoder implements HttpFieldPreEncoder
      */
     @Override
     public byte[] getEncodedField(HttpHeader header, String name, String value)
+    {
+        HttpField field = new HttpField(header, name, value);
+        byte[] encoded = __cache.get(field);
+        if (encoded == null)
+        {
+            encoded = encode(header, name, value);
+            // The cache is not evicted, so stop caching once full.
+            if (__cache.size() < MAX_CACHED_FIELDS)
+                __cache.putIfAbsent(field, encoded);
+        }
+        return encoded;
+    }
+
+    private static byte[] encode(HttpHeader header, String name, String value)
     {
         boolean notIndexed = HpackEncoder.DO_NOT_INDEX.contains(header);
 
@@ -22,6 +22,7 @@ import java.nio.ByteBuffer;
 
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.util.BufferUtil;
@@ -263,4 +264,98 @@ public class HpackEncoderTest
         assertThat(context.getMaxDynamicTableSize(), Matchers.is(50));
         assertThat(context.size(), Matchers.is(1));
     }
+
+    private static ByteBuffer encode(HpackEncoder encoder, MetaData metaData)
+    {
+        ByteBuffer buffer = BufferUtil.allocateDirect(4096);
+        BufferUtil.clearToFill(buffer);
+        encoder.encode(buffer, metaData);
+        BufferUtil.flipToFlush(buffer, 0);
+        return buffer;
+    }
+
+    private static HttpFields newResponseFields(String contentLength)
+    {
+        HttpFields fields = new HttpFields();
+        fields.add(HttpHeader.CONTENT_TYPE, "application/json");
+        fields.add(HttpHeader.CACHE_CONTROL, "no-cache");
+        fields.add("x-custom", "value");
+        fields.add(HttpHeader.CONTENT_LENGTH, contentLength);
+        return fields;
+    }
+
+    @Test
+    public void testEncodedBlockCache() throws Exception
+    {
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder(4096, 8192);
+
+        // The first response populates the dynamic table.
+        MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, 200, newResponseFields("1024"));
+        decoder.decode(encode(encoder, response));
+        assertEquals(0, encoder.getEncodedBlockHits());
+
+        // The second response does not modify the dynamic table, so its encoding is cached.
+        ByteBuffer encoded2 = encode(encoder, response);
+        assertEquals(0, encoder.getEncodedBlockHits());
+        ByteBuffer encoded3 = encode(encoder, new MetaData.Response(HttpVersion.HTTP_2, 200, newResponseFields("1024")));
+        assertEquals(1, encoder.getEncodedBlockHits());
+        assertEquals(encoded2, encoded3);
+
+        MetaData.Response decoded = (MetaData.Response)decoder.decode(encoded2);
+        assertEquals(response.getFields(), decoded.getFields());
+        decoded = (MetaData.Response)decoder.decode(encoded3);
+        assertEquals(response.getFields(), decoded.getFields());
+    }
+
+    @Test
+    public void testEncodedBlockCachePrefix() throws Exception
+    {
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder(4096, 8192);
+
+        MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, 200, newResponseFields("1024"));
+        decoder.decode(encode(encoder, response));
+        decoder.decode(encode(encoder, response));
+
+        // The fields before the content length are reused.
+        response = new MetaData.Response(HttpVersion.HTTP_2, 200, newResponseFields("2048"));
+        MetaData.Response decoded = (MetaData.Response)decoder.decode(encode(encoder, response));
+        assertEquals(1, encoder.getEncodedBlockHits());
+        assertEquals(response.getFields(), decoded.getFields());
+
+        // A different status does not match any prefix.
+        response = new MetaData.Response(HttpVersion.HTTP_2, 404, newResponseFields("2048"));
+        decoded = (MetaData.Response)decoder.decode(encode(encoder, response));
+        assertEquals(1, encoder.getEncodedBlockHits());
+        assertEquals(404, decoded.getStatus());
+        assertEquals(response.getFields(), decoded.getFields());
+    }
+
+    @Test
+    public void testEncodedBlockCacheInvalidatedByDynamicTable() throws Exception
+    {
+        HpackEncoder encoder = new HpackEncoder();
+        HpackDecoder decoder = new HpackDecoder(4096, 8192);
+
+        MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, 200, newResponseFields("1024"));
+        decoder.decode(encode(encoder, response));
+        decoder.decode(encode(encoder, response));
+
+        // A new field is added to the dynamic table, changing the indexes of the cached fields.
+        HttpFields fields = new HttpFields();
+        fields.add("x-other", "other");
+        decoder.decode(encode(encoder, new MetaData.Response(HttpVersion.HTTP_2, 200, fields)));
+        long hits = encoder.getEncodedBlockHits();
+
+        MetaData.Response decoded = (MetaData.Response)decoder.decode(encode(encoder, response));
+        assertEquals(hits, encoder.getEncodedBlockHits());
+        assertEquals(response.getFields(), decoded.getFields());
+
+        // Disabled cache.
+        encoder.setEncodedBlockCacheSize(0);
+        decoder.decode(encode(encoder, response));
+        decoder.decode(encode(encoder, response));
+        assertEquals(hits, encoder.getEncodedBlockHits());
+    }
 }
@@ -107,6 +107,7 @@ public class HTTP2ServerSession extends HTTP2Session implements ServerParser.Lis
                     stream = createRemoteStream(streamId);
                     if (stream != null)
                     {
+                        updatePriority(stream, frame.getPriority());
                         onStreamOpened(stream);
                         stream.process(frame, Callback.NOOP);
                         Stream.Listener listener = notifyNewStream(stream, frame);
@@ -23,11 +23,14 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
 import java.nio.channels.CancelledKeyException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.nio.channels.WritePendingException;
 
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.Invocable;
@@ -46,6 +49,8 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
     protected final ManagedSelector _selector;
     protected final SelectionKey _key;
     private boolean _updatePending;
+    private final boolean _transferFromSupported;
+    private volatile FileTransfer _transfer;
 
     /**
      * The current value for {@link SelectionKey#interestOps()}.
@@ -173,6 +178,19 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
         _selector = selector;
         _key = key;
         _gather = (channel instanceof GatheringByteChannel) ? (GatheringByteChannel)channel : null;
+        _transferFromSupported = isFlushInherited(getClass());
+    }
+
+    private static boolean isFlushInherited(Class<?> type)
+    {
+        try
+        {
+            return type.getMethod("flush", ByteBuffer[].class).getDeclaringClass() == ChannelEndPoint.class;
+        }
+        catch (NoSuchMethodException x)
+        {
+            return false;
+        }
     }
 
     @Override
@@ -292,9 +310,62 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
                 return false;
         }
 
+        FileTransfer transfer = _transfer;
+        if (transfer != null && transfer.isFlushing(buffers))
+            return transfer.transfer();
+
         return true;
     }
 
+    /**
+     * <p>The transfer is performed by {@link #flush(ByteBuffer...)}, so it is not
+     * supported when a subclass overrides that method, for example to observe
+     * the bytes written.</p>
+     *
+     * @return whether {@link #transferFrom(Callback, FileChannel, long, long)} can be used
+     */
+    public boolean isTransferFromSupported()
+    {
+        return _transferFromSupported;
+    }
+
+    /**
+     * <p>Writes {@code count} bytes of the given file, starting from {@code position},
+     * directly to the channel of this endpoint using
+     * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * so that the file bytes are not copied to user space buffers.</p>
+     * <p>The transfer is performed as a write of this endpoint, so it is subject to the
+     * same rules of {@link #write(Callback, ByteBuffer...)}: there must be no write pending,
+     * and further writes must only be issued after the callback is completed.</p>
+     *
+     * @param callback the callback to notify of the completion of the transfer
+     * @param file the file to transfer bytes from
+     * @param position the position in the file of the first byte to transfer
+     * @param count the number of bytes to transfer
+     */
+    public void transferFrom(Callback callback, FileChannel file, long position, long count)
+    {
+        if (!isTransferFromSupported())
+        {
+            callback.failed(new UnsupportedOperationException("transferFrom " + this));
+            return;
+        }
+
+        FileTransfer transfer = new FileTransfer(callback, file, position, count);
+        _transfer = transfer;
+        try
+        {
+            // Writing the marker buffer starts the transfer from flush(), and a
+            // partial transfer is completed via the WriteFlusher when writable.
+            write(transfer, transfer._marker);
+        }
+        catch (WritePendingException x)
+        {
+            transfer.clear();
+            callback.failed(x);
+        }
+    }
+
     public ByteChannel getChannel()
     {
         return _channel;
@@ -421,6 +492,100 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
             _selector.submit(_updateKeyAction);
     }
 
+    private class FileTransfer extends Callback.Nested
+    {
+        // A unique, empty, buffer that identifies the write of this transfer.
+        private final ByteBuffer _marker = ByteBuffer.allocate(0);
+        private final FileChannel _file;
+        private long _position;
+        private long _remaining;
+        private boolean _started;
+
+        private FileTransfer(Callback callback, FileChannel file, long position, long count)
+        {
+            super(callback);
+            _file = file;
+            _position = position;
+            _remaining = count;
+        }
+
+        private boolean isFlushing(ByteBuffer[] buffers)
+        {
+            // After the first flush the WriteFlusher may replace the
+            // marker with its own empty buffers while the write is pending.
+            if (!_started)
+                _started = buffers.length > 0 && buffers[buffers.length - 1] == _marker;
+            return _started;
+        }
+
+        private boolean transfer() throws IOException
+        {
+            long transferred = 0;
+            try
+            {
+                while (_remaining > 0)
+                {
+                    long written = _file.transferTo(_position, _remaining, _channel);
+                    if (written <= 0)
+                    {
+                        if (_position >= _file.size())
+                            throw new EofException("File truncated at " + _position);
+                        break;
+                    }
+                    _position += written;
+                    _remaining -= written;
+                    transferred += written;
+                }
+                if (LOG.isDebugEnabled())
+                    LOG.debug("transferred {} remaining {} {}", transferred, _remaining, ChannelEndPoint.this);
+            }
+            catch (EofException e)
+            {
+                throw e;
+            }
+            catch (IOException e)
+            {
+                throw new EofException(e);
+            }
+
+            if (transferred > 0)
+            {
+                notIdle();
+                Connection connection = getConnection();
+                if (connection instanceof WriteFlusher.Listener)
+                    ((WriteFlusher.Listener)connection).onFlushed(transferred);
+            }
+
+            return _remaining == 0;
+        }
+
+        private void clear()
+        {
+            if (_transfer == this)
+                _transfer = null;
+        }
+
+        @Override
+        public void succeeded()
+        {
+            clear();
+            super.succeeded();
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            clear();
+            super.failed(x);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{p=%d,r=%d}", getClass().getSimpleName(), hashCode(), _position, _remaining);
+        }
+    }
+
     @Override
     public String toEndPointString()
     {
@@ -29,7 +29,7 @@ import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.statistic.CounterStatistic;
-import org.eclipse.jetty.util.statistic.SampleStatistic;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
 
 /**
  * <p>A {@link Connection.Listener} that tracks connection statistics.</p>
@@ -42,7 +42,9 @@ import org.eclipse.jetty.util.statistic.SampleStatistic;
 public class ConnectionStatistics extends AbstractLifeCycle implements Connection.Listener, Dumpable
 {
     private final CounterStatistic _connections = new CounterStatistic();
-    private final SampleStatistic _connectionsDuration = new SampleStatistic();
+    private final HistogramStatistic _connectionsDuration = new HistogramStatistic();
+    private final HistogramStatistic _connectionsRcvdBytes = new HistogramStatistic();
+    private final HistogramStatistic _connectionsSentBytes = new HistogramStatistic();
     private final LongAdder _rcvdBytes = new LongAdder();
     private final AtomicLong _bytesInStamp = new AtomicLong();
     private final LongAdder _sentBytes = new LongAdder();
@@ -57,6 +59,8 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
     {
         _connections.reset();
         _connectionsDuration.reset();
+        _connectionsRcvdBytes.reset();
+        _connectionsSentBytes.reset();
         _rcvdBytes.reset();
         _bytesInStamp.set(System.nanoTime());
         _sentBytes.reset();
@@ -99,6 +103,10 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
         long bytesOut = connection.getBytesOut();
         if (bytesOut > 0)
             _sentBytes.add(bytesOut);
+        if (bytesIn >= 0)
+            _connectionsRcvdBytes.record(bytesIn);
+        if (bytesOut >= 0)
+            _connectionsSentBytes.record(bytesOut);
 
         long messagesIn = connection.getMessagesIn();
         if (messagesIn > 0)
@@ -156,6 +164,54 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
         return _connectionsDuration.getStdDev();
     }
 
+    @ManagedAttribute("The median duration of a connection in ms")
+    public long getConnectionDuration50()
+    {
+        return _connectionsDuration.getValueAtPercentile(50);
+    }
+
+    @ManagedAttribute("The 99th percentile of the duration of a connection in ms")
+    public long getConnectionDuration99()
+    {
+        return _connectionsDuration.getValueAtPercentile(99);
+    }
+
+    @ManagedAttribute("The 99.9th percentile of the duration of a connection in ms")
+    public long getConnectionDuration999()
+    {
+        return _connectionsDuration.getValueAtPercentile(99.9);
+    }
+
+    @ManagedOperation(value = "The percentiles of the duration in ms of the connections closed since the last invocation of this method", impact = "ACTION")
+    public String getConnectionDurationInterval()
+    {
+        return _connectionsDuration.snapshotInterval().toString();
+    }
+
+    @ManagedAttribute("The median number of bytes received by a connection")
+    public long getConnectionReceivedBytes50()
+    {
+        return _connectionsRcvdBytes.getValueAtPercentile(50);
+    }
+
+    @ManagedAttribute("The 99th percentile of the number of bytes received by a connection")
+    public long getConnectionReceivedBytes99()
+    {
+        return _connectionsRcvdBytes.getValueAtPercentile(99);
+    }
+
+    @ManagedAttribute("The median number of bytes sent by a connection")
+    public long getConnectionSentBytes50()
+    {
+        return _connectionsSentBytes.getValueAtPercentile(50);
+    }
+
+    @ManagedAttribute("The 99th percentile of the number of bytes sent by a connection")
+    public long getConnectionSentBytes99()
+    {
+        return _connectionsSentBytes.getValueAtPercentile(99);
+    }
+
     @ManagedAttribute("The total number of connections opened")
     public long getConnectionsTotal()
     {
@@ -216,6 +272,8 @@ public class ConnectionStatistics extends AbstractLifeCycle implements Connectio
         Dumpable.dumpObjects(out, indent, this,
             String.format("connections=%s", _connections),
             String.format("durations=%s", _connectionsDuration),
+            String.format("connection bytes in=%s", _connectionsRcvdBytes),
+            String.format("connection bytes out=%s", _connectionsSentBytes),
             String.format("bytes in/out=%s/%s", getReceivedBytes(), getSentBytes()),
             String.format("messages in/out=%s/%s", getReceivedMessages(), getSentMessages()));
     }
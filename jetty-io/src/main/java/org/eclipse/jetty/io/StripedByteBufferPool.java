@@ -0,0 +1,481 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.Dumpable;
+
+/**
+ * <p>A lock-free ByteBuffer pool where ByteBuffers are held in per-thread striped magazines
+ * backed by a shared depot.</p>
+ * <p>Like {@link ArrayByteBufferPool}, buffers are grouped in buckets by capacity, with the
+ * capacity of each bucket being a multiple of the capacity {@code factor}.
+ * Each bucket is made of a number of <em>magazines</em>, small fixed size arrays of slots,
+ * and of a larger <em>depot</em> shared by all threads.
+ * A thread acquiring or releasing a buffer first tries the magazine it is affine to,
+ * and then falls back to the depot.</p>
+ * <p>Slots are claimed and filled with compare-and-set operations, so that there is no
+ * lock and no allocation per release; threads working on different magazines do not
+ * contend on the same memory location.</p>
+ * <p>Since magazines and depot are fixed size, a bucket holds at most
+ * {@code stripes * magazineSize + depotSize} buffers; released buffers that do not
+ * fit are discarded and left to the garbage collector.</p>
+ */
+@ManagedObject
+public class StripedByteBufferPool extends AbstractByteBufferPool implements Dumpable
+{
+    private static final int DEFAULT_MAGAZINE_SIZE = 8;
+    private static final int DEFAULT_DEPOT_SIZE = 64;
+
+    private final int _minCapacity;
+    private final int _stripes;
+    private final int _magazineSize;
+    private final int _depotSize;
+    private final Bucket[] _direct;
+    private final Bucket[] _indirect;
+
+    /**
+     * Creates a new StripedByteBufferPool with a default configuration.
+     */
+    public StripedByteBufferPool()
+    {
+        this(-1, -1, -1);
+    }
+
+    /**
+     * Creates a new StripedByteBufferPool with the given configuration.
+     *
+     * @param minCapacity the minimum ByteBuffer capacity
+     * @param factor the capacity factor
+     * @param maxCapacity the maximum ByteBuffer capacity
+     */
+    public StripedByteBufferPool(int minCapacity, int factor, int maxCapacity)
+    {
+        this(minCapacity, factor, maxCapacity, -1, -1, -1);
+    }
+
+    /**
+     * Creates a new StripedByteBufferPool with the given configuration.
+     *
+     * @param minCapacity the minimum ByteBuffer capacity
+     * @param factor the capacity factor
+     * @param maxCapacity the maximum ByteBuffer capacity
+     * @param maxQueueLength the maximum number of ByteBuffers held by the depot of each bucket
+     * @param maxHeapMemory the max heap memory in bytes
+     * @param maxDirectMemory the max direct memory in bytes
+     */
+    public StripedByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxQueueLength, long maxHeapMemory, long maxDirectMemory)
+    {
+        this(minCapacity, factor, maxCapacity, maxQueueLength, maxHeapMemory, maxDirectMemory, -1, -1);
+    }
+
+    /**
+     * Creates a new StripedByteBufferPool with the given configuration.
+     *
+     * @param minCapacity the minimum ByteBuffer capacity
+     * @param factor the capacity factor
+     * @param maxCapacity the maximum ByteBuffer capacity
+     * @param maxQueueLength the maximum number of ByteBuffers held by the depot of each bucket
+     * @param maxHeapMemory the max heap memory in bytes
+     * @param maxDirectMemory the max direct memory in bytes
+     * @param stripes the number of magazines per bucket, or -1 for a value based on the number of processors
+     * @param magazineSize the number of ByteBuffers held by each magazine
+     */
+    public StripedByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxQueueLength, long maxHeapMemory, long maxDirectMemory, int stripes, int magazineSize)
+    {
+        super(factor, maxQueueLength, maxHeapMemory, maxDirectMemory);
+
+        factor = getCapacityFactor();
+        if (minCapacity <= 0)
+            minCapacity = 0;
+        if (maxCapacity <= 0)
+            maxCapacity = 64 * 1024;
+        if ((maxCapacity % factor) != 0 || factor >= maxCapacity)
+            throw new IllegalArgumentException("The capacity factor must be a divisor of maxCapacity");
+        _minCapacity = minCapacity;
+
+        if (stripes <= 0)
+            stripes = Runtime.getRuntime().availableProcessors();
+        // Round up to a power of 2 so that a stripe can be selected with a mask.
+        _stripes = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        _magazineSize = magazineSize <= 0 ? DEFAULT_MAGAZINE_SIZE : magazineSize;
+        _depotSize = maxQueueLength <= 0 ? DEFAULT_DEPOT_SIZE : maxQueueLength;
+
+        int length = maxCapacity / factor;
+        _direct = new Bucket[length];
+        _indirect = new Bucket[length];
+        for (int i = 0; i < length; ++i)
+        {
+            int capacity = (i + 1) * factor;
+            _direct[i] = new Bucket(capacity, _stripes, _magazineSize, _depotSize);
+            _indirect[i] = new Bucket(capacity, _stripes, _magazineSize, _depotSize);
+        }
+    }
+
+    @Override
+    public ByteBuffer acquire(int size, boolean direct)
+    {
+        int capacity = size < _minCapacity ? size : (bucketFor(size) + 1) * getCapacityFactor();
+        Bucket bucket = bucketFor(size, direct);
+        if (bucket == null)
+            return newByteBuffer(capacity, direct);
+        ByteBuffer buffer = bucket.acquire(stripe());
+        if (buffer == null)
+            return newByteBuffer(capacity, direct);
+        decrementMemory(buffer);
+        return buffer;
+    }
+
+    @Override
+    public void release(ByteBuffer buffer)
+    {
+        if (buffer == null)
+            return;
+        boolean direct = buffer.isDirect();
+        Bucket bucket = bucketFor(buffer.capacity(), direct);
+        if (bucket == null)
+            return;
+        // Only buffers whose capacity is exactly that of the bucket can be pooled.
+        if (buffer.capacity() != bucket.getCapacity())
+            return;
+        BufferUtil.clear(buffer);
+        if (bucket.release(stripe(), buffer))
+        {
+            incrementMemory(buffer);
+            releaseExcessMemory(direct, this::clearOldestBucket);
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        super.clear();
+        for (int i = 0; i < _direct.length; ++i)
+        {
+            _direct[i].clear(null);
+            _indirect[i].clear(null);
+        }
+    }
+
+    private void clearOldestBucket(boolean direct)
+    {
+        Bucket oldest = null;
+        for (Bucket bucket : bucketsFor(direct))
+        {
+            if (bucket.isEmpty())
+                continue;
+            if (oldest == null || bucket.getLastUpdate() < oldest.getLastUpdate())
+                oldest = bucket;
+        }
+        if (oldest != null)
+            oldest.clear(this::decrementMemory);
+    }
+
+    private int stripe()
+    {
+        // Fibonacci hashing of the thread id spreads
+        // sequential ids evenly across the stripes.
+        long id = Thread.currentThread().getId();
+        return (int)((id * 0x9E3779B97F4A7C15L) >>> 32) & (_stripes - 1);
+    }
+
+    private int bucketFor(int capacity)
+    {
+        return (capacity - 1) / getCapacityFactor();
+    }
+
+    private Bucket bucketFor(int capacity, boolean direct)
+    {
+        if (capacity < _minCapacity)
+            return null;
+        int b = bucketFor(capacity);
+        if (b >= _direct.length)
+            return null;
+        return bucketsFor(direct)[b];
+    }
+
+    @ManagedAttribute("The number of magazines per bucket")
+    public int getStripes()
+    {
+        return _stripes;
+    }
+
+    @ManagedAttribute("The number of ByteBuffers held by each magazine")
+    public int getMagazineSize()
+    {
+        return _magazineSize;
+    }
+
+    @ManagedAttribute("The number of ByteBuffers held by the depot of each bucket")
+    public int getDepotSize()
+    {
+        return _depotSize;
+    }
+
+    @ManagedAttribute("The number of pooled direct ByteBuffers")
+    public long getDirectByteBufferCount()
+    {
+        return getByteBufferCount(true);
+    }
+
+    @ManagedAttribute("The number of pooled heap ByteBuffers")
+    public long getHeapByteBufferCount()
+    {
+        return getByteBufferCount(false);
+    }
+
+    private long getByteBufferCount(boolean direct)
+    {
+        return Arrays.stream(bucketsFor(direct))
+            .mapToLong(Bucket::size)
+            .sum();
+    }
+
+    @ManagedAttribute("The number of direct ByteBuffer acquisitions satisfied by the pool")
+    public long getDirectHits()
+    {
+        return Arrays.stream(_direct).mapToLong(Bucket::getHits).sum();
+    }
+
+    @ManagedAttribute("The number of direct ByteBuffer acquisitions that required an allocation")
+    public long getDirectMisses()
+    {
+        return Arrays.stream(_direct).mapToLong(Bucket::getMisses).sum();
+    }
+
+    @ManagedAttribute("The number of heap ByteBuffer acquisitions satisfied by the pool")
+    public long getHeapHits()
+    {
+        return Arrays.stream(_indirect).mapToLong(Bucket::getHits).sum();
+    }
+
+    @ManagedAttribute("The number of heap ByteBuffer acquisitions that required an allocation")
+    public long getHeapMisses()
+    {
+        return Arrays.stream(_indirect).mapToLong(Bucket::getMisses).sum();
+    }
+
+    @ManagedAttribute("The hits per direct bucket, in increasing capacity order")
+    public long[] getDirectBucketHits()
+    {
+        return Arrays.stream(_direct).mapToLong(Bucket::getHits).toArray();
+    }
+
+    @ManagedAttribute("The misses per direct bucket, in increasing capacity order")
+    public long[] getDirectBucketMisses()
+    {
+        return Arrays.stream(_direct).mapToLong(Bucket::getMisses).toArray();
+    }
+
+    @ManagedAttribute("The hits per heap bucket, in increasing capacity order")
+    public long[] getHeapBucketHits()
+    {
+        return Arrays.stream(_indirect).mapToLong(Bucket::getHits).toArray();
+    }
+
+    @ManagedAttribute("The misses per heap bucket, in increasing capacity order")
+    public long[] getHeapBucketMisses()
+    {
+        return Arrays.stream(_indirect).mapToLong(Bucket::getMisses).toArray();
+    }
+
+    @Override
+    public String dump()
+    {
+        return Dumpable.dump(this);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        List<Bucket> direct = new ArrayList<>();
+        List<Bucket> indirect = new ArrayList<>();
+        Arrays.stream(_direct).filter(b -> b.getHits() + b.getMisses() > 0).forEach(direct::add);
+        Arrays.stream(_indirect).filter(b -> b.getHits() + b.getMisses() > 0).forEach(indirect::add);
+        Dumpable.dumpObjects(out, indent, this,
+            Dumpable.named("direct", direct),
+            Dumpable.named("heap", indirect));
+    }
+
+    // Package local for testing
+    Bucket[] bucketsFor(boolean direct)
+    {
+        return direct ? _direct : _indirect;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{stripes=%d,magazine=%d,depot=%d,heap=%d,direct=%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            _stripes,
+            _magazineSize,
+            _depotSize,
+            getHeapMemory(),
+            getDirectMemory());
+    }
+
+    static class Bucket
+    {
+        private final int _capacity;
+        private final AtomicReferenceArray<ByteBuffer>[] _magazines;
+        private final AtomicReferenceArray<ByteBuffer> _depot;
+        private final LongAdder _hits = new LongAdder();
+        private final LongAdder _misses = new LongAdder();
+        private volatile long _lastUpdate = System.nanoTime();
+
+        @SuppressWarnings("unchecked")
+        Bucket(int capacity, int stripes, int magazineSize, int depotSize)
+        {
+            _capacity = capacity;
+            _magazines = (AtomicReferenceArray<ByteBuffer>[])new AtomicReferenceArray<?>[stripes];
+            for (int i = 0; i < stripes; ++i)
+            {
+                _magazines[i] = new AtomicReferenceArray<>(magazineSize);
+            }
+            _depot = new AtomicReferenceArray<>(depotSize);
+        }
+
+        ByteBuffer acquire(int stripe)
+        {
+            ByteBuffer buffer = take(_magazines[stripe], 0);
+            if (buffer == null)
+                buffer = take(_depot, stripe);
+            if (buffer == null)
+                _misses.increment();
+            else
+                _hits.increment();
+            return buffer;
+        }
+
+        boolean release(int stripe, ByteBuffer buffer)
+        {
+            _lastUpdate = System.nanoTime();
+            return put(_magazines[stripe], 0, buffer) || put(_depot, stripe, buffer);
+        }
+
+        private static ByteBuffer take(AtomicReferenceArray<ByteBuffer> slots, int start)
+        {
+            int length = slots.length();
+            for (int i = 0; i < length; ++i)
+            {
+                int index = (start + i) % length;
+                ByteBuffer buffer = slots.get(index);
+                if (buffer != null && slots.compareAndSet(index, buffer, null))
+                    return buffer;
+            }
+            return null;
+        }
+
+        private static boolean put(AtomicReferenceArray<ByteBuffer> slots, int start, ByteBuffer buffer)
+        {
+            int length = slots.length();
+            for (int i = 0; i < length; ++i)
+            {
+                int index = (start + i) % length;
+                if (slots.get(index) == null && slots.compareAndSet(index, null, buffer))
+                    return true;
+            }
+            return false;
+        }
+
+        void clear(Consumer<ByteBuffer> memoryFn)
+        {
+            for (AtomicReferenceArray<ByteBuffer> magazine : _magazines)
+            {
+                clear(magazine, memoryFn);
+            }
+            clear(_depot, memoryFn);
+        }
+
+        private static void clear(AtomicReferenceArray<ByteBuffer> slots, Consumer<ByteBuffer> memoryFn)
+        {
+            for (int i = 0; i < slots.length(); ++i)
+            {
+                ByteBuffer buffer = slots.getAndSet(i, null);
+                if (buffer != null && memoryFn != null)
+                    memoryFn.accept(buffer);
+            }
+        }
+
+        boolean isEmpty()
+        {
+            return size() == 0;
+        }
+
+        int size()
+        {
+            int size = 0;
+            for (AtomicReferenceArray<ByteBuffer> magazine : _magazines)
+            {
+                size += size(magazine);
+            }
+            return size + size(_depot);
+        }
+
+        private static int size(AtomicReferenceArray<ByteBuffer> slots)
+        {
+            int size = 0;
+            for (int i = 0; i < slots.length(); ++i)
+            {
+                if (slots.get(i) != null)
+                    ++size;
+            }
+            return size;
+        }
+
+        int getCapacity()
+        {
+            return _capacity;
+        }
+
+        long getLastUpdate()
+        {
+            return _lastUpdate;
+        }
+
+        long getHits()
+        {
+            return _hits.sum();
+        }
+
+        long getMisses()
+        {
+            return _misses.sum();
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{%d@%d,hits=%d,misses=%d}", getClass().getSimpleName(), hashCode(), size(), _capacity, getHits(), getMisses());
+        }
+    }
+}
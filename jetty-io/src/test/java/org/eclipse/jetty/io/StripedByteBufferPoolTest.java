@@ -0,0 +1,209 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.io.StripedByteBufferPool.Bucket;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StripedByteBufferPoolTest
+{
+    private static int pooled(StripedByteBufferPool bufferPool, boolean direct)
+    {
+        return Arrays.stream(bufferPool.bucketsFor(direct))
+            .mapToInt(Bucket::size)
+            .sum();
+    }
+
+    @Test
+    public void testMinimumRelease()
+    {
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(10, 100, 1000);
+
+        for (int size = 1; size <= 9; size++)
+        {
+            ByteBuffer buffer = bufferPool.acquire(size, true);
+
+            assertTrue(buffer.isDirect());
+            assertEquals(size, buffer.capacity());
+            assertEquals(0, pooled(bufferPool, true));
+
+            bufferPool.release(buffer);
+
+            assertEquals(0, pooled(bufferPool, true));
+        }
+    }
+
+    @Test
+    public void testMaxRelease()
+    {
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(10, 100, 1000);
+
+        for (int size = 999; size <= 1001; size++)
+        {
+            bufferPool.clear();
+            ByteBuffer buffer = bufferPool.acquire(size, true);
+
+            assertTrue(buffer.isDirect());
+            assertThat(buffer.capacity(), greaterThanOrEqualTo(size));
+            assertEquals(0, pooled(bufferPool, true));
+
+            bufferPool.release(buffer);
+
+            assertEquals(size <= 1000, 1 == pooled(bufferPool, true));
+        }
+    }
+
+    @Test
+    public void testAcquireReleaseAcquire()
+    {
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(10, 100, 1000);
+
+        for (int size = 390; size <= 510; size++)
+        {
+            bufferPool.clear();
+            ByteBuffer buffer1 = bufferPool.acquire(size, true);
+            bufferPool.release(buffer1);
+            ByteBuffer buffer2 = bufferPool.acquire(size, true);
+            bufferPool.release(buffer2);
+            ByteBuffer buffer3 = bufferPool.acquire(size, false);
+            bufferPool.release(buffer3);
+
+            assertEquals(1, pooled(bufferPool, true));
+            assertEquals(1, pooled(bufferPool, false));
+
+            assertSame(buffer1, buffer2);
+            assertNotSame(buffer1, buffer3);
+        }
+    }
+
+    @Test
+    public void testHitsAndMisses()
+    {
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(-1, 1024, 4096);
+
+        ByteBuffer buffer = bufferPool.acquire(1024, true);
+        assertEquals(0, bufferPool.getDirectHits());
+        assertEquals(1, bufferPool.getDirectMisses());
+
+        bufferPool.release(buffer);
+        bufferPool.acquire(1024, true);
+        assertEquals(1, bufferPool.getDirectHits());
+        assertEquals(1, bufferPool.getDirectMisses());
+        assertEquals(1, bufferPool.getDirectBucketHits()[0]);
+        assertEquals(0, bufferPool.getHeapHits());
+        assertEquals(0, bufferPool.getHeapMisses());
+    }
+
+    @Test
+    public void testMagazineOverflowsToDepot()
+    {
+        int magazineSize = 2;
+        int depotSize = 3;
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(-1, -1, -1, depotSize, -1, -1, 1, magazineSize);
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < magazineSize + depotSize + 1; ++i)
+        {
+            buffers.add(bufferPool.acquire(512, false));
+        }
+        buffers.forEach(bufferPool::release);
+
+        // The last buffer does not fit in the magazine nor in the depot.
+        assertEquals(magazineSize + depotSize, pooled(bufferPool, false));
+        assertEquals((magazineSize + depotSize) * 1024, bufferPool.getHeapMemory());
+    }
+
+    @Test
+    public void testMaxMemory()
+    {
+        int factor = 1024;
+        int maxMemory = 11 * 1024;
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(-1, factor, -1, -1, -1, maxMemory);
+        Bucket[] buckets = bufferPool.bucketsFor(true);
+
+        // Fill the buckets - the oldest is the larger.
+        // 1+2+3+4=10 / maxMemory=11.
+        for (int i = 4; i >= 1; --i)
+        {
+            int capacity = factor * i;
+            ByteBuffer buffer = bufferPool.acquire(capacity, true);
+            bufferPool.release(buffer);
+        }
+
+        // Create and release a buffer to exceed the max memory.
+        ByteBuffer buffer = bufferPool.newByteBuffer(2 * factor, true);
+        bufferPool.release(buffer);
+
+        // Now the oldest buffer should be gone and we have: 1+2x2+3=8
+        long memory = bufferPool.getMemory(true);
+        assertThat(memory, lessThanOrEqualTo((long)maxMemory));
+        assertTrue(buckets[3].isEmpty());
+        assertEquals(2, buckets[1].size());
+    }
+
+    @Test
+    public void testConcurrentAcquireRelease() throws Exception
+    {
+        StripedByteBufferPool bufferPool = new StripedByteBufferPool(-1, 1024, 8192, -1, -1, 64 * 1024, 4, 4);
+
+        int threads = 8;
+        int iterations = 10_000;
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; ++t)
+        {
+            new Thread(() ->
+            {
+                try
+                {
+                    for (int i = 0; i < iterations; ++i)
+                    {
+                        ByteBuffer buffer = bufferPool.acquire(1 + (i % 8192), true);
+                        bufferPool.release(buffer);
+                    }
+                }
+                finally
+                {
+                    latch.countDown();
+                }
+            }).start();
+        }
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertThat(bufferPool.getDirectMemory(), lessThanOrEqualTo(64 * 1024L));
+        long pooledMemory = Arrays.stream(bufferPool.bucketsFor(true))
+            .mapToLong(b -> (long)b.size() * b.getCapacity())
+            .sum();
+        assertEquals(pooledMemory, bufferPool.getDirectMemory());
+    }
+}
@@ -0,0 +1,173 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.client.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.ConcurrentConnectionPool;
+import org.eclipse.jetty.client.ConnectionPool;
+import org.eclipse.jetty.client.DuplexConnectionPool;
+import org.eclipse.jetty.client.RoundRobinConnectionPool;
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.Destination;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Promise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+@Threads(8)
+@Warmup(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class ConnectionPoolsBenchmark
+{
+    @Param({"DUPLEX", "ROUND_ROBIN", "CONCURRENT"})
+    public String type;
+
+    @Param({"8", "64"})
+    public int maxConnections;
+
+    private ConnectionPool pool;
+
+    @Setup
+    public void setUp()
+    {
+        Destination destination = new MockDestination();
+        switch (type)
+        {
+            case "DUPLEX":
+                pool = new DuplexConnectionPool(destination, maxConnections, Callback.NOOP);
+                break;
+            case "ROUND_ROBIN":
+                pool = new RoundRobinConnectionPool(destination, maxConnections, Callback.NOOP);
+                break;
+            case "CONCURRENT":
+                pool = new ConcurrentConnectionPool(destination, maxConnections, Callback.NOOP);
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+
+        // Fill the pool.
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < maxConnections; ++i)
+        {
+            connections.add(pool.acquire());
+        }
+        connections.forEach(pool::release);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        pool.close();
+        pool = null;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void testAcquireReleaseConnection(Blackhole blackhole)
+    {
+        Connection connection = pool.acquire();
+        if (connection != null)
+        {
+            // Simulate a short exchange.
+            Blackhole.consumeCPU(64);
+            pool.release(connection);
+        }
+        blackhole.consume(connection);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(ConnectionPoolsBenchmark.class.getSimpleName())
+            .warmupIterations(10)
+            .measurementIterations(10)
+            .forks(1)
+            .threads(8)
+            .build();
+
+        new Runner(opt).run();
+    }
+
+    private static class MockDestination implements Destination
+    {
+        @Override
+        public String getScheme()
+        {
+            return "http";
+        }
+
+        @Override
+        public String getHost()
+        {
+            return "localhost";
+        }
+
+        @Override
+        public int getPort()
+        {
+            return 8080;
+        }
+
+        @Override
+        public void newConnection(Promise<Connection> promise)
+        {
+            promise.succeeded(new MockConnection());
+        }
+    }
+
+    private static class MockConnection implements Connection
+    {
+        @Override
+        public void send(Request request, Response.CompleteListener listener)
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        @Override
+        public boolean isClosed()
+        {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Compares the indexed {@link HttpFields} lookups by {@link HttpHeader}
+ * with the linear scan that they replace, for typical request header sets.</p>
+ */
+@State(Scope.Thread)
+@Threads(1)
+@Warmup(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class HttpFieldsBenchmark
+{
+    private static final HttpHeader[] LOOKUPS = {
+        HttpHeader.HOST,
+        HttpHeader.CONTENT_TYPE,
+        HttpHeader.CONTENT_LENGTH,
+        HttpHeader.TRANSFER_ENCODING,
+        HttpHeader.CONNECTION,
+        HttpHeader.EXPECT,
+        HttpHeader.COOKIE,
+        HttpHeader.AUTHORIZATION,
+        HttpHeader.ACCEPT_ENCODING,
+        HttpHeader.X_FORWARDED_FOR
+    };
+
+    @Param({"6", "16", "32"})
+    public int size;
+
+    @Param({"INDEXED", "LINEAR"})
+    public String lookup;
+
+    private HttpFields fields;
+
+    @Setup
+    public void setUp()
+    {
+        fields = newFields(size);
+    }
+
+    private static HttpFields newFields(int size)
+    {
+        HttpFields fields = new HttpFields();
+        fields.add(HttpHeader.HOST, "www.example.com");
+        fields.add(HttpHeader.USER_AGENT, "Mozilla/5.0 (X11; Linux x86_64; rv:68.0) Gecko/20100101 Firefox/68.0");
+        fields.add(HttpHeader.ACCEPT, "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+        fields.add(HttpHeader.ACCEPT_LANGUAGE, "en-US,en;q=0.5");
+        fields.add(HttpHeader.ACCEPT_ENCODING, "gzip, deflate, br");
+        fields.add(HttpHeader.CONNECTION, "keep-alive");
+        HttpHeader[] others = {
+            HttpHeader.COOKIE,
+            HttpHeader.CACHE_CONTROL,
+            HttpHeader.PRAGMA,
+            HttpHeader.REFERER,
+            HttpHeader.ORIGIN,
+            HttpHeader.IF_MODIFIED_SINCE,
+            HttpHeader.IF_NONE_MATCH,
+            HttpHeader.X_FORWARDED_PROTO
+        };
+        for (int i = fields.size(); i < size; i++)
+        {
+            if (i % 2 == 0)
+                fields.add("X-Custom-" + i, "value" + i);
+            else
+                fields.add(others[(i / 2) % others.length], "value" + i);
+        }
+        return fields;
+    }
+
+    private static HttpField scan(HttpFields fields, HttpHeader header)
+    {
+        // The lookup as it was implemented before the index.
+        for (int i = 0; i < fields.size(); i++)
+        {
+            HttpField field = fields.getField(i);
+            if (field.getHeader() == header)
+                return field;
+        }
+        return null;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void testGetField(Blackhole blackhole)
+    {
+        if ("INDEXED".equals(lookup))
+        {
+            for (HttpHeader header : LOOKUPS)
+            {
+                blackhole.consume(fields.getField(header));
+            }
+        }
+        else
+        {
+            for (HttpHeader header : LOOKUPS)
+            {
+                blackhole.consume(scan(fields, header));
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void testParseAndLookup(Blackhole blackhole)
+    {
+        // A fresh instance per request, as HttpChannel would see, so the index cost is included.
+        HttpFields request = new HttpFields(fields);
+        testLookups(request, blackhole);
+        blackhole.consume(request);
+    }
+
+    private void testLookups(HttpFields request, Blackhole blackhole)
+    {
+        if ("INDEXED".equals(lookup))
+        {
+            for (HttpHeader header : LOOKUPS)
+            {
+                blackhole.consume(request.get(header));
+            }
+        }
+        else
+        {
+            for (HttpHeader header : LOOKUPS)
+            {
+                HttpField field = scan(request, header);
+                blackhole.consume(field == null ? null : field.getValue());
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void testRemoveAndAdd(Blackhole blackhole)
+    {
+        // Removing a field invalidates the index, so this measures the rebuild cost.
+        HttpField removed = fields.remove(HttpHeader.CONNECTION);
+        fields.add(removed);
+        testLookups(fields, blackhole);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HttpFieldsBenchmark.class.getSimpleName())
+            .warmupIterations(10)
+            .measurementIterations(10)
+            .forks(1)
+            .threads(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
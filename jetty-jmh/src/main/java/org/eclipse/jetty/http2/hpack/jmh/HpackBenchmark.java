@@ -0,0 +1,140 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2.hpack.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.http2.hpack.HpackDecoder;
+import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Thread)
+@Threads(1)
+@Warmup(iterations = 4, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 4, time = 1, timeUnit = TimeUnit.SECONDS)
+public class HpackBenchmark
+{
+    private static final HttpField SERVER = new PreEncodedHttpField(HttpHeader.SERVER, "Jetty(9.4.x)");
+
+    @Param({"0", "4"})
+    int encodedBlockCacheSize;
+
+    MetaData.Response[] responses;
+    int next;
+    HpackEncoder encoder;
+    HpackEncoder pairedEncoder;
+    HpackDecoder pairedDecoder;
+    ByteBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void setupTrial()
+    {
+        // A typical API response, where only the content length varies.
+        responses = new MetaData.Response[8];
+        for (int i = 0; i < responses.length; i++)
+        {
+            HttpFields fields = new HttpFields();
+            fields.add(SERVER);
+            fields.add(HttpHeader.DATE, "Tue, 01 Oct 2019 10:00:00 GMT");
+            fields.add(HttpHeader.CONTENT_TYPE, "application/json;charset=utf-8");
+            fields.add(HttpHeader.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
+            fields.add(HttpHeader.VARY, "Accept-Encoding");
+            fields.add("x-content-type-options", "nosniff");
+            fields.add("x-frame-options", "DENY");
+            fields.add("strict-transport-security", "max-age=31536000");
+            fields.add(HttpHeader.CONTENT_LENGTH, Integer.toString(1000 + 17 * i));
+            responses[i] = new MetaData.Response(HttpVersion.HTTP_2, 200, fields);
+        }
+
+        encoder = new HpackEncoder();
+        encoder.setEncodedBlockCacheSize(encodedBlockCacheSize);
+        pairedEncoder = new HpackEncoder();
+        pairedEncoder.setEncodedBlockCacheSize(encodedBlockCacheSize);
+        pairedDecoder = new HpackDecoder(4096, 8192);
+        buffer = BufferUtil.allocateDirect(4096);
+    }
+
+    private MetaData.Response nextResponse()
+    {
+        MetaData.Response response = responses[next];
+        next = (next + 1) % responses.length;
+        return response;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public ByteBuffer testEncode()
+    {
+        BufferUtil.clearToFill(buffer);
+        encoder.encode(buffer, nextResponse());
+        BufferUtil.flipToFlush(buffer, 0);
+        return buffer;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public MetaData testEncodeDecode() throws Exception
+    {
+        BufferUtil.clearToFill(buffer);
+        pairedEncoder.encode(buffer, nextResponse());
+        BufferUtil.flipToFlush(buffer, 0);
+        return pairedDecoder.decode(buffer);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public HttpField testPreEncodedField()
+    {
+        return new PreEncodedHttpField(HttpHeader.CONTENT_TYPE, "application/json;charset=utf-8");
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HpackBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
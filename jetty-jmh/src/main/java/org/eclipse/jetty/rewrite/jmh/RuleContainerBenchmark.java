@@ -0,0 +1,123 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.rewrite.jmh;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.rewrite.handler.RewritePatternRule;
+import org.eclipse.jetty.rewrite.handler.RewriteRegexRule;
+import org.eclipse.jetty.rewrite.handler.RuleContainer;
+import org.eclipse.jetty.server.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class RuleContainerBenchmark
+{
+    @Param({"10", "100", "400"})
+    public static int rules;
+
+    @Param({"false", "true"})
+    public static boolean compiled;
+
+    final AtomicInteger counter = new AtomicInteger();
+    final List<String> targets = new ArrayList<>();
+    final Request request = new Request(null, null);
+    RuleContainer container;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        container = new RuleContainer();
+        container.setCompiled(compiled);
+        container.setRewriteRequestURI(false);
+        container.setRewritePathInfo(false);
+
+        // Half of the rules are path patterns, half are regular expressions.
+        for (int i = 0; i < rules; i++)
+        {
+            if (i % 2 == 0)
+                container.addRule(new RewritePatternRule("/section" + i + "/*", "/new/section" + i));
+            else
+                container.addRule(new RewriteRegexRule("^/legacy" + i + "/(.*)$", "/modern/$1"));
+        }
+
+        // Mostly requests that are not rewritten.
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++)
+        {
+            int rule = random.nextInt(rules);
+            switch (random.nextInt(4))
+            {
+                case 0:
+                    targets.add((rule % 2 == 0 ? "/section" : "/legacy") + rule + "/page" + i);
+                    break;
+                case 1:
+                    targets.add("/static/app" + i + ".js");
+                    break;
+                default:
+                    targets.add("/app/resource/" + i);
+                    break;
+            }
+        }
+        Collections.shuffle(targets, random);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String testApply() throws IOException
+    {
+        String target = targets.get(Math.abs(counter.incrementAndGet() % targets.size()));
+        return container.matchAndApply(target, request, null);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(RuleContainerBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,252 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.jmh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the full HTTP/1.1 server pipeline, from parsing the request
+ * bytes to generating the response bytes, for representative request shapes.</p>
+ * <p>Requests are sent over a {@link LocalConnector}, whose endpoints are
+ * {@link org.eclipse.jetty.io.ByteArrayEndPoint}s, so that no network I/O is involved.
+ * Each benchmark thread reuses a single persistent connection.
+ * Run via {@link #main(String[])} to also report the allocation per request.</p>
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HttpPipelineBenchmark
+{
+    static final int PIPELINED = 8;
+    static final ByteBuffer SMALL_GET;
+    static final ByteBuffer PIPELINED_GET;
+    static final ByteBuffer CHUNKED_POST;
+    static final ByteBuffer LARGE_HEADERS;
+
+    static
+    {
+        String get = "GET /small HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "Accept: */*\r\n" +
+            "User-Agent: jmh\r\n" +
+            "\r\n";
+        SMALL_GET = toBuffer(get);
+
+        StringBuilder pipelined = new StringBuilder();
+        for (int i = 0; i < PIPELINED; ++i)
+        {
+            pipelined.append(get);
+        }
+        PIPELINED_GET = toBuffer(pipelined.toString());
+
+        StringBuilder post = new StringBuilder();
+        post.append("POST /chunked HTTP/1.1\r\n")
+            .append("Host: localhost\r\n")
+            .append("Content-Type: application/octet-stream\r\n")
+            .append("Transfer-Encoding: chunked\r\n")
+            .append("\r\n");
+        for (int i = 0; i < 4; ++i)
+        {
+            post.append("400\r\n");
+            for (int j = 0; j < 0x400; ++j)
+            {
+                post.append((char)('a' + (j % 26)));
+            }
+            post.append("\r\n");
+        }
+        post.append("0\r\n\r\n");
+        CHUNKED_POST = toBuffer(post.toString());
+
+        StringBuilder large = new StringBuilder();
+        large.append("GET /large/headers?query=value HTTP/1.1\r\n")
+            .append("Host: localhost\r\n")
+            .append("Accept: text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8\r\n")
+            .append("Accept-Encoding: gzip, deflate, br\r\n")
+            .append("Accept-Language: en,en-AU;q=0.9,it;q=0.8\r\n")
+            .append("User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/76.0.3809.100 Safari/537.36\r\n")
+            .append("Referer: https://www.example.com/some/long/path/to/a/page.html\r\n")
+            .append("Cookie: ");
+        for (int i = 0; i < 32; ++i)
+        {
+            large.append(i == 0 ? "" : "; ").append("cookie").append(i).append("=").append(Integer.toHexString(i * 0x9E3779B9)).append("0123456789abcdef");
+        }
+        large.append("\r\n");
+        for (int i = 0; i < 24; ++i)
+        {
+            large.append("X-Custom-Header-").append(i).append(": value-").append(i).append("-0123456789abcdefghijklmnopqrstuvwxyz\r\n");
+        }
+        large.append("\r\n");
+        LARGE_HEADERS = toBuffer(large.toString());
+    }
+
+    private static ByteBuffer toBuffer(String request)
+    {
+        return BufferUtil.toBuffer(request, StandardCharsets.ISO_8859_1).asReadOnlyBuffer();
+    }
+
+    Server _server;
+    LocalConnector _connector;
+
+    @Setup
+    public void startServer() throws Exception
+    {
+        _server = new Server();
+        _connector = new LocalConnector(_server);
+        _connector.setIdleTimeout(TimeUnit.MINUTES.toMillis(5));
+        _server.addConnector(_connector);
+        _server.setHandler(new ContentHandler());
+        _server.start();
+    }
+
+    @TearDown
+    public void stopServer() throws Exception
+    {
+        _server.stop();
+    }
+
+    @State(Scope.Thread)
+    public static class Connection
+    {
+        LocalConnector.LocalEndPoint _endPoint;
+
+        @Setup(Level.Trial)
+        public void connect(HttpPipelineBenchmark benchmark)
+        {
+            _endPoint = benchmark._connector.connect();
+        }
+
+        @TearDown(Level.Trial)
+        public void close()
+        {
+            _endPoint.close();
+        }
+
+        ByteBuffer exchange(ByteBuffer request, int responses) throws Exception
+        {
+            _endPoint.addInput(request.duplicate());
+            ByteBuffer response = null;
+            for (int i = 0; i < responses; ++i)
+            {
+                response = _endPoint.waitForResponse(false, 10, TimeUnit.SECONDS);
+                if (response == null)
+                    throw new IllegalStateException("No response " + i + " on " + _endPoint);
+            }
+            return response;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    public ByteBuffer testSmallGet(Connection connection) throws Exception
+    {
+        return connection.exchange(SMALL_GET, 1);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OperationsPerInvocation(PIPELINED)
+    public ByteBuffer testPipelinedGet(Connection connection) throws Exception
+    {
+        return connection.exchange(PIPELINED_GET, PIPELINED);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    public ByteBuffer testChunkedPost(Connection connection) throws Exception
+    {
+        return connection.exchange(CHUNKED_POST, 1);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    public ByteBuffer testLargeHeaders(Connection connection) throws Exception
+    {
+        return connection.exchange(LARGE_HEADERS, 1);
+    }
+
+    private static class ContentHandler extends AbstractHandler
+    {
+        private static final byte[] CONTENT = "Hello from the HTTP/1.1 pipeline\n".getBytes(StandardCharsets.ISO_8859_1);
+
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+        {
+            baseRequest.setHandled(true);
+            long read = 0;
+            InputStream input = request.getInputStream();
+            byte[] buffer = new byte[1024];
+            for (int r = input.read(buffer); r >= 0; r = input.read(buffer))
+            {
+                read += r;
+            }
+            response.setContentType("text/plain");
+            response.setHeader("X-Content-Read", Long.toString(read));
+            response.setContentLength(CONTENT.length);
+            ServletOutputStream output = response.getOutputStream();
+            output.write(CONTENT);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HttpPipelineBenchmark.class.getSimpleName())
+            .warmupIterations(5)
+            .measurementIterations(5)
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .threads(4)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,125 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.jmh;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.Utf8StringBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Thread)
+@Threads(1)
+@Warmup(iterations = 4, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 4, time = 1, timeUnit = TimeUnit.SECONDS)
+public class Utf8StringBuilderBenchmark
+{
+    @Param({"ASCII", "MIXED"})
+    String text;
+
+    @Param({"64", "4096"})
+    int size;
+
+    byte[] bytes;
+    ByteBuffer heapBuffer;
+    ByteBuffer directBuffer;
+    Utf8StringBuilder builder;
+
+    @Setup(Level.Trial)
+    public void setupTrial()
+    {
+        // Mostly 7-bit text, with a multi-byte character every 32 characters when MIXED.
+        Random random = new Random(8080);
+        StringBuilder source = new StringBuilder(size);
+        while (source.length() < size)
+        {
+            if ("MIXED".equals(text) && source.length() % 32 == 31)
+                source.append((char)0xE9);
+            else
+                source.append((char)('a' + random.nextInt(26)));
+        }
+        bytes = source.toString().getBytes(StandardCharsets.UTF_8);
+        heapBuffer = ByteBuffer.wrap(bytes);
+        directBuffer = ByteBuffer.allocateDirect(bytes.length);
+        directBuffer.put(bytes).flip();
+        builder = new Utf8StringBuilder(bytes.length);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public String testByteArray()
+    {
+        builder.reset();
+        builder.append(bytes, 0, bytes.length);
+        return builder.toString();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public String testHeapByteBuffer()
+    {
+        builder.reset();
+        builder.append(heapBuffer.duplicate());
+        return builder.toString();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public String testDirectByteBuffer()
+    {
+        builder.reset();
+        builder.append(directBuffer.duplicate());
+        return builder.toString();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public String testJavaDecode()
+    {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(Utf8StringBuilderBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
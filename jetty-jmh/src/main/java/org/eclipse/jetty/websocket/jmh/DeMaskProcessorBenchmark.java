@@ -0,0 +1,105 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.websocket.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.websocket.common.io.payload.DeMaskProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Thread)
+@Threads(1)
+@Warmup(iterations = 4, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 4, time = 1, timeUnit = TimeUnit.SECONDS)
+public class DeMaskProcessorBenchmark
+{
+    @Param({"HEAP", "DIRECT"})
+    String bufferType;
+
+    @Param({"125", "4096", "65536"})
+    int size;
+
+    ByteBuffer payload;
+    byte[] mask;
+    DeMaskProcessor processor;
+
+    @Setup(Level.Trial)
+    public void setupTrial()
+    {
+        Random random = new Random(8080);
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        mask = new byte[4];
+        random.nextBytes(mask);
+
+        payload = "DIRECT".equals(bufferType) ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        payload.put(bytes).flip();
+        processor = new DeMaskProcessor();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public ByteBuffer testDeMask()
+    {
+        // Unmasking twice restores the payload, so the same buffer is reused.
+        processor.reset(mask);
+        processor.process(payload);
+        return payload;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public ByteBuffer testDeMaskFragmented()
+    {
+        // The first fragment leaves the mask unaligned for the second one.
+        processor.reset(mask);
+        ByteBuffer fragment = payload.duplicate();
+        fragment.limit(3);
+        processor.process(fragment);
+        fragment.limit(payload.limit()).position(3);
+        processor.process(fragment);
+        return payload;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(DeMaskProcessorBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -20,6 +20,7 @@ package org.eclipse.jetty.nosql;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jetty.server.session.AbstractSessionDataStore;
 import org.eclipse.jetty.server.session.SessionData;
@@ -33,7 +34,6 @@ public abstract class NoSqlSessionDataStore extends AbstractSessionDataStore
     public class NoSqlSessionData extends SessionData
     {
         private Object _version;
-        private Set<String> _dirtyAttributes = new HashSet<>();
 
         public NoSqlSessionData(String id, String cpath, String vhost, long created, long accessed, long lastAccessed, long maxInactiveMs)
         {
@@ -52,16 +52,18 @@ public abstract class NoSqlSessionDataStore extends AbstractSessionDataStore
         }
 
         @Override
-        public void setDirty(String name)
+        public void copy(SessionData data)
         {
-            super.setDirty(name);
-            _dirtyAttributes.add(name);
+            super.copy(data);
+            if (data instanceof NoSqlSessionData)
+                setVersion(((NoSqlSessionData)data).getVersion());
         }
 
         public Set<String> takeDirtyAttributes()
         {
-            Set<String> copy = new HashSet<>(_dirtyAttributes);
-            _dirtyAttributes.clear();
+            Set<String> dirtyAttributes = getDirtyAttributes();
+            Set<String> copy = dirtyAttributes == null ? getAllAttributeNames() : new HashSet<>(dirtyAttributes);
+            _dirtyAttributes = ConcurrentHashMap.newKeySet();
             return copy;
         }
 
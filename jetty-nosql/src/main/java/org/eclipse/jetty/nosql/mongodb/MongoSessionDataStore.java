@@ -18,9 +18,6 @@
 
 package org.eclipse.jetty.nosql.mongodb;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectOutputStream;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -39,7 +36,6 @@ import org.eclipse.jetty.nosql.NoSqlSessionDataStore;
 import org.eclipse.jetty.server.session.SessionContext;
 import org.eclipse.jetty.server.session.SessionData;
 import org.eclipse.jetty.server.session.UnreadableSessionDataException;
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
@@ -162,6 +158,11 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
      */
     private DBCollection _dbSessions;
 
+    /**
+     * Whether the attributes are only written when some of them changed
+     */
+    private boolean _saveChangedAttributesOnly = false;
+
     public void setDBCollection(DBCollection collection)
     {
         _dbSessions = collection;
@@ -173,6 +174,26 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
         return _dbSessions;
     }
 
+    @ManagedAttribute(value = "are attributes only written when some changed", readonly = true)
+    public boolean isSaveChangedAttributesOnly()
+    {
+        return _saveChangedAttributesOnly;
+    }
+
+    /**
+     * When true, the attributes of an existing session are only written if
+     * some attribute was set or removed since the session was last saved,
+     * otherwise only the session metadata is written.
+     * An attribute value that is modified in place, without calling
+     * setAttribute, is then not written until another attribute changes.
+     *
+     * @param saveChangedAttributesOnly whether to only write the attributes when some changed
+     */
+    public void setSaveChangedAttributesOnly(boolean saveChangedAttributesOnly)
+    {
+        _saveChangedAttributesOnly = saveChangedAttributesOnly;
+    }
+
     @Override
     public SessionData doLoad(String id) throws Exception
     {
@@ -244,11 +265,7 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
                 else
                 {
                     //attributes have special serialized format
-                    try (ByteArrayInputStream bais = new ByteArrayInputStream(attributes);
-                         ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(bais))
-                    {
-                        SessionData.deserializeAttributes(data, ois);
-                    }
+                    _sessionDataCodec.decodeAttributes(data, attributes);
                 }
             }
             else
@@ -501,12 +518,10 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
         sets.put(ACCESSED, data.getAccessed());
         sets.put(LAST_ACCESSED, data.getLastAccessed());
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ObjectOutputStream oos = new ObjectOutputStream(baos))
-        {
-            SessionData.serializeAttributes(data, oos);
-            sets.put(getContextSubfield(ATTRIBUTES), baos.toByteArray());
-        }
+        //optionally, only write the attributes if some changed
+        Set<String> dirtyAttributes = data.getDirtyAttributes();
+        if (!_saveChangedAttributesOnly || lastSaveTime <= 0 || dirtyAttributes == null || !dirtyAttributes.isEmpty())
+            sets.put(getContextSubfield(ATTRIBUTES), _sessionDataCodec.encodeAttributes(data));
 
         // Do the upsert
         if (!sets.isEmpty())
@@ -37,6 +37,7 @@ public class MongoSessionDataStoreFactory extends AbstractSessionDataStoreFactor
     String _host;
     String _connectionString;
     int _port = -1;
+    boolean _saveChangedAttributesOnly = false;
 
     /**
      * @return the host
@@ -118,6 +119,23 @@ public class MongoSessionDataStoreFactory extends AbstractSessionDataStoreFactor
         _collectionName = collectionName;
     }
 
+    /**
+     * @return whether the attributes are only written when some changed
+     */
+    public boolean isSaveChangedAttributesOnly()
+    {
+        return _saveChangedAttributesOnly;
+    }
+
+    /**
+     * @param saveChangedAttributesOnly whether the attributes are only written when some changed
+     * @see MongoSessionDataStore#setSaveChangedAttributesOnly(boolean)
+     */
+    public void setSaveChangedAttributesOnly(boolean saveChangedAttributesOnly)
+    {
+        _saveChangedAttributesOnly = saveChangedAttributesOnly;
+    }
+
     /**
      * @throws Exception {@link UnknownHostException} if any issue while resolving MongoDB Host
      * @see org.eclipse.jetty.server.session.SessionDataStoreFactory#getSessionDataStore(org.eclipse.jetty.server.session.SessionHandler)
@@ -128,6 +146,8 @@ public class MongoSessionDataStoreFactory extends AbstractSessionDataStoreFactor
         MongoSessionDataStore store = new MongoSessionDataStore();
         store.setGracePeriodSec(getGracePeriodSec());
         store.setSavePeriodSec(getSavePeriodSec());
+        store.setSessionDataCodec(getSessionDataCodec());
+        store.setSaveChangedAttributesOnly(isSaveChangedAttributesOnly());
         Mongo mongo;
 
         if (!StringUtil.isBlank(getConnectionString()))
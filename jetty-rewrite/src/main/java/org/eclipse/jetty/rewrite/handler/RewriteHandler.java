@@ -271,6 +271,24 @@ public class RewriteHandler extends HandlerWrapper
         _rules.setRewritePathInfo(rewritePathInfo);
     }
 
+    /**
+     * @return true if the rules are indexed to only evaluate those that may match the target
+     * @see RuleContainer#isCompiled()
+     */
+    public boolean isCompiled()
+    {
+        return _rules.isCompiled();
+    }
+
+    /**
+     * @param compiled true if the rules are indexed to only evaluate those that may match the target
+     * @see RuleContainer#setCompiled(boolean)
+     */
+    public void setCompiled(boolean compiled)
+    {
+        _rules.setCompiled(compiled);
+    }
+
     /**
      * @return the originalPathAttribte. If non null, this string will be used
      * as the attribute name to store the original request path.
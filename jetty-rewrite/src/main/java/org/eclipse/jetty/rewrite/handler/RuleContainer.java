@@ -19,6 +19,7 @@
 package org.eclipse.jetty.rewrite.handler;
 
 import java.io.IOException;
+import java.util.BitSet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -44,6 +45,8 @@ public class RuleContainer extends Rule implements Dumpable
     protected String _originalQueryStringAttribute;
     protected boolean _rewriteRequestURI = true;
     protected boolean _rewritePathInfo = true;
+    protected boolean _compiled;
+    private volatile RuleIndex _index;
 
     /**
      * Returns the list of rules.
@@ -111,6 +114,29 @@ public class RuleContainer extends Rule implements Dumpable
         _rewritePathInfo = rewritePathInfo;
     }
 
+    /**
+     * @return true if the rules are indexed to only evaluate those that may match the target
+     */
+    public boolean isCompiled()
+    {
+        return _compiled;
+    }
+
+    /**
+     * <p>Sets whether the rules are indexed, so that for each target only the rules
+     * that may match it are evaluated, in order.</p>
+     * <p>{@link PatternRule}s are indexed by pattern, and {@link RegexRule}s by the
+     * literal prefix of their regular expression; other rules are always evaluated.
+     * The index is built when the rules are first applied after they are set or added,
+     * so the patterns of the rules must not be changed after that.</p>
+     *
+     * @param compiled true if the rules are indexed
+     */
+    public void setCompiled(boolean compiled)
+    {
+        _compiled = compiled;
+    }
+
     /**
      * @return the originalPathAttribte. If non null, this string will be used
      * as the attribute name to store the original request path.
@@ -156,11 +182,30 @@ public class RuleContainer extends Rule implements Dumpable
     {
         boolean originalSet = _originalPathAttribute == null;
 
-        if (_rules == null)
+        Rule[] rules = _rules;
+        if (rules == null)
             return target;
 
-        for (Rule rule : _rules)
+        RuleIndex index = null;
+        BitSet candidates = null;
+        if (_compiled)
         {
+            index = _index;
+            if (index == null || index.getRules() != rules)
+                _index = index = new RuleIndex(rules);
+            candidates = index.getCandidates(target);
+        }
+
+        for (int i = 0; i < rules.length; i++)
+        {
+            if (candidates != null)
+            {
+                i = candidates.nextSetBit(i);
+                if (i < 0)
+                    break;
+            }
+
+            Rule rule = rules[i];
             String applied = rule.matchAndApply(target, request, response);
             if (applied != null)
             {
@@ -191,6 +236,10 @@ public class RuleContainer extends Rule implements Dumpable
                 if (_rewritePathInfo)
                     baseRequest.setPathInfo(applied);
 
+                // The following rules may only match the rewritten target.
+                if (candidates != null && !applied.equals(target))
+                    candidates = index.getCandidates(applied);
+
                 target = applied;
 
                 if (rule.isHandling())
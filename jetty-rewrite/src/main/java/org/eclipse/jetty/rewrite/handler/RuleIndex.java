@@ -0,0 +1,195 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.rewrite.handler;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * <p>An index of the rules of a {@link RuleContainer}, used to avoid evaluating
+ * rules that cannot match a target.</p>
+ * <p>{@link PatternRule}s are indexed by their exact, prefix or suffix pattern, and
+ * {@link RegexRule}s by the literal prefix of their regular expression, if any.
+ * All other rules, including subclasses that override
+ * {@link Rule#matchAndApply(String, HttpServletRequest, HttpServletResponse)},
+ * are always candidates. The candidates are only a filter: each candidate
+ * rule still performs its own match.</p>
+ */
+class RuleIndex
+{
+    private static final String REGEX_META = "\\[](){}.*+?^$|";
+
+    private final Rule[] _rules;
+    private final BitSet _always = new BitSet();
+    private final Map<String, BitSet> _exact = new HashMap<>();
+    private final Map<String, BitSet> _prefixes = new HashMap<>();
+    private final Map<String, BitSet> _suffixes = new HashMap<>();
+    private final int[] _prefixLengths;
+
+    RuleIndex(Rule[] rules)
+    {
+        _rules = rules;
+        for (int i = 0; i < rules.length; i++)
+        {
+            Rule rule = rules[i];
+            if (rule instanceof PatternRule && !overridesMatch(rule, PatternRule.class))
+                indexPattern(((PatternRule)rule).getPattern(), i);
+            else if (rule instanceof RegexRule && !overridesMatch(rule, RegexRule.class) && ((RegexRule)rule)._regex != null && ((RegexRule)rule)._regex.flags() == 0)
+                indexRegex(((RegexRule)rule).getRegex(), i);
+            else
+                _always.set(i);
+        }
+
+        TreeSet<Integer> lengths = new TreeSet<>();
+        for (String prefix : _prefixes.keySet())
+        {
+            lengths.add(prefix.length());
+        }
+        _prefixLengths = lengths.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static boolean overridesMatch(Rule rule, Class<? extends Rule> base)
+    {
+        try
+        {
+            return rule.getClass().getMethod("matchAndApply", String.class, HttpServletRequest.class, HttpServletResponse.class).getDeclaringClass() != base;
+        }
+        catch (NoSuchMethodException e)
+        {
+            return true;
+        }
+    }
+
+    private void indexPattern(String pattern, int rule)
+    {
+        // Mirror the matching of PathMap.match(pattern, target).
+        if (pattern == null || "/".equals(pattern) || "*".equals(pattern))
+        {
+            _always.set(rule);
+        }
+        else if (pattern.isEmpty())
+        {
+            add(_exact, "/", rule);
+        }
+        else if (pattern.charAt(0) == '/')
+        {
+            add(_exact, pattern, rule);
+            if (pattern.endsWith("/*"))
+            {
+                // "/foo/*" matches "/foo" and "/foo/..."
+                add(_exact, pattern.substring(0, pattern.length() - 2), rule);
+                add(_prefixes, pattern.substring(0, pattern.length() - 1), rule);
+            }
+        }
+        else if (pattern.charAt(0) == '*')
+        {
+            add(_suffixes, pattern.substring(1), rule);
+        }
+        // Other patterns never match.
+    }
+
+    private void indexRegex(String regex, int rule)
+    {
+        String prefix = literalPrefix(regex);
+        if (prefix.isEmpty())
+            _always.set(rule);
+        else
+            add(_prefixes, prefix, rule);
+    }
+
+    /**
+     * @param regex a regular expression
+     * @return a literal string that starts all the strings matching the whole regular expression,
+     * or the empty string if there is none or it cannot be determined
+     */
+    static String literalPrefix(String regex)
+    {
+        // Alternations may be unanchored, so do not attempt to find a prefix.
+        if (regex.indexOf('|') >= 0)
+            return "";
+
+        int start = regex.startsWith("^") ? 1 : 0;
+        int end = start;
+        while (end < regex.length() && REGEX_META.indexOf(regex.charAt(end)) < 0)
+        {
+            end++;
+        }
+
+        // The last literal is optional if followed by a quantifier that allows zero occurrences.
+        if (end > start && end < regex.length() && "?*{".indexOf(regex.charAt(end)) >= 0)
+            end--;
+
+        return regex.substring(start, end);
+    }
+
+    private static void add(Map<String, BitSet> map, String key, int rule)
+    {
+        map.computeIfAbsent(key, k -> new BitSet()).set(rule);
+    }
+
+    Rule[] getRules()
+    {
+        return _rules;
+    }
+
+    /**
+     * @param target the target to match
+     * @return the indexes of the rules that may match the target
+     */
+    BitSet getCandidates(String target)
+    {
+        BitSet candidates = (BitSet)_always.clone();
+
+        BitSet exact = _exact.get(target);
+        if (exact != null)
+            candidates.or(exact);
+
+        for (int length : _prefixLengths)
+        {
+            if (length > target.length())
+                break;
+            BitSet prefix = _prefixes.get(target.substring(0, length));
+            if (prefix != null)
+                candidates.or(prefix);
+        }
+
+        if (!_suffixes.isEmpty())
+        {
+            for (Map.Entry<String, BitSet> suffix : _suffixes.entrySet())
+            {
+                if (target.endsWith(suffix.getKey()))
+                    candidates.or(suffix.getValue());
+            }
+        }
+
+        return candidates;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{rules=%d,always=%d,exact=%d,prefixes=%s,suffixes=%d}", getClass().getSimpleName(), hashCode(),
+            _rules.length, _always.cardinality(), _exact.size(), Arrays.toString(_prefixLengths), _suffixes.size());
+    }
+}
@@ -0,0 +1,148 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.rewrite.handler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RuleContainerTest extends AbstractRuleTestCase
+{
+    private final List<String> _applied = new ArrayList<>();
+
+    @BeforeEach
+    public void init() throws Exception
+    {
+        start(false);
+    }
+
+    private RuleContainer newRuleContainer(boolean compiled)
+    {
+        RuleContainer container = new RuleContainer();
+        container.setCompiled(compiled);
+        container.addRule(new TestPatternRule("/a/*", "/b/x"));
+        container.addRule(new TestRegexRule("^/b/(.*)"));
+        container.addRule(new TestPatternRule("*.jsp", null));
+        container.addRule(new TestPatternRule("/", null));
+        container.addRule(new TestRegexRule("/c/d?"));
+        container.addRule(new TestPatternRule("/exact", null));
+        TestPatternRule terminating = new TestPatternRule("/b/*", "/done");
+        terminating.setTerminating(true);
+        container.addRule(terminating);
+        container.addRule(new TestPatternRule("/done", null));
+        container.addRule(new Rule()
+        {
+            @Override
+            public String matchAndApply(String target, HttpServletRequest request, HttpServletResponse response)
+            {
+                _applied.add("custom");
+                return target.startsWith("/q") ? "/exact" : null;
+            }
+        });
+        container.addRule(new TestRegexRule(".*\\.do|/z.*"));
+        container.addRule(new TestPatternRule("/exact", null));
+        return container;
+    }
+
+    @Test
+    public void testCompiledAppliesSameRules() throws Exception
+    {
+        RuleContainer container = newRuleContainer(false);
+        RuleContainer compiled = newRuleContainer(true);
+
+        String[] targets = {"/a/foo", "/a", "/b/y", "/x.jsp", "/c/", "/c/d", "/c/dd", "/exact", "/z1", "/q.do", "/", "/done", "/other"};
+        for (String target : targets)
+        {
+            _applied.clear();
+            String expected = container.matchAndApply(target, _request, _response);
+            List<String> expectedApplied = new ArrayList<>(_applied);
+
+            _applied.clear();
+            String actual = compiled.matchAndApply(target, _request, _response);
+            assertEquals(expected, actual, target);
+            assertEquals(expectedApplied, _applied, target);
+        }
+    }
+
+    @Test
+    public void testCandidates()
+    {
+        RuleIndex index = new RuleIndex(newRuleContainer(true).getRules());
+
+        // The "/" pattern, the custom rule and the alternation are always candidates.
+        assertEquals("{2, 3, 8, 9}", index.getCandidates("/x.jsp").toString());
+        assertEquals("{0, 3, 8, 9}", index.getCandidates("/a").toString());
+        assertEquals("{1, 3, 6, 8, 9}", index.getCandidates("/b/y").toString());
+        assertEquals("{3, 4, 8, 9}", index.getCandidates("/c/d").toString());
+        assertEquals("{3, 5, 8, 9, 10}", index.getCandidates("/exact").toString());
+    }
+
+    @Test
+    public void testLiteralPrefix()
+    {
+        assertEquals("/foo/", RuleIndex.literalPrefix("^/foo/(.*)$"));
+        assertEquals("/foo", RuleIndex.literalPrefix("/foo\\.bar"));
+        assertEquals("/fo", RuleIndex.literalPrefix("/foo?"));
+        assertEquals("/foo", RuleIndex.literalPrefix("/foo+"));
+        assertEquals("", RuleIndex.literalPrefix("/foo|/bar"));
+        assertEquals("", RuleIndex.literalPrefix("(?i)/foo"));
+        assertEquals("", RuleIndex.literalPrefix(".*\\.jsp"));
+    }
+
+    private class TestPatternRule extends PatternRule
+    {
+        private final String _replacement;
+
+        private TestPatternRule(String pattern, String replacement)
+        {
+            super(pattern);
+            _replacement = replacement;
+        }
+
+        @Override
+        protected String apply(String target, HttpServletRequest request, HttpServletResponse response) throws IOException
+        {
+            _applied.add(_pattern);
+            return _replacement == null ? target : _replacement;
+        }
+    }
+
+    private class TestRegexRule extends RegexRule
+    {
+        private TestRegexRule(String regex)
+        {
+            super(regex);
+        }
+
+        @Override
+        protected String apply(String target, HttpServletRequest request, HttpServletResponse response, Matcher matcher) throws IOException
+        {
+            _applied.add(getRegex());
+            return target;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.ServletRequest;
+
+import org.eclipse.jetty.server.UserIdentity;
+import org.eclipse.jetty.util.TypeUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.security.Credential;
+
+/**
+ * <p>A {@link LoginService} that caches the results of the logins performed
+ * by another {@link LoginService}.</p>
+ * <p>Authenticators such as {@code BASIC} send the credentials with every request,
+ * so that the wrapped LoginService would look up the user in its backing store
+ * and verify the credentials every time.
+ * This LoginService remembers, for {@link #getTimeToLive()} milliseconds, the
+ * {@link UserIdentity} of a successful login and, for {@link #getFailureTimeToLive()}
+ * milliseconds, the failure of a login, so that repeated logins with the same
+ * user name and credentials are not performed again.</p>
+ * <p>Only the logins with password credentials (a {@link String} or a {@code char[]})
+ * are cached; other credentials, such as those of the {@code DIGEST} authenticator
+ * that change with every request, are always passed to the wrapped LoginService.
+ * Entries are keyed by a salted hash of the user name and the credentials, so that
+ * the cache does not hold the credentials in clear text.</p>
+ * <p>A change in the backing store is only seen once the cached entries expire,
+ * unless the entries are invalidated with {@link #invalidate(String)} or
+ * {@link #invalidateAll()}. When the wrapped LoginService is a {@link HashLoginService}
+ * backed by a {@link PropertyUserStore}, the entries of the users updated or removed
+ * from the store are invalidated automatically. A login performed by the wrapped
+ * LoginService while its user is invalidated is not cached.</p>
+ */
+@ManagedObject("Caching login service")
+public class CachingLoginService extends ContainerLifeCycle implements LoginService, PropertyUserStore.UserListener
+{
+    private static final Logger LOG = Log.getLogger(CachingLoginService.class);
+
+    private final ConcurrentMap<String, Entry> _cache = new ConcurrentHashMap<>();
+    private final AtomicLong _generation = new AtomicLong();
+    private final ConcurrentMap<String, Long> _invalidations = new ConcurrentHashMap<>();
+    private final AtomicLong _invalidationAll = new AtomicLong();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _failureHits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LoginService _loginService;
+    private final byte[] _salt = new byte[16];
+    private long _timeToLive = TimeUnit.MINUTES.toMillis(1);
+    private long _failureTimeToLive = TimeUnit.SECONDS.toMillis(5);
+    private int _maxEntries = 1024;
+    private UserStore _listenedUserStore;
+
+    /**
+     * @param loginService the LoginService whose logins are cached
+     */
+    public CachingLoginService(LoginService loginService)
+    {
+        _loginService = Objects.requireNonNull(loginService);
+        new SecureRandom().nextBytes(_salt);
+        addBean(_loginService);
+    }
+
+    /**
+     * @return the LoginService whose logins are cached
+     */
+    public LoginService getLoginService()
+    {
+        return _loginService;
+    }
+
+    @Override
+    public String getName()
+    {
+        return _loginService.getName();
+    }
+
+    @Override
+    public IdentityService getIdentityService()
+    {
+        return _loginService.getIdentityService();
+    }
+
+    @Override
+    public void setIdentityService(IdentityService service)
+    {
+        _loginService.setIdentityService(service);
+    }
+
+    @ManagedAttribute("The time in ms a successful login is cached")
+    public long getTimeToLive()
+    {
+        return _timeToLive;
+    }
+
+    /**
+     * @param timeToLive the time in ms a successful login is cached, or 0 to not cache successful logins
+     */
+    public void setTimeToLive(long timeToLive)
+    {
+        _timeToLive = timeToLive;
+    }
+
+    @ManagedAttribute("The time in ms a failed login is cached")
+    public long getFailureTimeToLive()
+    {
+        return _failureTimeToLive;
+    }
+
+    /**
+     * @param failureTimeToLive the time in ms a failed login is cached, or 0 to not cache failed logins
+     */
+    public void setFailureTimeToLive(long failureTimeToLive)
+    {
+        _failureTimeToLive = failureTimeToLive;
+    }
+
+    @ManagedAttribute("The max number of cached logins")
+    public int getMaxEntries()
+    {
+        return _maxEntries;
+    }
+
+    /**
+     * @param maxEntries the max number of cached logins
+     */
+    public void setMaxEntries(int maxEntries)
+    {
+        _maxEntries = maxEntries;
+    }
+
+    @ManagedAttribute("The number of cached logins")
+    public int getEntries()
+    {
+        return _cache.size();
+    }
+
+    @ManagedAttribute("The number of successful logins found in the cache")
+    public long getHits()
+    {
+        return _hits.longValue();
+    }
+
+    @ManagedAttribute("The number of failed logins found in the cache")
+    public long getFailureHits()
+    {
+        return _failureHits.longValue();
+    }
+
+    @ManagedAttribute("The number of logins not found in the cache")
+    public long getMisses()
+    {
+        return _misses.longValue();
+    }
+
+    @ManagedAttribute("The ratio of logins found in the cache")
+    public double getHitRatio()
+    {
+        long hits = getHits() + getFailureHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0.0D : (double)hits / lookups;
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        _hits.reset();
+        _failureHits.reset();
+        _misses.reset();
+    }
+
+    @Override
+    public UserIdentity login(String username, Object credentials, ServletRequest request)
+    {
+        String key = username == null ? null : cacheKey(username, credentials);
+        if (key == null)
+            return _loginService.login(username, credentials, request);
+
+        long now = System.nanoTime();
+        Entry entry = _cache.get(key);
+        if (entry != null)
+        {
+            if (entry.isExpired(now))
+            {
+                _cache.remove(key, entry);
+            }
+            else
+            {
+                if (entry._user == null)
+                    _failureHits.increment();
+                else
+                    _hits.increment();
+                return entry._user;
+            }
+        }
+
+        _misses.increment();
+        long generation = _generation.get();
+        UserIdentity user = _loginService.login(username, credentials, request);
+        long timeToLive = user == null ? getFailureTimeToLive() : getTimeToLive();
+        if (timeToLive > 0 && !isInvalidated(username, generation))
+        {
+            if (_cache.size() >= getMaxEntries())
+                evict(now);
+            entry = new Entry(username, user, now + TimeUnit.MILLISECONDS.toNanos(timeToLive));
+            _cache.put(key, entry);
+            // An invalidation may have missed the entry just put.
+            if (isInvalidated(username, generation))
+                _cache.remove(key, entry);
+        }
+        return user;
+    }
+
+    private boolean isInvalidated(String username, long generation)
+    {
+        return _invalidationAll.get() > generation || _invalidations.getOrDefault(username, 0L) > generation;
+    }
+
+    private void evict(long now)
+    {
+        _cache.values().removeIf(entry -> entry.isExpired(now));
+        // Still full, start over rather than tracking the least recently used entries.
+        if (_cache.size() >= getMaxEntries())
+            _cache.clear();
+    }
+
+    private String cacheKey(String username, Object credentials)
+    {
+        byte[] password;
+        if (credentials instanceof String)
+            password = ((String)credentials).getBytes(StandardCharsets.UTF_8);
+        else if (credentials instanceof char[])
+            password = new String((char[])credentials).getBytes(StandardCharsets.UTF_8);
+        else
+            return null;
+
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(_salt);
+            digest.update(username.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)0);
+            digest.update(password);
+            return TypeUtil.toHexString(digest.digest());
+        }
+        catch (NoSuchAlgorithmException x)
+        {
+            LOG.ignore(x);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean validate(UserIdentity user)
+    {
+        return _loginService.validate(user);
+    }
+
+    @Override
+    public void logout(UserIdentity user)
+    {
+        if (user != null && user.getUserPrincipal() != null)
+            invalidate(user.getUserPrincipal().getName());
+        _loginService.logout(user);
+    }
+
+    /**
+     * <p>Removes the cached logins of the given user, so that the next
+     * login of the user is performed by the wrapped LoginService.</p>
+     *
+     * @param username the name of the user whose logins are removed
+     */
+    @ManagedOperation(value = "Removes the cached logins of a user", impact = "ACTION")
+    public void invalidate(String username)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Invalidating cached logins of {}", username);
+        _invalidations.put(username, _generation.incrementAndGet());
+        if (_invalidations.size() > getMaxEntries())
+        {
+            // Too many users to track, treat the logins in progress as all invalidated.
+            _invalidations.clear();
+            _invalidationAll.accumulateAndGet(_generation.get(), Math::max);
+        }
+        _cache.values().removeIf(entry -> entry._username.equals(username));
+    }
+
+    /**
+     * <p>Removes all the cached logins.</p>
+     */
+    @ManagedOperation(value = "Removes all the cached logins", impact = "ACTION")
+    public void invalidateAll()
+    {
+        _invalidationAll.accumulateAndGet(_generation.incrementAndGet(), Math::max);
+        _invalidations.clear();
+        _cache.clear();
+    }
+
+    @Override
+    public void update(String username, Credential credential, String[] roleArray)
+    {
+        invalidate(username);
+    }
+
+    @Override
+    public void remove(String username)
+    {
+        invalidate(username);
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        super.doStart();
+        if (_loginService instanceof HashLoginService)
+        {
+            UserStore userStore = ((HashLoginService)_loginService).getUserStore();
+            if (userStore instanceof PropertyUserStore && userStore != _listenedUserStore)
+            {
+                ((PropertyUserStore)userStore).registerUserListener(this);
+                _listenedUserStore = userStore;
+            }
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        invalidateAll();
+        super.doStop();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[%s,entries=%d]", getClass().getSimpleName(), hashCode(), _loginService, getEntries());
+    }
+
+    private static class Entry
+    {
+        private final String _username;
+        private final UserIdentity _user;
+        private final long _expireNanoTime;
+
+        private Entry(String username, UserIdentity user, long expireNanoTime)
+        {
+            _username = username;
+            _user = user;
+            _expireNanoTime = expireNanoTime;
+        }
+
+        private boolean isExpired(long now)
+        {
+            return now - _expireNanoTime >= 0;
+        }
+    }
+}
@@ -30,7 +30,10 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.LongAdder;
 import javax.servlet.HttpConstraintElement;
 import javax.servlet.HttpMethodConstraintElement;
 import javax.servlet.ServletSecurityElement;
@@ -45,6 +48,8 @@ import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.server.UserIdentity;
 import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.util.URIUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.component.DumpableCollection;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -57,15 +62,22 @@ import org.eclipse.jetty.util.security.Constraint;
  * 3.1 compliant and pre-computes the constraint combinations for runtime
  * efficiency.
  */
+@ManagedObject("Security handler enforcing security constraints")
 public class ConstraintSecurityHandler extends SecurityHandler implements ConstraintAware
 {
     private static final Logger LOG = Log.getLogger(SecurityHandler.class); //use same as SecurityHandler
 
     private static final String OMISSION_SUFFIX = ".omission";
     private static final String ALL_METHODS = "*";
+    private static final RoleInfo NO_CONSTRAINT = new RoleInfo(); //cached for paths without constraints, never returned
+    private static final int MAX_CACHED_METHODS = 16;
     private final List<ConstraintMapping> _constraintMappings = new CopyOnWriteArrayList<>();
     private final Set<String> _roles = new CopyOnWriteArraySet<>();
     private final PathMap<Map<String, RoleInfo>> _constraintMap = new PathMap<>();
+    private final LongAdder _constraintCacheHits = new LongAdder();
+    private final LongAdder _constraintCacheMisses = new LongAdder();
+    private volatile ConcurrentMap<String, ConcurrentMap<String, RoleInfo>> _constraintCache = new ConcurrentHashMap<>();
+    private int _constraintCacheSize = 1024;
     private boolean _denyUncoveredMethods = false;
 
     public static Constraint createConstraint()
@@ -349,6 +361,7 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
     {
         _roles.clear();
         _roles.addAll(roles);
+        invalidateConstraintCache();
     }
 
     /**
@@ -395,6 +408,7 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
                         info.addRole(role);
                 }
             }
+            invalidateConstraintCache();
         }
     }
 
@@ -405,6 +419,7 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
     protected void doStart() throws Exception
     {
         _constraintMap.clear();
+        invalidateConstraintCache();
         if (_constraintMappings != null)
         {
             for (ConstraintMapping mapping : _constraintMappings)
@@ -424,6 +439,7 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
     {
         super.doStop();
         _constraintMap.clear();
+        invalidateConstraintCache();
     }
 
     /**
@@ -433,6 +449,20 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
      * @param mapping the constraint mapping
      */
     protected void processConstraintMapping(ConstraintMapping mapping)
+    {
+        try
+        {
+            combineConstraintMapping(mapping);
+        }
+        finally
+        {
+            // Invalidated after the change, so that the previous
+            // constraints resolved concurrently are not cached.
+            invalidateConstraintCache();
+        }
+    }
+
+    private void combineConstraintMapping(ConstraintMapping mapping)
     {
         Map<String, RoleInfo> mappings = _constraintMap.get(mapping.getPathSpec());
         if (mappings == null)
@@ -579,11 +609,40 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
     @Override
     protected RoleInfo prepareConstraintInfo(String pathInContext, Request request)
     {
-        Map<String, RoleInfo> mappings = _constraintMap.match(pathInContext);
+        String httpMethod = request.getMethod();
+        ConcurrentMap<String, ConcurrentMap<String, RoleInfo>> cache = _constraintCache;
+        PathMap.MappedEntry<Map<String, RoleInfo>> match = _constraintMap.getMatch(pathInContext);
+        if (match == null)
+            return null;
+        if (_constraintCacheSize <= 0 || httpMethod == null)
+            return resolveConstraintInfo(match.getValue(), httpMethod);
+
+        // The resolved constraints only depend on the matched pattern and the
+        // method, so that the cache is bounded by the constraint mappings
+        // rather than by the request paths.
+        ConcurrentMap<String, RoleInfo> methods = cache.get(match.getKey());
+        RoleInfo roleInfo = methods == null ? null : methods.get(httpMethod);
+        if (roleInfo != null)
+        {
+            _constraintCacheHits.increment();
+            return roleInfo == NO_CONSTRAINT ? null : roleInfo;
+        }
+
+        _constraintCacheMisses.increment();
+        roleInfo = resolveConstraintInfo(match.getValue(), httpMethod);
+
+        if (methods == null && cache.size() < _constraintCacheSize)
+            methods = cache.computeIfAbsent(match.getKey(), k -> new ConcurrentHashMap<>());
+        if (methods != null && methods.size() < MAX_CACHED_METHODS)
+            methods.put(httpMethod, roleInfo == null ? NO_CONSTRAINT : roleInfo);
+
+        return roleInfo;
+    }
 
+    private RoleInfo resolveConstraintInfo(Map<String, RoleInfo> mappings, String httpMethod)
+    {
         if (mappings != null)
         {
-            String httpMethod = request.getMethod();
             RoleInfo roleInfo = mappings.get(httpMethod);
             if (roleInfo == null)
             {
@@ -728,6 +787,56 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
             DumpableCollection.from("constraints", _constraintMap.entrySet()));
     }
 
+    private void invalidateConstraintCache()
+    {
+        // Replaced rather than cleared, so that constraints resolved concurrently are not cached.
+        _constraintCache = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return the max number of constraint patterns for which the resolved constraints are cached
+     */
+    @ManagedAttribute("The max number of constraint patterns for which the resolved constraints are cached")
+    public int getConstraintCacheSize()
+    {
+        return _constraintCacheSize;
+    }
+
+    /**
+     * <p>Sets the max number of constraint patterns for which the constraints resolved
+     * for each method are cached. The cache is keyed by the pattern matching the request
+     * path, so it does not grow with the number of distinct request paths. When the cache
+     * is full, the constraints of the patterns not yet cached are resolved at every request.
+     * The cache is invalidated when the constraint mappings or roles change.</p>
+     *
+     * @param constraintCacheSize the max number of patterns cached, or 0 to disable the cache
+     */
+    public void setConstraintCacheSize(int constraintCacheSize)
+    {
+        _constraintCacheSize = constraintCacheSize;
+        invalidateConstraintCache();
+    }
+
+    @ManagedAttribute("The number of constraint resolutions found in the cache")
+    public long getConstraintCacheHits()
+    {
+        return _constraintCacheHits.sum();
+    }
+
+    @ManagedAttribute("The number of constraint resolutions not found in the cache")
+    public long getConstraintCacheMisses()
+    {
+        return _constraintCacheMisses.sum();
+    }
+
+    @ManagedAttribute("The ratio of constraint resolutions found in the cache")
+    public double getConstraintCacheHitRatio()
+    {
+        long hits = getConstraintCacheHits();
+        long total = hits + getConstraintCacheMisses();
+        return total == 0 ? 0.0D : (double)hits / total;
+    }
+
     /**
      * @see org.eclipse.jetty.security.ConstraintAware#setDenyUncoveredHttpMethods(boolean)
      */
@@ -735,6 +844,7 @@ public class ConstraintSecurityHandler extends SecurityHandler implements Constr
     public void setDenyUncoveredHttpMethods(boolean deny)
     {
         _denyUncoveredMethods = deny;
+        invalidateConstraintCache();
     }
 
     @Override
@@ -0,0 +1,165 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.security;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.server.UserIdentity;
+import org.eclipse.jetty.util.security.Password;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class CachingLoginServiceTest
+{
+    private final AtomicInteger _loads = new AtomicInteger();
+    private volatile Runnable _onLoad;
+    private CachingLoginService _loginService;
+
+    @BeforeEach
+    public void init() throws Exception
+    {
+        TestLoginService delegate = new TestLoginService("realm")
+        {
+            @Override
+            protected UserPrincipal loadUserInfo(String username)
+            {
+                _loads.incrementAndGet();
+                Runnable onLoad = _onLoad;
+                if (onLoad != null)
+                    onLoad.run();
+                return super.loadUserInfo(username);
+            }
+        };
+        delegate.putUser("user", new Password("password"), new String[]{"user"});
+        delegate.putUser("other", new Password("secret"), new String[]{"user"});
+        _loginService = new CachingLoginService(delegate);
+        _loginService.start();
+    }
+
+    @AfterEach
+    public void destroy() throws Exception
+    {
+        _loginService.stop();
+    }
+
+    @Test
+    public void testSuccessfulLoginCached()
+    {
+        UserIdentity user = _loginService.login("user", "password", null);
+        assertThat(user, notNullValue());
+        assertThat(_loginService.login("user", "password", null), sameInstance(user));
+        assertThat(_loginService.login("user", "password".toCharArray(), null), sameInstance(user));
+        assertThat(_loads.get(), is(1));
+        assertThat(_loginService.getHits(), is(2L));
+        assertThat(_loginService.getMisses(), is(1L));
+
+        // Different credentials are not served from the cache.
+        assertThat(_loginService.login("user", "wrong", null), nullValue());
+        assertThat(_loads.get(), is(2));
+    }
+
+    @Test
+    public void testFailedLoginCached()
+    {
+        assertThat(_loginService.login("user", "wrong", null), nullValue());
+        assertThat(_loginService.login("user", "wrong", null), nullValue());
+        assertThat(_loads.get(), is(1));
+        assertThat(_loginService.getFailureHits(), is(1L));
+
+        _loginService.setFailureTimeToLive(0);
+        assertThat(_loginService.login("nobody", "wrong", null), nullValue());
+        assertThat(_loginService.login("nobody", "wrong", null), nullValue());
+        assertThat(_loads.get(), is(3));
+    }
+
+    @Test
+    public void testExpiration() throws Exception
+    {
+        _loginService.setTimeToLive(100);
+        assertThat(_loginService.login("user", "password", null), notNullValue());
+        Thread.sleep(200);
+        assertThat(_loginService.login("user", "password", null), notNullValue());
+        assertThat(_loads.get(), is(2));
+    }
+
+    @Test
+    public void testInvalidate()
+    {
+        assertThat(_loginService.login("user", "password", null), notNullValue());
+        assertThat(_loginService.login("other", "secret", null), notNullValue());
+        assertThat(_loginService.getEntries(), is(2));
+
+        _loginService.invalidate("user");
+        assertThat(_loginService.getEntries(), is(1));
+        assertThat(_loginService.login("user", "password", null), notNullValue());
+        assertThat(_loginService.login("other", "secret", null), notNullValue());
+        assertThat(_loads.get(), is(3));
+
+        _loginService.invalidateAll();
+        assertThat(_loginService.getEntries(), is(0));
+    }
+
+    @Test
+    public void testInvalidateDuringLogin()
+    {
+        // The user is invalidated while the delegate performs the login.
+        _onLoad = () -> _loginService.invalidate("user");
+        assertThat(_loginService.login("user", "password", null), notNullValue());
+        _onLoad = null;
+        assertThat(_loginService.getEntries(), is(0));
+
+        assertThat(_loginService.login("user", "password", null), notNullValue());
+        assertThat(_loginService.getEntries(), is(1));
+        assertThat(_loads.get(), is(2));
+
+        // Same for all the users.
+        _loginService.invalidateAll();
+        _onLoad = _loginService::invalidateAll;
+        assertThat(_loginService.login("other", "secret", null), notNullValue());
+        assertThat(_loginService.getEntries(), is(0));
+    }
+
+    @Test
+    public void testMaxEntries()
+    {
+        _loginService.setMaxEntries(2);
+        for (int i = 0; i < 5; i++)
+        {
+            _loginService.login("user", "wrong" + i, null);
+        }
+        assertThat(_loginService.getEntries() <= 2, is(true));
+    }
+
+    @Test
+    public void testNonPasswordCredentialsNotCached()
+    {
+        Object credentials = new Object();
+        assertThat(_loginService.login("user", credentials, null), nullValue());
+        assertThat(_loginService.login("user", credentials, null), nullValue());
+        assertThat(_loads.get(), is(2));
+        assertThat(_loginService.getEntries(), is(0));
+    }
+}
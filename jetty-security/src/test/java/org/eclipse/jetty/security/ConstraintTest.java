@@ -734,6 +734,101 @@ public class ConstraintTest
         return TypeUtil.toString(digest, 16);
     }
 
+    @Test
+    public void testConstraintCache() throws Exception
+    {
+        _security.setAuthenticator(new BasicAuthenticator());
+        _server.start();
+
+        String response;
+        response = _connector.getResponse("GET /ctx/forbid/info HTTP/1.0\r\n\r\n");
+        assertThat(response, startsWith("HTTP/1.1 403 Forbidden"));
+        assertEquals(0, _security.getConstraintCacheHits());
+        assertEquals(1, _security.getConstraintCacheMisses());
+
+        // Distinct paths matching the same pattern share the cached constraints.
+        response = _connector.getResponse("GET /ctx/forbid/other HTTP/1.0\r\n\r\n");
+        assertThat(response, startsWith("HTTP/1.1 403 Forbidden"));
+        response = _connector.getResponse("GET /ctx/forbid/info/1234 HTTP/1.0\r\n\r\n");
+        assertThat(response, startsWith("HTTP/1.1 403 Forbidden"));
+        // Paths without constraints are not cached.
+        response = _connector.getResponse("GET /ctx/noauth/info HTTP/1.0\r\n\r\n");
+        assertThat(response, startsWith("HTTP/1.1 200 OK"));
+        response = _connector.getResponse("POST /ctx/forbid/info HTTP/1.0\r\n\r\n");
+        assertThat(response, startsWith("HTTP/1.1 403 Forbidden"));
+        assertEquals(2, _security.getConstraintCacheHits());
+        assertEquals(2, _security.getConstraintCacheMisses());
+        assertEquals(0.5D, _security.getConstraintCacheHitRatio());
+
+        // Adding a mapping invalidates the cached constraints.
+        Constraint constraint = new Constraint();
+        constraint.setAuthenticate(true);
+        constraint.setName("noauth forbidden");
+        ConstraintMapping mapping = new ConstraintMapping();
+        mapping.setPathSpec("/noauth/*");
+        mapping.setConstraint(constraint);
+        _security.addConstraintMapping(mapping);
+
+        response = _connector.getResponse("GET /ctx/noauth/info HTTP/1.0\r\n\r\n");
+        assertThat(response, startsWith("HTTP/1.1 403 Forbidden"));
+        assertEquals(2, _security.getConstraintCacheHits());
+        assertEquals(3, _security.getConstraintCacheMisses());
+    }
+
+    @Test
+    public void testExtensionConstraintUnderDefaultConstraint() throws Exception
+    {
+        Constraint relax = new Constraint();
+        relax.setAuthenticate(false);
+        relax.setName("relax");
+        ConstraintMapping defaultMapping = new ConstraintMapping();
+        defaultMapping.setPathSpec("/*");
+        defaultMapping.setConstraint(relax);
+
+        Constraint forbid = new Constraint();
+        forbid.setAuthenticate(true);
+        forbid.setName("forbid jsp");
+        ConstraintMapping extensionMapping = new ConstraintMapping();
+        extensionMapping.setPathSpec("*.jsp");
+        extensionMapping.setConstraint(forbid);
+
+        _security.setConstraintMappings(new ConstraintMapping[]{defaultMapping, extensionMapping});
+        _security.setAuthenticator(new BasicAuthenticator());
+        _server.start();
+
+        // The "/*" constraint only applies when no other constraint matches.
+        String response;
+        response = _connector.getResponse("GET /ctx/some/page.jsp HTTP/1.0\r\n\r\n");
+        assertThat(response, startsWith("HTTP/1.1 403 Forbidden"));
+        response = _connector.getResponse("GET /ctx/some/page.jsp HTTP/1.0\r\n\r\n");
+        assertThat(response, startsWith("HTTP/1.1 403 Forbidden"));
+        response = _connector.getResponse("GET /ctx/some/page.html HTTP/1.0\r\n\r\n");
+        assertThat(response, startsWith("HTTP/1.1 200 OK"));
+    }
+
+    @Test
+    public void testSeparatedPathSpecsConstraint() throws Exception
+    {
+        Constraint forbid = new Constraint();
+        forbid.setAuthenticate(true);
+        forbid.setName("forbid");
+        ConstraintMapping mapping = new ConstraintMapping();
+        mapping.setPathSpec("/one/*,/two/*");
+        mapping.setConstraint(forbid);
+
+        _security.setConstraintMappings(new ConstraintMapping[]{mapping});
+        _security.setAuthenticator(new BasicAuthenticator());
+        _server.start();
+
+        String response;
+        response = _connector.getResponse("GET /ctx/one/info HTTP/1.0\r\n\r\n");
+        assertThat(response, startsWith("HTTP/1.1 403 Forbidden"));
+        response = _connector.getResponse("GET /ctx/two/info HTTP/1.0\r\n\r\n");
+        assertThat(response, startsWith("HTTP/1.1 403 Forbidden"));
+        response = _connector.getResponse("GET /ctx/three/info HTTP/1.0\r\n\r\n");
+        assertThat(response, startsWith("HTTP/1.1 200 OK"));
+    }
+
     @Test
     public void testDigest() throws Exception
     {
@@ -44,3 +44,6 @@ etc/jetty-http.xml
 
 ## HTTP Compliance: RFC7230, RFC7230_LEGACY, RFC2616, RFC2616_LEGACY, LEGACY or CUSTOMn
 # jetty.http.compliance=RFC7230_LEGACY
+
+## Size in characters of the header field cache shared by all the connections (0 to disable)
+# jetty.http.sharedHeaderCacheSize=0
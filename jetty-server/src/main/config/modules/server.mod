@@ -60,6 +60,9 @@ patch-module: servlet.api=lib/jetty-schemas-3.1.jar
 ## Whether, for requests with content, delay dispatch until some content has arrived
 # jetty.httpConfig.delayDispatchUntilContent=true
 
+## Whether static file content may be sent with FileChannel.transferTo() (plain HTTP/1.1 only)
+# jetty.httpConfig.useFileTransfer=true
+
 ## Maximum number of error dispatches to prevent looping
 # jetty.httpConfig.maxErrorDispatches=10
 
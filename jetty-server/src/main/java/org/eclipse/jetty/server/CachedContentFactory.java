@@ -26,12 +26,13 @@ import java.nio.channels.ReadableByteChannel;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.DateGenerator;
@@ -44,11 +45,24 @@ import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.http.PrecompressedHttpContent;
 import org.eclipse.jetty.http.ResourceHttpContent;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
 
+/**
+ * <p>A {@link HttpContent.ContentFactory} that caches the content of resources.</p>
+ * <p>When the cache exceeds {@link #getMaxCachedFiles()} or {@link #getMaxCacheSize()},
+ * entries are evicted with a CLOCK (second chance) approximation of LRU:
+ * cached entries are kept in a queue in insertion order, and an entry that has
+ * been accessed since it was last examined is moved to the tail of the queue rather
+ * than being evicted. Eviction is therefore amortized O(1) and does not require
+ * to sort the whole cache.</p>
+ */
+@ManagedObject("Cached content factory")
 public class CachedContentFactory implements HttpContent.ContentFactory
 {
     private static final Logger LOG = Log.getLogger(CachedContentFactory.class);
@@ -57,6 +71,11 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     private final ConcurrentMap<String, CachedHttpContent> _cache;
     private final AtomicInteger _cachedSize;
     private final AtomicInteger _cachedFiles;
+    private final Queue<CachedHttpContent> _evictionQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _evictionQueueSize = new AtomicInteger();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
     private final ResourceFactory _factory;
     private final CachedContentFactory _parent;
     private final MimeTypes _mimeTypes;
@@ -91,16 +110,53 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         _precompressedFormats = precompressedFormats;
     }
 
+    @ManagedAttribute("The size in bytes of the cached content")
     public int getCachedSize()
     {
         return _cachedSize.get();
     }
 
+    @ManagedAttribute("The number of cached files")
     public int getCachedFiles()
     {
         return _cachedFiles.get();
     }
 
+    @ManagedAttribute("The number of lookups satisfied by the cache")
+    public long getCacheHits()
+    {
+        return _hits.sum();
+    }
+
+    @ManagedAttribute("The number of lookups not satisfied by the cache")
+    public long getCacheMisses()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedAttribute("The ratio of lookups satisfied by the cache")
+    public double getCacheHitRatio()
+    {
+        long hits = _hits.sum();
+        long total = hits + _misses.sum();
+        return total == 0 ? 0.0 : (double)hits / total;
+    }
+
+    @ManagedAttribute("The number of entries evicted from the cache")
+    public long getCacheEvictions()
+    {
+        return _evictions.sum();
+    }
+
+    @ManagedOperation(value = "Resets the cache statistics", impact = "ACTION")
+    public void resetCacheStatistics()
+    {
+        _hits.reset();
+        _misses.reset();
+        _evictions.reset();
+    }
+
+    @ManagedAttribute("The max size in bytes of a cached file")
     public int getMaxCachedFileSize()
     {
         return _maxCachedFileSize;
@@ -112,6 +168,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         shrinkCache();
     }
 
+    @ManagedAttribute("The max size in bytes of the cache")
     public int getMaxCacheSize()
     {
         return _maxCacheSize;
@@ -126,6 +183,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     /**
      * @return the max number of cached files.
      */
+    @ManagedAttribute("The max number of cached files")
     public int getMaxCachedFiles()
     {
         return _maxCachedFiles;
@@ -145,6 +203,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         return _useFileMappedBuffer;
     }
 
+    @ManagedOperation(value = "Flushes the cache", impact = "ACTION")
     public void flushCache()
     {
         while (_cache.size() > 0)
@@ -156,6 +215,8 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                     content.invalidate();
             }
         }
+        _evictionQueue.clear();
+        _evictionQueueSize.set(0);
     }
 
     @Deprecated
@@ -182,7 +243,11 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         // Is the content in this cache?
         CachedHttpContent content = _cache.get(pathInContext);
         if (content != null && (content).isValid())
+        {
+            _hits.increment();
             return content;
+        }
+        _misses.increment();
 
         // try loading the content from our factory.
         Resource resource = _factory.getResource(pathInContext);
@@ -251,6 +316,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                                 compressedContent.invalidate();
                                 compressedContent = added;
                             }
+                            else
+                            {
+                                enqueue(compressedContent);
+                            }
                         }
                     }
                     if (compressedContent != null)
@@ -268,6 +337,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                 content.invalidate();
                 content = added;
             }
+            else
+            {
+                enqueue(content);
+            }
 
             return content;
         }
@@ -299,34 +372,60 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         return new ResourceHttpContent(resource, mt, maxBufferSize);
     }
 
-    private void shrinkCache()
+    private void enqueue(CachedHttpContent content)
     {
-        // While we need to shrink
-        while (_cache.size() > 0 && (_cachedFiles.get() > _maxCachedFiles || _cachedSize.get() > _maxCacheSize))
+        _evictionQueue.offer(content);
+        int size = _evictionQueueSize.incrementAndGet();
+
+        // Entries invalidated without eviction pressure (for example because the
+        // resource was modified) stay in the queue until they reach its head, so
+        // occasionally purge them to keep the queue bounded.
+        if (size > 2 * Math.max(_cache.size(), 16))
         {
-            // Scan the entire cache and generate an ordered list by last accessed time.
-            SortedSet<CachedHttpContent> sorted = new TreeSet<>((c1, c2) ->
+            _evictionQueue.removeIf(c ->
             {
-                if (c1._lastAccessed < c2._lastAccessed)
-                    return -1;
+                if (c == _cache.get(c.getKey()))
+                    return false;
+                _evictionQueueSize.decrementAndGet();
+                return true;
+            });
+        }
+    }
 
-                if (c1._lastAccessed > c2._lastAccessed)
-                    return 1;
+    private void shrinkCache()
+    {
+        // Each entry is examined at most twice: the first time its reference bit
+        // is cleared, the second time it is evicted; bound the loop accordingly
+        // in case the entries are concurrently accessed.
+        int attempts = 2 * _evictionQueueSize.get() + 1;
+        while (_cachedFiles.get() > _maxCachedFiles || _cachedSize.get() > _maxCacheSize)
+        {
+            if (attempts-- <= 0)
+                break;
 
-                if (c1._contentLengthValue < c2._contentLengthValue)
-                    return -1;
+            CachedHttpContent content = _evictionQueue.poll();
+            if (content == null)
+                break;
 
-                return c1._key.compareTo(c2._key);
-            });
-            sorted.addAll(_cache.values());
+            // Skip entries that have already been removed from the cache.
+            if (content != _cache.get(content.getKey()))
+            {
+                _evictionQueueSize.decrementAndGet();
+                continue;
+            }
 
-            // Invalidate least recently used first
-            for (CachedHttpContent content : sorted)
+            // Give recently accessed entries a second chance.
+            if (content.clearReferenced())
             {
-                if (_cachedFiles.get() <= _maxCachedFiles && _cachedSize.get() <= _maxCacheSize)
-                    break;
-                if (content == _cache.remove(content.getKey()))
-                    content.invalidate();
+                _evictionQueue.offer(content);
+                continue;
+            }
+
+            _evictionQueueSize.decrementAndGet();
+            if (_cache.remove(content.getKey(), content))
+            {
+                content.invalidate();
+                _evictions.increment();
             }
         }
     }
@@ -401,7 +500,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         private final AtomicReference<ByteBuffer> _indirectBuffer = new AtomicReference<>();
         private final AtomicReference<ByteBuffer> _directBuffer = new AtomicReference<>();
         private final AtomicReference<ByteBuffer> _mappedBuffer = new AtomicReference<>();
-        private volatile long _lastAccessed;
+        private volatile boolean _referenced;
 
         CachedHttpContent(String pathInContext, Resource resource, Map<CompressedContentFormat, CachedHttpContent> precompressedResources)
         {
@@ -424,8 +523,6 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             if (_cachedFiles.incrementAndGet() > _maxCachedFiles)
                 shrinkCache();
 
-            _lastAccessed = System.currentTimeMillis();
-
             _etag = CachedContentFactory.this._etags ? new PreEncodedHttpField(HttpHeader.ETAG, resource.getWeakETag()) : null;
 
             if (precompressedResources != null)
@@ -474,7 +571,9 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         {
             if (_lastModifiedValue == _resource.lastModified() && _contentLengthValue == _resource.length())
             {
-                _lastAccessed = System.currentTimeMillis();
+                // Avoid the volatile write if the entry is already marked.
+                if (!_referenced)
+                    _referenced = true;
                 return true;
             }
 
@@ -483,6 +582,17 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             return false;
         }
 
+        /**
+         * @return whether this entry has been accessed since the last call to this method
+         */
+        boolean clearReferenced()
+        {
+            boolean referenced = _referenced;
+            if (referenced)
+                _referenced = false;
+            return referenced;
+        }
+
         protected void invalidate()
         {
             ByteBuffer indirect = _indirectBuffer.getAndSet(null);
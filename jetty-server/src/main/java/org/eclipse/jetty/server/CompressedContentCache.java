@@ -0,0 +1,474 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.HttpContent;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.PrecompressedHttpContent;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.util.URIUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.resource.Resource;
+
+/**
+ * <p>A bounded cache of compressed response content.</p>
+ * <p>Entries are keyed by the request path and query, and hold the compressed variants,
+ * one per content encoding, of the representation identified by an ETag.
+ * Storing a variant for a different ETag replaces all the variants of the key,
+ * so that stale content is released as soon as a resource changes.</p>
+ * <p>The cache is weighed by the size of the compressed content and, like
+ * {@link CachedContentFactory}, evicts entries in insertion order, giving a second
+ * chance to the entries that have been accessed since they were last examined.</p>
+ * <p>The cache is filled by {@link org.eclipse.jetty.server.handler.gzip.GzipHandler},
+ * which makes it available to the request as the {@link #ATTRIBUTE} attribute, so that
+ * {@link ResourceService} can serve the variants like precompressed content.</p>
+ */
+@ManagedObject("Compressed content cache")
+public class CompressedContentCache
+{
+    public static final String ATTRIBUTE = CompressedContentCache.class.getName();
+
+    private final ConcurrentMap<String, Variants> _cache = new ConcurrentHashMap<>();
+    private final Queue<Variants> _evictionQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong _cachedSize = new AtomicLong();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private long _maxCacheSize = 32 * 1024 * 1024;
+    private int _maxEntrySize = 1024 * 1024;
+
+    @ManagedAttribute("The max size in bytes of the cache")
+    public long getMaxCacheSize()
+    {
+        return _maxCacheSize;
+    }
+
+    public void setMaxCacheSize(long maxCacheSize)
+    {
+        _maxCacheSize = maxCacheSize;
+        shrinkCache();
+    }
+
+    @ManagedAttribute("The max size in bytes of a compressed content")
+    public int getMaxEntrySize()
+    {
+        return _maxEntrySize;
+    }
+
+    public void setMaxEntrySize(int maxEntrySize)
+    {
+        _maxEntrySize = maxEntrySize;
+    }
+
+    @ManagedAttribute("The size in bytes of the cached content")
+    public long getCachedSize()
+    {
+        return _cachedSize.get();
+    }
+
+    @ManagedAttribute("The number of cached paths")
+    public int getCachedEntries()
+    {
+        return _cache.size();
+    }
+
+    @ManagedAttribute("The number of cache hits")
+    public long getCacheHits()
+    {
+        return _hits.longValue();
+    }
+
+    @ManagedAttribute("The number of cache misses")
+    public long getCacheMisses()
+    {
+        return _misses.longValue();
+    }
+
+    @ManagedAttribute("The number of entries evicted from the cache")
+    public long getCacheEvictions()
+    {
+        return _evictions.longValue();
+    }
+
+    @ManagedOperation(value = "Resets the cache statistics", impact = "ACTION")
+    public void resetCacheStatistics()
+    {
+        _hits.reset();
+        _misses.reset();
+        _evictions.reset();
+    }
+
+    @ManagedOperation(value = "Removes all the cached content", impact = "ACTION")
+    public void flushCache()
+    {
+        for (String path : _cache.keySet())
+        {
+            remove(path);
+        }
+    }
+
+    /**
+     * <p>Returns the key of the compressed variants of the content of the given request,
+     * used both to store the variants and to look them up.</p>
+     * <p>The query string is part of the key, as a strong ETag only identifies
+     * a representation of the resource identified by the full URI: different
+     * queries may return different contents with the same strong ETag.</p>
+     *
+     * @param request the request
+     * @return the request path, including the context path, and the query string, if any
+     */
+    public static String getCacheKey(HttpServletRequest request)
+    {
+        String path = URIUtil.addPaths(request.getContextPath(), URIUtil.addPaths(request.getServletPath(), request.getPathInfo()));
+        String query = request.getQueryString();
+        return query == null ? path : path + "?" + query;
+    }
+
+    /**
+     * @param path the cache key of the request, see {@link #getCacheKey(HttpServletRequest)}
+     * @param etag the ETag of the uncompressed representation
+     * @param format the content encoding
+     * @return the compressed content as a read-only buffer, or null if it is not cached
+     */
+    public ByteBuffer get(String path, String etag, CompressedContentFormat format)
+    {
+        Variants variants = _cache.get(path);
+        ByteBuffer content = variants == null || !variants._etag.equals(etag) ? null : variants._contents.get(format);
+        if (content == null)
+        {
+            _misses.increment();
+            return null;
+        }
+        _hits.increment();
+        variants.touch();
+        return content.asReadOnlyBuffer();
+    }
+
+    /**
+     * @param path the cache key of the request, see {@link #getCacheKey(HttpServletRequest)}
+     * @param etag the ETag of the uncompressed representation
+     * @param format the content encoding
+     * @param content the compressed content
+     * @return whether the content was cached
+     */
+    public boolean put(String path, String etag, CompressedContentFormat format, ByteBuffer content)
+    {
+        int size = content.remaining();
+        if (size > _maxEntrySize || size > _maxCacheSize)
+            return false;
+
+        ByteBuffer copy = ByteBuffer.allocate(size);
+        copy.put(content.slice()).flip();
+
+        // Stores are rare compared to lookups, so they are serialized
+        // to keep the size accounting simple.
+        synchronized (this)
+        {
+            Variants variants = _cache.get(path);
+            if (variants == null || !variants._etag.equals(etag))
+            {
+                if (variants != null)
+                    _cachedSize.addAndGet(-variants.getSize());
+                variants = new Variants(path, etag);
+                _cache.put(path, variants);
+                _evictionQueue.offer(variants);
+            }
+
+            ByteBuffer previous = variants._contents.put(format, copy);
+            if (_cachedSize.addAndGet(size - (previous == null ? 0 : previous.remaining())) > _maxCacheSize)
+                shrinkCache();
+        }
+        return true;
+    }
+
+    /**
+     * <p>Returns the cached variants of the given content, in a form suitable for
+     * {@link HttpContent#getPrecompressedContents()}.</p>
+     * <p>A miss is not counted here, but by {@link #get(String, String, CompressedContentFormat)}
+     * when the uncompressed content is then compressed, so that it is counted once.</p>
+     *
+     * @param path the cache key of the request, see {@link #getCacheKey(HttpServletRequest)}
+     * @param content the uncompressed content
+     * @return the compressed variants of the content, or null if there are none
+     */
+    public Map<CompressedContentFormat, HttpContent> getPrecompressedContents(String path, HttpContent content)
+    {
+        String etag = content.getETag() == null ? null : content.getETagValue();
+        Variants variants = etag == null ? null : _cache.get(path);
+        if (variants == null || !variants._etag.equals(etag) || variants._contents.isEmpty())
+            return null;
+        _hits.increment();
+        variants.touch();
+
+        Map<CompressedContentFormat, HttpContent> result = new HashMap<>();
+        for (Map.Entry<CompressedContentFormat, ByteBuffer> entry : variants._contents.entrySet())
+        {
+            CompressedContentFormat format = entry.getKey();
+            String variantETag = etag(etag, format);
+            result.put(format, new PrecompressedHttpContent(content, new BufferHttpContent(content, entry.getValue()), format)
+            {
+                @Override
+                public String getETagValue()
+                {
+                    // The same ETag as when the content is compressed by the GzipHandler.
+                    return variantETag;
+                }
+            });
+        }
+        return result;
+    }
+
+    private static String etag(String etag, CompressedContentFormat format)
+    {
+        int end = etag.length() - 1;
+        return (etag.charAt(end) == '"') ? etag.substring(0, end) + format._etag + '"' : etag + format._etag;
+    }
+
+    private synchronized void remove(String path)
+    {
+        Variants variants = _cache.remove(path);
+        if (variants != null)
+            _cachedSize.addAndGet(-variants.getSize());
+    }
+
+    private synchronized void shrinkCache()
+    {
+        // Each entry is examined at most twice: the first time its reference bit
+        // is cleared, the second time it is evicted.
+        int attempts = 2 * _evictionQueue.size() + 1;
+        while (_cachedSize.get() > _maxCacheSize && attempts-- > 0)
+        {
+            Variants variants = _evictionQueue.poll();
+            if (variants == null)
+                break;
+
+            // Skip entries that have already been replaced or removed.
+            if (variants != _cache.get(variants._path))
+                continue;
+
+            if (variants.clearReferenced())
+            {
+                _evictionQueue.offer(variants);
+                continue;
+            }
+
+            if (_cache.remove(variants._path, variants))
+            {
+                _cachedSize.addAndGet(-variants.getSize());
+                _evictions.increment();
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{entries=%d,size=%d/%d}", getClass().getSimpleName(), hashCode(), getCachedEntries(), getCachedSize(), getMaxCacheSize());
+    }
+
+    private static class Variants
+    {
+        private final Map<CompressedContentFormat, ByteBuffer> _contents = new ConcurrentHashMap<>();
+        private final String _path;
+        private final String _etag;
+        private volatile boolean _referenced;
+
+        private Variants(String path, String etag)
+        {
+            _path = path;
+            _etag = etag;
+        }
+
+        private void touch()
+        {
+            // Avoid the volatile write if the entry is already marked.
+            if (!_referenced)
+                _referenced = true;
+        }
+
+        private boolean clearReferenced()
+        {
+            boolean referenced = _referenced;
+            if (referenced)
+                _referenced = false;
+            return referenced;
+        }
+
+        private long getSize()
+        {
+            long size = 0;
+            for (ByteBuffer content : _contents.values())
+            {
+                size += content.remaining();
+            }
+            return size;
+        }
+    }
+
+    /**
+     * The compressed bytes of a content, with the metadata of the uncompressed content.
+     */
+    private static class BufferHttpContent implements HttpContent
+    {
+        private final HttpContent _content;
+        private final ByteBuffer _buffer;
+        private final HttpField _contentLength;
+
+        private BufferHttpContent(HttpContent content, ByteBuffer buffer)
+        {
+            _content = content;
+            _buffer = buffer;
+            _contentLength = new PreEncodedHttpField(HttpHeader.CONTENT_LENGTH, Long.toString(buffer.remaining()));
+        }
+
+        @Override
+        public HttpField getContentType()
+        {
+            return _content.getContentType();
+        }
+
+        @Override
+        public String getContentTypeValue()
+        {
+            return _content.getContentTypeValue();
+        }
+
+        @Override
+        public String getCharacterEncoding()
+        {
+            return _content.getCharacterEncoding();
+        }
+
+        @Override
+        public MimeTypes.Type getMimeType()
+        {
+            return _content.getMimeType();
+        }
+
+        @Override
+        public HttpField getContentEncoding()
+        {
+            return null;
+        }
+
+        @Override
+        public String getContentEncodingValue()
+        {
+            return null;
+        }
+
+        @Override
+        public HttpField getContentLength()
+        {
+            return _contentLength;
+        }
+
+        @Override
+        public long getContentLengthValue()
+        {
+            return _buffer.remaining();
+        }
+
+        @Override
+        public HttpField getLastModified()
+        {
+            return _content.getLastModified();
+        }
+
+        @Override
+        public String getLastModifiedValue()
+        {
+            return _content.getLastModifiedValue();
+        }
+
+        @Override
+        public HttpField getETag()
+        {
+            return _content.getETag();
+        }
+
+        @Override
+        public String getETagValue()
+        {
+            return _content.getETagValue();
+        }
+
+        @Override
+        public ByteBuffer getIndirectBuffer()
+        {
+            return _buffer.asReadOnlyBuffer();
+        }
+
+        @Override
+        public ByteBuffer getDirectBuffer()
+        {
+            return null;
+        }
+
+        @Override
+        public Resource getResource()
+        {
+            return _content.getResource();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException
+        {
+            return new ByteArrayInputStream(_buffer.array(), _buffer.arrayOffset() + _buffer.position(), _buffer.remaining());
+        }
+
+        @Override
+        public ReadableByteChannel getReadableByteChannel() throws IOException
+        {
+            return Channels.newChannel(getInputStream());
+        }
+
+        @Override
+        public void release()
+        {
+        }
+
+        @Override
+        public Map<CompressedContentFormat, ? extends HttpContent> getPrecompressedContents()
+        {
+            return null;
+        }
+    }
+}
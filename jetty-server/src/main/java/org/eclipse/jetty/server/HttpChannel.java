@@ -21,6 +21,7 @@ package org.eclipse.jetty.server;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.EventListener;
 import java.util.List;
@@ -58,6 +59,7 @@ import org.eclipse.jetty.util.SharedBlockingCallback.Blocker;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.Scheduler;
+import org.eclipse.jetty.util.thread.VirtualThreadPool;
 
 /**
  * HttpChannel represents a single endpoint for HTTP semantic processing.
@@ -914,6 +916,50 @@ public class HttpChannel implements Runnable, HttpOutput.Interceptor
         sendResponse(null, content, complete, callback);
     }
 
+    /**
+     * @return whether a {@link Listener} is notified of the response content,
+     * which is not possible when the content is transferred directly from a file
+     */
+    boolean isNotifyingResponseContent()
+    {
+        if (_combinedListener instanceof HttpChannelListeners)
+            return ((HttpChannelListeners)_combinedListener).isNotifyingResponseContent();
+        return _combinedListener != NOOP_LISTENER;
+    }
+
+    /**
+     * <p>Non-Blocking transfer of response content directly from a file.</p>
+     * <p>The response must be already committed, and must be completed
+     * by a subsequent {@link #write(ByteBuffer, boolean, Callback)}.</p>
+     *
+     * @param file the file to transfer the content from
+     * @param position the position in the file of the first byte to transfer
+     * @param length the number of bytes to transfer
+     * @param callback Callback when complete or failed
+     * @see HttpTransport#transfer(boolean, FileChannel, long, long, Callback)
+     */
+    public void transfer(FileChannel file, long position, long length, Callback callback)
+    {
+        if (!isCommitted())
+        {
+            callback.failed(new IllegalStateException("!committed"));
+            return;
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("transfer {} position={} length={}", file, position, length);
+
+        _transport.transfer(_request.isHead(), file, position, length, new Callback.Nested(callback)
+        {
+            @Override
+            public void succeeded()
+            {
+                _written += length;
+                super.succeeded();
+            }
+        });
+    }
+
     @Override
     public void resetBuffer()
     {
@@ -929,7 +975,12 @@ public class HttpChannel implements Runnable, HttpOutput.Interceptor
 
     protected void execute(Runnable task)
     {
-        _executor.execute(task);
+        // Tasks executed by the channel may call the application, so
+        // run them on virtual threads if the thread pool supports them.
+        if (_executor instanceof VirtualThreadPool)
+            ((VirtualThreadPool)_executor).executeOnVirtualThread(task);
+        else
+            _executor.execute(task);
     }
 
     public Scheduler getScheduler()
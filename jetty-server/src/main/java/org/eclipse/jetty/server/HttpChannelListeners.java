@@ -193,6 +193,14 @@ public class HttpChannelListeners implements HttpChannel.Listener
         onResponseCommit.onRequest(request);
     }
 
+    /**
+     * @return whether a listener is notified of the response content
+     */
+    public boolean isNotifyingResponseContent()
+    {
+        return onResponseContent != NotifyContent.NOOP;
+    }
+
     @Override
     public void onResponseContent(Request request, ByteBuffer content)
     {
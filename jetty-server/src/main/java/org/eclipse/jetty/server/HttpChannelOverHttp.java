@@ -28,6 +28,7 @@ import org.eclipse.jetty.http.HostPortHttpField;
 import org.eclipse.jetty.http.HttpCompliance;
 import org.eclipse.jetty.http.HttpComplianceSection;
 import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFieldCache;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpGenerator;
 import org.eclipse.jetty.http.HttpHeader;
@@ -517,6 +518,12 @@ public class HttpChannelOverHttp extends HttpChannel implements HttpParser.Reque
         return getHttpConfiguration().getHeaderCacheSize();
     }
 
+    @Override
+    public HttpFieldCache.Shared getSharedHeaderCache()
+    {
+        return _httpConnection.getSharedHeaderCache();
+    }
+
     @Override
     public void onComplianceViolation(HttpCompliance compliance, HttpComplianceSection violation, String reason)
     {
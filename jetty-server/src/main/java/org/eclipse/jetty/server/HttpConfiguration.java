@@ -69,6 +69,7 @@ public class HttpConfiguration implements Dumpable
     private boolean _sendDateHeader = true;
     private boolean _delayDispatchUntilContent = true;
     private boolean _persistentConnectionsEnabled = true;
+    private boolean _useFileTransfer = true;
     private int _maxErrorDispatches = 10;
     private long _minRequestDataRate;
     private long _minResponseDataRate;
@@ -135,6 +136,7 @@ public class HttpConfiguration implements Dumpable
         _sendXPoweredBy = config._sendXPoweredBy;
         _delayDispatchUntilContent = config._delayDispatchUntilContent;
         _persistentConnectionsEnabled = config._persistentConnectionsEnabled;
+        _useFileTransfer = config._useFileTransfer;
         _maxErrorDispatches = config._maxErrorDispatches;
         _minRequestDataRate = config._minRequestDataRate;
         _minResponseDataRate = config._minResponseDataRate;
@@ -356,6 +358,25 @@ public class HttpConfiguration implements Dumpable
         return _delayDispatchUntilContent;
     }
 
+    /**
+     * <p>Sets whether static file content may be sent with {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * avoiding to copy the file bytes into buffers.</p>
+     * <p>The file transfer is only used if the transport supports it (for example plain text HTTP/1.1)
+     * and if the response content is not modified by an {@link HttpOutput.Interceptor} (for example to gzip it).</p>
+     *
+     * @param useFileTransfer true to allow file transfers (default true)
+     */
+    public void setUseFileTransfer(boolean useFileTransfer)
+    {
+        _useFileTransfer = useFileTransfer;
+    }
+
+    @ManagedAttribute("Whether static file content may be sent with FileChannel.transferTo()")
+    public boolean isUseFileTransfer()
+    {
+        return _useFileTransfer;
+    }
+
     /**
      * <p>Sets the {@link Customizer}s that are invoked for every
      * request received.</p>
@@ -668,6 +689,7 @@ public class HttpConfiguration implements Dumpable
             "sendXPoweredBy=" + _sendXPoweredBy,
             "delayDispatchUntilContent=" + _delayDispatchUntilContent,
             "persistentConnectionsEnabled=" + _persistentConnectionsEnabled,
+            "useFileTransfer=" + _useFileTransfer,
             "maxErrorDispatches=" + _maxErrorDispatches,
             "minRequestDataRate=" + _minRequestDataRate,
             "minResponseDataRate=" + _minResponseDataRate,
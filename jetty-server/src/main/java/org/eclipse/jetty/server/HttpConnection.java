@@ -20,6 +20,7 @@ package org.eclipse.jetty.server;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritePendingException;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -27,6 +28,7 @@ import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.http.HttpCompliance;
 import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFieldCache;
 import org.eclipse.jetty.http.HttpGenerator;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpHeaderValue;
@@ -37,6 +39,7 @@ import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.io.AbstractConnection;
 import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.ChannelEndPoint;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.EofException;
@@ -74,6 +77,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
     private final AsyncReadCallback _asyncReadCallback = new AsyncReadCallback();
     private final SendCallback _sendCallback = new SendCallback();
     private final boolean _recordHttpComplianceViolations;
+    private HttpFieldCache.Shared _sharedHeaderCache;
     private final LongAdder bytesIn = new LongAdder();
     private final LongAdder bytesOut = new LongAdder();
 
@@ -122,6 +126,22 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         return _recordHttpComplianceViolations;
     }
 
+    /**
+     * @return the header field cache shared with the other connections of the connector, or null
+     */
+    public HttpFieldCache.Shared getSharedHeaderCache()
+    {
+        return _sharedHeaderCache;
+    }
+
+    /**
+     * @param sharedHeaderCache the header field cache shared with the other connections of the connector, or null
+     */
+    public void setSharedHeaderCache(HttpFieldCache.Shared sharedHeaderCache)
+    {
+        _sharedHeaderCache = sharedHeaderCache;
+    }
+
     protected HttpGenerator newHttpGenerator()
     {
         return new HttpGenerator(_config.getSendServerVersion(), _config.getSendXPoweredBy());
@@ -540,6 +560,42 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         }
     }
 
+    @Override
+    public boolean isFileTransferSupported()
+    {
+        // Only when the bytes can be written as they are to the network,
+        // so not for example when the endpoint is encrypted by SSL, nor
+        // when the endpoint observes the bytes it flushes.
+        EndPoint endPoint = getEndPoint();
+        return endPoint instanceof ChannelEndPoint && ((ChannelEndPoint)endPoint).isTransferFromSupported();
+    }
+
+    @Override
+    public void transfer(boolean head, FileChannel file, long position, long length, Callback callback)
+    {
+        if (!_generator.isCommitted() || _generator.isChunking())
+        {
+            callback.failed(new IllegalStateException("Cannot transfer " + _generator));
+            return;
+        }
+
+        if (head || length == 0)
+        {
+            callback.succeeded();
+            return;
+        }
+
+        ((ChannelEndPoint)getEndPoint()).transferFrom(new Callback.Nested(callback)
+        {
+            @Override
+            public void succeeded()
+            {
+                bytesOut.add(length);
+                super.succeeded();
+            }
+        }, file, position, length);
+    }
+
     HttpInput.Content newContent(ByteBuffer c)
     {
         return new Content(c);
@@ -18,10 +18,16 @@
 
 package org.eclipse.jetty.server;
 
+import java.util.concurrent.atomic.LongAdder;
+
 import org.eclipse.jetty.http.HttpCompliance;
+import org.eclipse.jetty.http.HttpFieldCache;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.annotation.Name;
 
 /**
@@ -29,12 +35,20 @@ import org.eclipse.jetty.util.annotation.Name;
  * <p>Accepts connections either directly or via SSL and/or ALPN chained connection factories.  The accepted
  * {@link HttpConnection}s are configured by a {@link HttpConfiguration} instance that is either created by
  * default or passed in to the constructor.
+ * <p>Each connection parses headers with its own adaptive header field cache, sized by
+ * {@link HttpConfiguration#getHeaderCacheSize()}; optionally, a cache shared by all the
+ * connections of the connector can be enabled with {@link #setSharedHeaderCacheSize(int)}.</p>
  */
+@ManagedObject("HTTP Connection Factory")
 public class HttpConnectionFactory extends AbstractConnectionFactory implements HttpConfiguration.ConnectionFactory
 {
     private final HttpConfiguration _config;
     private HttpCompliance _httpCompliance;
     private boolean _recordHttpComplianceViolations = false;
+    private final LongAdder _headerCacheHits = new LongAdder();
+    private final LongAdder _headerCacheMisses = new LongAdder();
+    private final Connection.Listener _headerCacheListener = new HeaderCacheListener();
+    private HttpFieldCache.Shared _sharedHeaderCache;
 
     public HttpConnectionFactory()
     {
@@ -84,6 +98,8 @@ public class HttpConnectionFactory extends AbstractConnectionFactory implements
     public Connection newConnection(Connector connector, EndPoint endPoint)
     {
         HttpConnection conn = new HttpConnection(_config, connector, endPoint, _httpCompliance, isRecordHttpComplianceViolations());
+        conn.setSharedHeaderCache(_sharedHeaderCache);
+        conn.addListener(_headerCacheListener);
         return configure(conn, connector, endPoint);
     }
 
@@ -91,4 +107,82 @@ public class HttpConnectionFactory extends AbstractConnectionFactory implements
     {
         this._recordHttpComplianceViolations = recordHttpComplianceViolations;
     }
+
+    /**
+     * @return the capacity in characters of the header field cache shared by the connections, or 0 if disabled
+     */
+    @ManagedAttribute("The size of the header field cache shared by the connections")
+    public int getSharedHeaderCacheSize()
+    {
+        HttpFieldCache.Shared shared = _sharedHeaderCache;
+        return shared == null ? 0 : shared.getCapacity();
+    }
+
+    /**
+     * <p>Sets the capacity of a header field cache shared by all the connections,
+     * looked up after the per-connection header field cache, to learn the header
+     * fields that repeat across connections.</p>
+     *
+     * @param size the capacity in characters of the shared header field cache, or 0 to disable it
+     */
+    public void setSharedHeaderCacheSize(int size)
+    {
+        if (isRunning())
+            throw new IllegalStateException(getState());
+        removeBean(_sharedHeaderCache);
+        _sharedHeaderCache = size > 0 ? new HttpFieldCache.Shared(size) : null;
+        addBean(_sharedHeaderCache);
+    }
+
+    /**
+     * @return the header field cache shared by the connections, or null if disabled
+     */
+    public HttpFieldCache.Shared getSharedHeaderCache()
+    {
+        return _sharedHeaderCache;
+    }
+
+    @ManagedAttribute("The number of header field lookups that hit the caches of closed connections")
+    public long getHeaderCacheHits()
+    {
+        return _headerCacheHits.longValue();
+    }
+
+    @ManagedAttribute("The number of header field lookups that missed the caches of closed connections")
+    public long getHeaderCacheMisses()
+    {
+        return _headerCacheMisses.longValue();
+    }
+
+    @ManagedAttribute("The ratio of header field lookups that hit the caches of closed connections")
+    public double getHeaderCacheHitRatio()
+    {
+        long hits = getHeaderCacheHits();
+        long lookups = hits + getHeaderCacheMisses();
+        return lookups == 0 ? 0.0D : (double)hits / lookups;
+    }
+
+    @ManagedOperation(value = "Resets the header cache statistics", impact = "ACTION")
+    public void resetHeaderCacheStatistics()
+    {
+        _headerCacheHits.reset();
+        _headerCacheMisses.reset();
+        HttpFieldCache.Shared shared = _sharedHeaderCache;
+        if (shared != null)
+            shared.resetStatistics();
+    }
+
+    private class HeaderCacheListener extends Connection.Listener.Adapter
+    {
+        @Override
+        public void onClosed(Connection connection)
+        {
+            HttpFieldCache cache = ((HttpConnection)connection).getParser().getHttpFieldCache();
+            if (cache != null)
+            {
+                _headerCacheHits.add(cache.getHits());
+                _headerCacheMisses.add(cache.getMisses());
+            }
+        }
+    }
 }
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritePendingException;
 import java.nio.charset.Charset;
@@ -1080,6 +1081,13 @@ public class HttpOutput extends ServletOutputStream implements Runnable
             ReadableByteChannel rbc = httpContent.getReadableByteChannel();
             if (rbc != null)
             {
+                if (rbc instanceof FileChannel && isFileTransferable(httpContent))
+                {
+                    // Close of the file is done by the callback
+                    new FileChannelTransferringCB((FileChannel)rbc, httpContent.getContentLengthValue(), callback).iterate();
+                    return;
+                }
+
                 // Close of the rbc is done by the async sendContent
                 sendContent(rbc, callback);
                 return;
@@ -1101,6 +1109,30 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * @param httpContent the content to send
+     * @return whether the content can be sent with {@link HttpChannel#transfer(FileChannel, long, long, Callback)}
+     */
+    private boolean isFileTransferable(HttpContent httpContent)
+    {
+        // The content must not be modified by an interceptor.
+        if (_interceptor != _channel)
+            return false;
+        if (!getHttpChannel().getHttpConfiguration().isUseFileTransfer())
+            return false;
+        if (!_channel.getHttpTransport().isFileTransferSupported())
+            return false;
+        // Listeners must be notified of the content bytes.
+        if (_channel.isNotifyingResponseContent())
+            return false;
+        // Small contents are better sent by copying them into a single buffer.
+        long length = httpContent.getContentLengthValue();
+        if (length < getBufferSize())
+            return false;
+        // The response must not be chunked.
+        return _channel.getResponse().getLongContentLength() == length;
+    }
+
     public int getBufferSize()
     {
         return _bufferSize;
@@ -1593,6 +1625,70 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * An iterating callback that commits the response, transfers the content
+     * of a FileChannel with {@link HttpChannel#transfer(FileChannel, long, long, Callback)}
+     * and then completes the response.
+     * The content is not copied into a {@link ByteBuffer}, so that the transport
+     * can use {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+     */
+    private class FileChannelTransferringCB extends IteratingNestedCallback
+    {
+        private final FileChannel _in;
+        private final long _length;
+        private boolean _committed;
+        private boolean _transferred;
+        private boolean _eof;
+
+        public FileChannelTransferringCB(FileChannel in, long length, Callback callback)
+        {
+            super(callback);
+            _in = in;
+            _length = length;
+        }
+
+        @Override
+        protected Action process() throws Exception
+        {
+            if (_eof)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("EOF of {}", this);
+                _in.close();
+                closed();
+                return Action.SUCCEEDED;
+            }
+
+            // Commit the response, so that only content is transferred.
+            if (!_committed)
+            {
+                _committed = true;
+                write(BufferUtil.EMPTY_BUFFER, false, this);
+                return Action.SCHEDULED;
+            }
+
+            if (!_transferred)
+            {
+                _transferred = true;
+                _written += _length;
+                _channel.transfer(_in, _in.position(), _length, this);
+                return Action.SCHEDULED;
+            }
+
+            _eof = true;
+            write(BufferUtil.EMPTY_BUFFER, true, this);
+            return Action.SCHEDULED;
+        }
+
+        @Override
+        public void onCompleteFailure(Throwable x)
+        {
+            abort(x);
+            IO.close(_in);
+            super.onCompleteFailure(x);
+        }
+    }
+
     private static class WriteBlocker extends SharedBlockingCallback
     {
         private final HttpChannel _channel;
@@ -19,6 +19,7 @@
 package org.eclipse.jetty.server;
 
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.util.Callback;
@@ -40,6 +41,32 @@ public interface HttpTransport
      */
     void send(MetaData.Response info, boolean head, ByteBuffer content, boolean lastContent, Callback callback);
 
+    /**
+     * @return true if response content can be sent with {@link #transfer(boolean, FileChannel, long, long, Callback)}
+     */
+    default boolean isFileTransferSupported()
+    {
+        return false;
+    }
+
+    /**
+     * <p>Asynchronous call to send response content directly from a file over the transport.</p>
+     * <p>The response must have already been committed by {@link #send(MetaData.Response, boolean, ByteBuffer, boolean, Callback)}
+     * with a known content length, and the response must be completed with a subsequent call to
+     * {@link #send(MetaData.Response, boolean, ByteBuffer, boolean, Callback)}.</p>
+     *
+     * @param head True if the response if for a HEAD request (and the data should not be sent).
+     * @param file The file to send content from
+     * @param position The position in the file of the first byte to send
+     * @param length The number of bytes to send
+     * @param callback The Callback instance that success or failure of the transfer is notified on
+     * @see #isFileTransferSupported()
+     */
+    default void transfer(boolean head, FileChannel file, long position, long length, Callback callback)
+    {
+        callback.failed(new UnsupportedOperationException());
+    }
+
     /**
      * @return true if responses can be pushed over this transport
      */
@@ -76,6 +76,7 @@ import org.eclipse.jetty.http.HttpURI;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.pathmap.PathSpec;
 import org.eclipse.jetty.io.RuntimeIOException;
 import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.server.handler.ContextHandler.Context;
@@ -191,6 +192,7 @@ public class Request implements HttpServletRequest
     private String _originalURI;
     private String _contextPath;
     private String _servletPath;
+    private PathSpec _servletPathSpec;
     private String _pathInfo;
     private boolean _secure;
     private String _asyncNotSupportedSource = null;
@@ -1493,6 +1495,15 @@ public class Request implements HttpServletRequest
         return _servletPath;
     }
 
+    /**
+     * @return the {@link PathSpec} that mapped the servlet of the request dispatch,
+     * or null if the request was not mapped to a servlet by a path
+     */
+    public PathSpec getServletPathSpec()
+    {
+        return _servletPathSpec;
+    }
+
     public ServletResponse getServletResponse()
     {
         return _channel.getResponse();
@@ -1885,6 +1896,7 @@ public class Request implements HttpServletRequest
         _sessionHandler = null;
         _scope = null;
         _servletPath = null;
+        _servletPathSpec = null;
         _timeStamp = 0;
         _queryParameters = null;
         _contentParameters = null;
@@ -2194,6 +2206,14 @@ public class Request implements HttpServletRequest
         _servletPath = servletPath;
     }
 
+    /**
+     * @param servletPathSpec The {@link PathSpec} that mapped the servlet of the request dispatch
+     */
+    public void setServletPathSpec(PathSpec servletPathSpec)
+    {
+        _servletPathSpec = servletPathSpec;
+    }
+
     /**
      * @param session The session to set.
      */
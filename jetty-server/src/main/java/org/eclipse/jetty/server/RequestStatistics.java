@@ -0,0 +1,288 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http.pathmap.PathSpec;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.component.DumpableCollection;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
+
+/**
+ * <p>A {@link HttpChannel.Listener} that tracks request statistics per context
+ * and per servlet mapping.</p>
+ * <p>Each completed request is attributed to the context path and to the
+ * {@link PathSpec} (or the servlet name, for named dispatches) of the servlet
+ * it was dispatched to, without the need of a {@link org.eclipse.jetty.server.handler.StatisticsHandler}
+ * per context. Requests that are not handled by a servlet are attributed to {@link #UNMAPPED}.</p>
+ * <p>The number of contexts and of mappings tracked is bounded; once a bound is reached,
+ * requests for new contexts or mappings are attributed to {@link #OTHER}.</p>
+ * <p>A single instance is shared by all the connectors of a server with
+ * {@link #addToAllConnectors(Server)}; connectors added later must be given
+ * the instance explicitly.</p>
+ */
+@ManagedObject("Request statistics per context and servlet mapping")
+public class RequestStatistics extends AbstractLifeCycle implements HttpChannel.Listener, Dumpable
+{
+    public static final String UNMAPPED = "<unmapped>";
+    public static final String OTHER = "<other>";
+
+    /**
+     * Adds a shared {@link RequestStatistics} to the server and all its connectors.
+     * Connectors added to the server after this call are not included.
+     *
+     * @param server the server
+     * @return the statistics added
+     */
+    public static RequestStatistics addToAllConnectors(Server server)
+    {
+        RequestStatistics statistics = new RequestStatistics();
+        server.addBean(statistics);
+        for (Connector connector : server.getConnectors())
+        {
+            connector.addBean(statistics, false);
+        }
+        return statistics;
+    }
+
+    private final ConcurrentMap<String, ContextStatistics> _contexts = new ConcurrentHashMap<>();
+    private final AtomicInteger _mappingCount = new AtomicInteger();
+    private int _maxContexts = 64;
+    private int _maxMappings = 256;
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void reset()
+    {
+        _contexts.clear();
+        _mappingCount.set(0);
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        reset();
+    }
+
+    @Override
+    public void onComplete(Request request)
+    {
+        if (!isStarted())
+            return;
+
+        long elapsed = System.currentTimeMillis() - request.getTimeStamp();
+        boolean error = request.getResponse().getStatus() >= 500;
+
+        // The scope of the servlet dispatched to is left on the request until it is recycled.
+        UserIdentity.Scope scope = request.getUserIdentityScope();
+        ContextStatistics context = getContextStatistics(scope == null ? UNMAPPED : scope.getContextPath());
+        context.record(elapsed, error);
+
+        if (scope != null)
+        {
+            PathSpec pathSpec = request.getServletPathSpec();
+            context.getMappingStatistics(pathSpec == null ? scope.getName() : pathSpec.getDeclaration()).record(elapsed, error);
+        }
+    }
+
+    private ContextStatistics getContextStatistics(String contextPath)
+    {
+        ContextStatistics context = _contexts.get(contextPath);
+        if (context == null)
+        {
+            if (_contexts.size() >= _maxContexts)
+                contextPath = OTHER;
+            context = _contexts.computeIfAbsent(contextPath, k -> new ContextStatistics());
+        }
+        return context;
+    }
+
+    /**
+     * @return the statistics per context path
+     */
+    public Map<String, ContextStatistics> getContexts()
+    {
+        return Collections.unmodifiableMap(_contexts);
+    }
+
+    @ManagedAttribute("The statistics per context")
+    public String[] getContextStatistics()
+    {
+        List<String> statistics = new ArrayList<>();
+        _contexts.forEach((contextPath, context) -> statistics.add(contextPath + " " + context));
+        return statistics.toArray(new String[0]);
+    }
+
+    @ManagedAttribute("The statistics per context and servlet mapping")
+    public String[] getMappingStatistics()
+    {
+        List<String> statistics = new ArrayList<>();
+        _contexts.forEach((contextPath, context) ->
+            context._mappings.forEach((mapping, mapped) -> statistics.add(contextPath + " " + mapping + " " + mapped)));
+        return statistics.toArray(new String[0]);
+    }
+
+    @ManagedAttribute("The max number of contexts tracked")
+    public int getMaxContexts()
+    {
+        return _maxContexts;
+    }
+
+    /**
+     * @param maxContexts the max number of contexts tracked, after which requests are attributed to {@link #OTHER}
+     */
+    public void setMaxContexts(int maxContexts)
+    {
+        _maxContexts = maxContexts;
+    }
+
+    @ManagedAttribute("The max number of servlet mappings tracked, across all contexts")
+    public int getMaxMappings()
+    {
+        return _maxMappings;
+    }
+
+    /**
+     * @param maxMappings the max number of servlet mappings tracked across all contexts,
+     * after which requests are attributed to {@link #OTHER}
+     */
+    public void setMaxMappings(int maxMappings)
+    {
+        _maxMappings = maxMappings;
+    }
+
+    @Override
+    public String dump()
+    {
+        return Dumpable.dump(this);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        List<Object> contexts = new ArrayList<>();
+        _contexts.forEach((contextPath, context) ->
+        {
+            List<String> mappings = new ArrayList<>();
+            context._mappings.forEach((mapping, mapped) -> mappings.add(mapping + " " + mapped));
+            contexts.add(new DumpableCollection(contextPath + " " + context, mappings));
+        });
+        Dumpable.dumpObjects(out, indent, this, contexts.toArray());
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{contexts=%d,mappings=%d}", getClass().getSimpleName(), hashCode(), _contexts.size(), _mappingCount.get());
+    }
+
+    /**
+     * <p>The statistics of the requests attributed to a context or to a servlet mapping.</p>
+     */
+    public static class Statistics
+    {
+        private final LongAdder _requests = new LongAdder();
+        private final LongAdder _errors = new LongAdder();
+        private final HistogramStatistic _requestTime = new HistogramStatistic(4);
+
+        void record(long elapsed, boolean error)
+        {
+            _requests.increment();
+            if (error)
+                _errors.increment();
+            _requestTime.record(elapsed);
+        }
+
+        /**
+         * @return the number of requests completed
+         */
+        public long getRequests()
+        {
+            return _requests.sum();
+        }
+
+        /**
+         * @return the number of requests completed with a 5xx response status
+         */
+        public long getErrors()
+        {
+            return _errors.sum();
+        }
+
+        /**
+         * @return the statistics of the time (in ms) of the requests, from their start to their completion
+         */
+        public HistogramStatistic getRequestTime()
+        {
+            return _requestTime;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("requests=%d,errors=%d,mean=%.1f,p50=%d,p99=%d,p999=%d,max=%d", getRequests(), getErrors(),
+                _requestTime.getMean(), _requestTime.getValueAtPercentile(50), _requestTime.getValueAtPercentile(99),
+                _requestTime.getValueAtPercentile(99.9), _requestTime.getMax());
+        }
+    }
+
+    /**
+     * <p>The statistics of the requests attributed to a context, with those of its servlet mappings.</p>
+     */
+    public class ContextStatistics extends Statistics
+    {
+        private final ConcurrentMap<String, Statistics> _mappings = new ConcurrentHashMap<>();
+
+        private Statistics getMappingStatistics(String mapping)
+        {
+            Statistics statistics = _mappings.get(mapping);
+            if (statistics == null)
+            {
+                if (_mappingCount.get() >= _maxMappings)
+                    mapping = OTHER;
+                statistics = _mappings.computeIfAbsent(mapping, k ->
+                {
+                    _mappingCount.incrementAndGet();
+                    return new Statistics();
+                });
+            }
+            return statistics;
+        }
+
+        /**
+         * @return the statistics per servlet mapping, keyed by path spec or servlet name
+         */
+        public Map<String, Statistics> getMappings()
+        {
+            return Collections.unmodifiableMap(_mappings);
+        }
+    }
+}
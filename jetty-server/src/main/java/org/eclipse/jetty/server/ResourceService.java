@@ -225,7 +225,7 @@ public class ResourceService
         String pathInContext = URIUtil.addPaths(servletPath, pathInfo);
 
         boolean endsWithSlash = (pathInfo == null ? (_pathInfoOnly ? "" : servletPath) : pathInfo).endsWith(URIUtil.SLASH);
-        boolean checkPrecompressedVariants = _precompressedFormats.length > 0 && !endsWithSlash && !included && reqRanges == null;
+        boolean checkPrecompressedVariants = !endsWithSlash && !included && reqRanges == null;
 
         HttpContent content = null;
         boolean releaseContent = true;
@@ -268,7 +268,22 @@ public class ResourceService
                 return true;
 
             // Precompressed variant available?
-            Map<CompressedContentFormat, ? extends HttpContent> precompressedContents = checkPrecompressedVariants ? content.getPrecompressedContents() : null;
+            Map<CompressedContentFormat, ? extends HttpContent> precompressedContents = checkPrecompressedVariants && _precompressedFormats.length > 0 ? content.getPrecompressedContents() : null;
+
+            // Compressed variants cached by the GzipHandler?
+            CompressedContentCache compressedContentCache = checkPrecompressedVariants ? (CompressedContentCache)request.getAttribute(CompressedContentCache.ATTRIBUTE) : null;
+            if (compressedContentCache != null)
+            {
+                Map<CompressedContentFormat, HttpContent> cachedContents = compressedContentCache.getPrecompressedContents(CompressedContentCache.getCacheKey(request), content);
+                if (cachedContents != null)
+                {
+                    // Precompressed resources take precedence.
+                    if (precompressedContents != null)
+                        cachedContents.putAll(precompressedContents);
+                    precompressedContents = cachedContents;
+                }
+            }
+
             if (precompressedContents != null && precompressedContents.size() > 0)
             {
                 // Tell caches that response may vary by accept-encoding
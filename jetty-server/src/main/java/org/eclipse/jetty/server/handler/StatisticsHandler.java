@@ -43,7 +43,7 @@ import org.eclipse.jetty.util.component.Graceful;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.statistic.CounterStatistic;
-import org.eclipse.jetty.util.statistic.SampleStatistic;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
 
 @ManagedObject("Request Statistics Gathering")
 public class StatisticsHandler extends HandlerWrapper implements Graceful
@@ -52,10 +52,11 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
     private final AtomicLong _statsStartedAt = new AtomicLong();
 
     private final CounterStatistic _requestStats = new CounterStatistic();
-    private final SampleStatistic _requestTimeStats = new SampleStatistic();
+    private final HistogramStatistic _requestTimeStats = new HistogramStatistic();
     private final CounterStatistic _dispatchedStats = new CounterStatistic();
-    private final SampleStatistic _dispatchedTimeStats = new SampleStatistic();
+    private final HistogramStatistic _dispatchedTimeStats = new HistogramStatistic();
     private final CounterStatistic _asyncWaitStats = new CounterStatistic();
+    private final HistogramStatistic _asyncWaitTimeStats = new HistogramStatistic();
 
     private final LongAdder _asyncDispatches = new LongAdder();
     private final LongAdder _expires = new LongAdder();
@@ -78,8 +79,15 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
 
     private final AtomicBoolean _wrapWarning = new AtomicBoolean();
 
-    private final AsyncListener _onCompletion = new AsyncListener()
+    private class CompletionListener implements AsyncListener
     {
+        private final long _suspended;
+
+        private CompletionListener(long suspended)
+        {
+            _suspended = suspended;
+        }
+
         @Override
         public void onTimeout(AsyncEvent event) throws IOException
         {
@@ -103,7 +111,8 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
             HttpChannelState state = ((AsyncContextEvent)event).getHttpChannelState();
 
             Request request = state.getBaseRequest();
-            final long elapsed = System.currentTimeMillis() - request.getTimeStamp();
+            final long now = System.currentTimeMillis();
+            final long elapsed = now - request.getTimeStamp();
 
             long d = _requestStats.decrement();
             _requestTimeStats.record(elapsed);
@@ -111,6 +120,7 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
             updateResponse(request);
 
             _asyncWaitStats.decrement();
+            _asyncWaitTimeStats.record(now - _suspended);
 
             // If we have no more dispatches, should we signal shutdown?
             if (d == 0)
@@ -120,7 +130,7 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
                     shutdown.succeeded();
             }
         }
-    };
+    }
 
     /**
      * Resets the current request statistics.
@@ -135,6 +145,7 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         _dispatchedStats.reset();
         _dispatchedTimeStats.reset();
         _asyncWaitStats.reset();
+        _asyncWaitTimeStats.reset();
 
         _asyncDispatches.reset();
         _expires.reset();
@@ -193,7 +204,7 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
             {
                 if (state.isInitial())
                 {
-                    state.addListener(_onCompletion);
+                    state.addListener(new CompletionListener(now));
                     _asyncWaitStats.increment();
                 }
             }
@@ -339,6 +350,44 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         return _requestTimeStats.getStdDev();
     }
 
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the time (in milliseconds) within which the given percentile of requests
+     * were handled since {@link #statsReset()} was last called.
+     */
+    public long getRequestTimePercentile(double percentile)
+    {
+        return _requestTimeStats.getValueAtPercentile(percentile);
+    }
+
+    @ManagedAttribute("median time spent handling requests (in ms)")
+    public long getRequestTime50()
+    {
+        return getRequestTimePercentile(50);
+    }
+
+    @ManagedAttribute("99th percentile of time spent handling requests (in ms)")
+    public long getRequestTime99()
+    {
+        return getRequestTimePercentile(99);
+    }
+
+    @ManagedAttribute("99.9th percentile of time spent handling requests (in ms)")
+    public long getRequestTime999()
+    {
+        return getRequestTimePercentile(99.9);
+    }
+
+    /**
+     * @return the distribution of the time (in milliseconds) of the requests
+     * handled since the last invocation of this method
+     */
+    @ManagedOperation(value = "percentiles of time spent handling requests (in ms) since the last invocation of this method", impact = "ACTION")
+    public String getRequestTimeInterval()
+    {
+        return _requestTimeStats.snapshotInterval().toString();
+    }
+
     /**
      * @return the number of dispatches seen by this handler
      * since {@link #statsReset()} was last called, excluding
@@ -416,6 +465,44 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         return _dispatchedTimeStats.getStdDev();
     }
 
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the time (in milliseconds) within which the given percentile of dispatches
+     * were handled since {@link #statsReset()} was last called.
+     */
+    public long getDispatchedTimePercentile(double percentile)
+    {
+        return _dispatchedTimeStats.getValueAtPercentile(percentile);
+    }
+
+    @ManagedAttribute("median time spent in dispatch handling (in ms)")
+    public long getDispatchedTime50()
+    {
+        return getDispatchedTimePercentile(50);
+    }
+
+    @ManagedAttribute("99th percentile of time spent in dispatch handling (in ms)")
+    public long getDispatchedTime99()
+    {
+        return getDispatchedTimePercentile(99);
+    }
+
+    @ManagedAttribute("99.9th percentile of time spent in dispatch handling (in ms)")
+    public long getDispatchedTime999()
+    {
+        return getDispatchedTimePercentile(99.9);
+    }
+
+    /**
+     * @return the distribution of the time (in milliseconds) of the dispatches
+     * handled since the last invocation of this method
+     */
+    @ManagedOperation(value = "percentiles of time spent in dispatch handling (in ms) since the last invocation of this method", impact = "ACTION")
+    public String getDispatchedTimeInterval()
+    {
+        return _dispatchedTimeStats.snapshotInterval().toString();
+    }
+
     /**
      * @return the number of requests handled by this handler
      * since {@link #statsReset()} was last called, including
@@ -448,6 +535,66 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         return (int)_asyncWaitStats.getMax();
     }
 
+    /**
+     * @return the maximum time (in milliseconds) async requests waited between
+     * the end of their initial dispatch and their completion
+     * since {@link #statsReset()} was last called.
+     */
+    @ManagedAttribute("maximum time async requests waited (in ms)")
+    public long getAsyncWaitTimeMax()
+    {
+        return _asyncWaitTimeStats.getMax();
+    }
+
+    /**
+     * @return the mean time (in milliseconds) async requests waited between
+     * the end of their initial dispatch and their completion
+     * since {@link #statsReset()} was last called.
+     */
+    @ManagedAttribute("mean time async requests waited (in ms)")
+    public double getAsyncWaitTimeMean()
+    {
+        return _asyncWaitTimeStats.getMean();
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the time (in milliseconds) within which the given percentile of async requests
+     * completed after their initial dispatch since {@link #statsReset()} was last called.
+     */
+    public long getAsyncWaitTimePercentile(double percentile)
+    {
+        return _asyncWaitTimeStats.getValueAtPercentile(percentile);
+    }
+
+    @ManagedAttribute("median time async requests waited (in ms)")
+    public long getAsyncWaitTime50()
+    {
+        return getAsyncWaitTimePercentile(50);
+    }
+
+    @ManagedAttribute("99th percentile of time async requests waited (in ms)")
+    public long getAsyncWaitTime99()
+    {
+        return getAsyncWaitTimePercentile(99);
+    }
+
+    @ManagedAttribute("99.9th percentile of time async requests waited (in ms)")
+    public long getAsyncWaitTime999()
+    {
+        return getAsyncWaitTimePercentile(99.9);
+    }
+
+    /**
+     * @return the distribution of the time (in milliseconds) async requests
+     * waited, for those completed since the last invocation of this method
+     */
+    @ManagedOperation(value = "percentiles of time async requests waited (in ms) since the last invocation of this method", impact = "ACTION")
+    public String getAsyncWaitTimeInterval()
+    {
+        return _asyncWaitTimeStats.snapshotInterval().toString();
+    }
+
     /**
      * @return the number of requests that have been asynchronously dispatched
      */
@@ -550,6 +697,7 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         sb.append("Mean request time: ").append(getRequestTimeMean()).append("<br />\n");
         sb.append("Max request time: ").append(getRequestTimeMax()).append("<br />\n");
         sb.append("Request time standard deviation: ").append(getRequestTimeStdDev()).append("<br />\n");
+        sb.append("Request time percentiles 50/99/99.9: ").append(getRequestTime50()).append("/").append(getRequestTime99()).append("/").append(getRequestTime999()).append("<br />\n");
 
         sb.append("<h2>Dispatches:</h2>\n");
         sb.append("Total dispatched: ").append(getDispatched()).append("<br />\n");
@@ -559,10 +707,13 @@ public class StatisticsHandler extends HandlerWrapper implements Graceful
         sb.append("Mean dispatched time: ").append(getDispatchedTimeMean()).append("<br />\n");
         sb.append("Max dispatched time: ").append(getDispatchedTimeMax()).append("<br />\n");
         sb.append("Dispatched time standard deviation: ").append(getDispatchedTimeStdDev()).append("<br />\n");
+        sb.append("Dispatched time percentiles 50/99/99.9: ").append(getDispatchedTime50()).append("/").append(getDispatchedTime99()).append("/").append(getDispatchedTime999()).append("<br />\n");
 
         sb.append("Total requests suspended: ").append(getAsyncRequests()).append("<br />\n");
         sb.append("Total requests expired: ").append(getExpires()).append("<br />\n");
         sb.append("Total requests resumed: ").append(getAsyncDispatches()).append("<br />\n");
+        sb.append("Max async wait time: ").append(getAsyncWaitTimeMax()).append("<br />\n");
+        sb.append("Async wait time percentiles 50/99/99.9: ").append(getAsyncWaitTime50()).append("/").append(getAsyncWaitTime99()).append("/").append(getAsyncWaitTime999()).append("<br />\n");
 
         sb.append("<h2>Responses:</h2>\n");
         sb.append("1xx responses: ").append(getResponses1xx()).append("<br />\n");
@@ -0,0 +1,82 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+
+/**
+ * <p>The compressor of the content of a single response.</p>
+ * <p>The methods mirror those of {@link java.util.zip.Deflater}:
+ * input is provided via {@link #setInput(byte[], int, int)} when
+ * {@link #needsInput()} returns true, {@link #finish()} is called after
+ * the last input, and compressed bytes are produced by {@link #encode(byte[], int, int, boolean)}
+ * until {@link #finished()} returns true.
+ * Encoders must produce the complete encoded representation, including
+ * any header and trailer required by the encoding.</p>
+ *
+ * @see ContentEncoding
+ */
+public interface ContentEncoder
+{
+    /**
+     * @return the format, used for the {@code Content-Encoding} header and the ETag suffix
+     */
+    CompressedContentFormat getFormat();
+
+    /**
+     * @return whether more input is needed to produce more output
+     */
+    boolean needsInput();
+
+    /**
+     * @param bytes the bytes to compress
+     * @param offset the offset of the bytes to compress
+     * @param length the number of bytes to compress
+     */
+    void setInput(byte[] bytes, int offset, int length);
+
+    /**
+     * <p>Indicates that the current input is the last one.</p>
+     */
+    void finish();
+
+    /**
+     * @return whether all the output has been produced after {@link #finish()}
+     */
+    boolean finished();
+
+    /**
+     * @param output the array to write the compressed bytes to
+     * @param offset the offset to write the compressed bytes at
+     * @param length the max number of compressed bytes to write
+     * @param flush whether all the pending output should be flushed
+     * @return the number of compressed bytes written
+     */
+    int encode(byte[] output, int offset, int length, boolean flush);
+
+    /**
+     * @return the number of uncompressed bytes consumed
+     */
+    long getBytesIn();
+
+    /**
+     * @return the number of compressed bytes produced
+     */
+    long getBytesOut();
+}
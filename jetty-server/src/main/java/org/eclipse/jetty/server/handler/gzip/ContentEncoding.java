@@ -0,0 +1,152 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>A content encoding that {@link GzipHandler} may use to compress responses.</p>
+ * <p>Implementations provide {@link ContentEncoder}s for one encoding, typically
+ * from a pool analogous to {@link org.eclipse.jetty.util.compression.DeflaterPool},
+ * and may be pure Java or wrap a native library.
+ * Implementations that have a public no-argument constructor and are listed in
+ * {@code META-INF/services/org.eclipse.jetty.server.handler.gzip.ContentEncoding}
+ * are discovered by {@link GzipHandler}, so that encodings such as {@code br} or
+ * {@code zstd} can be added just by putting their jar in the classpath.</p>
+ * <p>The bytes consumed and produced by the encoders are recorded when they are
+ * {@link #release(ContentEncoder) released}.</p>
+ */
+@ManagedObject("A content encoding")
+public abstract class ContentEncoding extends ContainerLifeCycle
+{
+    private static final Logger LOG = Log.getLogger(ContentEncoding.class);
+
+    private final LongAdder _responses = new LongAdder();
+    private final LongAdder _bytesIn = new LongAdder();
+    private final LongAdder _bytesOut = new LongAdder();
+    private final CompressedContentFormat _format;
+
+    protected ContentEncoding(CompressedContentFormat format)
+    {
+        _format = format;
+    }
+
+    /**
+     * @return the content encodings discovered via {@link ServiceLoader}
+     */
+    public static List<ContentEncoding> discover()
+    {
+        List<ContentEncoding> encodings = new ArrayList<>();
+        Iterator<ContentEncoding> iterator = ServiceLoader.load(ContentEncoding.class).iterator();
+        while (iterator.hasNext())
+        {
+            try
+            {
+                encodings.add(iterator.next());
+            }
+            catch (Error | RuntimeException x)
+            {
+                // For example, a native library that is not available.
+                LOG.debug(x);
+            }
+        }
+        return encodings;
+    }
+
+    public CompressedContentFormat getFormat()
+    {
+        return _format;
+    }
+
+    /**
+     * @return the encoding token, as used in the {@code Accept-Encoding} and {@code Content-Encoding} headers
+     */
+    @ManagedAttribute("The encoding token")
+    public String getEncoding()
+    {
+        return _format._encoding;
+    }
+
+    /**
+     * @return a new or pooled encoder, or null if no encoder is available
+     */
+    public abstract ContentEncoder acquire();
+
+    /**
+     * <p>Returns the given encoder, after it has encoded a response, to this content encoding.</p>
+     *
+     * @param encoder the encoder obtained from {@link #acquire()}
+     */
+    public void release(ContentEncoder encoder)
+    {
+        _responses.increment();
+        _bytesIn.add(encoder.getBytesIn());
+        _bytesOut.add(encoder.getBytesOut());
+        recycle(encoder);
+    }
+
+    /**
+     * @param encoder the encoder to reset and pool, or to dispose
+     */
+    protected abstract void recycle(ContentEncoder encoder);
+
+    @ManagedAttribute("The number of responses encoded")
+    public long getResponses()
+    {
+        return _responses.longValue();
+    }
+
+    @ManagedAttribute("The number of bytes before encoding")
+    public long getBytesIn()
+    {
+        return _bytesIn.longValue();
+    }
+
+    @ManagedAttribute("The number of bytes after encoding")
+    public long getBytesOut()
+    {
+        return _bytesOut.longValue();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        _responses.reset();
+        _bytesIn.reset();
+        _bytesOut.reset();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,%s,in=%d,out=%d}", getClass().getSimpleName(), hashCode(), getEncoding(), getState(), getBytesIn(), getBytesOut());
+    }
+}
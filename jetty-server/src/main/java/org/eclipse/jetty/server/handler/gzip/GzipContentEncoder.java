@@ -0,0 +1,144 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+
+/**
+ * <p>A {@link ContentEncoder} that produces the gzip format
+ * (header, deflated content, CRC and size trailer) with a
+ * {@link Deflater} created with {@code nowrap=true}.</p>
+ */
+public class GzipContentEncoder implements ContentEncoder
+{
+    private static final byte[] GZIP_HEADER = new byte[]{(byte)0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final CRC32 _crc = new CRC32();
+    private final byte[] _trailer = new byte[8];
+    private final Deflater _deflater;
+    private int _header;
+    private int _trailed = -1;
+    private long _bytesIn;
+    private long _bytesOut;
+
+    public GzipContentEncoder(Deflater deflater)
+    {
+        _deflater = deflater;
+    }
+
+    public Deflater getDeflater()
+    {
+        return _deflater;
+    }
+
+    @Override
+    public CompressedContentFormat getFormat()
+    {
+        return CompressedContentFormat.GZIP;
+    }
+
+    @Override
+    public boolean needsInput()
+    {
+        return _deflater.needsInput();
+    }
+
+    @Override
+    public void setInput(byte[] bytes, int offset, int length)
+    {
+        _crc.update(bytes, offset, length);
+        _deflater.setInput(bytes, offset, length);
+        _bytesIn += length;
+    }
+
+    @Override
+    public void finish()
+    {
+        _deflater.finish();
+    }
+
+    @Override
+    public boolean finished()
+    {
+        return _trailed == _trailer.length;
+    }
+
+    @Override
+    public int encode(byte[] output, int offset, int length, boolean flush)
+    {
+        int produced = 0;
+
+        if (_header < GZIP_HEADER.length)
+        {
+            int l = Math.min(length, GZIP_HEADER.length - _header);
+            System.arraycopy(GZIP_HEADER, _header, output, offset, l);
+            _header += l;
+            produced += l;
+        }
+
+        if (produced < length && !_deflater.finished())
+            produced += _deflater.deflate(output, offset + produced, length - produced, flush ? Deflater.SYNC_FLUSH : Deflater.NO_FLUSH);
+
+        if (_deflater.finished())
+        {
+            if (_trailed < 0)
+            {
+                putInt(_trailer, 0, (int)_crc.getValue());
+                putInt(_trailer, 4, (int)_bytesIn);
+                _trailed = 0;
+            }
+            int l = Math.min(length - produced, _trailer.length - _trailed);
+            System.arraycopy(_trailer, _trailed, output, offset + produced, l);
+            _trailed += l;
+            produced += l;
+        }
+
+        _bytesOut += produced;
+        return produced;
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value)
+    {
+        bytes[offset] = (byte)value;
+        bytes[offset + 1] = (byte)(value >>> 8);
+        bytes[offset + 2] = (byte)(value >>> 16);
+        bytes[offset + 3] = (byte)(value >>> 24);
+    }
+
+    @Override
+    public long getBytesIn()
+    {
+        return _bytesIn;
+    }
+
+    @Override
+    public long getBytesOut()
+    {
+        return _bytesOut;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,in=%d,out=%d}", getClass().getSimpleName(), hashCode(), _deflater, _bytesIn, _bytesOut);
+    }
+}
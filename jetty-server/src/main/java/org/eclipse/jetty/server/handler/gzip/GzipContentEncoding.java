@@ -0,0 +1,57 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+
+/**
+ * <p>The gzip {@link ContentEncoding}, backed by a {@link DeflaterPool}.</p>
+ */
+public class GzipContentEncoding extends ContentEncoding
+{
+    private final DeflaterPool _deflaterPool;
+
+    public GzipContentEncoding(DeflaterPool deflaterPool)
+    {
+        super(CompressedContentFormat.GZIP);
+        _deflaterPool = deflaterPool;
+        addBean(deflaterPool);
+    }
+
+    public DeflaterPool getDeflaterPool()
+    {
+        return _deflaterPool;
+    }
+
+    @Override
+    public ContentEncoder acquire()
+    {
+        Deflater deflater = _deflaterPool.acquire();
+        return deflater == null ? null : new GzipContentEncoder(deflater);
+    }
+
+    @Override
+    protected void recycle(ContentEncoder encoder)
+    {
+        _deflaterPool.release(((GzipContentEncoder)encoder).getDeflater());
+    }
+}
@@ -20,6 +20,8 @@ package org.eclipse.jetty.server.handler.gzip;
 
 import java.util.zip.Deflater;
 
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.server.CompressedContentCache;
 import org.eclipse.jetty.server.Request;
 
 public interface GzipFactory
@@ -29,4 +31,44 @@ public interface GzipFactory
     boolean isMimeTypeGzipable(String mimetype);
 
     void recycle(Deflater deflater);
+
+    /**
+     * <p>Returns the encoder to compress the response to the given request.</p>
+     * <p>The default implementation wraps the {@link #getDeflater(Request, long) deflater}
+     * in a {@link GzipContentEncoder}.</p>
+     *
+     * @param request the request
+     * @param contentLength the response content length, or -1 if unknown
+     * @return the encoder, or null if the response must not be compressed
+     */
+    default ContentEncoder getContentEncoder(Request request, long contentLength)
+    {
+        Deflater deflater = getDeflater(request, contentLength);
+        return deflater == null ? null : new GzipContentEncoder(deflater);
+    }
+
+    /**
+     * @param encoder the encoder obtained from {@link #getContentEncoder(Request, long)}
+     */
+    default void recycle(ContentEncoder encoder)
+    {
+        if (encoder instanceof GzipContentEncoder)
+            recycle(((GzipContentEncoder)encoder).getDeflater());
+    }
+
+    /**
+     * @return the formats that the encoders of this factory may produce
+     */
+    default CompressedContentFormat[] getCompressedContentFormats()
+    {
+        return new CompressedContentFormat[]{CompressedContentFormat.GZIP};
+    }
+
+    /**
+     * @return the cache of compressed content, or null if compressed content is not cached
+     */
+    default CompressedContentCache getCompressedContentCache()
+    {
+        return null;
+    }
 }
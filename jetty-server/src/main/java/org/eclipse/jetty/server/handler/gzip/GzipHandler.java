@@ -20,10 +20,14 @@ package org.eclipse.jetty.server.handler.gzip;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToIntFunction;
 import java.util.regex.Pattern;
 import java.util.zip.Deflater;
 
@@ -42,6 +46,7 @@ import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.http.pathmap.PathSpecSet;
+import org.eclipse.jetty.server.CompressedContentCache;
 import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.HandlerWrapper;
@@ -102,6 +107,22 @@ import org.eclipse.jetty.util.log.Logger;
  * </li>
  * </ol>
  * <p>
+ * Responses are compressed with gzip by default. Other encodings, such as {@code br} or
+ * {@code zstd}, can be provided by {@link ContentEncoding} implementations that are either
+ * {@link #addContentEncoding(ContentEncoding) added} or discovered via {@link java.util.ServiceLoader}.
+ * The encoding of a response is then selected by the {@code Accept-Encoding} quality values,
+ * and encodings with equal quality values are preferred in the order they were added,
+ * discovered encodings next and gzip last.
+ * </p>
+ * <p>
+ * If a {@link CompressedContentCache} is {@link #setCompressedContentCache(CompressedContentCache) set},
+ * the compressed content of {@code GET} responses with status 200 and an ETag is cached and replayed
+ * for later responses with the same path, ETag and encoding, without compressing it again.
+ * The cache is also made available to the {@link org.eclipse.jetty.server.ResourceService}
+ * as the {@link CompressedContentCache#ATTRIBUTE} request attribute, so that the
+ * cached content is served like precompressed content.
+ * </p>
+ * <p>
  * When you encounter a configurable filter in the GzipHandler (method, paths, user-agent,
  * mime-types, etc) that has both Included and Excluded values, note that the Included
  * values always win over the Excluded values.
@@ -164,6 +185,12 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
 
     private int _poolCapacity = -1;
     private DeflaterPool _deflaterPool = null;
+    private final List<ContentEncoding> _contentEncodings = new CopyOnWriteArrayList<>();
+    private boolean _discoverContentEncodings = true;
+    private ContentEncoding[] _encodings = new ContentEncoding[0];
+    private CompressedContentFormat[] _formats = CompressedContentFormat.NONE;
+    private ToIntFunction<String> _encodingOrder;
+    private CompressedContentCache _compressedContentCache;
 
     private int _minGzipSize = DEFAULT_MIN_GZIP_SIZE;
     private int _compressionLevel = Deflater.DEFAULT_COMPRESSION;
@@ -418,14 +445,110 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
         }
     }
 
+    /**
+     * <p>Adds a content encoding that this handler may use to compress responses,
+     * in addition to gzip.</p>
+     *
+     * @param encoding the content encoding to add
+     */
+    public void addContentEncoding(ContentEncoding encoding)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _contentEncodings.add(encoding);
+    }
+
+    /**
+     * @return the content encodings in use, in order of preference
+     */
+    public List<ContentEncoding> getContentEncodings()
+    {
+        return Arrays.asList(_encodings);
+    }
+
+    /**
+     * @return whether the {@link ContentEncoding}s available via {@link java.util.ServiceLoader} are used
+     */
+    public boolean isDiscoverContentEncodings()
+    {
+        return _discoverContentEncodings;
+    }
+
+    /**
+     * @param discover whether the {@link ContentEncoding}s available via {@link java.util.ServiceLoader} are used
+     */
+    public void setDiscoverContentEncodings(boolean discover)
+    {
+        _discoverContentEncodings = discover;
+    }
+
+    @Override
+    public CompressedContentCache getCompressedContentCache()
+    {
+        return _compressedContentCache;
+    }
+
+    /**
+     * @param cache the cache of compressed content, or null to not cache compressed content
+     */
+    public void setCompressedContentCache(CompressedContentCache cache)
+    {
+        updateBean(_compressedContentCache, cache);
+        _compressedContentCache = cache;
+    }
+
     @Override
     protected void doStart() throws Exception
     {
         _deflaterPool = newDeflaterPool(_poolCapacity);
         _vary = (_agentPatterns.size() > 0) ? GzipHttpOutputInterceptor.VARY_ACCEPT_ENCODING_USER_AGENT : GzipHttpOutputInterceptor.VARY_ACCEPT_ENCODING;
+
+        List<ContentEncoding> encodings = new ArrayList<>(_contentEncodings);
+        if (_discoverContentEncodings)
+            encodings.addAll(ContentEncoding.discover());
+        encodings.add(new GzipContentEncoding(_deflaterPool));
+
+        List<ContentEncoding> unique = new ArrayList<>();
+        for (ContentEncoding encoding : encodings)
+        {
+            if (unique.stream().noneMatch(e -> e.getEncoding().equalsIgnoreCase(encoding.getEncoding())))
+                unique.add(encoding);
+        }
+        String[] names = new String[unique.size()];
+        _encodings = new ContentEncoding[unique.size()];
+        _formats = new CompressedContentFormat[unique.size()];
+        for (int i = 0; i < _encodings.length; ++i)
+        {
+            _encodings[i] = unique.get(i);
+            _formats[i] = _encodings[i].getFormat();
+            names[i] = _encodings[i].getEncoding();
+            addBean(_encodings[i]);
+        }
+        _encodingOrder = value ->
+        {
+            for (int i = 0; i < names.length; ++i)
+            {
+                if (names[i].equalsIgnoreCase(value))
+                    return names.length - i;
+            }
+            return 0;
+        };
+
         super.doStart();
     }
 
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        for (ContentEncoding encoding : _encodings)
+        {
+            removeBean(encoding);
+        }
+        _encodings = new ContentEncoding[0];
+        _formats = CompressedContentFormat.NONE;
+    }
+
     /**
      * @deprecated feature will be removed in Jetty 10.x, with no replacement.
      */
@@ -467,6 +590,103 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
         return _deflaterPool.acquire();
     }
 
+    @Override
+    public ContentEncoder getContentEncoder(Request request, long contentLength)
+    {
+        HttpFields httpFields = request.getHttpFields();
+        String ua = httpFields.get(HttpHeader.USER_AGENT);
+        if (ua != null && !isAgentGzipable(ua))
+        {
+            LOG.debug("{} excluded user agent {}", this, request);
+            return null;
+        }
+
+        if (contentLength >= 0 && contentLength < _minGzipSize)
+        {
+            LOG.debug("{} excluded minGzipSize {}", this, request);
+            return null;
+        }
+
+        ContentEncoding encoding = getContentEncoding(request);
+        if (encoding == null)
+        {
+            LOG.debug("{} excluded not accepted encoding {}", this, request);
+            return null;
+        }
+
+        return encoding.acquire();
+    }
+
+    /**
+     * <p>Selects the content encoding of the response by the quality values
+     * of the {@code Accept-Encoding} request header.</p>
+     *
+     * @param request the request
+     * @return the content encoding, or null if none of the content encodings is acceptable
+     */
+    protected ContentEncoding getContentEncoding(Request request)
+    {
+        ContentEncoding[] encodings = _encodings;
+        HttpFields httpFields = request.getHttpFields();
+
+        // The common case of gzip only does not need the quality values.
+        if (encodings.length == 1)
+            return httpFields.contains(HttpHeader.ACCEPT_ENCODING, encodings[0].getEncoding()) ? encodings[0] : null;
+
+        for (String value : httpFields.getQualityCSV(HttpHeader.ACCEPT_ENCODING, _encodingOrder))
+        {
+            if ("identity".equalsIgnoreCase(value))
+                return null;
+            if ("*".equals(value))
+            {
+                // Any encoding not explicitly listed.
+                for (ContentEncoding encoding : encodings)
+                {
+                    if (!isListed(httpFields, encoding.getEncoding()))
+                        return encoding;
+                }
+                continue;
+            }
+            for (ContentEncoding encoding : encodings)
+            {
+                if (encoding.getEncoding().equalsIgnoreCase(value))
+                    return encoding;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isListed(HttpFields httpFields, String encoding)
+    {
+        for (String value : httpFields.getCSV(HttpHeader.ACCEPT_ENCODING, false))
+        {
+            int semicolon = value.indexOf(';');
+            String token = semicolon < 0 ? value : value.substring(0, semicolon);
+            if (token.trim().equalsIgnoreCase(encoding))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void recycle(ContentEncoder encoder)
+    {
+        for (ContentEncoding encoding : _encodings)
+        {
+            if (encoding.getFormat().equals(encoder.getFormat()))
+            {
+                encoding.release(encoder);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public CompressedContentFormat[] getCompressedContentFormats()
+    {
+        return _formats;
+    }
+
     /**
      * Get the current filter list of excluded User-Agent patterns
      *
@@ -692,17 +912,21 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
             HttpField field = fields.next();
             if (field.getHeader() == HttpHeader.IF_NONE_MATCH || field.getHeader() == HttpHeader.IF_MATCH)
             {
-                String etag = field.getValue();
-                int i = etag.indexOf(CompressedContentFormat.GZIP._etagQuote);
-                if (i > 0)
+                String original = field.getValue();
+                String etag = original;
+                for (CompressedContentFormat format : _formats)
                 {
-                    baseRequest.setAttribute("o.e.j.s.h.gzip.GzipHandler.etag", etag);
-                    while (i >= 0)
+                    int i = etag.indexOf(format._etagQuote);
+                    while (i > 0)
                     {
-                        etag = etag.substring(0, i) + etag.substring(i + CompressedContentFormat.GZIP._etag.length());
-                        i = etag.indexOf(CompressedContentFormat.GZIP._etagQuote, i);
+                        etag = etag.substring(0, i) + etag.substring(i + format._etag.length());
+                        i = etag.indexOf(format._etagQuote, i);
                     }
+                }
 
+                if (!etag.equals(original))
+                {
+                    baseRequest.setAttribute("o.e.j.s.h.gzip.GzipHandler.etag", original);
                     fields.set(new HttpField(field.getHeader(), etag));
                 }
             }
@@ -759,6 +983,8 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
         try
         {
             // install interceptor and handle
+            if (_compressedContentCache != null)
+                baseRequest.setAttribute(CompressedContentCache.ATTRIBUTE, _compressedContentCache);
             out.setInterceptor(new GzipHttpOutputInterceptor(this, getVaryField(), baseRequest.getHttpChannel(), origInterceptor, isSyncFlush()));
 
             if (_handler != null)
@@ -21,41 +21,39 @@ package org.eclipse.jetty.server.handler.gzip;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritePendingException;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.zip.CRC32;
-import java.util.zip.Deflater;
 
+import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.server.CompressedContentCache;
 import org.eclipse.jetty.server.HttpChannel;
 import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.ByteArrayOutputStream2;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IteratingNestedCallback;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 
-import static org.eclipse.jetty.http.CompressedContentFormat.GZIP;
-
 public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
 {
     public static Logger LOG = Log.getLogger(GzipHttpOutputInterceptor.class);
-    private static final byte[] GZIP_HEADER = new byte[]{(byte)0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
 
     public static final HttpField VARY_ACCEPT_ENCODING_USER_AGENT = new PreEncodedHttpField(HttpHeader.VARY, HttpHeader.ACCEPT_ENCODING + ", " + HttpHeader.USER_AGENT);
     public static final HttpField VARY_ACCEPT_ENCODING = new PreEncodedHttpField(HttpHeader.VARY, HttpHeader.ACCEPT_ENCODING.asString());
 
     private enum GZState
     {
-        MIGHT_COMPRESS, NOT_COMPRESSING, COMMITTING, COMPRESSING, FINISHED
+        MIGHT_COMPRESS, NOT_COMPRESSING, COMMITTING, COMPRESSING, CACHED, FINISHED
     }
 
     private final AtomicReference<GZState> _state = new AtomicReference<>(GZState.MIGHT_COMPRESS);
-    private final CRC32 _crc = new CRC32();
 
     private final GzipFactory _factory;
     private final HttpOutput.Interceptor _interceptor;
@@ -64,8 +62,12 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
     private final int _bufferSize;
     private final boolean _syncFlush;
 
-    private Deflater _deflater;
+    private ContentEncoder _encoder;
     private ByteBuffer _buffer;
+    private CompressedContentCache _cache;
+    private String _cacheKey;
+    private String _cacheETag;
+    private ByteArrayOutputStream2 _cacheContent;
 
     public GzipHttpOutputInterceptor(GzipFactory factory, HttpChannel channel, HttpOutput.Interceptor next, boolean syncFlush)
     {
@@ -120,30 +122,18 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
                 gzip(content, complete, callback);
                 break;
 
+            case CACHED:
+                // The cached content has already been written.
+                BufferUtil.clear(content);
+                callback.succeeded();
+                break;
+
             default:
                 callback.failed(new IllegalStateException("state=" + _state.get()));
                 break;
         }
     }
 
-    private void addTrailer()
-    {
-        int i = _buffer.limit();
-        _buffer.limit(i + 8);
-
-        int v = (int)_crc.getValue();
-        _buffer.put(i++, (byte)(v & 0xFF));
-        _buffer.put(i++, (byte)((v >>> 8) & 0xFF));
-        _buffer.put(i++, (byte)((v >>> 16) & 0xFF));
-        _buffer.put(i++, (byte)((v >>> 24) & 0xFF));
-
-        v = _deflater.getTotalIn();
-        _buffer.put(i++, (byte)(v & 0xFF));
-        _buffer.put(i++, (byte)((v >>> 8) & 0xFF));
-        _buffer.put(i++, (byte)((v >>> 16) & 0xFF));
-        _buffer.put(i++, (byte)((v >>> 24) & 0xFF));
-    }
-
     private void gzip(ByteBuffer content, boolean complete, final Callback callback)
     {
         if (content.hasRemaining() || complete)
@@ -168,9 +158,15 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
                 String responseEtag = response.getHttpFields().get(HttpHeader.ETAG);
                 if (requestEtags != null && responseEtag != null)
                 {
-                    String responseEtagGzip = etagGzip(responseEtag);
-                    if (requestEtags.contains(responseEtagGzip))
-                        response.getHttpFields().put(HttpHeader.ETAG, responseEtagGzip);
+                    for (CompressedContentFormat format : _factory.getCompressedContentFormats())
+                    {
+                        String responseEtagCompressed = etag(responseEtag, format);
+                        if (requestEtags.contains(responseEtagCompressed))
+                        {
+                            response.getHttpFields().put(HttpHeader.ETAG, responseEtagCompressed);
+                            break;
+                        }
+                    }
                 }
             }
 
@@ -206,6 +202,8 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
         // Are we the thread that commits?
         if (_state.compareAndSet(GZState.MIGHT_COMPRESS, GZState.COMMITTING))
         {
+            boolean cacheable = isCacheable(response);
+
             // We are varying the response due to accept encoding header.
             if (_vary != null)
             {
@@ -219,28 +217,49 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
             if (contentLength < 0 && complete)
                 contentLength = content.remaining();
 
-            _deflater = _factory.getDeflater(_channel.getRequest(), contentLength);
+            _encoder = _factory.getContentEncoder(_channel.getRequest(), contentLength);
 
-            if (_deflater == null)
+            if (_encoder == null)
             {
-                LOG.debug("{} exclude no deflater", this);
+                LOG.debug("{} exclude no encoder", this);
                 _state.set(GZState.NOT_COMPRESSING);
                 _interceptor.write(content, complete, callback);
                 return;
             }
 
-            fields.put(GZIP._contentEncoding);
-            _crc.reset();
-            _buffer = _channel.getByteBufferPool().acquire(_bufferSize, false);
-            BufferUtil.fill(_buffer, GZIP_HEADER, 0, GZIP_HEADER.length);
+            CompressedContentFormat format = _encoder.getFormat();
+            fields.put(format._contentEncoding);
 
             // Adjust headers
             response.setContentLength(-1);
             String etag = fields.get(HttpHeader.ETAG);
             if (etag != null)
-                fields.put(HttpHeader.ETAG, etagGzip(etag));
+                fields.put(HttpHeader.ETAG, etag(etag, format));
 
-            LOG.debug("{} compressing {}", this, _deflater);
+            // Is the compressed content cached?
+            _cache = cacheable && isStrong(etag) ? _factory.getCompressedContentCache() : null;
+            if (_cache != null)
+            {
+                String key = CompressedContentCache.getCacheKey(_channel.getRequest());
+                ByteBuffer cached = _cache.get(key, etag, format);
+                if (cached != null)
+                {
+                    LOG.debug("{} cached {}", this, key);
+                    _factory.recycle(_encoder);
+                    _encoder = null;
+                    _state.set(GZState.CACHED);
+                    BufferUtil.clear(content);
+                    _interceptor.write(cached, true, callback);
+                    return;
+                }
+                _cacheKey = key;
+                _cacheETag = etag;
+                _cacheContent = new ByteArrayOutputStream2();
+            }
+
+            _buffer = _channel.getByteBufferPool().acquire(_bufferSize, false);
+
+            LOG.debug("{} compressing {}", this, _encoder);
             _state.set(GZState.COMPRESSING);
 
             gzip(content, complete, callback);
@@ -249,10 +268,27 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
             callback.failed(new WritePendingException());
     }
 
-    private String etagGzip(String etag)
+    private boolean isCacheable(Response response)
+    {
+        if (response.getStatus() != 200 || !HttpMethod.GET.is(_channel.getRequest().getMethod()))
+            return false;
+        HttpFields fields = response.getHttpFields();
+        // The cache does not know which other request headers the content depends on.
+        if (fields.contains(HttpHeader.VARY))
+            return false;
+        return !fields.contains(HttpHeader.CACHE_CONTROL, "no-store") && !fields.contains(HttpHeader.CACHE_CONTROL, "private");
+    }
+
+    private static boolean isStrong(String etag)
+    {
+        // Only a strong ETag guarantees that the content bytes are identical.
+        return etag != null && !etag.startsWith("W/");
+    }
+
+    private String etag(String etag, CompressedContentFormat format)
     {
         int end = etag.length() - 1;
-        return (etag.charAt(end) == '"') ? etag.substring(0, end) + GZIP._etag + '"' : etag + GZIP._etag;
+        return (etag.charAt(end) == '"') ? etag.substring(0, end) + format._etag + '"' : etag + format._etag;
     }
 
     public void noCompression()
@@ -282,6 +318,7 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
             switch (_state.get())
             {
                 case COMPRESSING:
+                case CACHED:
                 case NOT_COMPRESSING:
                     return;
 
@@ -317,25 +354,26 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
         @Override
         protected void onCompleteFailure(Throwable x)
         {
-            _factory.recycle(_deflater);
-            _deflater = null;
+            _factory.recycle(_encoder);
+            _encoder = null;
+            _cacheContent = null;
             super.onCompleteFailure(x);
         }
 
         @Override
         protected Action process() throws Exception
         {
-            if (_deflater == null)
+            if (_encoder == null)
                 return Action.SUCCEEDED;
 
-            if (_deflater.needsInput())
+            if (_encoder.needsInput())
             {
                 if (BufferUtil.isEmpty(_content))
                 {
-                    if (_deflater.finished())
+                    if (_encoder.finished())
                     {
-                        _factory.recycle(_deflater);
-                        _deflater = null;
+                        _factory.recycle(_encoder);
+                        _encoder = null;
                         _channel.getByteBufferPool().release(_buffer);
                         _buffer = null;
                         if (_copy != null)
@@ -351,7 +389,7 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
                         return Action.SUCCEEDED;
                     }
 
-                    _deflater.finish();
+                    _encoder.finish();
                 }
                 else if (_content.hasArray())
                 {
@@ -360,10 +398,9 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
                     int len = _content.remaining();
                     BufferUtil.clear(_content);
 
-                    _crc.update(array, off, len);
-                    _deflater.setInput(array, off, len);
+                    _encoder.setInput(array, off, len);
                     if (_last)
-                        _deflater.finish();
+                        _encoder.finish();
                 }
                 else
                 {
@@ -379,25 +416,34 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
                     int off = _copy.arrayOffset() + _copy.position();
                     int len = _copy.remaining();
 
-                    _crc.update(array, off, len);
-                    _deflater.setInput(array, off, len);
+                    _encoder.setInput(array, off, len);
                     if (_last && BufferUtil.isEmpty(_content))
-                        _deflater.finish();
+                        _encoder.finish();
                 }
             }
 
             BufferUtil.compact(_buffer);
             int off = _buffer.arrayOffset() + _buffer.limit();
-            int len = _buffer.capacity() - _buffer.limit() - (_last ? 8 : 0);
+            int len = _buffer.capacity() - _buffer.limit();
             if (len > 0)
             {
-                int produced = _deflater.deflate(_buffer.array(), off, len, _syncFlush ? Deflater.SYNC_FLUSH : Deflater.NO_FLUSH);
+                int produced = _encoder.encode(_buffer.array(), off, len, _syncFlush);
                 _buffer.limit(_buffer.limit() + produced);
+                if (_cacheContent != null)
+                {
+                    if (_cacheContent.size() + produced > _cache.getMaxEntrySize())
+                        _cacheContent = null;
+                    else
+                        _cacheContent.write(_buffer.array(), off, produced);
+                }
             }
-            boolean finished = _deflater.finished();
+            boolean finished = _encoder.finished();
 
-            if (finished)
-                addTrailer();
+            if (finished && _cacheContent != null)
+            {
+                _cache.put(_cacheKey, _cacheETag, _encoder.getFormat(), ByteBuffer.wrap(_cacheContent.getBuf(), 0, _cacheContent.size()));
+                _cacheContent = null;
+            }
 
             _interceptor.write(_buffer, finished, this);
             return Action.SCHEDULED;
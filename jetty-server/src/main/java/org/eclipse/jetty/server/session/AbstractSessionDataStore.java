@@ -18,6 +18,7 @@
 
 package org.eclipse.jetty.server.session;
 
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -40,6 +41,7 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
     protected int _gracePeriodSec = 60 * 60; //default of 1hr 
     protected long _lastExpiryCheckTime = 0; //last time in ms that getExpired was called
     protected int _savePeriodSec = 0; //time in sec between saves
+    protected SessionDataCodec _sessionDataCodec = new JavaSerializationSessionDataCodec(); //converts attributes to and from bytes
 
     /**
      * Store the session data persistently.
@@ -51,6 +53,23 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
      */
     public abstract void doStore(String id, SessionData data, long lastSaveTime) throws Exception;
 
+    /**
+     * Store several sessions persistently, as done by {@link WriteBehindSessionDataStore}.
+     * By default each session is stored with {@link #doStore(String, SessionData, long)};
+     * subclasses may override to store all the sessions in fewer round trips.
+     *
+     * @param sessions the sessions to store, mapped to the time of their previous save or 0 if never saved
+     * @throws Exception if unable to store the sessions
+     */
+    public void doStoreAll(Map<SessionData, Long> sessions) throws Exception
+    {
+        for (Map.Entry<SessionData, Long> entry : sessions.entrySet())
+        {
+            SessionData data = entry.getKey();
+            doStore(data.getId(), data, entry.getValue());
+        }
+    }
+
     /**
      * Load the session from persistent store.
      *
@@ -235,6 +254,26 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
         _savePeriodSec = savePeriodSec;
     }
 
+    /**
+     * @return the codec used to convert the session attributes to and from bytes
+     */
+    @ManagedAttribute(value = "codec for session attributes", readonly = true)
+    public SessionDataCodec getSessionDataCodec()
+    {
+        return _sessionDataCodec;
+    }
+
+    /**
+     * The codec used to convert the session attributes to and from bytes,
+     * by default {@link JavaSerializationSessionDataCodec}.
+     *
+     * @param sessionDataCodec the codec to set
+     */
+    public void setSessionDataCodec(SessionDataCodec sessionDataCodec)
+    {
+        _sessionDataCodec = sessionDataCodec == null ? new JavaSerializationSessionDataCodec() : sessionDataCodec;
+    }
+
     @Override
     public String toString()
     {
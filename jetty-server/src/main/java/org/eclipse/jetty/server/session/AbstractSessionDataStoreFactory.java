@@ -26,6 +26,7 @@ public abstract class AbstractSessionDataStoreFactory implements SessionDataStor
 
     int _gracePeriodSec;
     int _savePeriodSec;
+    SessionDataCodec _sessionDataCodec;
 
     /**
      * @return the gracePeriodSec
@@ -58,4 +59,20 @@ public abstract class AbstractSessionDataStoreFactory implements SessionDataStor
     {
         _savePeriodSec = savePeriodSec;
     }
+
+    /**
+     * @return the codec for session attributes, or null for the store default
+     */
+    public SessionDataCodec getSessionDataCodec()
+    {
+        return _sessionDataCodec;
+    }
+
+    /**
+     * @param sessionDataCodec the codec for session attributes, or null for the store default
+     */
+    public void setSessionDataCodec(SessionDataCodec sessionDataCodec)
+    {
+        _sessionDataCodec = sessionDataCodec;
+    }
 }
@@ -0,0 +1,410 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+
+/**
+ * BinarySessionDataCodec
+ *
+ * A compact {@link SessionDataCodec} for the attribute values that sessions
+ * typically hold: strings, boxed primitives, byte arrays and the
+ * {@link ArrayList}, {@link HashSet}, {@link LinkedHashSet}, {@link HashMap}
+ * and {@link LinkedHashMap} of those. Such values are written with a one byte
+ * tag and no class metadata, so the exact classes are preserved.
+ * Any other value is written with Java serialization, remembering which
+ * classloader should load it, like {@link JavaSerializationSessionDataCodec}.
+ * <p>
+ * Attributes written by {@link JavaSerializationSessionDataCodec} are
+ * recognized and decoded, so that existing sessions survive a change of codec.
+ */
+public class BinarySessionDataCodec implements SessionDataCodec
+{
+    private static final int MAGIC = 0x4A42; // "JB", never the start of a Java serialization stream
+    private static final int VERSION = 1;
+    private static final int MAX_DEPTH = 16;
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int INTEGER = 2;
+    private static final int LONG = 3;
+    private static final int BOOLEAN = 4;
+    private static final int BYTE = 5;
+    private static final int SHORT = 6;
+    private static final int CHARACTER = 7;
+    private static final int FLOAT = 8;
+    private static final int DOUBLE = 9;
+    private static final int BYTES = 10;
+    private static final int ARRAY_LIST = 11;
+    private static final int HASH_SET = 12;
+    private static final int LINKED_HASH_SET = 13;
+    private static final int HASH_MAP = 14;
+    private static final int LINKED_HASH_MAP = 15;
+    private static final int SERIALIZED_SERVER = 16;
+    private static final int SERIALIZED_CONTEXT = 17;
+
+    private final JavaSerializationSessionDataCodec _legacy = new JavaSerializationSessionDataCodec();
+
+    @Override
+    public void encodeAttributes(SessionData data, OutputStream out) throws IOException
+    {
+        DataOutputStream output = new DataOutputStream(out);
+        output.writeShort(MAGIC);
+        output.writeByte(VERSION);
+        Map<String, Object> attributes = data._attributes;
+        writeVarInt(output, attributes.size());
+        for (Map.Entry<String, Object> entry : attributes.entrySet())
+        {
+            writeString(output, entry.getKey());
+            Object value = entry.getValue();
+            if (isEncodable(value, 0))
+            {
+                writeValue(output, value);
+            }
+            else
+            {
+                output.writeByte(SessionData.isServerLoaded(value.getClass()) ? SERIALIZED_SERVER : SERIALIZED_CONTEXT);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream oos = new ObjectOutputStream(bytes))
+                {
+                    oos.writeObject(value);
+                }
+                writeVarInt(output, bytes.size());
+                bytes.writeTo(output);
+            }
+        }
+        output.flush();
+    }
+
+    @Override
+    public void decodeAttributes(SessionData data, InputStream in) throws IOException, ClassNotFoundException
+    {
+        PushbackInputStream pushback = new PushbackInputStream(in, 2);
+        int b0 = pushback.read();
+        int b1 = pushback.read();
+        if (b1 < 0)
+            throw new EOFException();
+        if (((b0 << 8) | b1) != MAGIC)
+        {
+            pushback.unread(b1);
+            pushback.unread(b0);
+            _legacy.decodeAttributes(data, pushback);
+            return;
+        }
+
+        DataInputStream input = new DataInputStream(pushback);
+        int version = input.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unknown session data version " + version);
+
+        int size = readVarInt(input);
+        Map<String, Object> attributes = new ConcurrentHashMap<>(Math.max(16, size * 2));
+        ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+        ClassLoader serverLoader = SessionData.class.getClassLoader();
+        for (int i = 0; i < size; ++i)
+        {
+            String name = readString(input);
+            int tag = input.readUnsignedByte();
+            Object value;
+            if (tag == SERIALIZED_SERVER || tag == SERIALIZED_CONTEXT)
+            {
+                byte[] bytes = new byte[readVarInt(input)];
+                input.readFully(bytes);
+                try (ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(new ByteArrayInputStream(bytes)))
+                {
+                    value = ois.readObject(tag == SERIALIZED_SERVER ? serverLoader : contextLoader);
+                }
+            }
+            else
+            {
+                value = readValue(input, tag);
+            }
+            attributes.put(name, value);
+        }
+        data._attributes = attributes;
+    }
+
+    private static boolean isEncodable(Object value, int depth)
+    {
+        if (value == null)
+            return true;
+        Class<?> type = value.getClass();
+        if (type == String.class || type == Integer.class || type == Long.class || type == Boolean.class ||
+            type == Byte.class || type == Short.class || type == Character.class ||
+            type == Float.class || type == Double.class || type == byte[].class)
+            return true;
+        // Deep or cyclic structures are left to Java serialization.
+        if (depth >= MAX_DEPTH)
+            return false;
+        if (type == ArrayList.class || type == HashSet.class || type == LinkedHashSet.class)
+        {
+            for (Object element : (Collection<?>)value)
+            {
+                if (!isEncodable(element, depth + 1))
+                    return false;
+            }
+            return true;
+        }
+        if (type == HashMap.class || type == LinkedHashMap.class)
+        {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet())
+            {
+                if (!isEncodable(entry.getKey(), depth + 1) || !isEncodable(entry.getValue(), depth + 1))
+                    return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static void writeValue(DataOutputStream output, Object value) throws IOException
+    {
+        if (value == null)
+        {
+            output.writeByte(NULL);
+            return;
+        }
+
+        Class<?> type = value.getClass();
+        if (type == String.class)
+        {
+            output.writeByte(STRING);
+            writeString(output, (String)value);
+        }
+        else if (type == Integer.class)
+        {
+            output.writeByte(INTEGER);
+            writeVarLong(output, zigzag((Integer)value));
+        }
+        else if (type == Long.class)
+        {
+            output.writeByte(LONG);
+            writeVarLong(output, zigzag((Long)value));
+        }
+        else if (type == Boolean.class)
+        {
+            output.writeByte(BOOLEAN);
+            output.writeBoolean((Boolean)value);
+        }
+        else if (type == Byte.class)
+        {
+            output.writeByte(BYTE);
+            output.writeByte((Byte)value);
+        }
+        else if (type == Short.class)
+        {
+            output.writeByte(SHORT);
+            output.writeShort((Short)value);
+        }
+        else if (type == Character.class)
+        {
+            output.writeByte(CHARACTER);
+            output.writeChar((Character)value);
+        }
+        else if (type == Float.class)
+        {
+            output.writeByte(FLOAT);
+            output.writeFloat((Float)value);
+        }
+        else if (type == Double.class)
+        {
+            output.writeByte(DOUBLE);
+            output.writeDouble((Double)value);
+        }
+        else if (type == byte[].class)
+        {
+            byte[] bytes = (byte[])value;
+            output.writeByte(BYTES);
+            writeVarInt(output, bytes.length);
+            output.write(bytes);
+        }
+        else if (value instanceof Collection)
+        {
+            Collection<?> collection = (Collection<?>)value;
+            output.writeByte(type == ArrayList.class ? ARRAY_LIST : type == HashSet.class ? HASH_SET : LINKED_HASH_SET);
+            writeVarInt(output, collection.size());
+            for (Object element : collection)
+            {
+                writeValue(output, element);
+            }
+        }
+        else
+        {
+            Map<?, ?> map = (Map<?, ?>)value;
+            output.writeByte(type == HashMap.class ? HASH_MAP : LINKED_HASH_MAP);
+            writeVarInt(output, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet())
+            {
+                writeValue(output, entry.getKey());
+                writeValue(output, entry.getValue());
+            }
+        }
+    }
+
+    private static Object readValue(DataInputStream input, int tag) throws IOException
+    {
+        switch (tag)
+        {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(input);
+            case INTEGER:
+                return (int)unzigzag(readVarLong(input));
+            case LONG:
+                return unzigzag(readVarLong(input));
+            case BOOLEAN:
+                return input.readBoolean();
+            case BYTE:
+                return input.readByte();
+            case SHORT:
+                return input.readShort();
+            case CHARACTER:
+                return input.readChar();
+            case FLOAT:
+                return input.readFloat();
+            case DOUBLE:
+                return input.readDouble();
+            case BYTES:
+            {
+                byte[] bytes = new byte[readVarInt(input)];
+                input.readFully(bytes);
+                return bytes;
+            }
+            case ARRAY_LIST:
+            case HASH_SET:
+            case LINKED_HASH_SET:
+            {
+                int size = readVarInt(input);
+                Collection<Object> collection = tag == ARRAY_LIST ? new ArrayList<>(size)
+                    : tag == HASH_SET ? new HashSet<>(capacity(size)) : new LinkedHashSet<>(capacity(size));
+                for (int i = 0; i < size; ++i)
+                {
+                    collection.add(readValue(input, input.readUnsignedByte()));
+                }
+                return collection;
+            }
+            case HASH_MAP:
+            case LINKED_HASH_MAP:
+            {
+                int size = readVarInt(input);
+                Map<Object, Object> map = tag == HASH_MAP ? new HashMap<>(capacity(size)) : new LinkedHashMap<>(capacity(size));
+                for (int i = 0; i < size; ++i)
+                {
+                    Object key = readValue(input, input.readUnsignedByte());
+                    map.put(key, readValue(input, input.readUnsignedByte()));
+                }
+                return map;
+            }
+            default:
+                throw new IOException("Unknown session data type " + tag);
+        }
+    }
+
+    private static int capacity(int size)
+    {
+        return Math.max(16, (int)(size / 0.75F) + 1);
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(output, bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException
+    {
+        byte[] bytes = new byte[readVarInt(input)];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long zigzag(long value)
+    {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarInt(DataOutputStream output, int value) throws IOException
+    {
+        writeVarLong(output, value & 0xFFFFFFFFL);
+    }
+
+    private static int readVarInt(DataInputStream input) throws IOException
+    {
+        long value = readVarLong(input);
+        if (value > Integer.MAX_VALUE)
+            throw new IOException("Invalid session data length " + value);
+        return (int)value;
+    }
+
+    private static void writeVarLong(DataOutputStream output, long value) throws IOException
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            output.writeByte((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int)value);
+    }
+
+    private static long readVarLong(DataInputStream input) throws IOException
+    {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            int b = input.readUnsignedByte();
+            value |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Invalid session data varint");
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName();
+    }
+}
@@ -71,6 +71,7 @@ public class FileSessionDataStoreFactory extends AbstractSessionDataStoreFactory
         fsds.setStoreDir(getStoreDir());
         fsds.setGracePeriodSec(getGracePeriodSec());
         fsds.setSavePeriodSec(getSavePeriodSec());
+        fsds.setSessionDataCodec(getSessionDataCodec());
         return fsds;
     }
 }
@@ -19,9 +19,7 @@
 package org.eclipse.jetty.server.session;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
-import java.io.ObjectOutputStream;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
@@ -29,9 +27,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
@@ -80,6 +78,9 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
         protected String _expiryTimeColumn = "expiryTime";
         protected String _maxIntervalColumn = "maxInterval";
         protected String _mapColumn = "map";
+        protected String _attributeTableName = null;
+        protected String _attributeNameColumn = "attributeName";
+        protected String _attributeValueColumn = "attributeValue";
 
         protected void setDatabaseAdaptor(DatabaseAdaptor dbadaptor)
         {
@@ -245,6 +246,62 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             _mapColumn = mapColumn;
         }
 
+        /**
+         * @return the name of the table holding one row per session attribute, or null if
+         * the attributes are held in the map column of the session table
+         */
+        public String getAttributeTableName()
+        {
+            return _attributeTableName;
+        }
+
+        /**
+         * When set, each attribute is held in its own row of the given table, so that
+         * only the attributes that changed are written when a session is saved.
+         * Attributes previously held in the map column are moved to the table
+         * the next time the session is saved.
+         * <p>
+         * An attribute is only known to have changed when it is set or removed.
+         * An attribute value that is modified in place, without calling
+         * {@code setAttribute} again, is therefore not written, whereas it is
+         * when all the attributes are held in the map column. Applications that
+         * modify attribute values in place must set them again after the change.
+         *
+         * @param attributeTableName the name of the attribute table, or null to hold
+         * the attributes in the map column of the session table
+         */
+        public void setAttributeTableName(String attributeTableName)
+        {
+            _attributeTableName = attributeTableName;
+        }
+
+        public String getAttributeNameColumn()
+        {
+            return _attributeNameColumn;
+        }
+
+        public void setAttributeNameColumn(String attributeNameColumn)
+        {
+            checkNotNull(attributeNameColumn);
+            _attributeNameColumn = attributeNameColumn;
+        }
+
+        public String getAttributeValueColumn()
+        {
+            return _attributeValueColumn;
+        }
+
+        public void setAttributeValueColumn(String attributeValueColumn)
+        {
+            checkNotNull(attributeValueColumn);
+            _attributeValueColumn = attributeValueColumn;
+        }
+
+        private String getSchemaAttributeTableName()
+        {
+            return (getSchemaName() != null ? getSchemaName() + "." : "") + getAttributeTableName();
+        }
+
         public String getCreateStatementAsString()
         {
             if (_dbAdaptor == null)
@@ -261,6 +318,20 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
                 _mapColumn + " " + blobType + ", primary key(" + _idColumn + ", " + _contextPathColumn + "," + _virtualHostColumn + "))";
         }
 
+        public String getCreateAttributeTableStatementAsString()
+        {
+            if (_dbAdaptor == null)
+                throw new IllegalStateException("No DBAdaptor");
+
+            String blobType = _dbAdaptor.getBlobType();
+            String stringType = _dbAdaptor.getStringType();
+
+            return "create table " + getSchemaAttributeTableName() + " (" + _idColumn + " " + stringType + "(120), " +
+                _contextPathColumn + " " + stringType + "(60), " + _virtualHostColumn + " " + stringType + "(60), " +
+                _attributeNameColumn + " " + stringType + "(255), " + _attributeValueColumn + " " + blobType + ", " +
+                "primary key(" + _idColumn + ", " + _contextPathColumn + "," + _virtualHostColumn + "," + _attributeNameColumn + "))";
+        }
+
         public String getCreateIndexOverExpiryStatementAsString(String indexName)
         {
             return "create index " + indexName + " on " + getSchemaTableName() + " (" + getExpiryTimeColumn() + ")";
@@ -464,6 +535,62 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             return statement;
         }
 
+        public PreparedStatement getLoadAttributesStatement(Connection connection, String id, SessionContext contextId)
+            throws SQLException
+        {
+            PreparedStatement statement = connection.prepareStatement("select " + getAttributeNameColumn() + ", " + getAttributeValueColumn() +
+                " from " + getSchemaAttributeTableName() +
+                " where " + getIdColumn() + " = ? and " + getContextPathColumn() +
+                " = ? and " + getVirtualHostColumn() + " = ?");
+            setSessionParameters(statement, id, contextId);
+            return statement;
+        }
+
+        public PreparedStatement getInsertAttributeStatement(Connection connection, String id, SessionContext contextId)
+            throws SQLException
+        {
+            PreparedStatement statement = connection.prepareStatement("insert into " + getSchemaAttributeTableName() +
+                " (" + getIdColumn() + ", " + getContextPathColumn() + ", " + getVirtualHostColumn() + ", " +
+                getAttributeNameColumn() + ", " + getAttributeValueColumn() + ") values (?, ?, ?, ?, ?)");
+            setSessionParameters(statement, id, contextId);
+            return statement;
+        }
+
+        public PreparedStatement getDeleteAttributeStatement(Connection connection, String id, SessionContext contextId)
+            throws SQLException
+        {
+            PreparedStatement statement = connection.prepareStatement("delete from " + getSchemaAttributeTableName() +
+                " where " + getIdColumn() + " = ? and " + getContextPathColumn() +
+                " = ? and " + getVirtualHostColumn() + " = ? and " + getAttributeNameColumn() + " = ?");
+            setSessionParameters(statement, id, contextId);
+            return statement;
+        }
+
+        public PreparedStatement getDeleteAttributesStatement(Connection connection, String id, SessionContext contextId)
+            throws SQLException
+        {
+            PreparedStatement statement = connection.prepareStatement("delete from " + getSchemaAttributeTableName() +
+                " where " + getIdColumn() + " = ? and " + getContextPathColumn() +
+                " = ? and " + getVirtualHostColumn() + " = ?");
+            setSessionParameters(statement, id, contextId);
+            return statement;
+        }
+
+        private void setSessionParameters(PreparedStatement statement, String id, SessionContext contextId)
+            throws SQLException
+        {
+            if (_dbAdaptor == null)
+                throw new IllegalStateException("No DB adaptor");
+
+            String cp = contextId.getCanonicalContextPath();
+            if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
+                cp = NULL_CONTEXT_PATH;
+
+            statement.setString(1, id);
+            statement.setString(2, cp);
+            statement.setString(3, contextId.getVhost());
+        }
+
         /**
          * Set up the tables in the database
          *
@@ -551,15 +678,27 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
                     statement.executeUpdate(getCreateIndexOverExpiryStatementAsString(index1));
                 if (!index2Exists)
                     statement.executeUpdate(getCreateIndexOverSessionStatementAsString(index2));
+
+                //make the attribute table if necessary
+                if (getAttributeTableName() != null)
+                {
+                    String attributeTableName = _dbAdaptor.convertIdentifier(getAttributeTableName());
+                    try (ResultSet result = metaData.getTables(null, schemaName, attributeTableName, null))
+                    {
+                        if (!result.next())
+                            statement.executeUpdate(getCreateAttributeTableStatementAsString());
+                    }
+                }
             }
         }
 
         @Override
         public String toString()
         {
-            return String.format("%s[%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s]", super.toString(),
+            return String.format("%s[%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s]", super.toString(),
                 _schemaName, _tableName, _idColumn, _contextPathColumn, _virtualHostColumn, _cookieTimeColumn, _createTimeColumn,
-                _expiryTimeColumn, _accessTimeColumn, _lastAccessTimeColumn, _lastNodeColumn, _lastSavedTimeColumn, _maxIntervalColumn);
+                _expiryTimeColumn, _accessTimeColumn, _lastAccessTimeColumn, _lastNodeColumn, _lastSavedTimeColumn, _maxIntervalColumn,
+                _attributeTableName);
         }
     }
 
@@ -628,10 +767,11 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
                 data.setContextPath(_context.getCanonicalContextPath());
                 data.setVhost(_context.getVhost());
 
-                try (InputStream is = _dbAdaptor.getBlobInputStream(result, _sessionTableSchema.getMapColumn());
-                     ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(is))
+                try (InputStream is = _dbAdaptor.getBlobInputStream(result, _sessionTableSchema.getMapColumn()))
                 {
-                    SessionData.deserializeAttributes(data, ois);
+                    _sessionDataCodec.decodeAttributes(data, is);
+                    if (_sessionTableSchema.getAttributeTableName() != null)
+                        loadAttributes(connection, id, data);
                 }
                 catch (Exception e)
                 {
@@ -648,13 +788,70 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
         }
     }
 
+    /**
+     * Load the attributes held in the attribute table.
+     *
+     * @param connection the connection to use
+     * @param id the id of the session
+     * @param data the session to load the attributes into
+     * @throws Exception if unable to load the attributes
+     */
+    protected void loadAttributes(Connection connection, String id, SessionData data) throws Exception
+    {
+        //attributes still in the map column are moved to the attribute table on the next save
+        if (!data.getKeys().isEmpty())
+            data.setDirty(true);
+
+        try (PreparedStatement statement = _sessionTableSchema.getLoadAttributesStatement(connection, id, _context);
+             ResultSet result = statement.executeQuery())
+        {
+            SessionData attribute = newAttributeData(data);
+            while (result.next())
+            {
+                try (InputStream is = _dbAdaptor.getBlobInputStream(result, _sessionTableSchema.getAttributeValueColumn()))
+                {
+                    _sessionDataCodec.decodeAttributes(attribute, is);
+                }
+                data.putAllAttributes(attribute.getAllAttributes());
+            }
+        }
+    }
+
     @Override
     public boolean delete(String id) throws Exception
     {
-        try (Connection connection = _dbAdaptor.getConnection();
-             PreparedStatement statement = _sessionTableSchema.getDeleteStatement(connection, id, _context))
+        try (Connection connection = _dbAdaptor.getConnection())
+        {
+            if (_sessionTableSchema.getAttributeTableName() == null)
+            {
+                connection.setAutoCommit(true);
+                return delete(connection, id);
+            }
+
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = _sessionTableSchema.getDeleteAttributesStatement(connection, id, _context))
+            {
+                statement.executeUpdate();
+                boolean deleted = delete(connection, id);
+                connection.commit();
+                return deleted;
+            }
+            catch (Exception e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private boolean delete(Connection connection, String id) throws Exception
+    {
+        try (PreparedStatement statement = _sessionTableSchema.getDeleteStatement(connection, id, _context))
         {
-            connection.setAutoCommit(true);
             int rows = statement.executeUpdate();
             if (LOG.isDebugEnabled())
                 LOG.debug("Deleted Session {}:{}", id, (rows > 0));
@@ -679,6 +876,76 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
         }
     }
 
+    /**
+     * Insert and update the sessions with batch statements, in a single transaction.
+     * With an attribute table, the attribute rows are written with batch statements
+     * in the same transaction.
+     *
+     * @see org.eclipse.jetty.server.session.AbstractSessionDataStore#doStoreAll(java.util.Map)
+     */
+    @Override
+    public void doStoreAll(Map<SessionData, Long> sessions) throws Exception
+    {
+        if (sessions.size() <= 1)
+        {
+            super.doStoreAll(sessions);
+            return;
+        }
+
+        try (Connection connection = _dbAdaptor.getConnection())
+        {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(_sessionTableSchema.getInsertSessionStatementAsString());
+                 PreparedStatement update = _sessionTableSchema.getUpdateSessionStatement(connection, "", _context);
+                 AttributeBatch attributes = _sessionTableSchema.getAttributeTableName() == null ? null : new AttributeBatch(connection))
+            {
+                int inserts = 0;
+                int updates = 0;
+                for (Map.Entry<SessionData, Long> entry : sessions.entrySet())
+                {
+                    SessionData data = entry.getKey();
+                    if (entry.getValue() <= 0)
+                    {
+                        setInsertParameters(insert, data.getId(), data);
+                        insert.addBatch();
+                        inserts++;
+                        if (attributes != null)
+                            attributes.add(data.getId(), data, null);
+                    }
+                    else
+                    {
+                        setUpdateParameters(update, data);
+                        update.setString(8, data.getId());
+                        update.addBatch();
+                        updates++;
+                        if (attributes != null)
+                            attributes.add(data.getId(), data, data.getDirtyAttributes());
+                    }
+                }
+
+                if (inserts > 0)
+                    insert.executeBatch();
+                if (updates > 0)
+                    update.executeBatch();
+                if (attributes != null)
+                    attributes.execute();
+                connection.commit();
+
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Inserted {} and updated {} sessions", inserts, updates);
+            }
+            catch (Exception e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
     protected void doInsert(String id, SessionData data)
         throws Exception
     {
@@ -686,38 +953,29 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
 
         try (Connection connection = _dbAdaptor.getConnection())
         {
-            connection.setAutoCommit(true);
+            boolean attributeTable = _sessionTableSchema.getAttributeTableName() != null;
+            connection.setAutoCommit(!attributeTable);
             try (PreparedStatement statement = connection.prepareStatement(s))
             {
-                statement.setString(1, id); //session id
-
-                String cp = _context.getCanonicalContextPath();
-                if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
-                    cp = NULL_CONTEXT_PATH;
-
-                statement.setString(2, cp); //context path
-
-                statement.setString(3, _context.getVhost()); //first vhost
-                statement.setString(4, data.getLastNode());//my node id
-                statement.setLong(5, data.getAccessed());//accessTime
-                statement.setLong(6, data.getLastAccessed()); //lastAccessTime
-                statement.setLong(7, data.getCreated()); //time created
-                statement.setLong(8, data.getCookieSet());//time cookie was set
-                statement.setLong(9, data.getLastSaved()); //last saved time
-                statement.setLong(10, data.getExpiry());
-                statement.setLong(11, data.getMaxInactiveMs());
-
-                try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                     ObjectOutputStream oos = new ObjectOutputStream(baos))
+                setInsertParameters(statement, id, data);
+                statement.executeUpdate();
+                if (attributeTable)
                 {
-                    SessionData.serializeAttributes(data, oos);
-                    byte[] bytes = baos.toByteArray();
-                    ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-                    statement.setBinaryStream(12, bais, bytes.length);//attribute map as blob
-                    statement.executeUpdate();
-                    if (LOG.isDebugEnabled())
-                        LOG.debug("Inserted session " + data);
+                    storeAttributes(connection, id, data, null);
+                    connection.commit();
                 }
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Inserted session " + data);
+            }
+            catch (Exception e)
+            {
+                if (attributeTable)
+                    connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
             }
         }
     }
@@ -727,34 +985,201 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
     {
         try (Connection connection = _dbAdaptor.getConnection())
         {
-            connection.setAutoCommit(true);
+            boolean attributeTable = _sessionTableSchema.getAttributeTableName() != null;
+            connection.setAutoCommit(!attributeTable);
             try (PreparedStatement statement = _sessionTableSchema.getUpdateSessionStatement(connection, data.getId(), _context))
             {
-                statement.setString(1, data.getLastNode());//should be my node id
-                statement.setLong(2, data.getAccessed());//accessTime
-                statement.setLong(3, data.getLastAccessed()); //lastAccessTime
-                statement.setLong(4, data.getLastSaved()); //last saved time
-                statement.setLong(5, data.getExpiry());
-                statement.setLong(6, data.getMaxInactiveMs());
-
-                try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                     ObjectOutputStream oos = new ObjectOutputStream(baos))
+                setUpdateParameters(statement, data);
+                statement.executeUpdate();
+                if (attributeTable)
                 {
-                    SessionData.serializeAttributes(data, oos);
-                    byte[] bytes = baos.toByteArray();
-                    try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes))
-                    {
-                        statement.setBinaryStream(7, bais, bytes.length);//attribute map as blob
-                        statement.executeUpdate();
+                    storeAttributes(connection, id, data, data.getDirtyAttributes());
+                    connection.commit();
+                }
 
-                        if (LOG.isDebugEnabled())
-                            LOG.debug("Updated session " + data);
-                    }
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Updated session " + data);
+            }
+            catch (Exception e)
+            {
+                if (attributeTable)
+                    connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Write the attributes of a session to the attribute table.
+     *
+     * @param connection the connection to use
+     * @param id the id of the session
+     * @param data the session
+     * @param names the names of the attributes to write, or null to replace all of the attributes
+     * @throws Exception if unable to write the attributes
+     */
+    protected void storeAttributes(Connection connection, String id, SessionData data, Set<String> names) throws Exception
+    {
+        try (AttributeBatch attributes = new AttributeBatch(connection))
+        {
+            attributes.add(id, data, names);
+            attributes.execute();
+        }
+    }
+
+    /**
+     * The batch statements writing the attribute rows of one or more sessions.
+     * All the deletes are executed before the inserts.
+     */
+    private class AttributeBatch implements AutoCloseable
+    {
+        private final PreparedStatement _deleteAll;
+        private final PreparedStatement _delete;
+        private final PreparedStatement _insert;
+        private int _deletesAll;
+        private int _deletes;
+        private int _inserts;
+
+        private AttributeBatch(Connection connection) throws SQLException
+        {
+            _deleteAll = _sessionTableSchema.getDeleteAttributesStatement(connection, "", _context);
+            _delete = _sessionTableSchema.getDeleteAttributeStatement(connection, "", _context);
+            _insert = _sessionTableSchema.getInsertAttributeStatement(connection, "", _context);
+        }
+
+        /**
+         * @param id the id of the session
+         * @param data the session
+         * @param names the names of the attributes to write, or null to replace all of the attributes
+         * @throws Exception if unable to encode the attributes
+         */
+        private void add(String id, SessionData data, Set<String> names) throws Exception
+        {
+            if (names == null)
+            {
+                _deleteAll.setString(1, id);
+                _deleteAll.addBatch();
+                _deletesAll++;
+                names = data.getKeys();
+            }
+            else
+            {
+                for (String name : names)
+                {
+                    _delete.setString(1, id);
+                    _delete.setString(4, name);
+                    _delete.addBatch();
+                    _deletes++;
+                }
+            }
+
+            SessionData attribute = newAttributeData(data);
+            for (String name : names)
+            {
+                Object value = data.getAttribute(name);
+                if (value == null)
+                    continue;
+                attribute.clearAllAttributes();
+                attribute.setAttribute(name, value);
+                byte[] bytes = _sessionDataCodec.encodeAttributes(attribute);
+                _insert.setString(1, id);
+                _insert.setString(4, name);
+                _insert.setBinaryStream(5, new ByteArrayInputStream(bytes), bytes.length);
+                _insert.addBatch();
+                _inserts++;
+            }
+        }
+
+        private void execute() throws SQLException
+        {
+            if (_deletesAll > 0)
+                _deleteAll.executeBatch();
+            if (_deletes > 0)
+                _delete.executeBatch();
+            if (_inserts > 0)
+                _insert.executeBatch();
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Wrote {} attributes, deleted {} attributes and replaced the attributes of {} sessions", _inserts, _deletes, _deletesAll);
+        }
+
+        @Override
+        public void close() throws SQLException
+        {
+            try
+            {
+                _deleteAll.close();
+            }
+            finally
+            {
+                try
+                {
+                    _delete.close();
+                }
+                finally
+                {
+                    _insert.close();
                 }
             }
         }
     }
 
+    private SessionData newAttributeData(SessionData data)
+    {
+        return new SessionData(data.getId(), data.getContextPath(), data.getVhost(), 0, 0, 0, 0);
+    }
+
+    private byte[] encodeMap(SessionData data) throws Exception
+    {
+        //with an attribute table, the map column is left empty
+        if (_sessionTableSchema.getAttributeTableName() != null)
+            return _sessionDataCodec.encodeAttributes(newAttributeData(data));
+        return _sessionDataCodec.encodeAttributes(data);
+    }
+
+    private void setInsertParameters(PreparedStatement statement, String id, SessionData data)
+        throws Exception
+    {
+        statement.setString(1, id); //session id
+
+        String cp = _context.getCanonicalContextPath();
+        if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
+            cp = NULL_CONTEXT_PATH;
+
+        statement.setString(2, cp); //context path
+
+        statement.setString(3, _context.getVhost()); //first vhost
+        statement.setString(4, data.getLastNode());//my node id
+        statement.setLong(5, data.getAccessed());//accessTime
+        statement.setLong(6, data.getLastAccessed()); //lastAccessTime
+        statement.setLong(7, data.getCreated()); //time created
+        statement.setLong(8, data.getCookieSet());//time cookie was set
+        statement.setLong(9, data.getLastSaved()); //last saved time
+        statement.setLong(10, data.getExpiry());
+        statement.setLong(11, data.getMaxInactiveMs());
+
+        byte[] bytes = encodeMap(data);
+        statement.setBinaryStream(12, new ByteArrayInputStream(bytes), bytes.length);//attribute map as blob
+    }
+
+    private void setUpdateParameters(PreparedStatement statement, SessionData data)
+        throws Exception
+    {
+        statement.setString(1, data.getLastNode());//should be my node id
+        statement.setLong(2, data.getAccessed());//accessTime
+        statement.setLong(3, data.getLastAccessed()); //lastAccessTime
+        statement.setLong(4, data.getLastSaved()); //last saved time
+        statement.setLong(5, data.getExpiry());
+        statement.setLong(6, data.getMaxInactiveMs());
+
+        byte[] bytes = encodeMap(data);
+        statement.setBinaryStream(7, new ByteArrayInputStream(bytes), bytes.length);//attribute map as blob
+    }
+
     @Override
     public Set<String> doGetExpired(Set<String> candidates)
     {
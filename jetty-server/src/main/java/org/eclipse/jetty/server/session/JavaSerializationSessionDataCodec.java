@@ -0,0 +1,56 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+
+/**
+ * JavaSerializationSessionDataCodec
+ *
+ * The default {@link SessionDataCodec}, which uses Java serialization via
+ * {@link SessionData#serializeAttributes(SessionData, ObjectOutputStream)}
+ * and {@link SessionData#deserializeAttributes(SessionData, java.io.ObjectInputStream)}.
+ */
+public class JavaSerializationSessionDataCodec implements SessionDataCodec
+{
+    @Override
+    public void encodeAttributes(SessionData data, OutputStream out) throws IOException
+    {
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        SessionData.serializeAttributes(data, oos);
+        oos.flush();
+    }
+
+    @Override
+    public void decodeAttributes(SessionData data, InputStream in) throws IOException, ClassNotFoundException
+    {
+        SessionData.deserializeAttributes(data, new ClassLoadingObjectInputStream(in));
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName();
+    }
+}
@@ -57,6 +57,7 @@ public class SessionData implements Serializable
     protected long _maxInactiveMs;
     protected Map<String, Object> _attributes;
     protected boolean _dirty;
+    protected volatile Set<String> _dirtyAttributes = ConcurrentHashMap.newKeySet(); //names of the changed attributes, null if unknown
     protected long _lastSaved; //time in msec since last save
     protected boolean _metaDataDirty; //non-attribute data has changed
 
@@ -80,41 +81,53 @@ public class SessionData implements Serializable
             out.writeUTF(entry.getKey());
 
             Class<?> clazz = entry.getValue().getClass();
-            ClassLoader loader = clazz.getClassLoader();
-            ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
-            boolean isContextLoader;
+            boolean isServerLoader = isServerLoaded(clazz);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Attribute {} class={} isServerLoader={}", entry.getKey(), clazz.getName(), isServerLoader);
+            out.writeBoolean(isServerLoader);
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    /**
+     * Whether the class of an attribute value should be loaded by the container
+     * classloader rather than by the webapp classloader, when it is deserialized.
+     *
+     * @param clazz the class of an attribute value
+     * @return true if the container classloader should be used
+     */
+    static boolean isServerLoaded(Class<?> clazz)
+    {
+        ClassLoader loader = clazz.getClassLoader();
+        ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+        boolean isContextLoader;
 
-            if (loader == contextLoader) //is it the context classloader?
-                isContextLoader = true;
-            else if (contextLoader == null) //not context classloader
-                isContextLoader = false;
-            else if (contextLoader instanceof ClassVisibilityChecker)
+        if (loader == contextLoader) //is it the context classloader?
+            isContextLoader = true;
+        else if (contextLoader == null) //not context classloader
+            isContextLoader = false;
+        else if (contextLoader instanceof ClassVisibilityChecker)
+        {
+            //Clazz not loaded by context classloader, but ask if loadable by context classloader,
+            //because preferable to use context classloader if possible (eg for deep structures).
+            ClassVisibilityChecker checker = (ClassVisibilityChecker)(contextLoader);
+            isContextLoader = (checker.isSystemClass(clazz) && !(checker.isServerClass(clazz)));
+        }
+        else
+        {
+            //Class wasn't loaded by context classloader, but try loading from context loader,
+            //because preferable to use context classloader if possible (eg for deep structures).
+            try
             {
-                //Clazz not loaded by context classloader, but ask if loadable by context classloader,
-                //because preferable to use context classloader if possible (eg for deep structures).
-                ClassVisibilityChecker checker = (ClassVisibilityChecker)(contextLoader);
-                isContextLoader = (checker.isSystemClass(clazz) && !(checker.isServerClass(clazz)));
+                Class<?> result = contextLoader.loadClass(clazz.getName());
+                isContextLoader = (result == clazz); //only if TTCL loaded this instance of the class
             }
-            else
+            catch (Throwable e)
             {
-                //Class wasn't loaded by context classloader, but try loading from context loader,
-                //because preferable to use context classloader if possible (eg for deep structures).
-                try
-                {
-                    Class<?> result = contextLoader.loadClass(clazz.getName());
-                    isContextLoader = (result == clazz); //only if TTCL loaded this instance of the class
-                }
-                catch (Throwable e)
-                {
-                    isContextLoader = false; //TCCL can't see the class
-                }
+                isContextLoader = false; //TCCL can't see the class
             }
-
-            if (LOG.isDebugEnabled())
-                LOG.debug("Attribute {} class={} isServerLoader={}", entry.getKey(), clazz.getName(), (!isContextLoader));
-            out.writeBoolean(!isContextLoader);
-            out.writeObject(entry.getValue());
         }
+        return !isContextLoader;
     }
 
     /**
@@ -231,9 +244,17 @@ public class SessionData implements Serializable
         return _dirty;
     }
 
+    /**
+     * Mark the session as needing to be written out or not.
+     * Marking the session dirty without naming an attribute means
+     * that all of the attributes must be written out.
+     *
+     * @param dirty true if the session needs to be written out
+     */
     public void setDirty(boolean dirty)
     {
         _dirty = dirty;
+        _dirtyAttributes = dirty ? null : ConcurrentHashMap.newKeySet();
     }
 
     /**
@@ -279,9 +300,44 @@ public class SessionData implements Serializable
         return old;
     }
 
+    /**
+     * Mark an attribute as changed, and the session as needing to be written out.
+     *
+     * @param name the name of the changed attribute
+     */
     public void setDirty(String name)
     {
-        setDirty(true);
+        Set<String> dirtyAttributes = _dirtyAttributes;
+        if (dirtyAttributes != null)
+            dirtyAttributes.add(name);
+        _dirty = true;
+    }
+
+    /**
+     * Mark attributes as changed, without marking the session as needing to be written out.
+     *
+     * @param names the names of the changed attributes, or null if all of the attributes changed
+     */
+    void addDirtyAttributes(Set<String> names)
+    {
+        Set<String> dirtyAttributes = _dirtyAttributes;
+        if (names == null)
+            _dirtyAttributes = null;
+        else if (dirtyAttributes != null)
+            dirtyAttributes.addAll(names);
+    }
+
+    /**
+     * The attributes changed since the session was last written out, which a
+     * {@link SessionDataStore} may write out instead of all the attributes.
+     *
+     * @return the names of the changed attributes, or null if all of the
+     * attributes must be written out
+     */
+    public Set<String> getDirtyAttributes()
+    {
+        Set<String> dirtyAttributes = _dirtyAttributes;
+        return dirtyAttributes == null ? null : Collections.unmodifiableSet(dirtyAttributes);
     }
 
     /**
@@ -0,0 +1,81 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * SessionDataCodec
+ *
+ * Converts the attributes of a {@link SessionData} to and from bytes, on behalf
+ * of the {@link SessionDataStore}s that persist or distribute sessions.
+ *
+ * @see JavaSerializationSessionDataCodec
+ * @see BinarySessionDataCodec
+ */
+public interface SessionDataCodec
+{
+    /**
+     * Write the attributes of the session.
+     * The stream is flushed but not closed.
+     *
+     * @param data the session whose attributes to write
+     * @param out the stream to write to
+     * @throws IOException if the attributes cannot be written
+     */
+    void encodeAttributes(SessionData data, OutputStream out) throws IOException;
+
+    /**
+     * Read the attributes of the session, replacing any existing attribute.
+     * The stream is not closed.
+     *
+     * @param data the session whose attributes to read
+     * @param in the stream to read from
+     * @throws IOException if the attributes cannot be read
+     * @throws ClassNotFoundException if the class of an attribute cannot be loaded
+     */
+    void decodeAttributes(SessionData data, InputStream in) throws IOException, ClassNotFoundException;
+
+    /**
+     * @param data the session whose attributes to write
+     * @return the attributes as bytes
+     * @throws IOException if the attributes cannot be written
+     */
+    default byte[] encodeAttributes(SessionData data) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encodeAttributes(data, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param data the session whose attributes to read
+     * @param bytes the attributes as bytes
+     * @throws IOException if the attributes cannot be read
+     * @throws ClassNotFoundException if the class of an attribute cannot be loaded
+     */
+    default void decodeAttributes(SessionData data, byte[] bytes) throws IOException, ClassNotFoundException
+    {
+        decodeAttributes(data, new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,474 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+/**
+ * WriteBehindSessionDataStore
+ *
+ * A SessionDataStore that delegates to another {@link AbstractSessionDataStore}, but
+ * does not write the sessions while the request that last used them is completing.
+ * Instead, the sessions that need saving are queued, a session queued several times
+ * is written only once, and the queue is written in batches by a dedicated thread
+ * at most {@link #getMaxStalenessMs()} after a session was queued, or as soon as
+ * {@link #getBatchSize()} sessions are queued.
+ *
+ * When {@link #getMaxPendingSessions()} sessions are queued, the request thread writes
+ * its own session, while the rest of the queue is left to the dedicated thread. The queue
+ * is also written when this store is stopped and before expired sessions are looked up.
+ * A queued session is loaded as a copy, as the queued object is owned by the queue until
+ * it is written. When a session is deleted, its queued
+ * write is discarded and the delete waits for any write in progress, so that a deleted
+ * session is never written back.
+ *
+ * Queued sessions are only held in memory, so they are lost if the server crashes.
+ */
+@ManagedObject
+public class WriteBehindSessionDataStore extends ContainerLifeCycle implements SessionDataStore
+{
+    private static final Logger LOG = Log.getLogger("org.eclipse.jetty.server.session");
+
+    /**
+     * The actual store for the session data
+     */
+    protected final AbstractSessionDataStore _store;
+
+    private final Object _lock = new Object();
+    private final Object _flushLock = new Object();
+    private final Map<String, Pending> _pending = new LinkedHashMap<>();
+    private final Scheduler _scheduler;
+    private final LongAdder _coalesced = new LongAdder();
+    private final LongAdder _batches = new LongAdder();
+    private boolean _scheduled;
+    private boolean _batchScheduled;
+    private int _maxPendingSessions = 1024;
+    private int _batchSize = 64;
+    private long _maxStalenessMs = 1000;
+
+    /**
+     * @param store the actual store for the session data
+     */
+    public WriteBehindSessionDataStore(AbstractSessionDataStore store)
+    {
+        _store = store;
+        addBean(_store, true);
+        _scheduler = new ScheduledExecutorScheduler(String.format("Session-WriteBehind-%x", hashCode()), false);
+        addBean(_scheduler, true);
+    }
+
+    /**
+     * @return the delegate session store
+     */
+    public SessionDataStore getSessionStore()
+    {
+        return _store;
+    }
+
+    @ManagedAttribute(value = "max sessions queued before requests write their own", readonly = true)
+    public int getMaxPendingSessions()
+    {
+        return _maxPendingSessions;
+    }
+
+    /**
+     * @param maxPendingSessions the number of queued sessions from which the request threads write their own session
+     */
+    public void setMaxPendingSessions(int maxPendingSessions)
+    {
+        _maxPendingSessions = Math.max(1, maxPendingSessions);
+    }
+
+    @ManagedAttribute(value = "max sessions written at once", readonly = true)
+    public int getBatchSize()
+    {
+        return _batchSize;
+    }
+
+    /**
+     * @param batchSize the max number of sessions written at once
+     */
+    public void setBatchSize(int batchSize)
+    {
+        _batchSize = Math.max(1, batchSize);
+    }
+
+    @ManagedAttribute(value = "max ms a session stays queued", readonly = true)
+    public long getMaxStalenessMs()
+    {
+        return _maxStalenessMs;
+    }
+
+    /**
+     * @param maxStalenessMs the max time in ms a session stays queued before being written
+     */
+    public void setMaxStalenessMs(long maxStalenessMs)
+    {
+        _maxStalenessMs = Math.max(0, maxStalenessMs);
+    }
+
+    @ManagedAttribute("number of sessions queued for writing")
+    public int getPendingSessions()
+    {
+        synchronized (_lock)
+        {
+            return _pending.size();
+        }
+    }
+
+    @ManagedAttribute("number of writes saved by writing a queued session once")
+    public long getCoalescedStores()
+    {
+        return _coalesced.longValue();
+    }
+
+    @ManagedAttribute("number of batches written")
+    public long getBatches()
+    {
+        return _batches.longValue();
+    }
+
+    @Override
+    public void initialize(SessionContext context) throws Exception
+    {
+        _store.initialize(context);
+    }
+
+    @Override
+    public SessionData load(String id) throws Exception
+    {
+        synchronized (_lock)
+        {
+            Pending pending = _pending.get(id);
+            if (pending != null)
+            {
+                //the queued object is still to be written, so it must not be changed by the caller
+                SessionData data = pending._data;
+                SessionData copy = _store.newSessionData(id, data.getCreated(), data.getAccessed(), data.getLastAccessed(), data.getMaxInactiveMs());
+                copy.copy(data);
+                copy.clean();
+                return copy;
+            }
+        }
+        return _store.load(id);
+    }
+
+    @Override
+    public void store(String id, SessionData data) throws Exception
+    {
+        if (data == null)
+            return;
+
+        if (!isRunning())
+        {
+            _store.store(id, data);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long lastSave = data.getLastSaved();
+        long savePeriodMs = (_store.getSavePeriodSec() <= 0 ? 0 : TimeUnit.SECONDS.toMillis(_store.getSavePeriodSec()));
+
+        //same conditions as AbstractSessionDataStore.store
+        if (!data.isDirty() && lastSave > 0 && !(data.isMetaDataDirty() && (now - lastSave) >= savePeriodMs))
+            return;
+
+        boolean flush;
+        synchronized (_lock)
+        {
+            Set<String> dirtyAttributes = data.getDirtyAttributes();
+            Pending pending = _pending.get(id);
+            if (pending == null)
+            {
+                _pending.put(id, new Pending(data, lastSave, dirtyAttributes));
+            }
+            else
+            {
+                //keep the previous save time, as the queued session was not written yet
+                pending._data = data;
+                pending.addDirtyAttributes(dirtyAttributes);
+                _coalesced.increment();
+            }
+
+            //the session is now considered saved, so that it is queued again only if it changes
+            data.setLastSaved(now);
+            data.clean();
+
+            flush = _pending.size() >= _maxPendingSessions;
+            if ((flush || _pending.size() >= _batchSize) && !_batchScheduled)
+            {
+                _batchScheduled = true;
+                _scheduler.schedule(this::scheduledFlush, 0, TimeUnit.MILLISECONDS);
+            }
+            else if (!_scheduled)
+            {
+                _scheduled = true;
+                _scheduler.schedule(this::scheduledFlush, _maxStalenessMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        //back-pressure: the request thread writes only its own session
+        if (flush)
+            flush(id);
+    }
+
+    @Override
+    public boolean delete(String id) throws Exception
+    {
+        synchronized (_flushLock)
+        {
+            synchronized (_lock)
+            {
+                _pending.remove(id);
+            }
+            return _store.delete(id);
+        }
+    }
+
+    @Override
+    public Set<String> getExpired(Set<String> candidates)
+    {
+        //the expiry of the queued sessions must be visible to the delegate store
+        try
+        {
+            flush();
+        }
+        catch (Exception e)
+        {
+            LOG.warn(e);
+        }
+        return _store.getExpired(candidates);
+    }
+
+    @Override
+    public boolean isPassivating()
+    {
+        return _store.isPassivating();
+    }
+
+    @Override
+    public boolean exists(String id) throws Exception
+    {
+        synchronized (_lock)
+        {
+            Pending pending = _pending.get(id);
+            if (pending != null)
+                return !pending._data.isExpiredAt(System.currentTimeMillis());
+        }
+        return _store.exists(id);
+    }
+
+    @Override
+    public SessionData newSessionData(String id, long created, long accessed, long lastAccessed, long maxInactiveMs)
+    {
+        return _store.newSessionData(id, created, accessed, lastAccessed, maxInactiveMs);
+    }
+
+    /**
+     * Write all the queued sessions to the delegate store.
+     *
+     * @throws Exception if a batch could not be written, in which case its sessions are queued again
+     */
+    @ManagedOperation(value = "write the queued sessions", impact = "ACTION")
+    public void flush() throws Exception
+    {
+        while (true)
+        {
+            //lock each batch, so that a request writing its own session waits for one batch only
+            synchronized (_flushLock)
+            {
+                Map<SessionData, Long> batch = new LinkedHashMap<>();
+                synchronized (_lock)
+                {
+                    Iterator<Pending> iterator = _pending.values().iterator();
+                    while (iterator.hasNext() && batch.size() < _batchSize)
+                    {
+                        Pending pending = iterator.next();
+                        iterator.remove();
+                        pending.addTo(batch);
+                    }
+                }
+
+                if (batch.isEmpty())
+                    return;
+
+                write(batch);
+            }
+        }
+    }
+
+    /**
+     * Write one queued session to the delegate store.
+     *
+     * @param id the id of the session to write
+     * @throws Exception if the session could not be written, in which case it is queued again
+     */
+    private void flush(String id) throws Exception
+    {
+        synchronized (_flushLock)
+        {
+            Map<SessionData, Long> batch = new LinkedHashMap<>();
+            synchronized (_lock)
+            {
+                Pending pending = _pending.remove(id);
+                //already written by a concurrent flush
+                if (pending == null)
+                    return;
+                pending.addTo(batch);
+            }
+            write(batch);
+        }
+    }
+
+    private void write(Map<SessionData, Long> batch) throws Exception
+    {
+        AtomicReference<Exception> exception = new AtomicReference<>();
+        _store._context.run(() ->
+        {
+            try
+            {
+                _store.doStoreAll(batch);
+            }
+            catch (Exception e)
+            {
+                exception.set(e);
+            }
+        });
+        _batches.increment();
+
+        if (exception.get() != null)
+        {
+            synchronized (_lock)
+            {
+                for (Map.Entry<SessionData, Long> entry : batch.entrySet())
+                {
+                    SessionData data = entry.getKey();
+                    Pending pending = _pending.get(data.getId());
+                    if (pending == null)
+                    {
+                        _pending.put(data.getId(), new Pending(data, entry.getValue(), null));
+                    }
+                    else
+                    {
+                        pending._lastSaveTime = entry.getValue();
+                        pending.addDirtyAttributes(null);
+                    }
+                }
+            }
+            throw exception.get();
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Wrote {} sessions", batch.size());
+    }
+
+    private void scheduledFlush()
+    {
+        synchronized (_lock)
+        {
+            _scheduled = false;
+            _batchScheduled = false;
+        }
+
+        try
+        {
+            flush();
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Unable to write sessions", e);
+        }
+
+        //retry the sessions that could not be written
+        synchronized (_lock)
+        {
+            if (!_pending.isEmpty() && !_scheduled && isRunning())
+            {
+                _scheduled = true;
+                _scheduler.schedule(this::scheduledFlush, _maxStalenessMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        try
+        {
+            flush();
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Unable to write sessions", e);
+        }
+        super.doStop();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[pending=%d,batch=%d,staleness=%d,store=%s]", getClass().getSimpleName(), hashCode(),
+            getPendingSessions(), _batchSize, _maxStalenessMs, _store);
+    }
+
+    private static class Pending
+    {
+        private SessionData _data;
+        private long _lastSaveTime;
+        private Set<String> _dirtyAttributes;
+
+        private Pending(SessionData data, long lastSaveTime, Set<String> dirtyAttributes)
+        {
+            _data = data;
+            _lastSaveTime = lastSaveTime;
+            _dirtyAttributes = dirtyAttributes == null ? null : new HashSet<>(dirtyAttributes);
+        }
+
+        private void addTo(Map<SessionData, Long> batch)
+        {
+            //the session was cleaned when queued, so tell the store which attributes to write
+            _data.addDirtyAttributes(_dirtyAttributes);
+            batch.put(_data, _lastSaveTime);
+        }
+
+        private void addDirtyAttributes(Set<String> dirtyAttributes)
+        {
+            if (dirtyAttributes == null)
+                _dirtyAttributes = null;
+            else if (_dirtyAttributes != null)
+                _dirtyAttributes.addAll(dirtyAttributes);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+/**
+ * WriteBehindSessionDataStoreFactory
+ */
+public class WriteBehindSessionDataStoreFactory extends AbstractSessionDataStoreFactory
+{
+    /**
+     * The factory of the SessionDataStore that will store session data.
+     */
+    protected SessionDataStoreFactory _sessionStoreFactory;
+
+    int _maxPendingSessions = 1024;
+    int _batchSize = 64;
+    long _maxStalenessMs = 1000;
+
+    /**
+     * @param factory The factory for the actual SessionDataStore that the
+     * WriteBehindSessionDataStore will delegate to
+     */
+    public void setSessionStoreFactory(SessionDataStoreFactory factory)
+    {
+        _sessionStoreFactory = factory;
+    }
+
+    /**
+     * @return the number of queued sessions above which the request threads write the queue
+     */
+    public int getMaxPendingSessions()
+    {
+        return _maxPendingSessions;
+    }
+
+    /**
+     * @param maxPendingSessions the number of queued sessions above which the request threads write the queue
+     */
+    public void setMaxPendingSessions(int maxPendingSessions)
+    {
+        _maxPendingSessions = maxPendingSessions;
+    }
+
+    /**
+     * @return the max number of sessions written at once
+     */
+    public int getBatchSize()
+    {
+        return _batchSize;
+    }
+
+    /**
+     * @param batchSize the max number of sessions written at once
+     */
+    public void setBatchSize(int batchSize)
+    {
+        _batchSize = batchSize;
+    }
+
+    /**
+     * @return the max time in ms a session stays queued before being written
+     */
+    public long getMaxStalenessMs()
+    {
+        return _maxStalenessMs;
+    }
+
+    /**
+     * @param maxStalenessMs the max time in ms a session stays queued before being written
+     */
+    public void setMaxStalenessMs(long maxStalenessMs)
+    {
+        _maxStalenessMs = maxStalenessMs;
+    }
+
+    /**
+     * @see org.eclipse.jetty.server.session.SessionDataStoreFactory#getSessionDataStore(org.eclipse.jetty.server.session.SessionHandler)
+     */
+    @Override
+    public SessionDataStore getSessionDataStore(SessionHandler handler) throws Exception
+    {
+        SessionDataStore store = _sessionStoreFactory.getSessionDataStore(handler);
+        if (!(store instanceof AbstractSessionDataStore))
+            throw new IllegalStateException("Not an AbstractSessionDataStore: " + store);
+
+        WriteBehindSessionDataStore writeBehind = new WriteBehindSessionDataStore((AbstractSessionDataStore)store);
+        writeBehind.setMaxPendingSessions(getMaxPendingSessions());
+        writeBehind.setBatchSize(getBatchSize());
+        writeBehind.setMaxStalenessMs(getMaxStalenessMs());
+        return writeBehind;
+    }
+}
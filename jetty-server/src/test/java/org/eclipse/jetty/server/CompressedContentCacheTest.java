@@ -0,0 +1,93 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.eclipse.jetty.http.CompressedContentFormat.BR;
+import static org.eclipse.jetty.http.CompressedContentFormat.GZIP;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompressedContentCacheTest
+{
+    @Test
+    public void testPutGet()
+    {
+        CompressedContentCache cache = new CompressedContentCache();
+        assertTrue(cache.put("/a", "\"1\"", GZIP, BufferUtil.toBuffer("gzipped")));
+        assertTrue(cache.put("/a", "\"1\"", BR, BufferUtil.toBuffer("br")));
+
+        assertThat(BufferUtil.toString(cache.get("/a", "\"1\"", GZIP)), is("gzipped"));
+        assertThat(BufferUtil.toString(cache.get("/a", "\"1\"", BR)), is("br"));
+        assertThat(cache.get("/a", "\"2\"", GZIP), nullValue());
+        assertThat(cache.get("/b", "\"1\"", GZIP), nullValue());
+        assertThat(cache.getCachedEntries(), is(1));
+        assertThat(cache.getCachedSize(), is(9L));
+        assertThat(cache.getCacheHits(), is(2L));
+        assertThat(cache.getCacheMisses(), is(2L));
+    }
+
+    @Test
+    public void testNewETagReplacesVariants()
+    {
+        CompressedContentCache cache = new CompressedContentCache();
+        cache.put("/a", "\"1\"", GZIP, BufferUtil.toBuffer("gzipped"));
+        cache.put("/a", "\"1\"", BR, BufferUtil.toBuffer("br"));
+        cache.put("/a", "\"2\"", GZIP, BufferUtil.toBuffer("new"));
+
+        assertThat(cache.get("/a", "\"1\"", BR), nullValue());
+        assertThat(BufferUtil.toString(cache.get("/a", "\"2\"", GZIP)), is("new"));
+        assertThat(cache.getCachedSize(), is(3L));
+    }
+
+    @Test
+    public void testEvictionBySize()
+    {
+        CompressedContentCache cache = new CompressedContentCache();
+        cache.setMaxCacheSize(250);
+        ByteBuffer content = ByteBuffer.allocate(100);
+        cache.put("/a", "\"1\"", GZIP, content.slice());
+        cache.put("/b", "\"1\"", GZIP, content.slice());
+        // Access /a so that it gets a second chance.
+        cache.get("/a", "\"1\"", GZIP);
+        cache.put("/c", "\"1\"", GZIP, content.slice());
+
+        assertThat(cache.getCachedSize(), is(200L));
+        assertThat(cache.getCacheEvictions(), is(1L));
+        assertThat(cache.get("/b", "\"1\"", GZIP), nullValue());
+        assertThat(cache.get("/a", "\"1\"", GZIP).remaining(), is(100));
+        assertThat(cache.get("/c", "\"1\"", GZIP).remaining(), is(100));
+    }
+
+    @Test
+    public void testMaxEntrySize()
+    {
+        CompressedContentCache cache = new CompressedContentCache();
+        cache.setMaxEntrySize(10);
+        assertFalse(cache.put("/a", "\"1\"", GZIP, ByteBuffer.allocate(11)));
+        assertThat(cache.getCachedEntries(), is(0));
+    }
+}
@@ -360,6 +360,53 @@ public class ResourceCacheTest
         assertEquals(getContent(cache, "four"), "4 - four (no extension)");
     }
 
+    @Test
+    public void testEvictionSecondChance() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        String[] names = new String[5];
+        for (int i = 0; i < names.length; i++)
+        {
+            names[i] = "E-" + i + ".txt";
+            makeFile(basePath.resolve(names[i]), "content " + i);
+        }
+
+        Resource directory = new PathResource(basePath);
+        CachedContentFactory cache = new CachedContentFactory(null, directory, new MimeTypes(), false, false, CompressedContentFormat.NONE);
+        cache.setMaxCachedFiles(3);
+
+        // Fill the cache.
+        for (int i = 0; i < 3; i++)
+        {
+            assertThat(getContent(cache, names[i]), is("content " + i));
+        }
+        assertEquals(3, cache.getCachedFiles());
+        assertEquals(0, cache.getCacheHits());
+        assertEquals(3, cache.getCacheMisses());
+
+        // Access the oldest entry, so that it is not the next evicted.
+        assertThat(getContent(cache, names[0]), is("content 0"));
+        assertEquals(1, cache.getCacheHits());
+
+        // Adding a new entry evicts the least recently used, names[1].
+        assertThat(getContent(cache, names[3]), is("content 3"));
+        assertEquals(3, cache.getCachedFiles());
+        assertEquals(1, cache.getCacheEvictions());
+
+        // names[0] is still cached, names[1] is not.
+        long hits = cache.getCacheHits();
+        getContent(cache, names[0]);
+        assertEquals(hits + 1, cache.getCacheHits());
+        long misses = cache.getCacheMisses();
+        getContent(cache, names[1]);
+        assertEquals(misses + 1, cache.getCacheMisses());
+        assertEquals(3, cache.getCachedFiles());
+        assertEquals(2, cache.getCacheEvictions());
+
+        cache.flushCache();
+        assertEquals(0, cache.getCachedFiles());
+    }
+
     static String getContent(CachedContentFactory rc, String path) throws Exception
     {
         HttpContent content = rc.getContent(path, rc.getMaxCachedFileSize());
@@ -28,13 +28,17 @@ import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.io.NetworkTrafficListener;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.NetworkTrafficServerConnector;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
@@ -71,6 +75,8 @@ public class ResourceHandlerTest
     private static HttpConfiguration _config;
     private static ServerConnector _connector;
     private static LocalConnector _local;
+    private static NetworkTrafficServerConnector _trafficConnector;
+    private static final LongAdder _trafficOut = new LongAdder();
     private static ContextHandler _contextHandler;
     private static ResourceHandler _resourceHandler;
 
@@ -126,7 +132,17 @@ public class ResourceHandlerTest
 
         _local = new LocalConnector(_server);
 
-        _server.setConnectors(new Connector[]{_connector, _local});
+        _trafficConnector = new NetworkTrafficServerConnector(_server, new HttpConnectionFactory(_config));
+        _trafficConnector.addNetworkTrafficListener(new NetworkTrafficListener.Adapter()
+        {
+            @Override
+            public void outgoing(Socket socket, ByteBuffer bytes)
+            {
+                _trafficOut.add(bytes.remaining());
+            }
+        });
+
+        _server.setConnectors(new Connector[]{_connector, _local, _trafficConnector});
 
         _resourceHandler = new ResourceHandler();
 
@@ -255,6 +271,71 @@ public class ResourceHandlerTest
         }
     }
 
+    @Test
+    public void testBiggerPersistent() throws Exception
+    {
+        long length = new File(MavenTestingUtils.getTargetFile("test-classes/simple"), "bigger.txt").length();
+        try (Socket socket = new Socket("localhost", _connector.getLocalPort()))
+        {
+            socket.getOutputStream().write((
+                "GET /resource/bigger.txt HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                "GET /resource/bigger.txt HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+            HttpTester.Input input = HttpTester.from(socket.getInputStream());
+
+            for (int i = 0; i < 2; i++)
+            {
+                HttpTester.Response response = HttpTester.parseResponse(input);
+                assertThat(response.getStatus(), equalTo(200));
+                assertThat(response.getLongField(CONTENT_LENGTH.asString()), equalTo(length));
+                String content = response.getContent();
+                assertThat((long)content.length(), equalTo(length));
+                assertThat(content, Matchers.startsWith("     1\tThis is a big file"));
+                assertThat(content, Matchers.endsWith("   400\tThis is a big file" + LN));
+            }
+        }
+    }
+
+    @Test
+    public void testBiggerWithoutFileTransfer() throws Exception
+    {
+        _config.setUseFileTransfer(false);
+        try (Socket socket = new Socket("localhost", _connector.getLocalPort()))
+        {
+            socket.getOutputStream().write("GET /resource/bigger.txt HTTP/1.0\n\n".getBytes());
+            String response = IO.toString(socket.getInputStream());
+            assertThat(response, Matchers.startsWith("HTTP/1.1 200 OK"));
+            assertThat(response, Matchers.endsWith("   400\tThis is a big file" + LN));
+        }
+        finally
+        {
+            _config.setUseFileTransfer(true);
+        }
+    }
+
+    @Test
+    public void testBiggerOverNetworkTrafficConnector() throws Exception
+    {
+        long length = new File(MavenTestingUtils.getTargetFile("test-classes/simple"), "bigger.txt").length();
+        _trafficOut.reset();
+        try (Socket socket = new Socket("localhost", _trafficConnector.getLocalPort()))
+        {
+            socket.getOutputStream().write("GET /resource/bigger.txt HTTP/1.0\r\n\r\n".getBytes());
+            HttpTester.Response response = HttpTester.parseResponse(HttpTester.from(socket.getInputStream()));
+            assertThat(response.getStatus(), equalTo(200));
+            assertThat(response.getLongField(CONTENT_LENGTH.asString()), equalTo(length));
+            String content = response.getContent();
+            assertThat((long)content.length(), equalTo(length));
+            assertThat(content, Matchers.endsWith("   400\tThis is a big file" + LN));
+        }
+        // The traffic listener is notified after the bytes are written.
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (_trafficOut.longValue() <= length && System.nanoTime() < end)
+        {
+            Thread.sleep(10);
+        }
+        assertThat(_trafficOut.longValue(), Matchers.greaterThan(length));
+    }
+
     @Test
     public void testWelcome() throws Exception
     {
@@ -42,6 +42,7 @@ import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -596,6 +597,15 @@ public class StatisticsHandlerTest
         assertTrue(_statsHandler.getDispatchedTimeTotal() < _statsHandler.getRequestTimeTotal());
         assertEquals(_statsHandler.getDispatchedTimeTotal(), _statsHandler.getDispatchedTimeMax());
         assertEquals(_statsHandler.getDispatchedTimeTotal(), _statsHandler.getDispatchedTimeMean(), 0.01);
+
+        // With a single sample, the percentiles are the sample.
+        assertEquals(_statsHandler.getRequestTimeMax(), _statsHandler.getRequestTime99());
+        assertEquals(_statsHandler.getDispatchedTimeMax(), _statsHandler.getDispatchedTime50());
+        assertThat(_statsHandler.getAsyncWaitTimeMax(), greaterThanOrEqualTo(requestTime * 3 / 4));
+        assertTrue(_statsHandler.getAsyncWaitTimeMax() <= _statsHandler.getRequestTimeTotal());
+        assertEquals(_statsHandler.getAsyncWaitTimeMax(), _statsHandler.getAsyncWaitTime999());
+        assertThat(_statsHandler.getRequestTimeInterval(), startsWith("count=1,"));
+        assertThat(_statsHandler.getRequestTimeInterval(), startsWith("count=0,"));
     }
 
     @Test
@@ -0,0 +1,161 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class BinarySessionDataCodecTest
+{
+    public static class Custom implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+        final String value;
+
+        Custom(String value)
+        {
+            this.value = value;
+        }
+    }
+
+    private static SessionData newSessionData()
+    {
+        return new SessionData("1234", "/test", "0.0.0.0", 100, 200, 200, -1);
+    }
+
+    private static SessionData roundTrip(SessionDataCodec encoder, SessionDataCodec decoder, SessionData data) throws Exception
+    {
+        byte[] bytes = encoder.encodeAttributes(data);
+        SessionData result = newSessionData();
+        decoder.decodeAttributes(result, bytes);
+        return result;
+    }
+
+    @Test
+    public void testCommonTypes() throws Exception
+    {
+        SessionData data = newSessionData();
+        data.setAttribute("string", "héllo");
+        data.setAttribute("int", -42);
+        data.setAttribute("long", Long.MAX_VALUE);
+        data.setAttribute("boolean", Boolean.TRUE);
+        data.setAttribute("byte", (byte)7);
+        data.setAttribute("short", (short)-300);
+        data.setAttribute("char", 'x');
+        data.setAttribute("float", 1.5F);
+        data.setAttribute("double", Math.PI);
+        data.setAttribute("bytes", new byte[]{1, 2, 3});
+
+        BinarySessionDataCodec codec = new BinarySessionDataCodec();
+        SessionData result = roundTrip(codec, codec, data);
+
+        assertEquals(10, result.getKeys().size());
+        assertEquals("héllo", result.getAttribute("string"));
+        assertEquals(-42, result.getAttribute("int"));
+        assertEquals(Long.MAX_VALUE, result.getAttribute("long"));
+        assertEquals(Boolean.TRUE, result.getAttribute("boolean"));
+        assertEquals((byte)7, result.getAttribute("byte"));
+        assertEquals((short)-300, result.getAttribute("short"));
+        assertEquals('x', result.getAttribute("char"));
+        assertEquals(1.5F, result.getAttribute("float"));
+        assertEquals(Math.PI, result.getAttribute("double"));
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[])result.getAttribute("bytes"));
+    }
+
+    @Test
+    public void testCollections() throws Exception
+    {
+        List<Object> list = new ArrayList<>(Arrays.asList("a", 1, null, 2L));
+        Map<Object, Object> map = new HashMap<>();
+        map.put("list", list);
+        map.put(3, new LinkedHashSet<>(Arrays.asList("z", "y", "x")));
+
+        SessionData data = newSessionData();
+        data.setAttribute("map", map);
+
+        BinarySessionDataCodec codec = new BinarySessionDataCodec();
+        SessionData result = roundTrip(codec, codec, data);
+
+        Object value = result.getAttribute("map");
+        assertThat(value, instanceOf(HashMap.class));
+        assertEquals(map, value);
+        assertEquals(Arrays.asList("z", "y", "x"), new ArrayList<>((LinkedHashSet<?>)((Map<?, ?>)value).get(3)));
+    }
+
+    @Test
+    public void testFallbackToJavaSerialization() throws Exception
+    {
+        List<Object> list = new ArrayList<>();
+        list.add(new Custom("inner"));
+
+        SessionData data = newSessionData();
+        data.setAttribute("custom", new Custom("value"));
+        data.setAttribute("list", list);
+        data.setAttribute("list.unmodifiable", Arrays.asList("a", "b"));
+
+        BinarySessionDataCodec codec = new BinarySessionDataCodec();
+        SessionData result = roundTrip(codec, codec, data);
+
+        assertEquals("value", ((Custom)result.getAttribute("custom")).value);
+        assertEquals("inner", ((Custom)((List<?>)result.getAttribute("list")).get(0)).value);
+        assertEquals(Arrays.asList("a", "b"), result.getAttribute("list.unmodifiable"));
+    }
+
+    @Test
+    public void testDecodeJavaSerialization() throws Exception
+    {
+        SessionData data = newSessionData();
+        data.setAttribute("string", "value");
+        data.setAttribute("custom", new Custom("value"));
+
+        SessionData result = roundTrip(new JavaSerializationSessionDataCodec(), new BinarySessionDataCodec(), data);
+
+        assertEquals("value", result.getAttribute("string"));
+        assertEquals("value", ((Custom)result.getAttribute("custom")).value);
+        assertNull(result.getAttribute("missing"));
+    }
+
+    @Test
+    public void testSmallerThanJavaSerialization() throws Exception
+    {
+        SessionData data = newSessionData();
+        data.setAttribute("user", "someone@example.com");
+        data.setAttribute("visits", 12);
+        data.setAttribute("login", 1571234567890L);
+        data.setAttribute("roles", new ArrayList<>(Arrays.asList("admin", "user")));
+
+        int binary = new BinarySessionDataCodec().encodeAttributes(data).length;
+        int java = new JavaSerializationSessionDataCodec().encodeAttributes(data).length;
+        assertThat(binary, lessThan(java / 2));
+    }
+}
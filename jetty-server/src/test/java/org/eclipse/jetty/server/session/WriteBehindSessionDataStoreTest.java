@@ -0,0 +1,267 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteBehindSessionDataStoreTest
+{
+    public static class BatchSessionDataStore extends AbstractSessionDataStore
+    {
+        final Map<String, Long> stored = new ConcurrentHashMap<>();
+        final Map<String, Set<String>> dirtyAttributes = new ConcurrentHashMap<>();
+        final BlockingQueue<Map<SessionData, Long>> batches = new LinkedBlockingQueue<>();
+        volatile boolean fail;
+
+        @Override
+        public void doStoreAll(Map<SessionData, Long> sessions) throws Exception
+        {
+            if (fail)
+                throw new Exception("test");
+            super.doStoreAll(sessions);
+            batches.add(sessions);
+        }
+
+        @Override
+        public void doStore(String id, SessionData data, long lastSaveTime)
+        {
+            stored.put(id, lastSaveTime);
+            Set<String> dirty = data.getDirtyAttributes();
+            if (dirty != null)
+                dirtyAttributes.put(id, new HashSet<>(dirty));
+        }
+
+        @Override
+        public SessionData doLoad(String id)
+        {
+            return null;
+        }
+
+        @Override
+        public Set<String> doGetExpired(Set<String> candidates)
+        {
+            return new HashSet<>();
+        }
+
+        @Override
+        public boolean isPassivating()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean exists(String id)
+        {
+            return stored.containsKey(id);
+        }
+
+        @Override
+        public boolean delete(String id)
+        {
+            return stored.remove(id) != null;
+        }
+    }
+
+    private BatchSessionDataStore delegate;
+    private WriteBehindSessionDataStore store;
+
+    private void start(int batchSize, long maxStalenessMs) throws Exception
+    {
+        delegate = new BatchSessionDataStore();
+        store = new WriteBehindSessionDataStore(delegate);
+        store.setBatchSize(batchSize);
+        store.setMaxStalenessMs(maxStalenessMs);
+        store.initialize(new SessionContext("node0", null));
+        store.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        if (store != null)
+            store.stop();
+    }
+
+    private SessionData newSessionData(String id)
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = store.newSessionData(id, now, now, now, -1);
+        data.setAttribute("name", id);
+        return data;
+    }
+
+    @Test
+    public void testCoalescedAndFlushedAfterStaleness() throws Exception
+    {
+        start(64, 200);
+
+        SessionData data = newSessionData("1234");
+        store.store("1234", data);
+        data.setAttribute("name", "other");
+        store.store("1234", data);
+
+        // Not written yet, but visible.
+        assertTrue(delegate.stored.isEmpty());
+        assertTrue(store.exists("1234"));
+        assertFalse(data.isDirty());
+
+        // A loaded copy does not change the queued session.
+        SessionData loaded = store.load("1234");
+        assertNotSame(data, loaded);
+        assertEquals("other", loaded.getAttribute("name"));
+        loaded.setAttribute("name", "loaded");
+        assertEquals("other", data.getAttribute("name"));
+
+        Map<SessionData, Long> batch = delegate.batches.poll(5, TimeUnit.SECONDS);
+        assertNotNull(batch);
+        assertEquals(1, batch.size());
+        assertEquals(0L, delegate.stored.get("1234"));
+        assertEquals(1, store.getCoalescedStores());
+        assertEquals(0, store.getPendingSessions());
+
+        // A clean session is not written again.
+        store.store("1234", data);
+        assertEquals(0, store.getPendingSessions());
+    }
+
+    @Test
+    public void testBatchSize() throws Exception
+    {
+        start(4, 60000);
+
+        for (int i = 0; i < 10; ++i)
+        {
+            String id = "id" + i;
+            store.store(id, newSessionData(id));
+        }
+
+        // Batches are written as soon as they are full.
+        List<Map<SessionData, Long>> batches = new ArrayList<>();
+        for (int i = 0; i < 2; ++i)
+        {
+            Map<SessionData, Long> batch = delegate.batches.poll(5, TimeUnit.SECONDS);
+            assertNotNull(batch);
+            batches.add(batch);
+        }
+        assertEquals(4, batches.get(0).size());
+        assertEquals(4, batches.get(1).size());
+
+        // The remaining sessions are written on stop.
+        store.stop();
+        assertEquals(10, delegate.stored.size());
+    }
+
+    @Test
+    public void testBoundedQueueWrittenByCaller() throws Exception
+    {
+        start(64, 60000);
+        store.setMaxPendingSessions(3);
+
+        for (int i = 0; i < 3; ++i)
+        {
+            String id = "id" + i;
+            store.store(id, newSessionData(id));
+        }
+
+        // The caller has written its own session.
+        assertTrue(delegate.stored.containsKey("id2"));
+
+        // The rest of the queue is written by the scheduler.
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (delegate.stored.size() < 3 && System.nanoTime() < end)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(3, delegate.stored.size());
+        assertEquals(0, store.getPendingSessions());
+    }
+
+    @Test
+    public void testDeleteDiscardsQueuedWrite() throws Exception
+    {
+        start(64, 60000);
+
+        store.store("1234", newSessionData("1234"));
+        assertEquals(1, store.getPendingSessions());
+        store.delete("1234");
+        assertEquals(0, store.getPendingSessions());
+        assertNull(store.load("1234"));
+
+        store.stop();
+        assertTrue(delegate.stored.isEmpty());
+    }
+
+    @Test
+    public void testFailedWriteQueuedAgain() throws Exception
+    {
+        start(64, 60000);
+
+        SessionData data = newSessionData("1234");
+        store.store("1234", data);
+        delegate.fail = true;
+        assertThrows(Exception.class, () -> store.flush());
+        assertEquals(1, store.getPendingSessions());
+
+        // Updated while the write was failing, but still inserted.
+        data.setAttribute("name", "other");
+        store.store("1234", data);
+        delegate.fail = false;
+        store.flush();
+        assertEquals(0L, delegate.stored.get("1234"));
+    }
+
+    @Test
+    public void testDirtyAttributesWritten() throws Exception
+    {
+        start(64, 60000);
+
+        SessionData data = newSessionData("1234");
+        data.setLastSaved(1);
+        data.clean();
+        data.setAttribute("a", "A");
+        store.store("1234", data);
+        data.setAttribute("b", "B");
+        store.store("1234", data);
+        assertTrue(data.getDirtyAttributes().isEmpty());
+
+        // The attributes changed by both stores are written.
+        store.flush();
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), delegate.dirtyAttributes.get("1234"));
+    }
+}
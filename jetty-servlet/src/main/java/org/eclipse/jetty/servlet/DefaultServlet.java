@@ -142,6 +142,7 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
 
     private Resource _resourceBase;
     private CachedContentFactory _cache;
+    private boolean _cacheBean;
 
     private MimeTypes _mimeTypes;
     private String[] _welcomes;
@@ -265,6 +266,8 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
                 if (maxCachedFiles >= -1)
                     _cache.setMaxCachedFiles(maxCachedFiles);
                 _servletContext.setAttribute(resourceCache == null ? "resourceCache" : resourceCache, _cache);
+                // Export the cache statistics via JMX.
+                _cacheBean = _contextHandler.addBean(_cache);
             }
         }
         catch (Exception e)
@@ -486,6 +489,8 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
     {
         if (_cache != null)
             _cache.flushCache();
+        if (_cacheBean)
+            _contextHandler.removeBean(_cache);
         super.destroy();
     }
 
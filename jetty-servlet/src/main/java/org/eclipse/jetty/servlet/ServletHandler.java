@@ -453,6 +453,10 @@ public class ServletHandler extends ScopedHandler
         {
             servletHolder = mapping.getResource();
 
+            // Remember the mapping of the request dispatch, for statistics
+            if (DispatcherType.REQUEST.equals(type))
+                baseRequest.setServletPathSpec(mapping.getPathSpec());
+
             if (mapping.getPathSpec() != null)
             {
                 PathSpec pathSpec = mapping.getPathSpec();
@@ -25,9 +25,14 @@ import java.io.InputStream;
 import java.io.PrintWriter;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.Enumeration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import javax.servlet.DispatcherType;
@@ -41,11 +46,21 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.http.ResourceHttpContent;
+import org.eclipse.jetty.server.CompressedContentCache;
 import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.ResourceService;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.gzip.ContentEncoder;
+import org.eclipse.jetty.server.handler.gzip.ContentEncoding;
 import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.toolchain.test.FS;
+import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
 import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.resource.PathResource;
+import org.eclipse.jetty.util.resource.Resource;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -57,6 +72,7 @@ import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalToIgnoringCase;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -81,6 +97,8 @@ public class GzipHandlerTest
 
     private static final String __contentETag = String.format("W/\"%x\"", __content.hashCode());
     private static final String __contentETagGzip = String.format("W/\"%x--gzip\"", __content.hashCode());
+    private static final String __contentStrongETag = String.format("\"%x\"", __content.hashCode());
+    private static final String __contentStrongETagGzip = String.format("\"%x--gzip\"", __content.hashCode());
     private static final String __icontent = "BEFORE" + __content + "AFTER";
 
     private Server _server;
@@ -150,9 +168,10 @@ public class GzipHandlerTest
         {
             if (req.getParameter("vary") != null)
                 response.addHeader("Vary", req.getParameter("vary"));
-            response.setHeader("ETag", __contentETag);
+            String etag = req.getParameter("strong") != null ? __contentStrongETag : __contentETag;
+            response.setHeader("ETag", etag);
             String ifnm = req.getHeader("If-None-Match");
-            if (ifnm != null && ifnm.equals(__contentETag))
+            if (ifnm != null && ifnm.equals(etag))
             {
                 response.setStatus(304);
                 response.flushBuffer();
@@ -161,6 +180,10 @@ public class GzipHandlerTest
             {
                 PrintWriter writer = response.getWriter();
                 writer.write(__content);
+                // The same ETag for a different content of a different URI.
+                String user = req.getParameter("user");
+                if (user != null)
+                    writer.write(user);
             }
         }
 
@@ -175,6 +198,37 @@ public class GzipHandlerTest
         }
     }
 
+    public static class StrongETagResourceServlet extends HttpServlet
+    {
+        private final ResourceService _resourceService = new ResourceService();
+
+        public StrongETagResourceServlet(Resource baseResource)
+        {
+            _resourceService.setEtags(true);
+            _resourceService.setContentFactory((path, maxBuffer) ->
+            {
+                Resource resource = baseResource.addPath(path);
+                if (!resource.exists() || resource.isDirectory())
+                    return null;
+                return new ResourceHttpContent(resource, "text/plain", maxBuffer)
+                {
+                    @Override
+                    public String getETagValue()
+                    {
+                        return String.format("\"%x-%x\"", resource.lastModified(), resource.length());
+                    }
+                };
+            });
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse response) throws ServletException, IOException
+        {
+            if (!_resourceService.doGet(req, response))
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
     public static class EchoServlet extends HttpServlet
     {
         @Override
@@ -632,6 +686,319 @@ public class GzipHandlerTest
         assertThat(response.getContentBytes().length, is(512 * 1024));
     }
 
+    @Test
+    public void testContentEncodingSelectedByQuality() throws Exception
+    {
+        GzipHandler gzipHandler = (GzipHandler)_server.getHandler();
+        _server.stop();
+        TestContentEncoding encoding = new TestContentEncoding();
+        gzipHandler.addContentEncoding(encoding);
+        _server.start();
+        assertThat(gzipHandler.getContentEncodings().size(), is(2));
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("accept-encoding", "gzip;q=0.5, x-test");
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), is("x-test"));
+        assertThat(response.get("ETag"), is(String.format("W/\"%x--x-test\"", __content.hashCode())));
+        assertThat(response.getContent(), is(__content));
+        assertThat(encoding.released.poll(5, TimeUnit.SECONDS), notNullValue());
+        assertThat(encoding.getResponses(), is(1L));
+        assertThat(encoding.getBytesIn(), is((long)__content.length()));
+        assertThat(encoding.getBytesOut(), is((long)__content.length()));
+
+        // Equal quality values prefer the added encoding.
+        request.setHeader("accept-encoding", "gzip, x-test");
+        response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+        assertThat(response.get("Content-Encoding"), is("x-test"));
+        assertThat(encoding.released.poll(5, TimeUnit.SECONDS), notNullValue());
+
+        request.setHeader("accept-encoding", "gzip, x-test;q=0.5");
+        response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+        assertThat(response.get("Content-Encoding"), is("gzip"));
+        InputStream testIn = new GZIPInputStream(new ByteArrayInputStream(response.getContentBytes()));
+        ByteArrayOutputStream testOut = new ByteArrayOutputStream();
+        IO.copy(testIn, testOut);
+        assertEquals(__content, testOut.toString("UTF8"));
+        assertThat(encoding.released.poll(1, TimeUnit.SECONDS), nullValue());
+        assertThat(encoding.getResponses(), is(2L));
+
+        request.setHeader("accept-encoding", "x-test;q=0, *");
+        response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+        assertThat(response.get("Content-Encoding"), is("gzip"));
+
+        request.setHeader("accept-encoding", "identity, x-test;q=0.5");
+        response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+        assertThat(response.get("Content-Encoding"), nullValue());
+        assertThat(response.getContent(), is(__content));
+    }
+
+    @Test
+    public void testETagContentEncoding() throws Exception
+    {
+        GzipHandler gzipHandler = (GzipHandler)_server.getHandler();
+        _server.stop();
+        gzipHandler.addContentEncoding(new TestContentEncoding());
+        _server.start();
+
+        String etag = String.format("W/\"%x--x-test\"", __content.hashCode());
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("If-None-Match", etag);
+        request.setHeader("accept-encoding", "x-test");
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(304));
+        assertThat(response.get("ETag"), is(etag));
+    }
+
+    @Test
+    public void testCompressedContentCache() throws Exception
+    {
+        GzipHandler gzipHandler = (GzipHandler)_server.getHandler();
+        _server.stop();
+        CompressedContentCache cache = new CompressedContentCache();
+        gzipHandler.setCompressedContentCache(cache);
+        _server.start();
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content?strong=true");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("accept-encoding", "gzip");
+
+        for (int i = 0; i < 2; ++i)
+        {
+            HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+            assertThat(response.getStatus(), is(200));
+            assertThat(response.get("Content-Encoding"), is("gzip"));
+            assertThat(response.get("ETag"), is(__contentStrongETagGzip));
+            assertThat(response.getCSV("Vary", false), contains("Accept-Encoding"));
+            InputStream testIn = new GZIPInputStream(new ByteArrayInputStream(response.getContentBytes()));
+            ByteArrayOutputStream testOut = new ByteArrayOutputStream();
+            IO.copy(testIn, testOut);
+            assertEquals(__content, testOut.toString("UTF8"));
+        }
+        assertThat(cache.getCachedEntries(), is(1));
+        assertThat(cache.getCacheHits(), is(1L));
+        assertThat(cache.getCacheMisses(), is(1L));
+
+        // The query is part of the cache key.
+        request.setURI("/ctx/content?strong=true&other=value");
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+        assertThat(response.get("Content-Encoding"), is("gzip"));
+        assertThat(cache.getCachedEntries(), is(2));
+        assertThat(cache.getCacheHits(), is(1L));
+
+        // Responses that vary by other headers are not cached.
+        cache.flushCache();
+        request.setURI("/ctx/content?strong=true&vary=Other");
+        response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+        assertThat(response.get("Content-Encoding"), is("gzip"));
+        assertThat(cache.getCachedEntries(), is(0));
+    }
+
+    @Test
+    public void testCompressedContentCacheKeyedByQuery() throws Exception
+    {
+        GzipHandler gzipHandler = (GzipHandler)_server.getHandler();
+        _server.stop();
+        CompressedContentCache cache = new CompressedContentCache();
+        gzipHandler.setCompressedContentCache(cache);
+        _server.start();
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("accept-encoding", "gzip");
+
+        // Both URIs return the same strong ETag, but different contents.
+        for (String user : new String[]{"a", "b", "a", "b"})
+        {
+            request.setURI("/ctx/content?strong=true&user=" + user);
+            HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+            assertThat(response.getStatus(), is(200));
+            assertThat(response.get("Content-Encoding"), is("gzip"));
+            assertThat(response.get("ETag"), is(__contentStrongETagGzip));
+            InputStream testIn = new GZIPInputStream(new ByteArrayInputStream(response.getContentBytes()));
+            ByteArrayOutputStream testOut = new ByteArrayOutputStream();
+            IO.copy(testIn, testOut);
+            assertEquals(__content + user, testOut.toString("UTF8"));
+        }
+        assertThat(cache.getCachedEntries(), is(2));
+        assertThat(cache.getCacheHits(), is(2L));
+    }
+
+    @Test
+    public void testCompressedContentCacheSkipsWeakETag() throws Exception
+    {
+        GzipHandler gzipHandler = (GzipHandler)_server.getHandler();
+        _server.stop();
+        CompressedContentCache cache = new CompressedContentCache();
+        gzipHandler.setCompressedContentCache(cache);
+        _server.start();
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("accept-encoding", "gzip");
+
+        // A weak ETag does not guarantee identical content bytes.
+        for (int i = 0; i < 2; ++i)
+        {
+            HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+            assertThat(response.getStatus(), is(200));
+            assertThat(response.get("Content-Encoding"), is("gzip"));
+            assertThat(response.get("ETag"), is(__contentETagGzip));
+        }
+        assertThat(cache.getCachedEntries(), is(0));
+        assertThat(cache.getCacheHits(), is(0L));
+    }
+
+    @Test
+    public void testCompressedContentCacheServesResource() throws Exception
+    {
+        Path docRoot = MavenTestingUtils.getTargetTestingPath(GzipHandlerTest.class.getSimpleName() + "-docroot");
+        FS.ensureEmpty(docRoot);
+        Files.write(docRoot.resolve("file.txt"), __content.getBytes(StandardCharsets.UTF_8));
+
+        GzipHandler gzipHandler = (GzipHandler)_server.getHandler();
+        _server.stop();
+        CompressedContentCache cache = new CompressedContentCache();
+        gzipHandler.setCompressedContentCache(cache);
+        ServletContextHandler context = (ServletContextHandler)gzipHandler.getHandler();
+        // The DefaultServlet uses weak ETags, which are not cached.
+        context.addServlet(new ServletHolder(new StrongETagResourceServlet(new PathResource(docRoot))), "/");
+        _server.start();
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/file.txt");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("accept-encoding", "gzip");
+
+        HttpTester.Response response1 = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+        assertThat(response1.getStatus(), is(200));
+        assertThat(response1.get("Content-Encoding"), is("gzip"));
+        assertThat(cache.getCachedEntries(), is(1));
+
+        // Served by the DefaultServlet as precompressed content.
+        HttpTester.Response response2 = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+        assertThat(response2.getStatus(), is(200));
+        assertThat(response2.get("Content-Encoding"), is("gzip"));
+        assertThat(response2.get("ETag"), is(response1.get("ETag")));
+        assertThat(response2.getLongField("Content-Length"), is((long)response2.getContentBytes().length));
+        assertThat(cache.getCacheHits(), is(1L));
+        assertThat(cache.getCacheMisses(), is(1L));
+        InputStream testIn = new GZIPInputStream(new ByteArrayInputStream(response2.getContentBytes()));
+        ByteArrayOutputStream testOut = new ByteArrayOutputStream();
+        IO.copy(testIn, testOut);
+        assertEquals(__content, testOut.toString("UTF8"));
+    }
+
+    /**
+     * An encoding that copies the content, so that responses can be checked.
+     */
+    public static class TestContentEncoding extends ContentEncoding
+    {
+        private final BlockingQueue<ContentEncoder> released = new LinkedBlockingQueue<>();
+
+        public TestContentEncoding()
+        {
+            super(new CompressedContentFormat("x-test", ".test"));
+        }
+
+        @Override
+        public ContentEncoder acquire()
+        {
+            return new ContentEncoder()
+            {
+                private byte[] _input;
+                private int _offset;
+                private int _length;
+                private boolean _finish;
+                private long _in;
+                private long _out;
+
+                @Override
+                public CompressedContentFormat getFormat()
+                {
+                    return TestContentEncoding.this.getFormat();
+                }
+
+                @Override
+                public boolean needsInput()
+                {
+                    return _length == 0;
+                }
+
+                @Override
+                public void setInput(byte[] bytes, int offset, int length)
+                {
+                    _input = bytes;
+                    _offset = offset;
+                    _length = length;
+                    _in += length;
+                }
+
+                @Override
+                public void finish()
+                {
+                    _finish = true;
+                }
+
+                @Override
+                public boolean finished()
+                {
+                    return _finish && _length == 0;
+                }
+
+                @Override
+                public int encode(byte[] output, int offset, int length, boolean flush)
+                {
+                    int l = Math.min(length, _length);
+                    System.arraycopy(_input, _offset, output, offset, l);
+                    _offset += l;
+                    _length -= l;
+                    _out += l;
+                    return l;
+                }
+
+                @Override
+                public long getBytesIn()
+                {
+                    return _in;
+                }
+
+                @Override
+                public long getBytesOut()
+                {
+                    return _out;
+                }
+            };
+        }
+
+        @Override
+        protected void recycle(ContentEncoder encoder)
+        {
+            released.offer(encoder);
+        }
+    }
+
     public static class CheckFilter implements Filter
     {
         @Override
@@ -0,0 +1,147 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.servlet;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.RequestStatistics;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.ContextHandlerCollection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RequestStatisticsTest
+{
+    private Server _server;
+    private LocalConnector _connector;
+    private RequestStatistics _statistics;
+
+    @BeforeEach
+    public void createServer() throws Exception
+    {
+        _server = new Server();
+        _connector = new LocalConnector(_server);
+        _server.addConnector(_connector);
+
+        ContextHandlerCollection contexts = new ContextHandlerCollection();
+        _server.setHandler(contexts);
+        ServletContextHandler context1 = new ServletContextHandler(contexts, "/ctx1");
+        context1.addServlet(new ServletHolder("status", new StatusServlet()), "/status/*");
+        context1.addServlet(new ServletHolder("action", new StatusServlet()), "*.do");
+        ServletContextHandler context2 = new ServletContextHandler(contexts, "/ctx2");
+        context2.addServlet(new ServletHolder("status", new StatusServlet()), "/status/*");
+
+        _statistics = RequestStatistics.addToAllConnectors(_server);
+        _server.start();
+    }
+
+    @AfterEach
+    public void destroyServer() throws Exception
+    {
+        _server.stop();
+        _server.join();
+    }
+
+    @Test
+    public void testStatisticsPerContextAndMapping() throws Exception
+    {
+        request("/ctx1/status/200");
+        request("/ctx1/status/500");
+        request("/ctx1/test.do");
+        request("/ctx2/status/200");
+        request("/none");
+
+        awaitRequests(5);
+
+        Map<String, RequestStatistics.ContextStatistics> contexts = _statistics.getContexts();
+        RequestStatistics.ContextStatistics context1 = contexts.get("/ctx1");
+        assertEquals(3, context1.getRequests());
+        assertEquals(1, context1.getErrors());
+        assertEquals(2, context1.getMappings().get("/status/*").getRequests());
+        assertEquals(1, context1.getMappings().get("/status/*").getErrors());
+        assertEquals(1, context1.getMappings().get("*.do").getRequests());
+        assertEquals(3, context1.getRequestTime().getCount());
+
+        assertEquals(1, contexts.get("/ctx2").getMappings().get("/status/*").getRequests());
+        assertEquals(1, contexts.get(RequestStatistics.UNMAPPED).getRequests());
+
+        assertThat(_statistics.dump(), containsString("/ctx1 requests=3,errors=1"));
+        assertEquals(3, _statistics.getContextStatistics().length);
+        assertEquals(3, _statistics.getMappingStatistics().length);
+    }
+
+    @Test
+    public void testBoundedMappings() throws Exception
+    {
+        _statistics.setMaxMappings(1);
+
+        // Wait for each request, so that they are attributed in order.
+        request("/ctx1/status/200");
+        awaitRequests(1);
+        request("/ctx1/test.do");
+        awaitRequests(2);
+        request("/ctx2/status/200");
+        awaitRequests(3);
+
+        Map<String, RequestStatistics.ContextStatistics> contexts = _statistics.getContexts();
+        assertEquals(1, contexts.get("/ctx1").getMappings().get("/status/*").getRequests());
+        assertNull(contexts.get("/ctx1").getMappings().get("*.do"));
+        assertEquals(1, contexts.get("/ctx1").getMappings().get(RequestStatistics.OTHER).getRequests());
+        assertEquals(1, contexts.get("/ctx2").getMappings().get(RequestStatistics.OTHER).getRequests());
+    }
+
+    private void request(String uri) throws Exception
+    {
+        _connector.getResponse("GET " + uri + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+    }
+
+    private void awaitRequests(long requests) throws Exception
+    {
+        // Requests are completed after their response is sent.
+        LongSupplier completed = () -> _statistics.getContexts().values().stream().mapToLong(RequestStatistics.Statistics::getRequests).sum();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (completed.getAsLong() < requests && System.nanoTime() < end)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(requests, completed.getAsLong());
+    }
+
+    public static class StatusServlet extends HttpServlet
+    {
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response)
+        {
+            String pathInfo = request.getPathInfo();
+            response.setStatus(pathInfo == null ? 200 : Integer.parseInt(pathInfo.substring(1)));
+        }
+    }
+}
@@ -0,0 +1,470 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>A bounded, lock-free, multi-producer multi-consumer {@link BlockingQueue}
+ * split into a number of shards.</p>
+ * <p>Each shard is a bounded ring buffer where producers and consumers
+ * claim slots with a CAS on the tail and head sequences respectively,
+ * so no thread ever holds a lock to offer or poll an element.</p>
+ * <p>A thread offers to and polls from its "home" shard, chosen from its
+ * thread id, so that under load producers and consumers are spread over
+ * the shards rather than contending on a single head and tail.
+ * When its home shard is empty (or full), a thread steals from
+ * (or offers to) the other shards in turn.</p>
+ * <p>Threads that block waiting for an element are parked and pushed
+ * on a LIFO stack of waiters; producers only touch that stack when
+ * it is not empty, and wake the most recently parked thread, which
+ * is the most likely to still be hot in the CPU caches.</p>
+ * <p>Ordering is FIFO per shard only, which is sufficient for a job queue
+ * such as the one of {@link org.eclipse.jetty.util.thread.QueuedThreadPool},
+ * but this class should not be used where a global FIFO order is required.</p>
+ *
+ * @param <E> The element type
+ */
+public class ShardedBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E>
+{
+    private final Shard<E>[] _shards;
+    private final int _capacity;
+    private final ConcurrentLinkedDeque<Thread> _waiters = new ConcurrentLinkedDeque<>();
+
+    /**
+     * Creates a queue with as many shards as available processors.
+     *
+     * @param capacity the maximum number of elements the queue can hold
+     */
+    public ShardedBlockingQueue(int capacity)
+    {
+        this(capacity, -1);
+    }
+
+    /**
+     * @param capacity the maximum number of elements the queue can hold
+     * @param shards the number of shards, rounded up to a power of 2, or -1 for a heuristic value
+     */
+    @SuppressWarnings("unchecked")
+    public ShardedBlockingQueue(int capacity, int shards)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        if (shards <= 0)
+            shards = ProcessorUtils.availableProcessors();
+        shards = Math.min(roundUpToPowerOf2(shards), roundUpToPowerOf2(capacity));
+        int shardCapacity = roundUpToPowerOf2((capacity + shards - 1) / shards);
+        _shards = (Shard<E>[])new Shard<?>[shards];
+        for (int i = 0; i < shards; ++i)
+        {
+            _shards[i] = new Shard<>(shardCapacity);
+        }
+        _capacity = shardCapacity * shards;
+    }
+
+    private static int roundUpToPowerOf2(int value)
+    {
+        int result = Integer.highestOneBit(value);
+        return result == value ? value : result << 1;
+    }
+
+    /**
+     * @return the number of shards
+     */
+    public int getShards()
+    {
+        return _shards.length;
+    }
+
+    /**
+     * @return the maximum number of elements the queue can hold
+     */
+    public int getCapacity()
+    {
+        return _capacity;
+    }
+
+    /**
+     * @return the number of threads currently waiting for an element
+     */
+    public int getWaitingThreads()
+    {
+        return _waiters.size();
+    }
+
+    private int homeShard()
+    {
+        // Fibonacci hashing spreads sequential thread ids over the shards.
+        long id = Thread.currentThread().getId();
+        return (int)((id * 0x9E3779B97F4A7C15L) >>> 32) & (_shards.length - 1);
+    }
+
+    @Override
+    public boolean offer(E e)
+    {
+        Objects.requireNonNull(e);
+        int mask = _shards.length - 1;
+        int home = homeShard();
+        for (int i = 0; i <= mask; ++i)
+        {
+            if (_shards[(home + i) & mask].offer(e))
+            {
+                signal();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public E poll()
+    {
+        int mask = _shards.length - 1;
+        int home = homeShard();
+        for (int i = 0; i <= mask; ++i)
+        {
+            E e = _shards[(home + i) & mask].poll();
+            if (e != null)
+                return e;
+        }
+        return null;
+    }
+
+    @Override
+    public E peek()
+    {
+        for (Shard<E> shard : _shards)
+        {
+            E e = shard.peek();
+            if (e != null)
+                return e;
+        }
+        return null;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException
+    {
+        // Producers never wait in the typical usage of this class,
+        // so a bounded back-off is used rather than a second waiter stack.
+        while (!offer(e))
+        {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!offer(e))
+        {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                return false;
+            LockSupport.parkNanos(Math.min(remaining, TimeUnit.MICROSECONDS.toNanos(100)));
+        }
+        return true;
+    }
+
+    @Override
+    public E take() throws InterruptedException
+    {
+        return await(-1);
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        E e = poll();
+        if (e != null)
+            return e;
+        return await(Math.max(0, unit.toNanos(timeout)));
+    }
+
+    private E await(long nanos) throws InterruptedException
+    {
+        long deadline = nanos < 0 ? 0 : System.nanoTime() + nanos;
+        Thread thread = Thread.currentThread();
+        while (true)
+        {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+
+            // Register as waiter before the last check, so that a concurrent
+            // offer either is seen by the poll below or sees this waiter.
+            _waiters.offerFirst(thread);
+            E e = poll();
+            if (e != null)
+            {
+                _waiters.removeFirstOccurrence(thread);
+                // The signal for this element might have been consumed
+                // by another waiter, or this thread could have been
+                // signalled for an element it did not take, so pass on
+                // the signal if there are more elements.
+                if (!isEmpty())
+                    signal();
+                return e;
+            }
+
+            if (nanos < 0)
+            {
+                LockSupport.park(this);
+            }
+            else
+            {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                {
+                    _waiters.removeFirstOccurrence(thread);
+                    e = poll();
+                    if (e != null && !isEmpty())
+                        signal();
+                    return e;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            _waiters.removeFirstOccurrence(thread);
+        }
+    }
+
+    private void signal()
+    {
+        if (_waiters.isEmpty())
+            return;
+        Thread waiter = _waiters.pollFirst();
+        if (waiter != null)
+            LockSupport.unpark(waiter);
+    }
+
+    @Override
+    public int size()
+    {
+        long size = 0;
+        for (Shard<E> shard : _shards)
+        {
+            size += shard.size();
+        }
+        return (int)Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        for (Shard<E> shard : _shards)
+        {
+            if (shard.size() > 0)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int remainingCapacity()
+    {
+        return Math.max(0, _capacity - size());
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c)
+    {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements)
+    {
+        if (c == this)
+            throw new IllegalArgumentException();
+        int count = 0;
+        while (count < maxElements)
+        {
+            E e = poll();
+            if (e == null)
+                break;
+            c.add(e);
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * <p>Returns a weakly consistent iterator over a snapshot of the elements.</p>
+     * <p>Removal via the iterator is not supported.</p>
+     *
+     * @return an iterator over the elements
+     */
+    @Override
+    public Iterator<E> iterator()
+    {
+        List<E> snapshot = new ArrayList<>();
+        for (Shard<E> shard : _shards)
+        {
+            shard.snapshot(snapshot);
+        }
+        Iterator<E> iterator = snapshot.iterator();
+        return new Iterator<E>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next()
+            {
+                return iterator.next();
+            }
+        };
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[size=%d,capacity=%d,shards=%d,waiters=%d]",
+            getClass().getSimpleName(),
+            hashCode(),
+            size(),
+            getCapacity(),
+            getShards(),
+            getWaitingThreads());
+    }
+
+    /**
+     * <p>A bounded MPMC ring buffer, where each slot has a sequence number
+     * that tells producers and consumers whether the slot is free or full
+     * for the lap they are trying to claim.</p>
+     */
+    private static class Shard<E>
+    {
+        private final int _mask;
+        private final AtomicReferenceArray<E> _elements;
+        private final AtomicLongArray _sequences;
+        private final AtomicLong _head = new AtomicLong();
+        private final AtomicLong _tail = new AtomicLong();
+
+        private Shard(int capacity)
+        {
+            _mask = capacity - 1;
+            _elements = new AtomicReferenceArray<>(capacity);
+            _sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; ++i)
+            {
+                _sequences.lazySet(i, i);
+            }
+        }
+
+        private boolean offer(E e)
+        {
+            while (true)
+            {
+                long tail = _tail.get();
+                int index = (int)tail & _mask;
+                long sequence = _sequences.get(index);
+                long delta = sequence - tail;
+                if (delta == 0)
+                {
+                    if (_tail.compareAndSet(tail, tail + 1))
+                    {
+                        _elements.lazySet(index, e);
+                        _sequences.set(index, tail + 1);
+                        return true;
+                    }
+                }
+                else if (delta < 0)
+                {
+                    // The slot still holds the element of the previous lap.
+                    return false;
+                }
+            }
+        }
+
+        private E poll()
+        {
+            while (true)
+            {
+                long head = _head.get();
+                int index = (int)head & _mask;
+                long sequence = _sequences.get(index);
+                long delta = sequence - (head + 1);
+                if (delta == 0)
+                {
+                    if (_head.compareAndSet(head, head + 1))
+                    {
+                        E e = _elements.get(index);
+                        _elements.lazySet(index, null);
+                        _sequences.set(index, head + _mask + 1);
+                        return e;
+                    }
+                }
+                else if (delta < 0)
+                {
+                    // The slot has not been filled for this lap yet.
+                    return null;
+                }
+            }
+        }
+
+        private E peek()
+        {
+            long head = _head.get();
+            int index = (int)head & _mask;
+            if (_sequences.get(index) == head + 1)
+                return _elements.get(index);
+            return null;
+        }
+
+        private long size()
+        {
+            // Read the head first, so that the size is never negative.
+            long head = _head.get();
+            long tail = _tail.get();
+            return Math.max(0, tail - head);
+        }
+
+        private void snapshot(List<E> list)
+        {
+            long head = _head.get();
+            long tail = _tail.get();
+            for (long i = head; i < tail; ++i)
+            {
+                E e = _elements.get((int)i & _mask);
+                if (e != null)
+                    list.add(e);
+            }
+        }
+    }
+}
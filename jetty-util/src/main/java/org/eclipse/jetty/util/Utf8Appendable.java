@@ -164,8 +164,32 @@ public abstract class Utf8Appendable
     {
         try
         {
-            while (buf.remaining() > 0)
+            while (buf.hasRemaining())
             {
+                if (_state == UTF8_ACCEPT)
+                {
+                    // Skip the state machine for runs of 7-bit characters.
+                    int position = buf.position();
+                    int limit = buf.limit();
+                    int ascii;
+                    if (buf.hasArray())
+                    {
+                        int offset = buf.arrayOffset();
+                        ascii = scanAscii(buf.array(), offset + position, offset + limit) - offset;
+                        appendAscii(buf.array(), offset + position, ascii - position);
+                    }
+                    else
+                    {
+                        ascii = scanAscii(buf, position, limit);
+                        for (int i = position; i < ascii; i++)
+                        {
+                            _appendable.append((char)buf.get(i));
+                        }
+                    }
+                    buf.position(ascii);
+                    if (ascii == limit)
+                        break;
+                }
                 appendByte(buf.get());
             }
         }
@@ -185,9 +209,19 @@ public abstract class Utf8Appendable
         try
         {
             int end = offset + length;
-            for (int i = offset; i < end; i++)
+            int i = offset;
+            while (i < end)
             {
-                appendByte(b[i]);
+                if (_state == UTF8_ACCEPT)
+                {
+                    // Skip the state machine for runs of 7-bit characters.
+                    int ascii = scanAscii(b, i, end);
+                    appendAscii(b, i, ascii - i);
+                    i = ascii;
+                    if (i == end)
+                        break;
+                }
+                appendByte(b[i++]);
             }
         }
         catch (IOException e)
@@ -196,6 +230,60 @@ public abstract class Utf8Appendable
         }
     }
 
+    /**
+     * @param b the bytes to scan
+     * @param offset the index to start scanning from
+     * @param end the index to stop scanning at
+     * @return the index of the first byte that is not a 7-bit character, or {@code end}
+     */
+    private static int scanAscii(byte[] b, int offset, int end)
+    {
+        int i = offset;
+        // Check 8 bytes at a time, the sign bit of the OR is set if any byte is not 7-bit.
+        while (end - i >= 8 && (b[i] | b[i + 1] | b[i + 2] | b[i + 3] | b[i + 4] | b[i + 5] | b[i + 6] | b[i + 7]) >= 0)
+        {
+            i += 8;
+        }
+        while (i < end && b[i] >= 0)
+        {
+            ++i;
+        }
+        return i;
+    }
+
+    private static int scanAscii(ByteBuffer buf, int offset, int end)
+    {
+        int i = offset;
+        while (end - i >= 8 && (buf.getLong(i) & 0x8080808080808080L) == 0)
+        {
+            i += 8;
+        }
+        while (i < end && buf.get(i) >= 0)
+        {
+            ++i;
+        }
+        return i;
+    }
+
+    /**
+     * <p>Appends a run of 7-bit characters, that need no decoding.</p>
+     * <p>Subclasses may override to append the run in bulk to their
+     * specific {@link Appendable}.</p>
+     *
+     * @param b the bytes to append
+     * @param offset the index of the first byte to append
+     * @param length the number of bytes to append
+     * @throws IOException if the characters cannot be appended
+     */
+    protected void appendAscii(byte[] b, int offset, int length) throws IOException
+    {
+        int end = offset + length;
+        for (int i = offset; i < end; i++)
+        {
+            _appendable.append((char)b[i]);
+        }
+    }
+
     public boolean append(byte[] b, int offset, int length, int maxChars)
     {
         try
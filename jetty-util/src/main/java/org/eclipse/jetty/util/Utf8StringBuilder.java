@@ -59,6 +59,18 @@ public class Utf8StringBuilder extends Utf8Appendable
         _buffer.setLength(0);
     }
 
+    @Override
+    protected void appendAscii(byte[] b, int offset, int length)
+    {
+        StringBuilder buffer = _buffer;
+        buffer.ensureCapacity(buffer.length() + length);
+        int end = offset + length;
+        for (int i = offset; i < end; i++)
+        {
+            buffer.append((char)b[i]);
+        }
+    }
+
     @Override
     public String getPartialString()
     {
@@ -22,15 +22,20 @@ import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 
+@ManagedObject
 public abstract class CompressionPool<T> extends AbstractLifeCycle
 {
     public static final int INFINITE_CAPACITY = -1;
 
     private final Queue<T> _pool;
     private final AtomicInteger _numObjects = new AtomicInteger(0);
+    private final AtomicInteger _liveObjects = new AtomicInteger(0);
     private final int _capacity;
+    private MemoryBudget _memoryBudget;
 
     /**
      * Create a Pool of {@link T} instances.
@@ -53,38 +58,121 @@ public abstract class CompressionPool<T> extends AbstractLifeCycle
 
     protected abstract void reset(T object);
 
+    /**
+     * @return the estimated memory in bytes held by an object of this pool
+     */
+    protected long getObjectMemory()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the memory budget shared with other pools, or null
+     */
+    public MemoryBudget getMemoryBudget()
+    {
+        return _memoryBudget;
+    }
+
+    /**
+     * <p>Sets the memory budget, that must be set before objects are acquired.</p>
+     *
+     * @param memoryBudget the memory budget shared with other pools, or null
+     */
+    public void setMemoryBudget(MemoryBudget memoryBudget)
+    {
+        _memoryBudget = memoryBudget;
+    }
+
+    @ManagedAttribute("The number of objects created and not yet ended")
+    public int getLiveObjects()
+    {
+        return _liveObjects.get();
+    }
+
+    @ManagedAttribute("The number of objects in the pool")
+    public int getPooledObjects()
+    {
+        return _pool == null ? 0 : _pool.size();
+    }
+
+    @ManagedAttribute("The estimated memory in bytes held by the objects created and not yet ended")
+    public long getMemory()
+    {
+        return getLiveObjects() * getObjectMemory();
+    }
+
     /**
      * @return Object taken from the pool if it is not empty or a newly created Object
      */
     public T acquire()
     {
-        T object;
+        T object = poll();
+        if (object == null)
+        {
+            MemoryBudget budget = _memoryBudget;
+            if (budget != null)
+                budget.reserve(getObjectMemory());
+            object = create();
+        }
+        return object;
+    }
 
-        if (_capacity == 0)
-            object = newObject();
-        else
+    /**
+     * @return Object taken from the pool if it is not empty, or a newly created Object
+     * if the memory budget allows it, or null
+     */
+    public T tryAcquire()
+    {
+        T object = poll();
+        if (object == null)
         {
-            object = _pool.poll();
-            if (object == null)
-                object = newObject();
-            else if (_capacity > 0)
-                _numObjects.decrementAndGet();
+            MemoryBudget budget = _memoryBudget;
+            if (budget != null && !budget.tryReserve(getObjectMemory()))
+                return null;
+            object = create();
         }
+        return object;
+    }
 
+    private T poll()
+    {
+        if (_capacity == 0)
+            return null;
+        T object = _pool.poll();
+        if (object != null && _capacity > 0)
+            _numObjects.decrementAndGet();
         return object;
     }
 
+    private T create()
+    {
+        _liveObjects.incrementAndGet();
+        return newObject();
+    }
+
+    private void destroy(T object)
+    {
+        end(object);
+        _liveObjects.decrementAndGet();
+        MemoryBudget budget = _memoryBudget;
+        if (budget != null)
+            budget.release(getObjectMemory());
+    }
+
     /**
-     * @param object returns this Object to the pool or calls {@link #end(Object)} if the pool is full.
+     * @param object returns this Object to the pool or calls {@link #end(Object)} if the pool is full
+     * or the memory budget is exceeded.
      */
     public void release(T object)
     {
         if (object == null)
             return;
 
-        if (_capacity == 0 || !isRunning())
+        MemoryBudget budget = _memoryBudget;
+        if (_capacity == 0 || !isRunning() || (budget != null && budget.isExceeded()))
         {
-            end(object);
+            destroy(object);
             return;
         }
         else if (_capacity < 0)
@@ -100,7 +188,7 @@ public abstract class CompressionPool<T> extends AbstractLifeCycle
 
                 if (d >= _capacity)
                 {
-                    end(object);
+                    destroy(object);
                     break;
                 }
 
@@ -117,10 +205,10 @@ public abstract class CompressionPool<T> extends AbstractLifeCycle
     @Override
     public void doStop()
     {
-        T t = _pool.poll();
+        T t = _pool == null ? null : _pool.poll();
         while (t != null)
         {
-            end(t);
+            destroy(t);
             t = _pool.poll();
         }
         _numObjects.set(0);
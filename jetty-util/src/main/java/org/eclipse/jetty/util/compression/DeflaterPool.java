@@ -22,6 +22,13 @@ import java.util.zip.Deflater;
 
 public class DeflaterPool extends CompressionPool<Deflater>
 {
+    /**
+     * The estimated native memory of a {@link Deflater}: zlib uses
+     * {@code (1 << (windowBits + 2)) + (1 << (memLevel + 9))} bytes with
+     * the default windowBits=15 and memLevel=8, plus a few kilobytes of state.
+     */
+    public static final long DEFLATER_MEMORY = (1 << 17) + (1 << 17) + 6 * 1024;
+
     private final int compressionLevel;
     private final boolean nowrap;
 
@@ -55,6 +62,12 @@ public class DeflaterPool extends CompressionPool<Deflater>
         deflater.end();
     }
 
+    @Override
+    protected long getObjectMemory()
+    {
+        return DEFLATER_MEMORY;
+    }
+
     @Override
     protected void reset(Deflater deflater)
     {
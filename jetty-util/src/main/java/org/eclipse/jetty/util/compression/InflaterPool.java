@@ -22,6 +22,13 @@ import java.util.zip.Inflater;
 
 public class InflaterPool extends CompressionPool<Inflater>
 {
+    /**
+     * The estimated native memory of an {@link Inflater}: zlib uses
+     * {@code 1 << windowBits} bytes with the default windowBits=15,
+     * plus a few kilobytes of state.
+     */
+    public static final long INFLATER_MEMORY = (1 << 15) + 7 * 1024;
+
     private final boolean nowrap;
 
     /**
@@ -52,6 +59,12 @@ public class InflaterPool extends CompressionPool<Inflater>
         inflater.end();
     }
 
+    @Override
+    protected long getObjectMemory()
+    {
+        return INFLATER_MEMORY;
+    }
+
     @Override
     protected void reset(Inflater inflater)
     {
@@ -0,0 +1,119 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.compression;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.Name;
+
+/**
+ * <p>An amount of memory, typically native memory held by
+ * {@link java.util.zip.Deflater}s and {@link java.util.zip.Inflater}s,
+ * shared by one or more {@link CompressionPool}s.</p>
+ * <p>Pools reserve memory from the budget when they create objects, and
+ * release it when they end them.
+ * Objects that are needed regardless of the budget are always created,
+ * so the used memory may exceed the maximum memory, in which case the
+ * pools end released objects rather than pooling them.</p>
+ */
+@ManagedObject("A memory budget shared by compression pools")
+public class MemoryBudget
+{
+    private final AtomicLong _usedMemory = new AtomicLong();
+    private volatile long _maxMemory;
+
+    /**
+     * @param maxMemory the maximum memory in bytes, or a negative value for an unlimited budget
+     */
+    public MemoryBudget(@Name("maxMemory") long maxMemory)
+    {
+        _maxMemory = maxMemory;
+    }
+
+    @ManagedAttribute("The maximum memory in bytes, or a negative value for an unlimited budget")
+    public long getMaxMemory()
+    {
+        return _maxMemory;
+    }
+
+    public void setMaxMemory(long maxMemory)
+    {
+        _maxMemory = maxMemory;
+    }
+
+    @ManagedAttribute("The memory in bytes currently reserved")
+    public long getUsedMemory()
+    {
+        return _usedMemory.get();
+    }
+
+    /**
+     * @return whether the used memory exceeds the maximum memory
+     */
+    public boolean isExceeded()
+    {
+        long max = _maxMemory;
+        return max >= 0 && _usedMemory.get() > max;
+    }
+
+    /**
+     * <p>Reserves the given memory only if it does not exceed the budget.</p>
+     *
+     * @param bytes the memory to reserve
+     * @return whether the memory has been reserved
+     */
+    public boolean tryReserve(long bytes)
+    {
+        while (true)
+        {
+            long max = _maxMemory;
+            long used = _usedMemory.get();
+            if (max >= 0 && used + bytes > max)
+                return false;
+            if (_usedMemory.compareAndSet(used, used + bytes))
+                return true;
+        }
+    }
+
+    /**
+     * <p>Reserves the given memory, even if it exceeds the budget.</p>
+     *
+     * @param bytes the memory to reserve
+     */
+    public void reserve(long bytes)
+    {
+        _usedMemory.addAndGet(bytes);
+    }
+
+    /**
+     * @param bytes the memory to release
+     */
+    public void release(long bytes)
+    {
+        _usedMemory.addAndGet(-bytes);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{used=%d,max=%d}", getClass().getSimpleName(), hashCode(), getUsedMemory(), getMaxMemory());
+    }
+}
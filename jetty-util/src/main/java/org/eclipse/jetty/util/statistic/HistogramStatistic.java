@@ -0,0 +1,223 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntToLongFunction;
+
+/**
+ * <p>Statistics on a sampled value, with the distribution of the samples.</p>
+ * <p>In addition to the characteristics provided by {@link SampleStatistic}, the samples
+ * are counted in a fixed size log-linear histogram, so that percentiles (for example the
+ * 99th percentile of a latency) can be reported.</p>
+ * <p>Each power of two range of values is divided in {@code 2^precisionBits} equal buckets,
+ * so that the value reported for a percentile is within {@code 2^-precisionBits} of the
+ * recorded value, while any non negative {@code long} can be recorded.
+ * Recording a sample is lock free.</p>
+ * <p>{@link #snapshot()} returns the distribution of all the samples recorded since the
+ * last {@link #reset()}, while {@link #snapshotInterval()} returns the distribution of the
+ * samples recorded since its previous invocation.</p>
+ */
+public class HistogramStatistic extends SampleStatistic
+{
+    private final int _precisionBits;
+    private final AtomicLongArray _counts;
+    private long[] _intervalCounts;
+
+    public HistogramStatistic()
+    {
+        this(5);
+    }
+
+    /**
+     * @param precisionBits the number of bits of precision of the recorded values, between 1 and 10
+     */
+    public HistogramStatistic(int precisionBits)
+    {
+        if (precisionBits < 1 || precisionBits > 10)
+            throw new IllegalArgumentException("Invalid precision bits " + precisionBits);
+        _precisionBits = precisionBits;
+        _counts = new AtomicLongArray((64 - precisionBits) << precisionBits);
+    }
+
+    @Override
+    public void reset()
+    {
+        super.reset();
+        synchronized (this)
+        {
+            for (int i = 0; i < _counts.length(); i++)
+            {
+                _counts.set(i, 0);
+            }
+            _intervalCounts = null;
+        }
+    }
+
+    @Override
+    public void record(long sample)
+    {
+        super.record(sample);
+        _counts.incrementAndGet(index(Math.max(0, sample), _precisionBits));
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the value below or equal to which the given percentile of the samples recorded fall,
+     * or zero if there are no samples
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        return valueAtPercentile(_counts::get, _counts.length(), _precisionBits, percentile, getMax());
+    }
+
+    /**
+     * @return the distribution of the samples recorded since the last reset
+     */
+    public Snapshot snapshot()
+    {
+        long[] counts = new long[_counts.length()];
+        for (int i = 0; i < counts.length; i++)
+        {
+            counts[i] = _counts.get(i);
+        }
+        return new Snapshot(counts, _precisionBits, getMax());
+    }
+
+    /**
+     * @return the distribution of the samples recorded since the previous invocation of this method
+     */
+    public synchronized Snapshot snapshotInterval()
+    {
+        long[] counts = new long[_counts.length()];
+        long[] interval = new long[counts.length];
+        for (int i = 0; i < counts.length; i++)
+        {
+            counts[i] = _counts.get(i);
+            interval[i] = _intervalCounts == null ? counts[i] : Math.max(0, counts[i] - _intervalCounts[i]);
+        }
+        _intervalCounts = counts;
+        return new Snapshot(interval, _precisionBits, Long.MAX_VALUE);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{count=%d,mean=%f,max=%d,p50=%d,p99=%d,p999=%d}", getClass().getSimpleName(), hashCode(),
+            getCount(), getMean(), getMax(), getValueAtPercentile(50), getValueAtPercentile(99), getValueAtPercentile(99.9));
+    }
+
+    private static int index(long value, int precisionBits)
+    {
+        if (value < (1L << precisionBits))
+            return (int)value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - precisionBits;
+        return (shift << precisionBits) + (int)(value >>> shift);
+    }
+
+    private static long highestEquivalentValue(int index, int precisionBits)
+    {
+        int shift = (index >> precisionBits) - 1;
+        if (shift <= 0)
+            return index;
+        long mantissa = index - (shift << precisionBits);
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    private static long valueAtPercentile(IntToLongFunction counts, int length, int precisionBits, double percentile, long max)
+    {
+        long total = 0;
+        for (int i = 0; i < length; i++)
+        {
+            total += counts.applyAsLong(i);
+        }
+        if (total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long)Math.ceil(Math.min(100.0D, Math.max(0.0D, percentile)) * total / 100.0D));
+        long count = 0;
+        for (int i = 0; i < length; i++)
+        {
+            count += counts.applyAsLong(i);
+            if (count >= rank)
+                return Math.min(max, highestEquivalentValue(i, precisionBits));
+        }
+        return max;
+    }
+
+    /**
+     * <p>An immutable distribution of samples.</p>
+     */
+    public static class Snapshot
+    {
+        private final long[] _counts;
+        private final int _precisionBits;
+        private final long _max;
+        private final long _count;
+
+        private Snapshot(long[] counts, int precisionBits, long max)
+        {
+            _counts = counts;
+            _precisionBits = precisionBits;
+            long count = 0;
+            int highest = -1;
+            for (int i = 0; i < counts.length; i++)
+            {
+                count += counts[i];
+                if (counts[i] > 0)
+                    highest = i;
+            }
+            _count = count;
+            _max = highest < 0 ? 0 : Math.min(max, highestEquivalentValue(highest, precisionBits));
+        }
+
+        /**
+         * @return the number of samples
+         */
+        public long getCount()
+        {
+            return _count;
+        }
+
+        /**
+         * @return the max value of the samples, within the histogram precision
+         */
+        public long getMax()
+        {
+            return _max;
+        }
+
+        /**
+         * @param percentile the percentile, between 0 and 100
+         * @return the value below or equal to which the given percentile of the samples fall,
+         * or zero if there are no samples
+         */
+        public long getValueAtPercentile(double percentile)
+        {
+            return valueAtPercentile(i -> _counts[i], _counts.length, _precisionBits, percentile, _max);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("count=%d,p50=%d,p90=%d,p99=%d,p999=%d,max=%d", getCount(),
+                getValueAtPercentile(50), getValueAtPercentile(90), getValueAtPercentile(99), getValueAtPercentile(99.9), getMax());
+        }
+    }
+}
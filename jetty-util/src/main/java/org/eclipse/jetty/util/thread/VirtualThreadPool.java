@@ -0,0 +1,376 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.annotation.Name;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>A {@link ThreadPool} that runs blocking tasks on virtual threads,
+ * when the JDK supports them, and all the other tasks on a platform
+ * {@link QueuedThreadPool}.</p>
+ * <p>Selector, acceptor and reserved threads, as well as the tasks
+ * submitted via {@link #execute(Runnable)} and {@link #tryExecute(Runnable)},
+ * run on the platform thread pool, so that execution strategies such as
+ * {@link org.eclipse.jetty.util.thread.strategy.EatWhatYouKill} keep
+ * producing on platform threads.
+ * Components that are about to run code that may block, such as
+ * {@code HttpChannel.handle()}, explicitly dispatch it via
+ * {@link #executeOnVirtualThread(Runnable)}.</p>
+ * <p>Virtual threads are created reflectively, so that this class
+ * compiles and runs on JDKs that do not support them, in which
+ * case all the tasks run on the platform thread pool.</p>
+ */
+@ManagedObject("A thread pool with virtual threads")
+public class VirtualThreadPool extends ContainerLifeCycle implements ThreadPool.SizedThreadPool, TryExecutor, Dumpable
+{
+    private static final Logger LOG = Log.getLogger(VirtualThreadPool.class);
+    private static final boolean SUPPORTED = newVirtualThreadFactory("probe") != null;
+
+    private final Set<Thread> _virtualThreads = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger _maxVirtualThreadsReached = new AtomicInteger();
+    private final LongAdder _virtualTasks = new LongAdder();
+    private final QueuedThreadPool _platform;
+    private volatile ThreadFactory _factory;
+    private volatile boolean _useVirtualThreads = true;
+
+    public VirtualThreadPool()
+    {
+        this(new QueuedThreadPool());
+    }
+
+    public VirtualThreadPool(@Name("platformThreadPool") QueuedThreadPool platform)
+    {
+        _platform = platform;
+        addBean(_platform);
+    }
+
+    /**
+     * @return whether the JDK supports virtual threads
+     */
+    public static boolean isVirtualThreadsSupported()
+    {
+        return SUPPORTED;
+    }
+
+    private static ThreadFactory newVirtualThreadFactory(String name)
+    {
+        try
+        {
+            // Equivalent to Thread.ofVirtual().name(name, 0).factory().
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name, 0L);
+            return (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+        }
+        catch (Throwable x)
+        {
+            // Not supported, or supported as a preview feature that is not enabled.
+            LOG.ignore(x);
+            return null;
+        }
+    }
+
+    /**
+     * @return the platform thread pool
+     */
+    public QueuedThreadPool getPlatformThreadPool()
+    {
+        return _platform;
+    }
+
+    /**
+     * @return whether tasks passed to {@link #executeOnVirtualThread(Runnable)} run on virtual threads
+     */
+    @ManagedAttribute("whether blocking tasks run on virtual threads")
+    public boolean isUseVirtualThreads()
+    {
+        return _useVirtualThreads && _factory != null;
+    }
+
+    /**
+     * @param useVirtualThreads whether tasks passed to {@link #executeOnVirtualThread(Runnable)}
+     * should run on virtual threads, if supported by the JDK
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads)
+    {
+        _useVirtualThreads = useVirtualThreads;
+    }
+
+    @ManagedAttribute("name of the thread pool")
+    public String getName()
+    {
+        return _platform.getName();
+    }
+
+    public void setName(String name)
+    {
+        _platform.setName(name);
+    }
+
+    @Override
+    @ManagedAttribute("minimum number of platform threads in the pool")
+    public int getMinThreads()
+    {
+        return _platform.getMinThreads();
+    }
+
+    @Override
+    public void setMinThreads(int threads)
+    {
+        _platform.setMinThreads(threads);
+    }
+
+    @Override
+    @ManagedAttribute("maximum number of platform threads in the pool")
+    public int getMaxThreads()
+    {
+        return _platform.getMaxThreads();
+    }
+
+    @Override
+    public void setMaxThreads(int threads)
+    {
+        _platform.setMaxThreads(threads);
+    }
+
+    @ManagedAttribute("maximum time a platform thread may be idle in ms")
+    public int getIdleTimeout()
+    {
+        return _platform.getIdleTimeout();
+    }
+
+    public void setIdleTimeout(int idleTimeout)
+    {
+        _platform.setIdleTimeout(idleTimeout);
+    }
+
+    @ManagedAttribute("the number of reserved platform threads in the pool")
+    public int getReservedThreads()
+    {
+        return _platform.getReservedThreads();
+    }
+
+    public void setReservedThreads(int reservedThreads)
+    {
+        _platform.setReservedThreads(reservedThreads);
+    }
+
+    @Override
+    public ThreadPoolBudget getThreadPoolBudget()
+    {
+        // Budget leases are for selectors and acceptors, which run on platform threads.
+        return _platform.getThreadPoolBudget();
+    }
+
+    /**
+     * @return the number of platform threads plus the number of running virtual threads
+     */
+    @Override
+    @ManagedAttribute("number of threads in the pool")
+    public int getThreads()
+    {
+        return _platform.getThreads() + getVirtualThreads();
+    }
+
+    @Override
+    @ManagedAttribute("number of idle threads in the pool")
+    public int getIdleThreads()
+    {
+        return _platform.getIdleThreads();
+    }
+
+    /**
+     * @return the number of busy platform threads plus the number of running virtual threads
+     */
+    @ManagedAttribute("number of busy threads in the pool")
+    public int getBusyThreads()
+    {
+        return _platform.getBusyThreads() + getVirtualThreads();
+    }
+
+    @ManagedAttribute("size of the job queue")
+    public int getQueueSize()
+    {
+        return _platform.getQueueSize();
+    }
+
+    @ManagedAttribute("number of running virtual threads")
+    public int getVirtualThreads()
+    {
+        return _virtualThreads.size();
+    }
+
+    @ManagedAttribute("maximum number of concurrently running virtual threads")
+    public int getMaxVirtualThreadsReached()
+    {
+        return _maxVirtualThreadsReached.get();
+    }
+
+    @ManagedAttribute("number of tasks run on virtual threads")
+    public long getVirtualTasks()
+    {
+        return _virtualTasks.longValue();
+    }
+
+    @ManagedOperation(value = "resets the virtual threads statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        _maxVirtualThreadsReached.set(getVirtualThreads());
+        _virtualTasks.reset();
+    }
+
+    /**
+     * <p>Virtual threads cannot run out, so this pool is low on threads
+     * only if its platform thread pool is.</p>
+     *
+     * @return whether the platform thread pool is low on threads
+     */
+    @Override
+    @ManagedAttribute(value = "thread pool is low on threads", readonly = true)
+    public boolean isLowOnThreads()
+    {
+        return _platform.isLowOnThreads();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        _factory = SUPPORTED ? newVirtualThreadFactory(getName() + "-virtual-") : null;
+        if (_factory == null)
+            LOG.info("Virtual threads not supported, running blocking tasks on {}", _platform);
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        _factory = null;
+        super.doStop();
+
+        // Virtual threads are not pooled, so give them the chance to
+        // complete before interrupting them, as QueuedThreadPool does.
+        long timeout = getStopTimeout();
+        if (timeout > 0)
+        {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) / 2;
+            while (!_virtualThreads.isEmpty() && System.nanoTime() < deadline)
+            {
+                Thread.sleep(1);
+            }
+        }
+        for (Thread thread : _virtualThreads)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Interrupting {}", thread);
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public void join() throws InterruptedException
+    {
+        _platform.join();
+    }
+
+    @Override
+    public void execute(Runnable task)
+    {
+        _platform.execute(task);
+    }
+
+    @Override
+    public boolean tryExecute(Runnable task)
+    {
+        return _platform.tryExecute(task);
+    }
+
+    /**
+     * <p>Runs the given task on a new virtual thread, or on the
+     * platform thread pool if virtual threads are not in use.</p>
+     *
+     * @param task the task, that may block, to run
+     */
+    public void executeOnVirtualThread(Runnable task)
+    {
+        ThreadFactory factory = _useVirtualThreads ? _factory : null;
+        if (factory == null)
+        {
+            _platform.execute(task);
+            return;
+        }
+
+        _virtualTasks.increment();
+        Thread thread = factory.newThread(() -> runOnVirtualThread(task));
+        _virtualThreads.add(thread);
+        _maxVirtualThreadsReached.accumulateAndGet(_virtualThreads.size(), Math::max);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Starting {} for {}", thread, task);
+        thread.start();
+    }
+
+    private void runOnVirtualThread(Runnable task)
+    {
+        try
+        {
+            task.run();
+        }
+        catch (Throwable x)
+        {
+            LOG.warn(x);
+        }
+        finally
+        {
+            _virtualThreads.remove(Thread.currentThread());
+        }
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        dumpObjects(out, indent, String.format("virtual threads=%d/%d", getVirtualThreads(), getMaxVirtualThreadsReached()));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s[%s]@%x{%s,v=%b/%d,%s}",
+            getClass().getSimpleName(),
+            getName(),
+            hashCode(),
+            getState(),
+            isUseVirtualThreads(),
+            getVirtualThreads(),
+            _platform);
+    }
+}
@@ -34,6 +34,7 @@ import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.ExecutionStrategy;
 import org.eclipse.jetty.util.thread.Invocable;
 import org.eclipse.jetty.util.thread.TryExecutor;
+import org.eclipse.jetty.util.thread.VirtualThreadPool;
 
 /**
  * <p>A strategy where the thread that produces will run the resulting task if it
@@ -79,6 +80,7 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
     private final Producer _producer;
     private final Executor _executor;
     private final TryExecutor _tryExecutor;
+    private final VirtualThreadPool _virtualThreadPool;
     private State _state = State.IDLE;
     private boolean _pending;
 
@@ -87,6 +89,7 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
         _producer = producer;
         _executor = executor;
         _tryExecutor = TryExecutor.asTryExecutor(executor);
+        _virtualThreadPool = executor instanceof VirtualThreadPool ? (VirtualThreadPool)executor : null;
         addBean(_producer);
         addBean(_tryExecutor);
         if (LOG.isDebugEnabled())
@@ -236,10 +239,16 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
 
                 case BLOCKING:
                     // The task is blocking, so PC is not an option. Thus we choose
-                    // between EPC and PEC based on the availability of a reserved thread.
+                    // between EPC and PEC based on the availability of a reserved thread,
+                    // unless blocking tasks are run on virtual threads, which are always
+                    // available, so that the producer stays on this platform thread.
                     synchronized (this)
                     {
-                        if (_pending)
+                        if (isUseVirtualThreads())
+                        {
+                            mode = Mode.PRODUCE_EXECUTE_CONSUME;
+                        }
+                        else if (_pending)
                         {
                             _state = State.IDLE;
                             mode = Mode.EXECUTE_PRODUCE_CONSUME;
@@ -366,11 +375,19 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
         }
     }
 
+    private boolean isUseVirtualThreads()
+    {
+        return _virtualThreadPool != null && _virtualThreadPool.isUseVirtualThreads();
+    }
+
     private void execute(Runnable task)
     {
         try
         {
-            _executor.execute(task);
+            if (isUseVirtualThreads() && Invocable.getInvocationType(task) == Invocable.InvocationType.BLOCKING)
+                _virtualThreadPool.executeOnVirtualThread(task);
+            else
+                _executor.execute(task);
         }
         catch (RejectedExecutionException e)
         {
@@ -0,0 +1,239 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedBlockingQueueTest
+{
+    @Test
+    public void testOfferPollSingleShard()
+    {
+        ShardedBlockingQueue<String> queue = new ShardedBlockingQueue<>(4, 1);
+        assertEquals(1, queue.getShards());
+        assertEquals(4, queue.getCapacity());
+
+        // Go around the ring a few times.
+        for (int lap = 0; lap < 3; ++lap)
+        {
+            assertTrue(queue.isEmpty());
+            assertTrue(queue.offer("one"));
+            assertTrue(queue.offer("two"));
+            assertTrue(queue.offer("three"));
+            assertTrue(queue.offer("four"));
+            assertFalse(queue.offer("five"));
+            assertEquals(4, queue.size());
+            assertEquals(0, queue.remainingCapacity());
+            assertEquals("one", queue.peek());
+
+            assertEquals("one", queue.poll());
+            assertEquals("two", queue.poll());
+            assertEquals("three", queue.poll());
+            assertEquals("four", queue.poll());
+            assertNull(queue.poll());
+            assertEquals(0, queue.size());
+        }
+    }
+
+    @Test
+    public void testCapacityIsSpreadOverShards()
+    {
+        ShardedBlockingQueue<Integer> queue = new ShardedBlockingQueue<>(10, 3);
+        assertEquals(4, queue.getShards());
+        assertThat(queue.getCapacity(), greaterThanOrEqualTo(10));
+
+        // A single thread overflows its home shard into the others.
+        int count = 0;
+        while (queue.offer(count))
+        {
+            ++count;
+        }
+        assertEquals(queue.getCapacity(), count);
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(count, queue.drainTo(drained));
+        assertEquals(count, new HashSet<>(drained).size());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testIterator()
+    {
+        ShardedBlockingQueue<String> queue = new ShardedBlockingQueue<>(16, 4);
+        queue.offer("a");
+        queue.offer("b");
+        queue.offer("c");
+
+        assertThat(new ArrayList<>(queue), containsInAnyOrder("a", "b", "c"));
+        assertEquals(3, queue.size());
+    }
+
+    @Test
+    public void testPollTimeout() throws Exception
+    {
+        ShardedBlockingQueue<String> queue = new ShardedBlockingQueue<>(16);
+
+        long start = System.nanoTime();
+        assertNull(queue.poll(100, TimeUnit.MILLISECONDS));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), greaterThanOrEqualTo(100L));
+        assertEquals(0, queue.getWaitingThreads());
+    }
+
+    @Test
+    public void testTakeIsWokenByOffer() throws Exception
+    {
+        ShardedBlockingQueue<String> queue = new ShardedBlockingQueue<>(16);
+        CountDownLatch taken = new CountDownLatch(1);
+        Thread thread = new Thread(() ->
+        {
+            try
+            {
+                if ("job".equals(queue.take()))
+                    taken.countDown();
+            }
+            catch (InterruptedException x)
+            {
+                x.printStackTrace();
+            }
+        });
+        thread.start();
+
+        while (queue.getWaitingThreads() == 0)
+        {
+            Thread.sleep(1);
+        }
+        assertTrue(queue.offer("job"));
+        assertTrue(taken.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTakeIsInterrupted() throws Exception
+    {
+        ShardedBlockingQueue<String> queue = new ShardedBlockingQueue<>(16);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Thread thread = new Thread(() ->
+        {
+            try
+            {
+                queue.take();
+            }
+            catch (InterruptedException x)
+            {
+                interrupted.countDown();
+            }
+        });
+        thread.start();
+
+        while (queue.getWaitingThreads() == 0)
+        {
+            Thread.sleep(1);
+        }
+        thread.interrupt();
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(0, queue.getWaitingThreads());
+    }
+
+    @Test
+    public void testNullElement()
+    {
+        ShardedBlockingQueue<String> queue = new ShardedBlockingQueue<>(16);
+        assertThrows(NullPointerException.class, () -> queue.offer(null));
+    }
+
+    @Test
+    public void testConcurrentProducersConsumers() throws Exception
+    {
+        ShardedBlockingQueue<Integer> queue = new ShardedBlockingQueue<>(1024, 4);
+        int producers = 4;
+        int consumers = 8;
+        int iterations = 50_000;
+        int total = producers * iterations;
+
+        Set<Integer> consumed = ConcurrentHashMap.newKeySet();
+        AtomicInteger remaining = new AtomicInteger(total);
+        CountDownLatch done = new CountDownLatch(consumers);
+        for (int c = 0; c < consumers; ++c)
+        {
+            new Thread(() ->
+            {
+                try
+                {
+                    while (remaining.get() > 0)
+                    {
+                        Integer item = queue.poll(10, TimeUnit.MILLISECONDS);
+                        if (item != null)
+                        {
+                            assertTrue(consumed.add(item));
+                            remaining.decrementAndGet();
+                        }
+                    }
+                }
+                catch (InterruptedException x)
+                {
+                    x.printStackTrace();
+                }
+                finally
+                {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        for (int p = 0; p < producers; ++p)
+        {
+            int base = p * iterations;
+            new Thread(() ->
+            {
+                try
+                {
+                    for (int i = 0; i < iterations; ++i)
+                    {
+                        queue.put(base + i);
+                    }
+                }
+                catch (InterruptedException x)
+                {
+                    x.printStackTrace();
+                }
+            }).start();
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(total, consumed.size());
+        assertTrue(queue.isEmpty());
+    }
+}
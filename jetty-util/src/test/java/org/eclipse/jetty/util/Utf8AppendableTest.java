@@ -19,6 +19,7 @@
 package org.eclipse.jetty.util;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -70,6 +71,51 @@ public class Utf8AppendableTest
         assertTrue(buffer.toString().endsWith("jetty"));
     }
 
+    @ParameterizedTest
+    @MethodSource("implementations")
+    public void testAsciiRunsWithMultiByteCharacters(Class<Utf8Appendable> impl) throws Exception
+    {
+        // Runs of 7-bit characters longer and shorter than 8 bytes, interleaved with multi-byte characters.
+        String source = "abcdefghijklmnop\u00a4q\u10fbrstuvwx\uD842\uDF9Fyz0123456789\u0000";
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+
+        Utf8Appendable buffer = impl.getDeclaredConstructor().newInstance();
+        buffer.append(bytes, 0, bytes.length);
+        assertEquals(source, buffer.toString());
+
+        buffer = impl.getDeclaredConstructor().newInstance();
+        buffer.append(ByteBuffer.wrap(bytes));
+        assertEquals(source, buffer.toString());
+
+        buffer = impl.getDeclaredConstructor().newInstance();
+        ByteBuffer direct = BufferUtil.toDirectBuffer(source, StandardCharsets.UTF_8);
+        buffer.append(direct);
+        assertEquals(source, buffer.toString());
+        assertThat(direct.remaining(), is(0));
+
+        // A multi-byte character split across appends.
+        buffer = impl.getDeclaredConstructor().newInstance();
+        int split = source.indexOf('\u10fb') + 1;
+        buffer.append(bytes, 0, split);
+        buffer.append(bytes, split, bytes.length - split);
+        assertEquals(source, buffer.toString());
+    }
+
+    @ParameterizedTest
+    @MethodSource("implementations")
+    public void testInvalidByteAfterAsciiRun(Class<Utf8Appendable> impl) throws Exception
+    {
+        byte[] bytes = "0123456789X0123".getBytes(StandardCharsets.UTF_8);
+        bytes[10] = (byte)0xFF;
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+
+        Utf8Appendable buffer = impl.getDeclaredConstructor().newInstance();
+        assertThrows(NotUtf8Exception.class, () -> buffer.append(buf));
+        // The bytes up to the invalid one have been consumed.
+        assertThat(buf.position(), is(11));
+        assertThat(buffer.getPartialString(), is("0123456789\ufffd"));
+    }
+
     @ParameterizedTest
     @MethodSource("implementations")
     public void testUtf8WithMissingByte(Class<Utf8Appendable> impl) throws Exception
@@ -0,0 +1,103 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.compression;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class CompressionPoolTest
+{
+    @Test
+    public void testMemoryAccounting() throws Exception
+    {
+        MemoryBudget budget = new MemoryBudget(-1);
+        DeflaterPool deflaters = new DeflaterPool(CompressionPool.INFINITE_CAPACITY, Deflater.DEFAULT_COMPRESSION, true);
+        InflaterPool inflaters = new InflaterPool(CompressionPool.INFINITE_CAPACITY, true);
+        deflaters.setMemoryBudget(budget);
+        inflaters.setMemoryBudget(budget);
+        deflaters.start();
+        inflaters.start();
+
+        Deflater deflater = deflaters.acquire();
+        Inflater inflater = inflaters.acquire();
+        assertThat(deflaters.getLiveObjects(), is(1));
+        assertThat(deflaters.getMemory(), is(DeflaterPool.DEFLATER_MEMORY));
+        assertThat(budget.getUsedMemory(), is(DeflaterPool.DEFLATER_MEMORY + InflaterPool.INFLATER_MEMORY));
+
+        // Pooled objects still hold memory.
+        deflaters.release(deflater);
+        inflaters.release(inflater);
+        assertThat(deflaters.getPooledObjects(), is(1));
+        assertThat(budget.getUsedMemory(), is(DeflaterPool.DEFLATER_MEMORY + InflaterPool.INFLATER_MEMORY));
+
+        deflaters.stop();
+        inflaters.stop();
+        assertThat(deflaters.getLiveObjects(), is(0));
+        assertThat(budget.getUsedMemory(), is(0L));
+    }
+
+    @Test
+    public void testTryAcquireWithinBudget() throws Exception
+    {
+        MemoryBudget budget = new MemoryBudget(DeflaterPool.DEFLATER_MEMORY);
+        DeflaterPool deflaters = new DeflaterPool(CompressionPool.INFINITE_CAPACITY, Deflater.DEFAULT_COMPRESSION, true);
+        deflaters.setMemoryBudget(budget);
+        deflaters.start();
+
+        Deflater deflater = deflaters.tryAcquire();
+        assertThat(deflater, notNullValue());
+        assertThat(deflaters.tryAcquire(), nullValue());
+
+        // A pooled object is reused regardless of the budget.
+        deflaters.release(deflater);
+        assertThat(deflaters.tryAcquire(), sameInstance(deflater));
+        deflaters.release(deflater);
+        deflaters.stop();
+    }
+
+    @Test
+    public void testReleaseEndsObjectsWhenBudgetExceeded() throws Exception
+    {
+        MemoryBudget budget = new MemoryBudget(DeflaterPool.DEFLATER_MEMORY);
+        DeflaterPool deflaters = new DeflaterPool(CompressionPool.INFINITE_CAPACITY, Deflater.DEFAULT_COMPRESSION, true);
+        deflaters.setMemoryBudget(budget);
+        deflaters.start();
+
+        // Unconditional acquires may exceed the budget.
+        Deflater deflater1 = deflaters.acquire();
+        Deflater deflater2 = deflaters.acquire();
+        assertThat(budget.isExceeded(), is(true));
+
+        deflaters.release(deflater1);
+        assertThat(deflaters.getPooledObjects(), is(0));
+        assertThat(budget.isExceeded(), is(false));
+
+        deflaters.release(deflater2);
+        assertThat(deflaters.getPooledObjects(), is(1));
+        deflaters.stop();
+    }
+}
@@ -0,0 +1,107 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HistogramStatisticTest
+{
+    @Test
+    public void testPercentiles()
+    {
+        HistogramStatistic stats = new HistogramStatistic();
+        assertEquals(0, stats.getValueAtPercentile(99));
+
+        for (long i = 1; i <= 10000; i++)
+        {
+            stats.record(i);
+        }
+
+        assertEquals(10000, stats.getCount());
+        assertEquals(10000, stats.getMax());
+        assertEquals(5000.5D, stats.getMean(), 0.1D);
+        assertNear(5000, stats.getValueAtPercentile(50));
+        assertNear(9900, stats.getValueAtPercentile(99));
+        assertNear(9990, stats.getValueAtPercentile(99.9));
+        assertEquals(1, stats.getValueAtPercentile(0));
+        assertEquals(10000, stats.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testSmallValuesExact()
+    {
+        HistogramStatistic stats = new HistogramStatistic(3);
+        for (long i = 0; i < 16; i++)
+        {
+            stats.record(i);
+        }
+        for (int i = 1; i <= 16; i++)
+        {
+            assertEquals(i - 1, stats.getValueAtPercentile(i * 100.0D / 16));
+        }
+    }
+
+    @Test
+    public void testExtremeValues()
+    {
+        HistogramStatistic stats = new HistogramStatistic();
+        stats.record(-1);
+        stats.record(Long.MAX_VALUE);
+        assertEquals(0, stats.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, stats.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testSnapshotInterval()
+    {
+        HistogramStatistic stats = new HistogramStatistic();
+        for (int i = 0; i < 100; i++)
+        {
+            stats.record(10);
+        }
+        assertEquals(100, stats.snapshotInterval().getCount());
+
+        stats.record(1000);
+        HistogramStatistic.Snapshot interval = stats.snapshotInterval();
+        assertEquals(1, interval.getCount());
+        assertNear(1000, interval.getValueAtPercentile(50));
+        assertEquals(0, stats.snapshotInterval().getCount());
+
+        HistogramStatistic.Snapshot snapshot = stats.snapshot();
+        assertEquals(101, snapshot.getCount());
+        assertEquals(10, snapshot.getValueAtPercentile(99));
+        assertEquals(1000, snapshot.getMax());
+
+        stats.reset();
+        assertEquals(0, stats.snapshot().getCount());
+        assertEquals(0, stats.getCount());
+    }
+
+    private static void assertNear(long expected, long actual)
+    {
+        // The default precision is 5 bits, so within 1/32.
+        assertThat(actual, allOf(greaterThanOrEqualTo(expected), lessThanOrEqualTo(expected + expected / 32)));
+    }
+}
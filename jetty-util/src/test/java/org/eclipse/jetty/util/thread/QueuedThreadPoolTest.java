@@ -20,10 +20,13 @@ package org.eclipse.jetty.util.thread;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.eclipse.jetty.util.ShardedBlockingQueue;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.log.StacklessLogging;
@@ -349,6 +352,43 @@ public class QueuedThreadPoolTest extends AbstractThreadPoolTest
         tp.stop();
     }
 
+    @Test
+    public void testShardedQueue() throws Exception
+    {
+        QueuedThreadPool tp = new QueuedThreadPool(4, 1, 500, new ShardedBlockingQueue<>(1024, 4));
+        tp.start();
+        waitForThreads(tp, 1);
+        waitForIdle(tp, 1);
+
+        List<RunningJob> jobs = new ArrayList<>();
+        for (int i = 0; i < 6; ++i)
+        {
+            RunningJob job = new RunningJob("JOB" + i);
+            jobs.add(job);
+            tp.execute(job);
+        }
+
+        // Only 4 jobs run, the others are queued.
+        waitForThreads(tp, 4);
+        for (int i = 0; i < 4; ++i)
+        {
+            assertTrue(jobs.get(i)._run.await(5, TimeUnit.SECONDS));
+        }
+        assertThat(tp.getQueueSize(), is(2));
+
+        jobs.forEach(job -> job._stopping.countDown());
+        for (RunningJob job : jobs)
+        {
+            assertTrue(job._stopped.await(5, TimeUnit.SECONDS));
+        }
+
+        // Idle threads time out back to min threads.
+        waitForIdle(tp, 1);
+        waitForThreads(tp, 1);
+
+        tp.stop();
+    }
+
     @Test
     public void testLifeCycleStop() throws Exception
     {
@@ -0,0 +1,160 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class VirtualThreadPoolTest
+{
+    private VirtualThreadPool pool;
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        if (pool != null)
+            pool.stop();
+    }
+
+    private static boolean isVirtual(Thread thread) throws Exception
+    {
+        return (Boolean)Thread.class.getMethod("isVirtual").invoke(thread);
+    }
+
+    @Test
+    public void testExecuteRunsOnPlatformThread() throws Exception
+    {
+        QueuedThreadPool platform = new QueuedThreadPool();
+        platform.setName("platform");
+        pool = new VirtualThreadPool(platform);
+        pool.start();
+
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        pool.execute(() ->
+        {
+            thread.set(Thread.currentThread());
+            latch.countDown();
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertThat(thread.get().getName(), startsWith("platform-"));
+        assertEquals(0, pool.getVirtualTasks());
+    }
+
+    @Test
+    public void testExecuteOnVirtualThread() throws Exception
+    {
+        assumeTrue(VirtualThreadPool.isVirtualThreadsSupported());
+
+        pool = new VirtualThreadPool();
+        pool.start();
+        assertTrue(pool.isUseVirtualThreads());
+
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pool.executeOnVirtualThread(() ->
+        {
+            thread.set(Thread.currentThread());
+            running.countDown();
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException x)
+            {
+                x.printStackTrace();
+            }
+        });
+
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        assertTrue(isVirtual(thread.get()));
+        assertEquals(1, pool.getVirtualThreads());
+        assertEquals(1, pool.getMaxVirtualThreadsReached());
+        assertEquals(1, pool.getVirtualTasks());
+
+        release.countDown();
+        thread.get().join(5000);
+        assertEquals(0, pool.getVirtualThreads());
+    }
+
+    @Test
+    public void testExecuteOnVirtualThreadFallsBackToPlatform() throws Exception
+    {
+        QueuedThreadPool platform = new QueuedThreadPool();
+        platform.setName("platform");
+        pool = new VirtualThreadPool(platform);
+        pool.setUseVirtualThreads(false);
+        pool.start();
+        assertFalse(pool.isUseVirtualThreads());
+
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        pool.executeOnVirtualThread(() ->
+        {
+            thread.set(Thread.currentThread());
+            latch.countDown();
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertThat(thread.get().getName(), startsWith("platform-"));
+        assertEquals(0, pool.getVirtualTasks());
+    }
+
+    @Test
+    public void testUnsupportedJDK() throws Exception
+    {
+        assumeFalse(VirtualThreadPool.isVirtualThreadsSupported());
+
+        pool = new VirtualThreadPool();
+        pool.start();
+        assertThat(pool.isUseVirtualThreads(), is(false));
+    }
+
+    @Test
+    public void testDelegatesSizing() throws Exception
+    {
+        QueuedThreadPool platform = new QueuedThreadPool(16, 4);
+        pool = new VirtualThreadPool(platform);
+        pool.setMaxThreads(32);
+
+        assertEquals(32, platform.getMaxThreads());
+        assertEquals(4, pool.getMinThreads());
+        assertTrue(pool.getThreadPoolBudget() == platform.getThreadPoolBudget());
+
+        pool.start();
+        assertTrue(platform.isStarted());
+        pool.stop();
+        assertTrue(platform.isStopped());
+    }
+}
@@ -0,0 +1,278 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.websocket.common;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.WebSocketBehavior;
+import org.eclipse.jetty.websocket.api.WebSocketPolicy;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.api.extensions.Extension;
+import org.eclipse.jetty.websocket.api.extensions.OutgoingFrames;
+import org.eclipse.jetty.websocket.common.extensions.ExtensionStack;
+import org.eclipse.jetty.websocket.common.extensions.compress.PerMessageDeflateExtension;
+import org.eclipse.jetty.websocket.common.frames.BinaryFrame;
+import org.eclipse.jetty.websocket.common.frames.DataFrame;
+import org.eclipse.jetty.websocket.common.frames.EncodedFrame;
+import org.eclipse.jetty.websocket.common.frames.TextFrame;
+
+/**
+ * <p>Sends the same message to many sessions, encoding it only once.</p>
+ * <p>The message is generated once into an {@link EncodedFrame}, whose
+ * bytes are shared by the outgoing queues of all the sessions.
+ * Sessions using the {@code permessage-deflate} extension without
+ * outgoing context takeover are grouped by their negotiated parameters,
+ * and the message is compressed once for each group.</p>
+ * <p>Sessions for which the shared bytes cannot be used, for example
+ * because they are client sessions that must mask their frames,
+ * because they have negotiated other extensions, or because they keep
+ * the compression context across messages, are sent the message
+ * via their {@link RemoteEndpoint} as usual.</p>
+ */
+public class Broadcaster
+{
+    private static final Logger LOG = Log.getLogger(Broadcaster.class);
+    private static final byte[] TAIL_BYTES = new byte[]{0x00, 0x00, (byte)0xFF, (byte)0xFF};
+    private static final String IDENTITY = "";
+
+    private final ByteBufferPool bufferPool;
+    private final DeflaterPool deflaterPool;
+    private final Generator generator;
+
+    public Broadcaster(ByteBufferPool bufferPool, DeflaterPool deflaterPool)
+    {
+        this.bufferPool = bufferPool;
+        this.deflaterPool = deflaterPool;
+        // Broadcasts are generated by servers, with RSV1 used by permessage-deflate.
+        this.generator = new Generator(WebSocketPolicy.newServerPolicy(), bufferPool, false);
+        this.generator.setRsv1InUse(true);
+    }
+
+    /**
+     * @param sessions the sessions to send the text message to
+     * @param text the text message to send
+     * @param listener the listener notified of the result of the send to each session, or null
+     * @return the number of open sessions the message has been sent to
+     */
+    public int broadcast(Iterable<? extends WebSocketSession> sessions, String text, Listener listener)
+    {
+        return broadcast(sessions, new TextFrame().setPayload(text), text, listener);
+    }
+
+    /**
+     * @param sessions the sessions to send the binary message to
+     * @param data the binary message to send, which is not consumed
+     * @param listener the listener notified of the result of the send to each session, or null
+     * @return the number of open sessions the message has been sent to
+     */
+    public int broadcast(Iterable<? extends WebSocketSession> sessions, ByteBuffer data, Listener listener)
+    {
+        return broadcast(sessions, new BinaryFrame().setPayload(data.slice()), null, listener);
+    }
+
+    private int broadcast(Iterable<? extends WebSocketSession> sessions, DataFrame frame, String text, Listener listener)
+    {
+        Map<String, EncodedFrame> encodings = new HashMap<>();
+        int count = 0;
+        try
+        {
+            for (WebSocketSession session : sessions)
+            {
+                // Sessions may be tracked before they are opened.
+                RemoteEndpoint remote = session.getRemote();
+                if (remote == null || !session.isOpen())
+                    continue;
+                ++count;
+
+                WriteCallback callback = listener == null ? null : new SessionCallback(session, listener);
+                try
+                {
+                    String encoding = remote instanceof WebSocketRemoteEndpoint ? getEncoding(session) : null;
+                    if (encoding == null)
+                    {
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Sending {} to {} without shared encoding", frame, session);
+                        if (text != null)
+                            remote.sendString(text, callback);
+                        else
+                            remote.sendBytes(frame.getPayload().slice(), callback);
+                    }
+                    else
+                    {
+                        EncodedFrame encoded = encodings.computeIfAbsent(encoding, e -> encode(frame, e));
+                        ((WebSocketRemoteEndpoint)remote).sendEncodedFrame(encoded, callback);
+                    }
+                }
+                catch (Throwable x)
+                {
+                    // Other sessions may still be sent the message.
+                    if (callback == null)
+                        LOG.debug(x);
+                    else
+                        callback.writeFailed(x);
+                }
+            }
+        }
+        finally
+        {
+            // Release the initial references, the sessions retain the frames they still need.
+            for (EncodedFrame encoded : encodings.values())
+            {
+                encoded.release();
+            }
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Broadcast {} to {} sessions with {} encodings", frame, count, encodings.size());
+        return count;
+    }
+
+    /**
+     * @param session the session to send an encoded frame to
+     * @return the key identifying sessions that can be sent the same encoded frame,
+     * or null if the session cannot be sent a shared encoded frame
+     */
+    protected String getEncoding(WebSocketSession session)
+    {
+        // The shared frames are not masked, as only clients mask their frames.
+        if (session.getPolicy().getBehavior() != WebSocketBehavior.SERVER)
+            return null;
+
+        OutgoingFrames outgoing = session.getOutgoingHandler();
+        if (outgoing instanceof LogicalConnection)
+            return IDENTITY;
+        if (!(outgoing instanceof ExtensionStack))
+            return null;
+
+        List<Extension> extensions = ((ExtensionStack)outgoing).getExtensions();
+        if (extensions == null || extensions.isEmpty())
+            return IDENTITY;
+        if (extensions.size() == 1 && extensions.get(0) instanceof PerMessageDeflateExtension)
+        {
+            // With context takeover, each message depends on the previous ones of the session.
+            PerMessageDeflateExtension deflate = (PerMessageDeflateExtension)extensions.get(0);
+            if (deflate.isOutgoingContextTakeover())
+                return null;
+            return deflate.getConfig().getParameterizedName();
+        }
+        return null;
+    }
+
+    private EncodedFrame encode(DataFrame frame, String encoding)
+    {
+        if (IDENTITY.equals(encoding))
+            return new EncodedFrame(frame, generator, bufferPool);
+
+        DataFrame compressed = new DataFrame(frame);
+        compressed.setRsv1(true);
+        compressed.setPayload(deflate(frame.getPayload()));
+        return new EncodedFrame(compressed, generator, bufferPool);
+    }
+
+    private ByteBuffer deflate(ByteBuffer payload)
+    {
+        Deflater deflater = deflaterPool.acquire();
+        try
+        {
+            deflater.setInput(BufferUtil.toArray(payload));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] output = new byte[Math.max(256, payload.remaining())];
+            while (true)
+            {
+                int compressed = deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+                out.write(output, 0, compressed);
+                if (compressed < output.length)
+                    break;
+            }
+
+            // Like permessage-deflate, drop the tail bytes of the last frame of the message.
+            byte[] bytes = out.toByteArray();
+            int length = bytes.length;
+            if (endsWithTail(bytes))
+                length -= TAIL_BYTES.length;
+            if (length == 0)
+                return ByteBuffer.wrap(new byte[]{0x00});
+            return ByteBuffer.wrap(bytes, 0, length);
+        }
+        finally
+        {
+            deflaterPool.release(deflater);
+        }
+    }
+
+    private static boolean endsWithTail(byte[] bytes)
+    {
+        if (bytes.length < TAIL_BYTES.length)
+            return false;
+        for (int i = 0; i < TAIL_BYTES.length; ++i)
+        {
+            if (bytes[bytes.length - TAIL_BYTES.length + i] != TAIL_BYTES[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * <p>Listener for the result of sending a broadcast message to each session.</p>
+     */
+    public interface Listener
+    {
+        default void onSuccess(WebSocketSession session)
+        {
+        }
+
+        default void onFailure(WebSocketSession session, Throwable failure)
+        {
+        }
+    }
+
+    private static class SessionCallback implements WriteCallback
+    {
+        private final WebSocketSession session;
+        private final Listener listener;
+
+        private SessionCallback(WebSocketSession session, Listener listener)
+        {
+            this.session = session;
+            this.listener = listener;
+        }
+
+        @Override
+        public void writeSuccess()
+        {
+            listener.onSuccess(session);
+        }
+
+        @Override
+        public void writeFailed(Throwable x)
+        {
+            listener.onFailure(session, x);
+        }
+    }
+}
@@ -36,6 +36,7 @@ import org.eclipse.jetty.websocket.common.BlockingWriteCallback.WriteBlocker;
 import org.eclipse.jetty.websocket.common.frames.BinaryFrame;
 import org.eclipse.jetty.websocket.common.frames.ContinuationFrame;
 import org.eclipse.jetty.websocket.common.frames.DataFrame;
+import org.eclipse.jetty.websocket.common.frames.EncodedFrame;
 import org.eclipse.jetty.websocket.common.frames.PingFrame;
 import org.eclipse.jetty.websocket.common.frames.PongFrame;
 import org.eclipse.jetty.websocket.common.frames.TextFrame;
@@ -298,6 +299,33 @@ public class WebSocketRemoteEndpoint implements RemoteEndpoint
         }
     }
 
+    /**
+     * <p>Sends a frame whose bytes have already been generated, possibly
+     * shared with other sessions, such as when broadcasting a message.</p>
+     *
+     * @param frame the encoded frame to send
+     * @param callback the callback notified when the frame has been written
+     * @see Broadcaster
+     */
+    public void sendEncodedFrame(EncodedFrame frame, WriteCallback callback)
+    {
+        lockMsg(MsgType.ASYNC);
+        try
+        {
+            if (LOG.isDebugEnabled())
+            {
+                LOG.debug("sendEncodedFrame({}, {})", frame, callback);
+            }
+            // The frame bytes are shared, so keep them until written.
+            frame.retain();
+            uncheckedSendFrame(frame, new EncodedFrameCallback(frame, callback == null ? NOOP_CALLBACK : callback));
+        }
+        finally
+        {
+            unlockMsg(MsgType.ASYNC);
+        }
+    }
+
     public void uncheckedSendFrame(WebSocketFrame frame, WriteCallback callback)
     {
         BatchMode batchMode = BatchMode.OFF;
@@ -459,4 +487,30 @@ public class WebSocketRemoteEndpoint implements RemoteEndpoint
     {
         return String.format("%s@%x[batching=%b]", getClass().getSimpleName(), hashCode(), getBatchMode());
     }
+
+    private static class EncodedFrameCallback implements WriteCallback
+    {
+        private final EncodedFrame frame;
+        private final WriteCallback callback;
+
+        private EncodedFrameCallback(EncodedFrame frame, WriteCallback callback)
+        {
+            this.frame = frame;
+            this.callback = callback;
+        }
+
+        @Override
+        public void writeSuccess()
+        {
+            frame.release();
+            callback.writeSuccess();
+        }
+
+        @Override
+        public void writeFailed(Throwable x)
+        {
+            frame.release();
+            callback.writeFailed(x);
+        }
+    }
 }
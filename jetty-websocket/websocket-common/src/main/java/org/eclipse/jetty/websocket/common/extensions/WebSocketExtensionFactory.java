@@ -33,6 +33,7 @@ import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.util.compression.CompressionPool;
 import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.eclipse.jetty.util.compression.InflaterPool;
+import org.eclipse.jetty.util.compression.MemoryBudget;
 import org.eclipse.jetty.websocket.api.WebSocketException;
 import org.eclipse.jetty.websocket.api.extensions.Extension;
 import org.eclipse.jetty.websocket.api.extensions.ExtensionConfig;
@@ -48,6 +49,8 @@ public class WebSocketExtensionFactory extends ExtensionFactory implements LifeC
     private Map<String, Class<? extends Extension>> availableExtensions;
     private final InflaterPool inflaterPool = new InflaterPool(CompressionPool.INFINITE_CAPACITY, true);
     private final DeflaterPool deflaterPool = new DeflaterPool(CompressionPool.INFINITE_CAPACITY, Deflater.DEFAULT_COMPRESSION, true);
+    private final MemoryBudget compressionMemoryBudget = new MemoryBudget(-1);
+    private boolean releaseCompressorsWhenIdle;
 
     public WebSocketExtensionFactory(WebSocketContainerScope container)
     {
@@ -67,8 +70,59 @@ public class WebSocketExtensionFactory extends ExtensionFactory implements LifeC
         }
 
         this.container = container;
+        inflaterPool.setMemoryBudget(compressionMemoryBudget);
+        deflaterPool.setMemoryBudget(compressionMemoryBudget);
         containerLifeCycle.addBean(inflaterPool);
         containerLifeCycle.addBean(deflaterPool);
+        containerLifeCycle.addBean(compressionMemoryBudget);
+    }
+
+    public DeflaterPool getDeflaterPool()
+    {
+        return deflaterPool;
+    }
+
+    public InflaterPool getInflaterPool()
+    {
+        return inflaterPool;
+    }
+
+    /**
+     * <p>Returns the budget of native memory shared by the Deflaters and Inflaters
+     * of the compression extensions, unlimited by default.</p>
+     * <p>Inflaters are always created, as they are needed to read compressed messages,
+     * while messages are sent uncompressed when no Deflater fits in the budget.</p>
+     *
+     * @return the memory budget of the compression extensions
+     */
+    public MemoryBudget getCompressionMemoryBudget()
+    {
+        return compressionMemoryBudget;
+    }
+
+    /**
+     * @return whether compression extensions release their Deflater and Inflater
+     * to the pools between messages
+     * @see #setReleaseCompressorsWhenIdle(boolean)
+     */
+    public boolean isReleaseCompressorsWhenIdle()
+    {
+        return releaseCompressorsWhenIdle;
+    }
+
+    /**
+     * <p>Sets whether compression extensions release their Deflater and Inflater
+     * to the pools between messages, so that idle sessions hold no native memory.</p>
+     * <p>Since compressors can only be released when the compression context is not
+     * taken over across messages, servers negotiate {@code permessage-deflate} with
+     * {@code server_no_context_takeover} and {@code client_no_context_takeover}
+     * when this mode is enabled, trading compression ratio for memory.</p>
+     *
+     * @param releaseCompressorsWhenIdle whether to release compressors between messages
+     */
+    public void setReleaseCompressorsWhenIdle(boolean releaseCompressorsWhenIdle)
+    {
+        this.releaseCompressorsWhenIdle = releaseCompressorsWhenIdle;
     }
 
     @Override
@@ -118,17 +172,19 @@ public class WebSocketExtensionFactory extends ExtensionFactory implements LifeC
         try
         {
             Extension ext = container.getObjectFactory().createInstance(extClass);
-            if (ext instanceof AbstractExtension)
-            {
-                AbstractExtension aext = (AbstractExtension)ext;
-                aext.init(container);
-                aext.setConfig(config);
-            }
             if (ext instanceof CompressExtension)
             {
+                // Configure before the negotiation, which depends on whether compressors are released.
                 CompressExtension cext = (CompressExtension)ext;
                 cext.setInflaterPool(inflaterPool);
                 cext.setDeflaterPool(deflaterPool);
+                cext.setReleaseCompressorsWhenIdle(releaseCompressorsWhenIdle);
+            }
+            if (ext instanceof AbstractExtension)
+            {
+                AbstractExtension aext = (AbstractExtension)ext;
+                aext.init(container);
+                aext.setConfig(config);
             }
 
             return ext;
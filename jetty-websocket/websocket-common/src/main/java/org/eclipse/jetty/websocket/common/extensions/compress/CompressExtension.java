@@ -40,6 +40,7 @@ import org.eclipse.jetty.websocket.api.extensions.Frame;
 import org.eclipse.jetty.websocket.common.OpCode;
 import org.eclipse.jetty.websocket.common.extensions.AbstractExtension;
 import org.eclipse.jetty.websocket.common.frames.DataFrame;
+import org.eclipse.jetty.websocket.common.frames.EncodedFrame;
 
 public abstract class CompressExtension extends AbstractExtension
 {
@@ -95,6 +96,7 @@ public abstract class CompressExtension extends AbstractExtension
     protected AtomicInteger decompressCount = new AtomicInteger(0);
     private int tailDrop = TAIL_DROP_NEVER;
     private int rsvUse = RSV_USE_ALWAYS;
+    private boolean releaseCompressorsWhenIdle;
 
     protected CompressExtension()
     {
@@ -130,6 +132,73 @@ public abstract class CompressExtension extends AbstractExtension
         return inflaterImpl;
     }
 
+    /**
+     * @return whether the Deflater and Inflater are released to their pools
+     * between messages, when the compression context is not taken over
+     */
+    public boolean isReleaseCompressorsWhenIdle()
+    {
+        return releaseCompressorsWhenIdle;
+    }
+
+    /**
+     * @param releaseCompressorsWhenIdle whether the Deflater and Inflater are released
+     * to their pools between messages, when the compression context is not taken over
+     */
+    public void setReleaseCompressorsWhenIdle(boolean releaseCompressorsWhenIdle)
+    {
+        this.releaseCompressorsWhenIdle = releaseCompressorsWhenIdle;
+    }
+
+    /**
+     * <p>Resets the Deflater at the end of a message, or releases it
+     * to its pool if {@link #isReleaseCompressorsWhenIdle()}.</p>
+     */
+    protected void resetDeflater()
+    {
+        if (deflaterImpl == null)
+            return;
+        if (isReleaseCompressorsWhenIdle())
+        {
+            deflaterPool.release(deflaterImpl);
+            deflaterImpl = null;
+        }
+        else
+        {
+            deflaterImpl.reset();
+        }
+    }
+
+    /**
+     * <p>Resets the Inflater at the end of a message, or releases it
+     * to its pool if {@link #isReleaseCompressorsWhenIdle()}.</p>
+     */
+    protected void resetInflater()
+    {
+        if (inflaterImpl == null)
+            return;
+        if (isReleaseCompressorsWhenIdle())
+        {
+            inflaterPool.release(inflaterImpl);
+            inflaterImpl = null;
+        }
+        else
+        {
+            inflaterImpl.reset();
+        }
+    }
+
+    /**
+     * @return whether a Deflater is available, possibly acquired
+     * from the pool if its memory budget allows it
+     */
+    private boolean tryAcquireDeflater()
+    {
+        if (deflaterImpl == null)
+            deflaterImpl = deflaterPool.tryAcquire();
+        return deflaterImpl != null;
+    }
+
     /**
      * Indicates use of RSV1 flag for indicating deflation is in use.
      */
@@ -445,6 +514,7 @@ public abstract class CompressExtension extends AbstractExtension
     {
         private FrameEntry current;
         private boolean finished = true;
+        private boolean uncompressed;
 
         @Override
         public void failed(Throwable x)
@@ -478,9 +548,20 @@ public abstract class CompressExtension extends AbstractExtension
         {
             Frame frame = entry.frame;
             BatchMode batchMode = entry.batchMode;
-            if (OpCode.isControlFrame(frame.getOpCode()))
+            if (OpCode.isControlFrame(frame.getOpCode()) || frame instanceof EncodedFrame)
             {
-                // Do not deflate control frames
+                // Do not deflate control frames, nor frames already encoded
+                nextOutgoingFrame(frame, this, batchMode);
+                return;
+            }
+
+            // When the memory budget is exhausted, send the whole message uncompressed.
+            if (!frame.getType().isContinuation())
+                uncompressed = !tryAcquireDeflater();
+            if (uncompressed)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("No Deflater available, not compressing {}", entry);
                 nextOutgoingFrame(frame, this, batchMode);
                 return;
             }
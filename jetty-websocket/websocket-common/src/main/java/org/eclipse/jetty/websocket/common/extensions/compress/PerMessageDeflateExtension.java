@@ -26,6 +26,7 @@ import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.websocket.api.BadPayloadException;
 import org.eclipse.jetty.websocket.api.BatchMode;
 import org.eclipse.jetty.websocket.api.ProtocolException;
+import org.eclipse.jetty.websocket.api.WebSocketBehavior;
 import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.eclipse.jetty.websocket.api.extensions.ExtensionConfig;
 import org.eclipse.jetty.websocket.api.extensions.Frame;
@@ -52,6 +53,14 @@ public class PerMessageDeflateExtension extends CompressExtension
         return "permessage-deflate";
     }
 
+    /**
+     * @return whether the compression context is kept across outgoing messages
+     */
+    public boolean isOutgoingContextTakeover()
+    {
+        return outgoingContextTakeover;
+    }
+
     @Override
     public void incomingFrame(Frame frame)
     {
@@ -107,7 +116,7 @@ public class PerMessageDeflateExtension extends CompressExtension
         {
             LOG.debug("Incoming Context Reset");
             decompressCount.set(0);
-            getInflater().reset();
+            resetInflater();
         }
         super.nextIncomingFrame(frame);
     }
@@ -118,7 +127,7 @@ public class PerMessageDeflateExtension extends CompressExtension
         if (frame.isFin() && !outgoingContextTakeover)
         {
             LOG.debug("Outgoing Context Reset");
-            getDeflater().reset();
+            resetDeflater();
         }
         super.nextOutgoingFrame(frame, callback, batchMode);
     }
@@ -155,28 +164,30 @@ public class PerMessageDeflateExtension extends CompressExtension
                 }
                 case "client_no_context_takeover":
                 {
+                    // RFC 7692, 7.1.1.2: the client does not take over the context of its messages.
                     configNegotiated.setParameter("client_no_context_takeover");
                     switch (getPolicy().getBehavior())
                     {
                         case CLIENT:
-                            incomingContextTakeover = false;
+                            outgoingContextTakeover = false;
                             break;
                         case SERVER:
-                            outgoingContextTakeover = false;
+                            incomingContextTakeover = false;
                             break;
                     }
                     break;
                 }
                 case "server_no_context_takeover":
                 {
+                    // RFC 7692, 7.1.1.1: the server does not take over the context of its messages.
                     configNegotiated.setParameter("server_no_context_takeover");
                     switch (getPolicy().getBehavior())
                     {
                         case CLIENT:
-                            outgoingContextTakeover = false;
+                            incomingContextTakeover = false;
                             break;
                         case SERVER:
-                            incomingContextTakeover = false;
+                            outgoingContextTakeover = false;
                             break;
                     }
                     break;
@@ -188,6 +199,16 @@ public class PerMessageDeflateExtension extends CompressExtension
             }
         }
 
+        if (isReleaseCompressorsWhenIdle() && getPolicy().getBehavior() == WebSocketBehavior.SERVER)
+        {
+            // Servers may disable context takeover in both directions (RFC 7692, 7.1.1),
+            // so that idle sessions do not hold compressors between messages.
+            configNegotiated.setParameter("server_no_context_takeover");
+            configNegotiated.setParameter("client_no_context_takeover");
+            outgoingContextTakeover = false;
+            incomingContextTakeover = false;
+        }
+
         LOG.debug("config: outgoingContextTakeover={}, incomingContextTakeover={} : {}", outgoingContextTakeover, incomingContextTakeover, this);
 
         super.setConfig(configNegotiated);
@@ -0,0 +1,84 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.websocket.common.frames;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.websocket.api.extensions.Frame;
+import org.eclipse.jetty.websocket.common.Generator;
+
+/**
+ * <p>A data frame whose bytes, header and payload, have already been generated
+ * into a {@link RetainableByteBuffer}, so that the same frame can be sent
+ * to many sessions without generating it again for each of them.</p>
+ * <p>The encoded bytes are reference counted: the creator of the frame holds
+ * the initial reference, and each session retains the frame until it has
+ * been written, see
+ * {@link org.eclipse.jetty.websocket.common.WebSocketRemoteEndpoint#sendEncodedFrame(EncodedFrame, org.eclipse.jetty.websocket.api.WriteCallback)}.</p>
+ * <p>Encoded frames are only meaningful for sessions that would have
+ * generated the same bytes: extensions that transform outgoing frames
+ * must not process them.</p>
+ */
+public class EncodedFrame extends DataFrame
+{
+    private final RetainableByteBuffer encoded;
+
+    /**
+     * @param frame the frame to encode, whose payload is not consumed
+     * @param generator the generator to use to generate the frame header
+     * @param bufferPool the pool to acquire the buffer for the frame bytes from
+     */
+    public EncodedFrame(Frame frame, Generator generator, ByteBufferPool bufferPool)
+    {
+        super(frame);
+        ByteBuffer payload = frame.getPayload();
+        int length = BufferUtil.length(payload);
+        encoded = new RetainableByteBuffer(bufferPool, Generator.MAX_HEADER_LENGTH + length, true);
+        ByteBuffer buffer = encoded.getBuffer();
+        generator.generateHeaderBytes(frame, buffer);
+        int headerLength = buffer.remaining();
+        if (length > 0)
+            BufferUtil.append(buffer, payload.slice());
+        // The payload is a read-only view, so that it is not consumed by writes.
+        ByteBuffer view = buffer.asReadOnlyBuffer();
+        view.position(view.position() + headerLength);
+        setPayload(view.slice());
+    }
+
+    /**
+     * @return a new view of the frame bytes, ready to be written
+     */
+    public ByteBuffer getEncodedBytes()
+    {
+        return encoded.getBuffer().slice();
+    }
+
+    public void retain()
+    {
+        encoded.retain();
+    }
+
+    public int release()
+    {
+        return encoded.release();
+    }
+}
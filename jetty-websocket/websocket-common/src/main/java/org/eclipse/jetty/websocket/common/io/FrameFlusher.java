@@ -39,6 +39,7 @@ import org.eclipse.jetty.websocket.api.extensions.Frame;
 import org.eclipse.jetty.websocket.common.Generator;
 import org.eclipse.jetty.websocket.common.OpCode;
 import org.eclipse.jetty.websocket.common.frames.BinaryFrame;
+import org.eclipse.jetty.websocket.common.frames.EncodedFrame;
 
 public class FrameFlusher extends IteratingCallback
 {
@@ -204,6 +205,12 @@ public class FrameFlusher extends IteratingCallback
 
         for (FrameEntry entry : entries)
         {
+            if (entry.encoded != null)
+            {
+                BufferUtil.append(aggregate, entry.encoded.getEncodedBytes());
+                continue;
+            }
+
             entry.generateHeaderBytes(aggregate);
 
             ByteBuffer payload = entry.frame.getPayload();
@@ -234,6 +241,13 @@ public class FrameFlusher extends IteratingCallback
             if (entry.frame == FLUSH_FRAME)
                 continue;
 
+            // Encoded frames are shared, so write a view of their bytes.
+            if (entry.encoded != null)
+            {
+                buffers.add(entry.encoded.getEncodedBytes());
+                continue;
+            }
+
             buffers.add(entry.generateHeaderBytes());
             ByteBuffer payload = entry.frame.getPayload();
             if (BufferUtil.hasContent(payload))
@@ -411,6 +425,7 @@ public class FrameFlusher extends IteratingCallback
         private final Frame frame;
         private final WriteCallback callback;
         private final BatchMode batchMode;
+        private final EncodedFrame encoded;
         private ByteBuffer headerBuffer;
 
         private FrameEntry(Frame frame, WriteCallback callback, BatchMode batchMode)
@@ -418,6 +433,7 @@ public class FrameFlusher extends IteratingCallback
             this.frame = Objects.requireNonNull(frame);
             this.callback = callback;
             this.batchMode = batchMode;
+            this.encoded = frame instanceof EncodedFrame ? (EncodedFrame)frame : null;
         }
 
         private ByteBuffer generateHeaderBytes()
@@ -26,6 +26,7 @@ public class DeMaskProcessor implements PayloadProcessor
 {
     private byte[] maskBytes;
     private int maskInt;
+    private long maskLong;
     private int maskOffset;
 
     @Override
@@ -36,25 +37,40 @@ public class DeMaskProcessor implements PayloadProcessor
             return;
         }
 
-        int maskInt = this.maskInt;
         int start = payload.position();
         int end = payload.limit();
         int offset = this.maskOffset;
-        int remaining;
-        while ((remaining = end - start) > 0)
+
+        // Align to the mask, so that the mask words can be used as they are.
+        while (start < end && (offset & 3) != 0)
         {
-            if (remaining >= 4 && (offset & 3) == 0)
-            {
-                payload.putInt(start, payload.getInt(start) ^ maskInt);
-                start += 4;
-                offset += 4;
-            }
-            else
-            {
-                payload.put(start, (byte)(payload.get(start) ^ maskBytes[offset & 3]));
-                ++start;
-                ++offset;
-            }
+            payload.put(start, (byte)(payload.get(start) ^ maskBytes[offset & 3]));
+            ++start;
+            ++offset;
+        }
+
+        // Unmask 8 bytes at a time, which is what dominates for large payloads.
+        long maskLong = this.maskLong;
+        int longEnd = end - 7;
+        while (start < longEnd)
+        {
+            payload.putLong(start, payload.getLong(start) ^ maskLong);
+            start += 8;
+            offset += 8;
+        }
+
+        if (end - start >= 4)
+        {
+            payload.putInt(start, payload.getInt(start) ^ maskInt);
+            start += 4;
+            offset += 4;
+        }
+
+        while (start < end)
+        {
+            payload.put(start, (byte)(payload.get(start) ^ maskBytes[offset & 3]));
+            ++start;
+            ++offset;
         }
         maskOffset = offset;
     }
@@ -71,6 +87,7 @@ public class DeMaskProcessor implements PayloadProcessor
             }
         }
         this.maskInt = maskInt;
+        this.maskLong = ((long)maskInt << 32) | (maskInt & 0xFFFFFFFFL);
         this.maskOffset = 0;
     }
 
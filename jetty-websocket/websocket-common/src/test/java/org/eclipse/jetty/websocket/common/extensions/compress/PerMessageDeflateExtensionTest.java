@@ -34,6 +34,7 @@ import org.eclipse.jetty.util.TypeUtil;
 import org.eclipse.jetty.util.compression.CompressionPool;
 import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.eclipse.jetty.util.compression.InflaterPool;
+import org.eclipse.jetty.util.compression.MemoryBudget;
 import org.eclipse.jetty.websocket.api.BatchMode;
 import org.eclipse.jetty.websocket.api.ProtocolException;
 import org.eclipse.jetty.websocket.api.WebSocketPolicy;
@@ -51,6 +52,7 @@ import org.eclipse.jetty.websocket.common.test.OutgoingFramesCapture;
 import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -460,6 +462,69 @@ public class PerMessageDeflateExtensionTest extends AbstractExtensionTest
         ByteBufferAssert.assertEquals("Frame.payload", expected, actual.getPayload().slice());
     }
 
+    @Test
+    public void testReleaseCompressorsWhenIdle() throws Exception
+    {
+        DeflaterPool deflaterPool = new DeflaterPool(CompressionPool.INFINITE_CAPACITY, Deflater.DEFAULT_COMPRESSION, true);
+        InflaterPool inflaterPool = new InflaterPool(CompressionPool.INFINITE_CAPACITY, true);
+        deflaterPool.start();
+        inflaterPool.start();
+
+        PerMessageDeflateExtension ext = new PerMessageDeflateExtension();
+        ext.setBufferPool(bufferPool);
+        ext.setDeflaterPool(deflaterPool);
+        ext.setInflaterPool(inflaterPool);
+        ext.setReleaseCompressorsWhenIdle(true);
+        ext.setPolicy(WebSocketPolicy.newServerPolicy());
+        ext.setConfig(ExtensionConfig.parse("permessage-deflate"));
+
+        // The server disables context takeover in both directions.
+        ExtensionConfig negotiated = ext.getConfig();
+        assertThat(negotiated.getParameterKeys(), containsInAnyOrder("server_no_context_takeover", "client_no_context_takeover"));
+        assertThat(ext.isOutgoingContextTakeover(), is(false));
+
+        OutgoingFramesCapture capture = new OutgoingFramesCapture();
+        ext.setNextOutgoingFrames(capture);
+
+        ext.outgoingFrame(new TextFrame().setPayload("Hello"), null, BatchMode.OFF);
+        ext.outgoingFrame(new TextFrame().setPayload("World"), null, BatchMode.OFF);
+
+        capture.assertFrameCount(2);
+        for (WebSocketFrame frame : capture.getFrames())
+        {
+            assertThat("Frame.rsv1", frame.isRsv1(), is(true));
+        }
+        // The Deflater was released to the pool after each message.
+        assertThat(deflaterPool.getLiveObjects(), is(1));
+        assertThat(deflaterPool.getPooledObjects(), is(1));
+    }
+
+    @Test
+    public void testMemoryBudgetExhaustedSendsUncompressed() throws Exception
+    {
+        DeflaterPool deflaterPool = new DeflaterPool(CompressionPool.INFINITE_CAPACITY, Deflater.DEFAULT_COMPRESSION, true);
+        deflaterPool.setMemoryBudget(new MemoryBudget(0));
+
+        PerMessageDeflateExtension ext = new PerMessageDeflateExtension();
+        ext.setBufferPool(bufferPool);
+        ext.setDeflaterPool(deflaterPool);
+        ext.setInflaterPool(inflaterPool);
+        ext.setPolicy(WebSocketPolicy.newServerPolicy());
+        ext.setConfig(ExtensionConfig.parse("permessage-deflate"));
+
+        OutgoingFramesCapture capture = new OutgoingFramesCapture();
+        ext.setNextOutgoingFrames(capture);
+
+        String payload = "Hello";
+        ext.outgoingFrame(new TextFrame().setPayload(payload), null, BatchMode.OFF);
+
+        capture.assertFrameCount(1);
+        WebSocketFrame actual = capture.getFrames().getFirst();
+        assertThat("Frame.rsv1", actual.isRsv1(), is(false));
+        ByteBufferAssert.assertEquals("Frame.payload", BufferUtil.toBuffer(payload, StandardCharsets.UTF_8), actual.getPayload().slice());
+        assertThat(deflaterPool.getLiveObjects(), is(0));
+    }
+
     /**
      * Outgoing Fragmented Message
      *
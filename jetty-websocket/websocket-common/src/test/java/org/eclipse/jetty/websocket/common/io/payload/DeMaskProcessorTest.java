@@ -106,4 +106,39 @@ public class DeMaskProcessorTest
             assertThat("payload[" + i + "]", payload.get(i), is(msgChar));
         }
     }
+
+    @Test
+    public void testDeMaskLargeSlicedAtEveryOffset()
+    {
+        byte[] mask = Hex.asByteArray("11223344");
+        byte[] message = new byte[67];
+        for (int i = 0; i < message.length; i++)
+        {
+            message[i] = (byte)i;
+        }
+
+        for (int slicePoint = 0; slicePoint <= message.length; slicePoint++)
+        {
+            byte[] masked = new byte[message.length];
+            for (int i = 0; i < message.length; i++)
+            {
+                masked[i] = (byte)(message[i] ^ mask[i & 3]);
+            }
+            ByteBuffer payload = ByteBuffer.wrap(masked);
+            ByteBuffer slice1 = payload.slice();
+            slice1.limit(slicePoint);
+            ByteBuffer slice2 = payload.slice();
+            slice2.position(slicePoint);
+
+            DeMaskProcessor demask = new DeMaskProcessor();
+            demask.reset(mask);
+            demask.process(slice1);
+            demask.process(slice2);
+
+            for (int i = 0; i < message.length; i++)
+            {
+                assertThat("slice@" + slicePoint + " payload[" + i + "]", masked[i], is(message[i]));
+            }
+        }
+    }
 }
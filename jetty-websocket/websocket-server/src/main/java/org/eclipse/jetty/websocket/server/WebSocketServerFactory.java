@@ -21,6 +21,7 @@ package org.eclipse.jetty.websocket.server;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -63,6 +64,7 @@ import org.eclipse.jetty.websocket.api.WebSocketPolicy;
 import org.eclipse.jetty.websocket.api.extensions.ExtensionFactory;
 import org.eclipse.jetty.websocket.api.util.QuoteUtil;
 import org.eclipse.jetty.websocket.common.LogicalConnection;
+import org.eclipse.jetty.websocket.common.Broadcaster;
 import org.eclipse.jetty.websocket.common.SessionFactory;
 import org.eclipse.jetty.websocket.common.SessionTracker;
 import org.eclipse.jetty.websocket.common.WebSocketSession;
@@ -99,6 +101,7 @@ public class WebSocketServerFactory extends ContainerLifeCycle implements WebSoc
     private final ServletContext context; // can be null when this factory is used from WebSocketHandler
     private final List<SessionFactory> sessionFactories = new ArrayList<>();
     private final SessionTracker sessionTracker = new SessionTracker();
+    private final Broadcaster broadcaster;
     private final List<Class<?>> registeredSocketClasses = new ArrayList<>();
     private Executor executor;
     private DecoratedObjectFactory objectFactory;
@@ -162,6 +165,7 @@ public class WebSocketServerFactory extends ContainerLifeCycle implements WebSoc
         this.contextClassloader = Thread.currentThread().getContextClassLoader();
         this.eventDriverFactory = new EventDriverFactory(this);
         this.extensionFactory = new WebSocketExtensionFactory(this);
+        this.broadcaster = new Broadcaster(bufferPool, extensionFactory.getDeflaterPool());
 
         this.handshakes.put(HandshakeRFC6455.VERSION, new HandshakeRFC6455());
         this.sessionFactories.add(new WebSocketSessionFactory(this));
@@ -469,6 +473,37 @@ public class WebSocketServerFactory extends ContainerLifeCycle implements WebSoc
         return this.sessionTracker.getSessions();
     }
 
+    public Broadcaster getBroadcaster()
+    {
+        return broadcaster;
+    }
+
+    /**
+     * <p>Sends the given text message to all the open sessions,
+     * encoding it once for all the sessions that can share it.</p>
+     *
+     * @param text the text message to send
+     * @return the number of sessions the message has been sent to
+     * @see Broadcaster
+     */
+    public int broadcast(String text)
+    {
+        return broadcaster.broadcast(getOpenSessions(), text, null);
+    }
+
+    /**
+     * <p>Sends the given binary message to all the open sessions,
+     * encoding it once for all the sessions that can share it.</p>
+     *
+     * @param data the binary message to send, which is not consumed
+     * @return the number of sessions the message has been sent to
+     * @see Broadcaster
+     */
+    public int broadcast(ByteBuffer data)
+    {
+        return broadcaster.broadcast(getOpenSessions(), data, null);
+    }
+
     @Override
     public WebSocketPolicy getPolicy()
     {
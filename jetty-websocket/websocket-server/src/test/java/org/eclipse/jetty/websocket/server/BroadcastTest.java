@@ -0,0 +1,221 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.websocket.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.util.compression.DeflaterPool;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.client.ClientUpgradeRequest;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.eclipse.jetty.websocket.common.Broadcaster;
+import org.eclipse.jetty.websocket.common.WebSocketSession;
+import org.eclipse.jetty.websocket.common.test.Timeouts;
+import org.eclipse.jetty.websocket.common.util.Sha1Sum;
+import org.eclipse.jetty.websocket.server.helper.CaptureSocket;
+import org.eclipse.jetty.websocket.server.helper.EchoServlet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BroadcastTest
+{
+    private static final String[] EXTENSIONS = new String[]{
+        null,
+        "permessage-deflate; server_no_context_takeover",
+        "permessage-deflate; server_no_context_takeover",
+        "permessage-deflate"
+    };
+
+    private SimpleServletServer server;
+    private WebSocketClient client;
+    private WebSocketServerFactory factory;
+    private final List<CaptureSocket> sockets = new ArrayList<>();
+
+    @BeforeEach
+    public void start() throws Exception
+    {
+        server = new SimpleServletServer(new EchoServlet());
+        server.start();
+        factory = (WebSocketServerFactory)server.getWebSocketServletFactory();
+
+        client = new WebSocketClient();
+        client.start();
+        for (String extension : EXTENSIONS)
+        {
+            CaptureSocket socket = new CaptureSocket();
+            ClientUpgradeRequest request = new ClientUpgradeRequest();
+            if (extension != null)
+                request.addExtensions(extension);
+            request.setSubProtocols("echo");
+            Session session = client.connect(socket, server.getServerUri(), request).get(5, TimeUnit.SECONDS);
+            if (extension != null)
+                assertThat(session.getUpgradeResponse().getHeader("Sec-WebSocket-Extensions"), containsString("permessage-deflate"));
+            sockets.add(socket);
+        }
+
+        // Sessions are tracked before they are opened.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (getOpenedSessions() < EXTENSIONS.length && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertThat(getOpenedSessions(), is((long)EXTENSIONS.length));
+    }
+
+    private long getOpenedSessions()
+    {
+        return factory.getOpenSessions().stream().filter(session -> session.getRemote() != null).count();
+    }
+
+    @AfterEach
+    public void stop() throws Exception
+    {
+        client.stop();
+        server.stop();
+    }
+
+    @Test
+    public void testBroadcastText() throws Exception
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1024; ++i)
+        {
+            builder.append("broadcast message ").append(i).append(' ');
+        }
+        String text = builder.toString();
+
+        List<String> encodings = new CopyOnWriteArrayList<>();
+        Broadcaster broadcaster = new Broadcaster(factory.getBufferPool(), new DeflaterPool(0, Deflater.DEFAULT_COMPRESSION, true))
+        {
+            @Override
+            protected String getEncoding(WebSocketSession session)
+            {
+                String encoding = super.getEncoding(session);
+                encodings.add(String.valueOf(encoding));
+                return encoding;
+            }
+        };
+
+        CountDownLatch latch = new CountDownLatch(EXTENSIONS.length);
+        int sent = broadcaster.broadcast(factory.getOpenSessions(), text, new Broadcaster.Listener()
+        {
+            @Override
+            public void onSuccess(WebSocketSession session)
+            {
+                latch.countDown();
+            }
+        });
+        assertThat(sent, is(EXTENSIONS.length));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        // Sessions with outgoing context takeover cannot share the compressed frame.
+        assertThat(encodings, containsInAnyOrder("", "null", "permessage-deflate;server_no_context_takeover", "permessage-deflate;server_no_context_takeover"));
+
+        // Broadcast again, to verify that the shared frames do not corrupt compression contexts.
+        assertThat(factory.broadcast("second"), is(EXTENSIONS.length));
+
+        for (CaptureSocket socket : sockets)
+        {
+            assertThat(socket.messages.poll(Timeouts.POLL_EVENT, Timeouts.POLL_EVENT_UNIT), is(text));
+            assertThat(socket.messages.poll(Timeouts.POLL_EVENT, Timeouts.POLL_EVENT_UNIT), is("second"));
+        }
+    }
+
+    @Test
+    public void testBroadcastFromClient() throws Exception
+    {
+        List<String> encodings = new CopyOnWriteArrayList<>();
+        Broadcaster broadcaster = new Broadcaster(client.getBufferPool(), new DeflaterPool(0, Deflater.DEFAULT_COMPRESSION, true))
+        {
+            @Override
+            protected String getEncoding(WebSocketSession session)
+            {
+                String encoding = super.getEncoding(session);
+                encodings.add(String.valueOf(encoding));
+                return encoding;
+            }
+        };
+
+        assertThat(broadcaster.broadcast(client.getOpenSessions(), "from client", null), is(EXTENSIONS.length));
+        // Client sessions mask their frames, so they cannot share an encoded frame.
+        assertThat(encodings.size(), is(EXTENSIONS.length));
+        assertThat(encodings, everyItem(is("null")));
+
+        // The server rejects unmasked frames, so the echo verifies that the frames were masked.
+        for (CaptureSocket socket : sockets)
+        {
+            assertThat(socket.messages.poll(Timeouts.POLL_EVENT, Timeouts.POLL_EVENT_UNIT), is("from client"));
+        }
+    }
+
+    @Test
+    public void testBroadcastBinary() throws Exception
+    {
+        byte[] bytes = new byte[32 * 1024];
+        for (int i = 0; i < bytes.length; ++i)
+        {
+            bytes[i] = (byte)(i % 31);
+        }
+        ByteBuffer data = ByteBuffer.wrap(bytes);
+        String sha1 = Sha1Sum.calculate(bytes);
+
+        assertThat(factory.broadcast(data), is(EXTENSIONS.length));
+        // The data is not consumed.
+        assertThat(data.remaining(), is(bytes.length));
+
+        for (CaptureSocket socket : sockets)
+        {
+            assertThat(socket.messages.poll(Timeouts.POLL_EVENT, Timeouts.POLL_EVENT_UNIT), is("binary[sha1=" + sha1 + "]"));
+        }
+    }
+
+    @Test
+    public void testBroadcastInterleavedWithSessionMessages() throws Exception
+    {
+        for (WebSocketSession session : factory.getOpenSessions())
+        {
+            session.getRemote().sendString("before");
+        }
+        factory.broadcast("broadcast");
+        for (WebSocketSession session : factory.getOpenSessions())
+        {
+            session.getRemote().sendString("after");
+        }
+
+        for (CaptureSocket socket : sockets)
+        {
+            assertThat(socket.messages.poll(Timeouts.POLL_EVENT, Timeouts.POLL_EVENT_UNIT), is("before"));
+            assertThat(socket.messages.poll(Timeouts.POLL_EVENT, Timeouts.POLL_EVENT_UNIT), is("broadcast"));
+            assertThat(socket.messages.poll(Timeouts.POLL_EVENT, Timeouts.POLL_EVENT_UNIT), is("after"));
+        }
+    }
+}
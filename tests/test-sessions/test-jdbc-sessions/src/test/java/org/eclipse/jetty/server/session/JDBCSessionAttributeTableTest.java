@@ -0,0 +1,150 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2019 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * JDBCSessionAttributeTableTest
+ *
+ * Test that with an attribute table, only the changed attributes are written.
+ */
+public class JDBCSessionAttributeTableTest
+{
+    public static final String ATTRIBUTE_TABLE = "myattributes";
+
+    JDBCSessionDataStore _store;
+
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        DatabaseAdaptor da = new DatabaseAdaptor();
+        da.setDriverInfo(JdbcTestHelper.DRIVER_CLASS, JdbcTestHelper.DEFAULT_CONNECTION_URL);
+        JDBCSessionDataStore.SessionTableSchema schema = JdbcTestHelper.newSessionTableSchema();
+        schema.setAttributeTableName(ATTRIBUTE_TABLE);
+        _store = new JDBCSessionDataStore();
+        _store.setDatabaseAdaptor(da);
+        _store.setSessionTableSchema(schema);
+        _store.initialize(new SessionContext("foo", null));
+        _store.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception
+    {
+        _store.stop();
+        JdbcTestHelper.shutdown(null);
+    }
+
+    private static int countAttributeRows(String name) throws Exception
+    {
+        try (Connection connection = DriverManager.getConnection(JdbcTestHelper.DEFAULT_CONNECTION_URL);
+             PreparedStatement statement = connection.prepareStatement("select count(*) from " + ATTRIBUTE_TABLE +
+                 (name == null ? "" : " where " + "attributeName = ?")))
+        {
+            if (name != null)
+                statement.setString(1, name);
+            try (ResultSet result = statement.executeQuery())
+            {
+                result.next();
+                return result.getInt(1);
+            }
+        }
+    }
+
+    @Test
+    public void testChangedAttributesWritten() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = _store.newSessionData("1234", now, now, now, 60000);
+        data.setAttribute("a", "A");
+        data.setAttribute("b", 2);
+        _store.store("1234", data);
+        assertEquals(2, countAttributeRows(null));
+
+        SessionData loaded = _store.load("1234");
+        assertEquals("A", loaded.getAttribute("a"));
+        assertEquals(2, loaded.getAttribute("b"));
+        assertFalse(loaded.isDirty());
+
+        loaded.setAttribute("a", "AA");
+        loaded.setAttribute("b", null);
+        loaded.setAttribute("c", new ArrayList<>(Arrays.asList(1, 2)));
+        assertEquals(3, loaded.getDirtyAttributes().size());
+        _store.store("1234", loaded);
+        assertEquals(2, countAttributeRows(null));
+        assertEquals(0, countAttributeRows("b"));
+
+        loaded = _store.load("1234");
+        assertEquals("AA", loaded.getAttribute("a"));
+        assertNull(loaded.getAttribute("b"));
+        assertEquals(Arrays.asList(1, 2), loaded.getAttribute("c"));
+
+        _store.delete("1234");
+        assertEquals(0, countAttributeRows(null));
+        assertFalse(JdbcTestHelper.existsInSessionTable("1234", false));
+    }
+
+    @Test
+    public void testStoreAllWritesChangedAttributes() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        SessionData one = _store.newSessionData("one", now, now, now, 60000);
+        one.setAttribute("a", "A");
+        SessionData two = _store.newSessionData("two", now, now, now, 60000);
+        two.setAttribute("a", "A");
+        two.setAttribute("b", "B");
+        Map<SessionData, Long> sessions = new HashMap<>();
+        sessions.put(one, 0L);
+        sessions.put(two, 0L);
+        _store.doStoreAll(sessions);
+        assertEquals(3, countAttributeRows(null));
+
+        SessionData loadedOne = _store.load("one");
+        SessionData loadedTwo = _store.load("two");
+        loadedOne.setAttribute("a", "AA");
+        loadedTwo.setAttribute("b", null);
+        sessions.clear();
+        sessions.put(loadedOne, now);
+        sessions.put(loadedTwo, now);
+        _store.doStoreAll(sessions);
+        assertEquals(2, countAttributeRows(null));
+        assertEquals(0, countAttributeRows("b"));
+
+        assertEquals("AA", _store.load("one").getAttribute("a"));
+        loadedTwo = _store.load("two");
+        assertEquals("A", loadedTwo.getAttribute("a"));
+        assertNull(loadedTwo.getAttribute("b"));
+    }
+}